@@ -14,5 +14,6 @@ CREATE TABLE IF NOT EXISTS FILES(
 	PATH VARCHAR NOT NULL,
 	TIMESTAMP BIGINT NOT NULL,
 	CONTAINER_ID INT NOT NULL,
+	DIGEST VARCHAR,
 	FOREIGN KEY(CONTAINER_ID) REFERENCES CONTAINERS(ID) ON UPDATE CASCADE ON DELETE CASCADE,
 );
\ No newline at end of file
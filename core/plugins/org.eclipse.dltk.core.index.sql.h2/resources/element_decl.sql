@@ -17,4 +17,13 @@ CREATE TABLE IF NOT EXISTS {0}(
 	PARENT VARCHAR, 
 	FILE_ID INT NOT NULL, 
 	FOREIGN KEY(FILE_ID) REFERENCES FILES(ID) ON UPDATE CASCADE ON DELETE CASCADE, 
-);
\ No newline at end of file
+);
+
+-- N-gram postings of the element names, used for the PATTERN and
+-- CAMEL_CASE searches (see NameGrams)
+CREATE TABLE IF NOT EXISTS {0}_NGRAMS(
+	GRAM BIGINT NOT NULL,
+	FILE_ID INT NOT NULL,
+	FOREIGN KEY(FILE_ID) REFERENCES FILES(ID) ON UPDATE CASCADE ON DELETE CASCADE,
+);
+CREATE INDEX IF NOT EXISTS {0}_NGRAMS_GRAM ON {0}_NGRAMS(GRAM);
\ No newline at end of file
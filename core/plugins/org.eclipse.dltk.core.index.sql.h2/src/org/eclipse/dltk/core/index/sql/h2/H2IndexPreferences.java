@@ -32,6 +32,15 @@ public class H2IndexPreferences extends AbstractPreferenceInitializer {
 	 */
 	public static final String DB_CACHE_SIZE = "cacheSize"; //$NON-NLS-1$
 
+	/**
+	 * Number of the prepared commands cached by each H2 Database session. The
+	 * element searches are parameterized, so the commands are reused for the
+	 * searches of the same kind.
+	 * 
+	 * @see http://www.h2database.com/html/grammar.html#set_query_cache_size
+	 */
+	public static final String DB_QUERY_CACHE_SIZE = "queryCacheSize"; //$NON-NLS-1$
+
 	/**
 	 * Whether to use transaction locking.
 	 * 
@@ -52,5 +61,6 @@ public class H2IndexPreferences extends AbstractPreferenceInitializer {
 		p.putInt(DB_CACHE_SIZE, 32000); // 32Mb
 		p.put(DB_CACHE_TYPE, "LRU");
 		p.putInt(DB_LOCK_MODE, 0); // no transaction isolation
+		p.putInt(DB_QUERY_CACHE_SIZE, 64);
 	}
 }
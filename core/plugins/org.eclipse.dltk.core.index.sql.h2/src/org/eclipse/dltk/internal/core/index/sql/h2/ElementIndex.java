@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.index.sql.h2;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.dltk.core.index.sql.Element;
+
+/**
+ * In-memory index of the elements of the same type. Elements are stored by
+ * file and are also indexed by the name (ignoring case) and by the upper case
+ * letters of the name, so the searches by name don't have to visit all the
+ * elements. The index is not synchronized.
+ */
+class ElementIndex {
+
+	/**
+	 * Receives the elements found in the index
+	 */
+	interface Visitor {
+		/**
+		 * @return <code>false</code> to stop the search
+		 */
+		boolean visit(Element element);
+	}
+
+	private final IntMap<List<Element>> elementsByFile = new IntMap<List<Element>>();
+
+	/**
+	 * The values are either the single {@link Element} or the {@link List} of
+	 * the elements with the same name, since most of the names are unique.
+	 */
+	private final TreeMap<String, Object> elementsByName = new TreeMap<String, Object>(
+			String.CASE_INSENSITIVE_ORDER);
+	private final TreeMap<String, Object> elementsByCamelCase = new TreeMap<String, Object>();
+
+	void add(Element element) {
+		List<Element> elements = elementsByFile.get(element.getFileId());
+		if (elements == null) {
+			elements = new ArrayList<Element>(4);
+			elementsByFile.put(element.getFileId(), elements);
+		}
+		elements.add(element);
+		put(elementsByName, element.getName(), element);
+		final String camelCaseKey = getCamelCaseKey(element);
+		if (camelCaseKey != null) {
+			put(elementsByCamelCase, camelCaseKey, element);
+		}
+	}
+
+	void removeFile(int fileId) {
+		final List<Element> elements = elementsByFile.remove(fileId);
+		if (elements != null) {
+			for (Element element : elements) {
+				remove(elementsByName, element.getName(), element);
+				final String camelCaseKey = getCamelCaseKey(element);
+				if (camelCaseKey != null) {
+					remove(elementsByCamelCase, camelCaseKey, element);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the upper case letters of the element name, which is the stored
+	 * camel-case name if the name starts with the upper case letter.
+	 */
+	private static String getCamelCaseKey(Element element) {
+		final String camelCaseName = element.getCamelCaseName();
+		if (camelCaseName != null) {
+			return camelCaseName;
+		}
+		return NameGrams.getUpperCaseLetters(element.getName());
+	}
+
+	boolean isEmpty() {
+		return elementsByFile.size() == 0;
+	}
+
+	List<Element> getElements(int fileId) {
+		return elementsByFile.get(fileId);
+	}
+
+	/**
+	 * Visits all the elements
+	 */
+	boolean visitAll(Visitor visitor) {
+		for (List<Element> elements : elementsByFile.values()) {
+			if (!visit(elements, visitor)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Visits the elements with the specified name (ignoring case)
+	 */
+	boolean visitName(String name, Visitor visitor) {
+		return visitValue(elementsByName.get(name), visitor);
+	}
+
+	/**
+	 * Visits the elements which names start with the specified prefix
+	 * (ignoring case)
+	 */
+	boolean visitNamePrefix(String prefix, Visitor visitor) {
+		for (Map.Entry<String, Object> entry : elementsByName.tailMap(prefix)
+				.entrySet()) {
+			if (!entry.getKey().regionMatches(true, 0, prefix, 0,
+					prefix.length())) {
+				break;
+			}
+			if (!visitValue(entry.getValue(), visitor)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Visits the elements which names have the upper case letters starting
+	 * with the specified prefix
+	 */
+	boolean visitCamelCasePrefix(String prefix, Visitor visitor) {
+		for (Map.Entry<String, Object> entry : elementsByCamelCase.tailMap(
+				prefix).entrySet()) {
+			if (!entry.getKey().startsWith(prefix)) {
+				break;
+			}
+			if (!visitValue(entry.getValue(), visitor)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	static boolean visit(List<Element> elements, Visitor visitor) {
+		for (Element element : elements) {
+			if (!visitor.visit(element)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static boolean visitValue(Object value, Visitor visitor) {
+		if (value == null) {
+			return true;
+		} else if (value instanceof Element) {
+			return visitor.visit((Element) value);
+		} else {
+			return visit((List<Element>) value, visitor);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void put(Map<String, Object> map, String key,
+			Element element) {
+		final Object value = map.get(key);
+		if (value == null) {
+			map.put(key, element);
+		} else if (value instanceof Element) {
+			final List<Element> elements = new ArrayList<Element>(2);
+			elements.add((Element) value);
+			elements.add(element);
+			map.put(key, elements);
+		} else {
+			((List<Element>) value).add(element);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void remove(Map<String, Object> map, String key,
+			Element element) {
+		final Object value = map.get(key);
+		if (value == element) {
+			map.remove(key);
+		} else if (value instanceof List<?>) {
+			final List<Element> elements = (List<Element>) value;
+			for (Iterator<Element> i = elements.iterator(); i.hasNext();) {
+				if (i.next() == element) {
+					i.remove();
+					break;
+				}
+			}
+			if (elements.size() == 1) {
+				map.put(key, elements.get(0));
+			} else if (elements.isEmpty()) {
+				map.remove(key);
+			}
+		}
+	}
+}
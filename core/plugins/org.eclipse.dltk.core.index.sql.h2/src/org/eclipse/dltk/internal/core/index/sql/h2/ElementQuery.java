@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.index.sql.h2;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.eclipse.dltk.compiler.CharOperation;
+import org.eclipse.dltk.core.index2.search.ISearchEngine.MatchRule;
+
+/**
+ * Parameterized query for the element declarations or references.
+ * <p>
+ * All the values are passed as statement parameters, so the SQL text depends
+ * only on the table, the match rule and the set of the enabled filters. The
+ * searches of the same kind produce the same SQL text and the command prepared
+ * by H2 is reused from the query cache of the database session instead of
+ * parsing the SQL again.
+ * </p>
+ * <p>
+ * The camel-case names are not matched by SQL: the query selects the
+ * candidates and the caller checks each name with {@link #accept(String)}.
+ * </p>
+ */
+class ElementQuery {
+
+	private static final Pattern SEPARATOR_PATTERN = Pattern.compile(","); //$NON-NLS-1$
+
+	/** Columns required to create the element declaration */
+	private static final String DECL_COLUMNS = "FLAGS,OFFSET,LENGTH,NAME_OFFSET,NAME_LENGTH,NAME,CC_NAME,METADATA,DOC,QUALIFIER,PARENT,FILE_ID"; //$NON-NLS-1$
+
+	/** Columns required to create the element reference */
+	private static final String REF_COLUMNS = "OFFSET,LENGTH,NAME,METADATA,QUALIFIER,FILE_ID"; //$NON-NLS-1$
+
+	private final String tableName;
+	private final boolean isReference;
+	private final StringBuilder query = new StringBuilder();
+	private final List<Object> parameters = new ArrayList<Object>();
+
+	/** The camel-case pattern the selected names are matched against */
+	private char[] camelCasePattern;
+
+	ElementQuery(String tableName, boolean isReference) {
+		this.tableName = tableName;
+		this.isReference = isReference;
+		query.append("SELECT ") //$NON-NLS-1$
+				.append(isReference ? REF_COLUMNS : DECL_COLUMNS)
+				.append(" FROM ").append(tableName).append(" WHERE 1=1"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private static String escapeBackslash(String pattern) {
+		return pattern.replaceAll("\\\\", "\\\\\\\\"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * Adds the element name condition
+	 */
+	void addName(String pattern, MatchRule matchRule) {
+		if (matchRule == MatchRule.EXACT) {
+			query.append(" AND NAME=?"); //$NON-NLS-1$
+			parameters.add(pattern);
+		} else if (matchRule == MatchRule.PREFIX) {
+			query.append(" AND NAME LIKE ?"); //$NON-NLS-1$
+			parameters.add(escapeBackslash(pattern) + '%');
+		} else if (matchRule == MatchRule.CAMEL_CASE) {
+			addGrams(NameGrams.getCamelCaseGrams(pattern));
+			query.append(" AND NAME LIKE ?"); //$NON-NLS-1$
+			parameters.add(escapeBackslash(NameGrams.getFirstHump(pattern))
+					+ '%');
+			camelCasePattern = pattern.toCharArray();
+		} else if (matchRule == MatchRule.SET) {
+			addNameSet(SEPARATOR_PATTERN.split(pattern));
+		} else if (matchRule == MatchRule.PATTERN) {
+			addGrams(NameGrams.getPatternGrams(pattern));
+			query.append(" AND NAME LIKE ?"); //$NON-NLS-1$
+			parameters.add(escapeBackslash(pattern).replace('*', '%').replace(
+					'?', '_'));
+		}
+	}
+
+	/**
+	 * Limits the search to the files having all the specified n-grams in the
+	 * declaration names, see {@link NameGrams}. The postings are maintained
+	 * for the declarations only.
+	 */
+	private void addGrams(Object[] grams) {
+		if (grams != null && !isReference) {
+			query.append(" AND FILE_ID IN(SELECT FILE_ID FROM ") //$NON-NLS-1$
+					.append(tableName)
+					.append("_NGRAMS WHERE GRAM IN(SELECT X FROM TABLE(X BIGINT=?)) GROUP BY FILE_ID HAVING COUNT(DISTINCT GRAM)=?)"); //$NON-NLS-1$
+			parameters.add(grams);
+			parameters.add(Integer.valueOf(grams.length));
+		}
+	}
+
+	/**
+	 * The names are compared ignoring case, which is not the case for the
+	 * values of the table function, so the set is passed as the list of the
+	 * parameters. The size of the list is rounded up to the power of two
+	 * (repeating the last name) to keep the number of the different queries
+	 * low.
+	 */
+	private void addNameSet(String[] names) {
+		int size = 1;
+		while (size < names.length) {
+			size <<= 1;
+		}
+		query.append(" AND NAME IN("); //$NON-NLS-1$
+		for (int i = 0; i < size; ++i) {
+			if (i > 0) {
+				query.append(',');
+			}
+			query.append('?');
+			parameters.add(names[Math.min(i, names.length - 1)]);
+		}
+		query.append(')');
+	}
+
+	void addTrueFlags(int flags) {
+		query.append(" AND BITAND(FLAGS,?) <> 0"); //$NON-NLS-1$
+		parameters.add(Integer.valueOf(flags));
+	}
+
+	void addFalseFlags(int flags) {
+		query.append(" AND BITAND(FLAGS,?) = 0"); //$NON-NLS-1$
+		parameters.add(Integer.valueOf(flags));
+	}
+
+	void addQualifier(String qualifier) {
+		query.append(" AND QUALIFIER=?"); //$NON-NLS-1$
+		parameters.add(qualifier);
+	}
+
+	void addParent(String parent) {
+		query.append(" AND PARENT=?"); //$NON-NLS-1$
+		parameters.add(parent);
+	}
+
+	/**
+	 * Adds the files condition, the identifiers are passed as the single
+	 * array parameter of the table function, so the query is the same for any
+	 * number of the files.
+	 */
+	void addFiles(int[] filesId) {
+		query.append(" AND FILE_ID IN(SELECT X FROM TABLE(X INT=?))"); //$NON-NLS-1$
+		parameters.add(toArray(filesId));
+	}
+
+	void addContainers(int[] containersId) {
+		query.append(" AND FILE_ID IN(SELECT ID FROM FILES WHERE CONTAINER_ID IN(SELECT X FROM TABLE(X INT=?)))"); //$NON-NLS-1$
+		parameters.add(toArray(containersId));
+	}
+
+	private static Object[] toArray(int[] values) {
+		final Object[] result = new Object[values.length];
+		for (int i = 0; i < values.length; ++i) {
+			result[i] = Integer.valueOf(values[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Whether the element with the specified name matches the query, the
+	 * names of the selected elements are only checked for the camel-case
+	 * searches.
+	 */
+	boolean accept(String name) {
+		return camelCasePattern == null
+				|| CharOperation.camelCaseMatch(camelCasePattern,
+						name.toCharArray());
+	}
+
+	/**
+	 * Creates the statement with all the parameters set.
+	 *
+	 * @param connection
+	 *            Database connection
+	 * @param limit
+	 *            Records limit (<code>0</code> - disable limit), not applied
+	 *            if the names are checked by {@link #accept(String)}
+	 * @throws SQLException
+	 */
+	PreparedStatement prepare(Connection connection, int limit)
+			throws SQLException {
+		final PreparedStatement statement = connection
+				.prepareStatement(getQuery());
+		try {
+			int param = 0;
+			for (Object value : parameters) {
+				statement.setObject(++param, value);
+			}
+			// negative value disables the limit
+			statement.setInt(++param, limit > 0 && camelCasePattern == null ? limit
+					: -1);
+			return statement;
+		} catch (SQLException e) {
+			statement.close();
+			throw e;
+		}
+	}
+
+	String getQuery() {
+		return query.toString() + " LIMIT ?;"; //$NON-NLS-1$
+	}
+
+	@Override
+	public String toString() {
+		return getQuery() + ' ' + parameters;
+	}
+}
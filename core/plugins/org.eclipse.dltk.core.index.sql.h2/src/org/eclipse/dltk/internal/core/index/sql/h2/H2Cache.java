@@ -13,20 +13,20 @@ package org.eclipse.dltk.internal.core.index.sql.h2;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Pattern;
 
 import org.eclipse.core.runtime.NullProgressMonitor;
-import org.eclipse.core.runtime.jobs.ILock;
-import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.dltk.compiler.CharOperation;
 import org.eclipse.dltk.core.IModelElement;
 import org.eclipse.dltk.core.index.sql.Container;
 import org.eclipse.dltk.core.index.sql.DbFactory;
@@ -38,240 +38,259 @@ import org.eclipse.dltk.core.index.sql.h2.H2Index;
 import org.eclipse.dltk.core.index2.search.ISearchEngine.MatchRule;
 
 /**
- * This is a cache layer between H2 database and model access
+ * This is a cache layer between H2 database and model access.
+ * <p>
+ * Containers and files are guarded by their own read/write locks. Elements are
+ * distributed between the stripes by the file identifier, each stripe has its
+ * own read/write lock, so the indexer threads adding the elements of the
+ * different files and the searches don't block each other. Within the stripe
+ * the elements are indexed by the name, see {@link ElementIndex}.
+ * </p>
  * 
  * @author michael
  */
 public class H2Cache {
 
-	private static final ILock containerLock = Job.getJobManager().newLock();
-	private static final Map<Integer, Container> containerById = new HashMap<Integer, Container>();
+	private static final ReadWriteLock containerLock = new ReentrantReadWriteLock();
+	private static final IntMap<Container> containerById = new IntMap<Container>();
+	private static final Map<String, Container> containerByPath = new HashMap<String, Container>();
 
-	private static final ILock fileLock = Job.getJobManager().newLock();
-	private static final Map<Integer, Map<Integer, File>> filesByContainer = new HashMap<Integer, Map<Integer, File>>();
+	private static final ReadWriteLock fileLock = new ReentrantReadWriteLock();
+	private static final IntMap<File> fileById = new IntMap<File>();
+	private static final IntMap<Map<String, File>> filesByContainer = new IntMap<Map<String, File>>();
 
-	private static final ILock elementLock = Job.getJobManager().newLock();
-	private static final Map<Integer, Map<Integer, List<Element>>> elementsMap = new HashMap<Integer, Map<Integer, List<Element>>>();
+	/**
+	 * Number of the element stripes, must be the power of 2
+	 */
+	private static final int STRIPES = 16;
 
-	private static final ILock loadedLock = Job.getJobManager().newLock();
-	private static boolean isLoaded;
+	private static final ElementStripe[] elementStripes = new ElementStripe[STRIPES];
+	static {
+		for (int i = 0; i < STRIPES; ++i) {
+			elementStripes[i] = new ElementStripe();
+		}
+	}
+
+	/**
+	 * If the number of the files to search in is greater than this value and
+	 * the name index could be used, then the name index is searched instead of
+	 * visiting the elements of each file.
+	 */
+	private static final int MAX_FILES_TO_VISIT = 32;
+
+	private static final Object loadedLock = new Object();
+	private static volatile boolean isLoaded;
+
+	/**
+	 * The elements of the files with the same stripe number
+	 */
+	private static class ElementStripe {
+		final ReadWriteLock lock = new ReentrantReadWriteLock();
+		final IntMap<ElementIndex> indexByType = new IntMap<ElementIndex>();
+	}
+
+	private static ElementStripe getStripe(int fileId) {
+		return elementStripes[fileId & (STRIPES - 1)];
+	}
 
 	public static void addContainer(Container container) {
-		containerLock.acquire();
+		containerLock.writeLock().lock();
 		try {
-			int containerId = container.getId();
-			containerById.put(containerId, container);
+			Container previous = containerByPath.put(container.getPath(),
+					container);
+			if (previous != null && previous.getId() != container.getId()) {
+				containerById.remove(previous.getId());
+			}
+			containerById.put(container.getId(), container);
 		} finally {
-			containerLock.release();
+			containerLock.writeLock().unlock();
 		}
 	}
 
 	public static void addElement(Element element) {
-		elementLock.acquire();
+		ElementStripe stripe = getStripe(element.getFileId());
+		stripe.lock.writeLock().lock();
 		try {
 			int elementType = element.getType();
-			Map<Integer, List<Element>> elementsByFile = elementsMap
-					.get(elementType);
-			if (elementsByFile == null) {
-				elementsByFile = new HashMap<Integer, List<Element>>();
-				elementsMap.put(elementType, elementsByFile);
-			}
-			int fileId = element.getFileId();
-			List<Element> elementsSet = elementsByFile.get(fileId);
-			if (elementsSet == null) {
-				elementsSet = new LinkedList<Element>();
-				elementsByFile.put(fileId, elementsSet);
+			ElementIndex index = stripe.indexByType.get(elementType);
+			if (index == null) {
+				index = new ElementIndex();
+				stripe.indexByType.put(elementType, index);
 			}
-			elementsSet.add(element);
+			index.add(element);
 		} finally {
-			elementLock.release();
+			stripe.lock.writeLock().unlock();
 		}
 	}
 
 	public static void addFile(File file) {
-		fileLock.acquire();
+		fileLock.writeLock().lock();
 		try {
 			int containerId = file.getContainerId();
-			Map<Integer, File> files = filesByContainer.get(containerId);
+			Map<String, File> files = filesByContainer.get(containerId);
 			if (files == null) {
-				files = new HashMap<Integer, File>();
+				files = new HashMap<String, File>();
 				filesByContainer.put(containerId, files);
 			}
-			files.put(file.getId(), file);
+			File previous = files.put(file.getPath(), file);
+			if (previous != null && previous.getId() != file.getId()) {
+				fileById.remove(previous.getId());
+			}
+			fileById.put(file.getId(), file);
 		} finally {
-			fileLock.release();
+			fileLock.writeLock().unlock();
 		}
 	}
 
 	public static void deleteContainerById(int id) {
-		containerLock.acquire();
+		containerLock.writeLock().lock();
 		try {
-			containerById.remove(id);
-			deleteFilesByContainerId(id);
+			Container container = containerById.remove(id);
+			if (container != null) {
+				containerByPath.remove(container.getPath());
+			}
 		} finally {
-			containerLock.release();
+			containerLock.writeLock().unlock();
 		}
+		deleteFilesByContainerId(id);
 	}
 
 	public static void deleteContainerByPath(String path) {
-		containerLock.acquire();
-		try {
-			Container container = selectContainerByPath(path);
-			if (container != null) {
-				deleteContainerById(container.getId());
-			}
-		} finally {
-			containerLock.release();
+		Container container = selectContainerByPath(path);
+		if (container != null) {
+			deleteContainerById(container.getId());
 		}
 	}
 
 	public static void deleteElementsByFileId(int id) {
-		elementLock.acquire();
+		ElementStripe stripe = getStripe(id);
+		stripe.lock.writeLock().lock();
 		try {
-			Iterator<Map<Integer, List<Element>>> i = elementsMap.values()
-					.iterator();
-			while (i.hasNext()) {
-				Map<Integer, List<Element>> elementsByFile = i.next();
-				elementsByFile.remove(id);
+			for (int type : stripe.indexByType.keys()) {
+				ElementIndex index = stripe.indexByType.get(type);
+				index.removeFile(id);
+				if (index.isEmpty()) {
+					stripe.indexByType.remove(type);
+				}
 			}
 		} finally {
-			elementLock.release();
+			stripe.lock.writeLock().unlock();
 		}
 	}
 
 	public static void deleteFileByContainerIdAndPath(int containerId,
 			String path) {
-		fileLock.acquire();
-		try {
-			File file = selectFileByContainerIdAndPath(containerId, path);
-			if (file != null) {
-				deleteFileById(file.getId());
-			}
-		} finally {
-			fileLock.release();
+		File file = selectFileByContainerIdAndPath(containerId, path);
+		if (file != null) {
+			deleteFileById(file.getId());
 		}
 	}
 
 	public static void deleteFileById(int id) {
-		fileLock.acquire();
+		fileLock.writeLock().lock();
 		try {
-			Iterator<Map<Integer, File>> i = filesByContainer.values()
-					.iterator();
-			while (i.hasNext()) {
-				i.next().remove(id);
+			File file = fileById.remove(id);
+			if (file != null) {
+				Map<String, File> files = filesByContainer.get(file
+						.getContainerId());
+				if (files != null && files.get(file.getPath()) == file) {
+					files.remove(file.getPath());
+				}
 			}
-			deleteElementsByFileId(id);
 		} finally {
-			fileLock.release();
+			fileLock.writeLock().unlock();
 		}
+		deleteElementsByFileId(id);
 	}
 
 	public static void deleteFilesByContainerId(int id) {
-		fileLock.acquire();
+		Map<String, File> files;
+		fileLock.writeLock().lock();
 		try {
-			Map<Integer, File> files = filesByContainer.remove(id);
+			files = filesByContainer.remove(id);
 			if (files != null) {
-				Iterator<Integer> i = files.keySet().iterator();
-				while (i.hasNext()) {
-					deleteElementsByFileId(i.next());
+				for (File file : files.values()) {
+					fileById.remove(file.getId());
 				}
 			}
 		} finally {
-			fileLock.release();
+			fileLock.writeLock().unlock();
+		}
+		if (files != null) {
+			for (File file : files.values()) {
+				deleteElementsByFileId(file.getId());
+			}
 		}
 	}
 
 	public static Container selectContainerById(int id) {
-		containerLock.acquire();
+		containerLock.readLock().lock();
 		try {
 			return containerById.get(id);
 		} finally {
-			containerLock.release();
+			containerLock.readLock().unlock();
 		}
 	}
 
 	public static Container selectContainerByPath(String path) {
-		containerLock.acquire();
+		containerLock.readLock().lock();
 		try {
-			Iterator<Container> i = containerById.values().iterator();
-			while (i.hasNext()) {
-				Container container = i.next();
-				if (container.getPath().equals(path)) {
-					return container;
-				}
-			}
-			return null;
+			return containerByPath.get(path);
 		} finally {
-			containerLock.release();
+			containerLock.readLock().unlock();
 		}
 	}
 
 	public static Collection<Element> selectElementsByFileId(int id) {
-		elementLock.acquire();
+		List<Element> elements = new ArrayList<Element>();
+		ElementStripe stripe = getStripe(id);
+		stripe.lock.readLock().lock();
 		try {
-			List<Element> elements = new LinkedList<Element>();
-			Iterator<Map<Integer, List<Element>>> i = elementsMap.values()
-					.iterator();
-			while (i.hasNext()) {
-				Map<Integer, List<Element>> elementsByFile = i.next();
-				List<Element> l = elementsByFile.get(id);
+			for (ElementIndex index : stripe.indexByType.values()) {
+				List<Element> l = index.getElements(id);
 				if (l != null) {
 					elements.addAll(l);
 				}
 			}
-			return elements;
 		} finally {
-			elementLock.release();
+			stripe.lock.readLock().unlock();
 		}
+		return elements;
 	}
 
 	public static File selectFileByContainerIdAndPath(int containerId,
 			String path) {
-		fileLock.acquire();
+		fileLock.readLock().lock();
 		try {
-			Map<Integer, File> files = filesByContainer.get(containerId);
+			Map<String, File> files = filesByContainer.get(containerId);
 			if (files != null) {
-				Iterator<File> i = files.values().iterator();
-				while (i.hasNext()) {
-					File file = i.next();
-					if (file.getPath().equals(path)) {
-						return file;
-					}
-				}
+				return files.get(path);
 			}
 		} finally {
-			fileLock.release();
+			fileLock.readLock().unlock();
 		}
 		return null;
 	}
 
 	public static File selectFileById(int id) {
-		fileLock.acquire();
+		fileLock.readLock().lock();
 		try {
-			Iterator<Map<Integer, File>> i = filesByContainer.values()
-					.iterator();
-			while (i.hasNext()) {
-				File file = i.next().get(id);
-				if (file != null) {
-					return file;
-				}
-			}
-			return null;
+			return fileById.get(id);
 		} finally {
-			fileLock.release();
+			fileLock.readLock().unlock();
 		}
 	}
 
 	public static Collection<File> selectFilesByContainerId(int id) {
-		fileLock.acquire();
+		fileLock.readLock().lock();
 		try {
-			Map<Integer, File> files = filesByContainer.get(id);
+			Map<String, File> files = filesByContainer.get(id);
 			if (files != null) {
-				return files.values();
+				return new ArrayList<File>(files.values());
 			}
 			return Collections.emptyList();
 		} finally {
-			fileLock.release();
+			fileLock.readLock().unlock();
 		}
 	}
 
@@ -280,45 +299,116 @@ public class H2Cache {
 			int falseFlags, String qualifier, String parent, int[] filesId,
 			int containersId[], String natureId, int limit) {
 
-		Set<Integer> filesIds = new HashSet<Integer>();
-		if (filesId != null) {
-			for (int fileId : filesId) {
-				filesIds.add(fileId);
-			}
-		} else if (containersId != null) {
-			containerLock.acquire();
+		int[] fileIds = filesId;
+		if (fileIds == null && containersId != null) {
+			fileLock.readLock().lock();
 			try {
+				IntMap<File> files = new IntMap<File>();
 				for (int containerId : containersId) {
-					fileLock.acquire();
-					try {
-						Map<Integer, File> files = filesByContainer
-								.get(containerId);
-						if (files != null) {
-							filesIds.addAll(files.keySet());
+					Map<String, File> containerFiles = filesByContainer
+							.get(containerId);
+					if (containerFiles != null) {
+						for (File file : containerFiles.values()) {
+							files.put(file.getId(), file);
 						}
-					} finally {
-						fileLock.release();
 					}
 				}
+				fileIds = files.keys();
 			} finally {
-				containerLock.release();
+				fileLock.readLock().unlock();
 			}
 		}
 
-		elementLock.acquire();
-		try {
-			Set<String> patternSet = null;
-			Pattern posixPattern = null;
+		ElementSearch search = new ElementSearch(pattern, matchRule,
+				trueFlags, falseFlags, qualifier, parent, limit);
+
+		if (fileIds != null
+				&& (fileIds.length <= MAX_FILES_TO_VISIT || !search
+						.isNameIndexed())) {
+			for (int fileId : fileIds) {
+				ElementStripe stripe = getStripe(fileId);
+				stripe.lock.readLock().lock();
+				try {
+					ElementIndex index = stripe.indexByType.get(elementType);
+					if (index != null) {
+						List<Element> elements = index.getElements(fileId);
+						if (elements != null
+								&& !ElementIndex.visit(elements, search)) {
+							break;
+						}
+					}
+				} finally {
+					stripe.lock.readLock().unlock();
+				}
+			}
+		} else {
+			if (fileIds != null) {
+				search.setFiles(fileIds);
+			}
+			for (ElementStripe stripe : elementStripes) {
+				stripe.lock.readLock().lock();
+				try {
+					ElementIndex index = stripe.indexByType.get(elementType);
+					if (index != null && !search.search(index)) {
+						break;
+					}
+				} finally {
+					stripe.lock.readLock().unlock();
+				}
+			}
+		}
+		return search.result;
+	}
 
-			// Pre-cache pattern's lower and upper case variants:
-			String patternLC = null;
-			String patternUC = null;
+	/**
+	 * Search parameters and results, visits the candidate elements provided
+	 * by {@link ElementIndex} and collects the matching ones.
+	 */
+	private static class ElementSearch implements ElementIndex.Visitor {
+
+		final String pattern;
+		final MatchRule matchRule;
+		final int trueFlags;
+		final int falseFlags;
+		final String qualifier;
+		final String parent;
+		int limit;
+
+		final Set<String> patternSet;
+		final Pattern posixPattern;
+		final String patternLC;
+		final char[] camelCasePattern;
+
+		IntMap<Boolean> files;
+
+		final List<Element> result = new ArrayList<Element>();
+
+		ElementSearch(String pattern, MatchRule matchRule, int trueFlags,
+				int falseFlags, String qualifier, String parent, int limit) {
+			if (pattern != null && pattern.length() == 0) {
+				pattern = null;
+			}
+			this.pattern = pattern;
+			this.matchRule = matchRule;
+			this.trueFlags = trueFlags;
+			this.falseFlags = falseFlags;
+			this.qualifier = qualifier;
+			this.parent = parent;
+			this.limit = limit;
+
+			// Pre-cache pattern's lower case variant:
 			if (pattern != null) {
 				patternLC = pattern.toLowerCase();
-				patternUC = pattern.toUpperCase();
+			} else {
+				patternLC = null;
+			}
+			if (pattern != null && matchRule == MatchRule.CAMEL_CASE) {
+				camelCasePattern = pattern.toCharArray();
+			} else {
+				camelCasePattern = null;
 			}
 
-			if (matchRule == MatchRule.SET) {
+			if (pattern != null && matchRule == MatchRule.SET) {
 				patternSet = new HashSet<String>();
 				String[] parts = pattern.split(",");
 				for (String part : parts) {
@@ -326,68 +416,107 @@ public class H2Cache {
 						patternSet.add(part.toLowerCase());
 					}
 				}
-			} else if (matchRule == MatchRule.PATTERN) {
+			} else {
+				patternSet = null;
+			}
+			if (pattern != null && matchRule == MatchRule.PATTERN) {
 				posixPattern = createPosixPattern(pattern);
+			} else {
+				posixPattern = null;
 			}
+		}
 
-			List<Element> result = new LinkedList<Element>();
-			Map<Integer, List<Element>> elementsByFile = elementsMap
-					.get(elementType);
-			if (elementsByFile != null) {
-
-				if (filesIds.size() == 0) {
-					Iterator<List<Element>> i = elementsByFile.values()
-							.iterator();
-					while (i.hasNext()) {
-						searchInElements(i.next(), result, pattern, matchRule,
-								trueFlags, falseFlags, qualifier, parent,
-								patternSet, posixPattern, patternLC, patternUC,
-								limit);
-					}
-				} else {
-					for (Integer fileId : filesIds) {
-						searchInElements(elementsByFile.get(fileId), result,
-								pattern, matchRule, trueFlags, falseFlags,
-								qualifier, parent, patternSet, posixPattern,
-								patternLC, patternUC, limit);
+		void setFiles(int[] fileIds) {
+			files = new IntMap<Boolean>(fileIds.length);
+			for (int fileId : fileIds) {
+				files.put(fileId, Boolean.TRUE);
+			}
+		}
+
+		/**
+		 * Whether the elements could be found using the name index
+		 */
+		boolean isNameIndexed() {
+			if (pattern == null) {
+				return false;
+			}
+			if (matchRule == MatchRule.PATTERN) {
+				return getLiteralPrefix(pattern).length() > 0;
+			}
+			return matchRule == MatchRule.EXACT
+					|| matchRule == MatchRule.PREFIX
+					|| matchRule == MatchRule.CAMEL_CASE
+					|| matchRule == MatchRule.SET;
+		}
+
+		/**
+		 * @return <code>false</code> if the search is completed
+		 */
+		boolean search(ElementIndex index) {
+			if (pattern == null) {
+				return index.visitAll(this);
+			} else if (matchRule == MatchRule.EXACT) {
+				return index.visitName(pattern, this);
+			} else if (matchRule == MatchRule.PREFIX) {
+				return index.visitNamePrefix(pattern, this);
+			} else if (matchRule == MatchRule.CAMEL_CASE) {
+				// the upper case letters of the pattern start the upper case
+				// letters of the name, the first hump starts the name
+				String upperCase = NameGrams.getUpperCaseLetters(pattern);
+				if (upperCase != null && upperCase.length() > 1) {
+					return index.visitCamelCasePrefix(upperCase, this);
+				}
+				return index.visitNamePrefix(NameGrams.getFirstHump(pattern),
+						this);
+			} else if (matchRule == MatchRule.SET) {
+				for (String name : patternSet) {
+					if (!index.visitName(name, this)) {
+						return false;
 					}
 				}
+				return true;
+			} else if (matchRule == MatchRule.PATTERN) {
+				String prefix = getLiteralPrefix(pattern);
+				if (prefix.length() > 0) {
+					return index.visitNamePrefix(prefix, this);
+				}
 			}
-			return result;
+			return index.visitAll(this);
+		}
 
-		} finally {
-			elementLock.release();
+		public boolean visit(Element element) {
+			if (files != null && !files.containsKey(element.getFileId())) {
+				return true;
+			}
+			if (elementMatches(element, pattern, matchRule, trueFlags,
+					falseFlags, qualifier, parent, patternSet, posixPattern,
+					patternLC, camelCasePattern)) {
+				result.add(element);
+				if (--limit == 0) {
+					return false;
+				}
+			}
+			return true;
 		}
 	}
 
-	private static void searchInElements(List<Element> elements,
-			List<Element> result, String pattern, MatchRule matchRule,
-			int trueFlags, int falseFlags, String qualifier, String parent,
-			Set<String> patternSet, Pattern posixPattern, String patternLC,
-			String patternUC, int limit) {
-
-		if (elements != null) {
-			Iterator<Element> i = elements.iterator();
-			while (i.hasNext()) {
-				Element element = i.next();
-				if (elementMatches(element, pattern, matchRule, trueFlags,
-						falseFlags, qualifier, parent, patternSet,
-						posixPattern, patternLC, patternUC)) {
-
-					result.add(element);
-					if (--limit == 0) {
-						break;
-					}
-				}
+	/**
+	 * Returns the part of the POSIX pattern before the first wildcard
+	 */
+	private static String getLiteralPrefix(String pattern) {
+		for (int i = 0; i < pattern.length(); ++i) {
+			char ch = pattern.charAt(i);
+			if (ch == '*' || ch == '?') {
+				return pattern.substring(0, i);
 			}
 		}
+		return pattern;
 	}
 
 	private static boolean elementMatches(Element element, String pattern,
 			MatchRule matchRule, int trueFlags, int falseFlags,
 			String qualifier, String parent, Set<String> patternSet,
-			Pattern posixPattern, String patternLC, String patternUC) {
-
+			Pattern posixPattern, String patternLC, char[] camelCasePattern) {
 		if ((trueFlags == 0 || (element.getFlags() & trueFlags) != 0)
 				&& (falseFlags == 0 || (element.getFlags() & falseFlags) == 0)) {
 
@@ -404,9 +533,9 @@ public class H2Cache {
 									.equalsIgnoreCase(elementName))
 							|| (matchRule == MatchRule.PREFIX && startsWithIgnoreCase(
 									elementName, patternLC))
-							|| (matchRule == MatchRule.CAMEL_CASE
-									&& element.getCamelCaseName() != null && element
-									.getCamelCaseName().startsWith(patternUC))
+							|| (matchRule == MatchRule.CAMEL_CASE && CharOperation
+									.camelCaseMatch(camelCasePattern,
+											elementName.toCharArray()))
 							|| (matchRule == MatchRule.SET && patternSet
 									.contains(elementName.toLowerCase()))
 							|| (matchRule == MatchRule.PATTERN && posixPattern
@@ -463,17 +592,11 @@ public class H2Cache {
 	}
 
 	public static boolean isLoaded() {
-		loadedLock.acquire();
-		try {
-			return isLoaded;
-		} finally {
-			loadedLock.release();
-		}
+		return isLoaded;
 	}
 
 	public static void load() {
-		loadedLock.acquire();
-		try {
+		synchronized (loadedLock) {
 			if (!isLoaded) {
 				try {
 					DbFactory dbFactory = DbFactory.getInstance();
@@ -523,8 +646,6 @@ public class H2Cache {
 					isLoaded = true;
 				}
 			}
-		} finally {
-			loadedLock.release();
 		}
 	}
 }
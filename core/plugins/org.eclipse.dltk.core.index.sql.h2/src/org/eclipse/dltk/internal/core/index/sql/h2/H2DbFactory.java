@@ -138,6 +138,10 @@ public class H2DbFactory extends DbFactory {
 				preferencesService.getInt(H2Index.PLUGIN_ID,
 						H2IndexPreferences.DB_CACHE_SIZE, 0, null));
 
+		buf.append(";QUERY_CACHE_SIZE=").append(
+				preferencesService.getInt(H2Index.PLUGIN_ID,
+						H2IndexPreferences.DB_QUERY_CACHE_SIZE, 64, null));
+
 		return buf.toString();
 	}
 
@@ -15,11 +15,15 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
+import java.util.Set;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.dltk.core.index.sql.Element;
@@ -37,8 +41,6 @@ import org.eclipse.osgi.util.NLS;
  */
 public class H2ElementDao implements IElementDao {
 
-	private static final Pattern SEPARATOR_PATTERN = Pattern.compile(","); //$NON-NLS-1$
-
 	private static final String Q_INSERT_REF = Schema
 			.readSqlFile("resources/insert_ref.sql"); //$NON-NLS-1$
 
@@ -51,12 +53,79 @@ public class H2ElementDao implements IElementDao {
 	/** Cache for insert element reference queries */
 	private static final Map<String, String> D_INSERT_QUERY_CACHE = new HashMap<String, String>();
 
+	private static final String Q_INSERT_NGRAM = "INSERT INTO {0}_NGRAMS(GRAM,FILE_ID) VALUES(?,?);"; //$NON-NLS-1$
+
+	private static final String Q_SELECT_NGRAMS = "SELECT GRAM FROM {0}_NGRAMS WHERE FILE_ID=?;"; //$NON-NLS-1$
+
+	private static final String Q_DELETE_NGRAMS = "DELETE FROM {0}_NGRAMS WHERE FILE_ID=? AND GRAM IN(SELECT X FROM TABLE(X BIGINT=?));"; //$NON-NLS-1$
+
+	private static final String Q_SELECT_TABLES = "SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA=SCHEMA() AND (TABLE_NAME LIKE ? OR TABLE_NAME LIKE ?);"; //$NON-NLS-1$
+
+	private static final String Q_SELECT_FILE_ROWS = "SELECT ID,{1} FROM {0} WHERE FILE_ID=?;"; //$NON-NLS-1$
+
+	private static final String Q_DELETE_ROWS = "DELETE FROM {0} WHERE ID IN(SELECT X FROM TABLE(X INT=?));"; //$NON-NLS-1$
+
+	/** Element declaration columns in the order of the insert statement */
+	private static final String DECL_VALUES = "FLAGS,OFFSET,LENGTH,NAME_OFFSET,NAME_LENGTH,NAME,CC_NAME,METADATA,DOC,QUALIFIER,PARENT"; //$NON-NLS-1$
+
+	/** Element reference columns in the order of the insert statement */
+	private static final String REF_VALUES = "OFFSET,LENGTH,NAME,METADATA,QUALIFIER"; //$NON-NLS-1$
+
+	/** Index of the NAME in the element declaration values */
+	private static final int DECL_NAME = 5;
+
 	private final ModelManager modelManager;
-	private final Map<String, PreparedStatement> batchStatements;
+
+	/**
+	 * Element values inserted since the last commit by table name, they are
+	 * written in {@link #commitInsertions()}, so the values of a single file
+	 * could be discarded until then.
+	 */
+	private final Map<String, List<Row>> batchRows;
+	/** Connection the values are inserted with */
+	private Connection batchConnection;
+
+	/** N-grams of the inserted declarations by table name and file */
+	private final Map<String, Map<Integer, Set<Long>>> batchGrams;
+
+	/**
+	 * Inserted declarations, they are put into the cache once they are
+	 * written to the database
+	 */
+	private final List<Element> batchElements;
+
+	/**
+	 * The file which elements are replaced, see
+	 * {@link #beginUpdate(Connection, int, String)}
+	 */
+	private int updateFileId = -1;
+	private Connection updateConnection;
+	private String updateNatureId;
+	/** Element values of the updated file by table name */
+	private final Map<String, List<Object[]>> updateRows;
+	/** Element declarations of the updated file to put into the cache */
+	private final List<Element> updateElements;
 
 	public H2ElementDao() {
 		this.modelManager = ModelManager.getModelManager();
-		this.batchStatements = new HashMap<String, PreparedStatement>();
+		this.batchRows = new HashMap<String, List<Row>>();
+		this.batchGrams = new HashMap<String, Map<Integer, Set<Long>>>();
+		this.batchElements = new ArrayList<Element>();
+		this.updateRows = new HashMap<String, List<Object[]>>();
+		this.updateElements = new ArrayList<Element>();
+	}
+
+	/**
+	 * Element values waiting to be inserted
+	 */
+	private static class Row {
+		final Object[] values;
+		final int fileId;
+
+		Row(Object[] values, int fileId) {
+			this.values = values;
+			this.fileId = fileId;
+		}
 	}
 
 	private String getTableName(Connection connection, int elementType,
@@ -70,74 +139,89 @@ public class H2ElementDao implements IElementDao {
 		return tableName;
 	}
 
-	private void insertBatch(Connection connection,
-			PreparedStatement statement, int type, int flags, int offset,
-			int length, int nameOffset, int nameLength, String name,
+	/**
+	 * Returns the values of the element columns in the order of the insert
+	 * statement, without the file ID.
+	 */
+	private static Object[] getValues(int flags, int offset, int length,
+			int nameOffset, int nameLength, String name, String camelCaseName,
 			String metadata, String doc, String qualifier, String parent,
-			int fileId, String natureId, boolean isReference)
-			throws SQLException {
-
-		int param = 0;
-
-		if (!isReference) {
-			statement.setInt(++param, flags);
-		}
-
-		statement.setInt(++param, offset);
-		statement.setInt(++param, length);
-
-		if (!isReference) {
-			statement.setInt(++param, nameOffset);
-			statement.setInt(++param, nameLength);
+			boolean isReference) {
+		if (isReference) {
+			return new Object[] { Integer.valueOf(offset),
+					Integer.valueOf(length), name, metadata, qualifier };
 		}
+		return new Object[] { Integer.valueOf(flags), Integer.valueOf(offset),
+				Integer.valueOf(length), Integer.valueOf(nameOffset),
+				Integer.valueOf(nameLength), name, camelCaseName, metadata,
+				doc, qualifier, parent };
+	}
 
-		statement.setString(++param, name);
+	private static boolean isReferenceTable(String tableName) {
+		return tableName.startsWith("R_"); //$NON-NLS-1$
+	}
 
-		String camelCaseName = null;
-		if (!isReference) {
-			StringBuilder camelCaseNameBuf = new StringBuilder();
-			for (int i = 0; i < name.length(); ++i) {
-				char ch = name.charAt(i);
-				if (Character.isUpperCase(ch)) {
-					camelCaseNameBuf.append(ch);
-				} else if (i == 0) {
-					// not applicable for camel case search
-					break;
-				}
-			}
-			camelCaseName = camelCaseNameBuf.length() > 0 ? camelCaseNameBuf
-					.toString() : null;
-			statement.setString(++param, camelCaseName);
+	private void addRow(String tableName, Object[] values, int fileId) {
+		List<Row> rows = batchRows.get(tableName);
+		if (rows == null) {
+			rows = new ArrayList<Row>();
+			batchRows.put(tableName, rows);
 		}
+		rows.add(new Row(values, fileId));
+	}
 
-		statement.setString(++param, metadata);
-		if (!isReference) {
-			statement.setString(++param, doc);
-		}
-		statement.setString(++param, qualifier);
+	private static void insertBatch(PreparedStatement statement,
+			Object[] values, int fileId) throws SQLException {
 
-		if (!isReference) {
-			statement.setString(++param, parent);
+		int param = 0;
+		for (Object value : values) {
+			statement.setObject(++param, value);
 		}
-
 		statement.setInt(++param, fileId);
 		statement.addBatch();
+	}
 
-		if (!isReference) {
-			H2Cache.addElement(new Element(type, flags, offset, length,
-					nameOffset, nameLength, name, camelCaseName, metadata, doc,
-					qualifier, parent, fileId, isReference));
+	private static String getCamelCaseName(String name) {
+		StringBuilder camelCaseNameBuf = new StringBuilder();
+		for (int i = 0; i < name.length(); ++i) {
+			char ch = name.charAt(i);
+			if (Character.isUpperCase(ch)) {
+				camelCaseNameBuf.append(ch);
+			} else if (i == 0) {
+				// not applicable for camel case search
+				break;
+			}
 		}
+		return camelCaseNameBuf.length() > 0 ? camelCaseNameBuf.toString()
+				: null;
 	}
 
-	public void insert(Connection connection, int type, int flags, int offset,
-			int length, int nameOffset, int nameLength, String name,
-			String metadata, String doc, String qualifier, String parent,
-			int fileId, String natureId, boolean isReference)
-			throws SQLException {
+	/**
+	 * Collects the n-grams of the declaration, the postings are inserted in
+	 * {@link #commitInsertions()} once per file.
+	 */
+	private void addGrams(String tableName, int fileId, String name) {
+		NameGrams.addGrams(getGrams(tableName, fileId), name);
+	}
 
-		String tableName = getTableName(connection, type, natureId, isReference);
+	/**
+	 * Returns the n-grams of the file to insert into the posting table
+	 */
+	private Set<Long> getGrams(String tableName, int fileId) {
+		Map<Integer, Set<Long>> gramsByFile = batchGrams.get(tableName);
+		if (gramsByFile == null) {
+			gramsByFile = new HashMap<Integer, Set<Long>>();
+			batchGrams.put(tableName, gramsByFile);
+		}
+		Set<Long> grams = gramsByFile.get(fileId);
+		if (grams == null) {
+			grams = new HashSet<Long>();
+			gramsByFile.put(fileId, grams);
+		}
+		return grams;
+	}
 
+	private static String getInsertQuery(String tableName, boolean isReference) {
 		String query;
 		if (isReference) {
 			query = R_INSERT_QUERY_CACHE.get(tableName);
@@ -152,37 +236,346 @@ public class H2ElementDao implements IElementDao {
 				D_INSERT_QUERY_CACHE.put(tableName, query);
 			}
 		}
+		return query;
+	}
+
+	public void insert(Connection connection, int type, int flags, int offset,
+			int length, int nameOffset, int nameLength, String name,
+			String metadata, String doc, String qualifier, String parent,
+			int fileId, String natureId, boolean isReference)
+			throws SQLException {
+
+		String tableName = getTableName(connection, type, natureId, isReference);
+
+		String camelCaseName = isReference ? null : getCamelCaseName(name);
+		Object[] values = getValues(flags, offset, length, nameOffset,
+				nameLength, name, camelCaseName, metadata, doc, qualifier,
+				parent, isReference);
+		Element element = null;
+		if (!isReference) {
+			element = new Element(type, flags, offset, length, nameOffset,
+					nameLength, name, camelCaseName, metadata, doc, qualifier,
+					parent, fileId, isReference);
+		}
+
+		synchronized (batchRows) {
+			if (fileId == updateFileId) {
+				List<Object[]> rows = updateRows.get(tableName);
+				if (rows == null) {
+					rows = new ArrayList<Object[]>();
+					updateRows.put(tableName, rows);
+				}
+				rows.add(values);
+				if (element != null) {
+					updateElements.add(element);
+				}
+				return;
+			}
+			batchConnection = connection;
+			addRow(tableName, values, fileId);
+			if (!isReference) {
+				batchElements.add(element);
+				addGrams(tableName, fileId, name);
+			}
+		}
+	}
+
+	public void beginUpdate(Connection connection, int fileId, String natureId)
+			throws SQLException {
+		synchronized (batchRows) {
+			updateFileId = fileId;
+			updateConnection = connection;
+			updateNatureId = natureId;
+			updateRows.clear();
+			updateElements.clear();
+		}
+	}
+
+	/**
+	 * Compares the elements inserted for the updated file with the elements
+	 * stored in the database, the new elements are added to the batch and the
+	 * elements which are no longer reported are deleted. The n-gram postings
+	 * of the declarations are compared the same way for the tables having the
+	 * changes. The elements of the file are replaced in the cache once the
+	 * batch is written.
+	 */
+	private void applyUpdate() throws SQLException {
+		final Connection connection = updateConnection;
+		final int fileId = updateFileId;
+		batchConnection = connection;
+
+		Set<String> tableNames = new HashSet<String>(updateRows.keySet());
+		tableNames.addAll(selectTables(connection, updateNatureId));
+
+		for (String tableName : tableNames) {
+			boolean isReference = isReferenceTable(tableName);
+			Map<List<Object>, List<Integer>> existing = selectRows(connection,
+					tableName, isReference, fileId);
+
+			List<Object[]> rows = updateRows.get(tableName);
+			if (rows == null) {
+				rows = new ArrayList<Object[]>();
+			}
+			List<Object[]> added = new ArrayList<Object[]>();
+			for (Object[] row : rows) {
+				List<Integer> ids = existing.get(Arrays.asList(row));
+				if (ids != null && !ids.isEmpty()) {
+					ids.remove(ids.size() - 1);
+				} else {
+					added.add(row);
+				}
+			}
+			List<Object> deleted = new ArrayList<Object>();
+			for (List<Integer> ids : existing.values()) {
+				deleted.addAll(ids);
+			}
+
+			if (!deleted.isEmpty()) {
+				PreparedStatement statement = connection.prepareStatement(NLS
+						.bind(Q_DELETE_ROWS, tableName));
+				try {
+					statement.setObject(1, deleted.toArray());
+					statement.executeUpdate();
+				} finally {
+					statement.close();
+				}
+			}
+			for (Object[] row : added) {
+				addRow(tableName, row, fileId);
+			}
+			if (!isReference && (!deleted.isEmpty() || !added.isEmpty())) {
+				updateGrams(connection, tableName, fileId, rows);
+			}
+		}
+
+		batchElements.addAll(updateElements);
+	}
+
+	/**
+	 * Compares the n-grams of the declarations inserted for the updated file
+	 * with the postings stored in the database, the new grams are added to the
+	 * batch and the grams no longer used by the file are deleted.
+	 */
+	private void updateGrams(Connection connection, String tableName,
+			int fileId, List<Object[]> rows) throws SQLException {
+		Set<Long> grams = new HashSet<Long>();
+		for (Object[] row : rows) {
+			NameGrams.addGrams(grams, (String) row[DECL_NAME]);
+		}
+		List<Object> deleted = new ArrayList<Object>();
+		PreparedStatement statement = connection.prepareStatement(NLS.bind(
+				Q_SELECT_NGRAMS, tableName));
+		try {
+			statement.setInt(1, fileId);
+			ResultSet result = statement.executeQuery();
+			try {
+				while (result.next()) {
+					Long gram = Long.valueOf(result.getLong(1));
+					if (!grams.remove(gram)) {
+						deleted.add(gram);
+					}
+				}
+			} finally {
+				result.close();
+			}
+		} finally {
+			statement.close();
+		}
+		if (!deleted.isEmpty()) {
+			statement = connection.prepareStatement(NLS.bind(Q_DELETE_NGRAMS,
+					tableName));
+			try {
+				statement.setInt(1, fileId);
+				statement.setObject(2, deleted.toArray());
+				statement.executeUpdate();
+			} finally {
+				statement.close();
+			}
+		}
+		if (!grams.isEmpty()) {
+			getGrams(tableName, fileId).addAll(grams);
+		}
+	}
+
+	/**
+	 * Returns the names of the element tables of the language nature
+	 */
+	private static List<String> selectTables(Connection connection,
+			String natureId) throws SQLException {
+		Schema schema = new Schema();
+		String declPrefix = schema.getTablePrefix(natureId, false);
+		String refPrefix = schema.getTablePrefix(natureId, true);
 
-		synchronized (batchStatements) {
-			PreparedStatement statement = batchStatements.get(query);
-			if (statement == null) {
-				statement = connection.prepareStatement(query);
-				batchStatements.put(query, statement);
+		List<String> tableNames = new ArrayList<String>();
+		PreparedStatement statement = connection
+				.prepareStatement(Q_SELECT_TABLES);
+		try {
+			statement.setString(1, declPrefix.replace("_", "\\_") + '%'); //$NON-NLS-1$ //$NON-NLS-2$
+			statement.setString(2, refPrefix.replace("_", "\\_") + '%'); //$NON-NLS-1$ //$NON-NLS-2$
+			ResultSet result = statement.executeQuery();
+			try {
+				while (result.next()) {
+					String tableName = result.getString(1);
+					String prefix = tableName.startsWith(declPrefix) ? declPrefix
+							: refPrefix;
+					if (isNumber(tableName, prefix.length())) {
+						tableNames.add(tableName);
+					}
+				}
+			} finally {
+				result.close();
+			}
+		} finally {
+			statement.close();
+		}
+		return tableNames;
+	}
+
+	private static boolean isNumber(String str, int start) {
+		if (start == str.length()) {
+			return false;
+		}
+		for (int i = start; i < str.length(); ++i) {
+			if (!Character.isDigit(str.charAt(i))) {
+				return false;
 			}
-			insertBatch(connection, statement, type, flags, offset, length,
-					nameOffset, nameLength, name, metadata, doc, qualifier,
-					parent, fileId, natureId, isReference);
 		}
+		return true;
+	}
+
+	/**
+	 * Returns the identifiers of the file elements by the element values
+	 */
+	private static Map<List<Object>, List<Integer>> selectRows(
+			Connection connection, String tableName, boolean isReference,
+			int fileId) throws SQLException {
+		Map<List<Object>, List<Integer>> rows = new HashMap<List<Object>, List<Integer>>();
+		PreparedStatement statement = connection.prepareStatement(NLS.bind(
+				Q_SELECT_FILE_ROWS, tableName, isReference ? REF_VALUES
+						: DECL_VALUES));
+		try {
+			statement.setInt(1, fileId);
+			ResultSet result = statement.executeQuery();
+			try {
+				int columnCount = result.getMetaData().getColumnCount();
+				while (result.next()) {
+					Object[] values = new Object[columnCount - 1];
+					for (int i = 0; i < values.length; ++i) {
+						values[i] = result.getObject(i + 2);
+					}
+					List<Object> key = Arrays.asList(values);
+					List<Integer> ids = rows.get(key);
+					if (ids == null) {
+						ids = new ArrayList<Integer>(1);
+						rows.put(key, ids);
+					}
+					ids.add(Integer.valueOf(result.getInt(1)));
+				}
+			} finally {
+				result.close();
+			}
+		} finally {
+			statement.close();
+		}
+		return rows;
 	}
 
 	public void commitInsertions() throws SQLException {
-		synchronized (batchStatements) {
+		synchronized (batchRows) {
+			try {
+				final int updatedFileId = updateFileId;
+				if (updatedFileId != -1) {
+					applyUpdate();
+				}
+				executeBatches();
+				if (updatedFileId != -1) {
+					H2Cache.deleteElementsByFileId(updatedFileId);
+				}
+				for (Element element : batchElements) {
+					H2Cache.addElement(element);
+				}
+			} finally {
+				batchRows.clear();
+				batchGrams.clear();
+				batchElements.clear();
+				batchConnection = null;
+				resetUpdate();
+			}
+		}
+	}
+
+	private void executeBatches() throws SQLException {
+		for (Map.Entry<String, List<Row>> entry : batchRows.entrySet()) {
+			List<Row> rows = entry.getValue();
+			if (rows.isEmpty()) {
+				continue;
+			}
+			String tableName = entry.getKey();
+			PreparedStatement statement = batchConnection
+					.prepareStatement(getInsertQuery(tableName,
+							isReferenceTable(tableName)));
+			try {
+				for (Row row : rows) {
+					insertBatch(statement, row.values, row.fileId);
+				}
+				statement.executeBatch();
+			} finally {
+				statement.close();
+			}
+		}
+		for (Map.Entry<String, Map<Integer, Set<Long>>> entry : batchGrams
+				.entrySet()) {
+			Map<Integer, Set<Long>> gramsByFile = entry.getValue();
+			if (gramsByFile.isEmpty()) {
+				continue;
+			}
+			PreparedStatement statement = batchConnection
+					.prepareStatement(NLS.bind(Q_INSERT_NGRAM, entry.getKey()));
 			try {
-				for (PreparedStatement statement : batchStatements.values()) {
-					try {
-						statement.executeBatch();
-					} finally {
-						statement.close();
+				for (Map.Entry<Integer, Set<Long>> grams : gramsByFile
+						.entrySet()) {
+					for (Long gram : grams.getValue()) {
+						statement.setLong(1, gram.longValue());
+						statement.setInt(2, grams.getKey().intValue());
+						statement.addBatch();
 					}
 				}
+				statement.executeBatch();
 			} finally {
-				batchStatements.clear();
+				statement.close();
 			}
 		}
 	}
 
-	private String escapeBackslash(String pattern) {
-		return pattern.replaceAll("\\\\", "\\\\\\\\");
+	public void discardInsertions(int fileId) {
+		synchronized (batchRows) {
+			for (List<Row> rows : batchRows.values()) {
+				for (Iterator<Row> i = rows.iterator(); i.hasNext();) {
+					if (i.next().fileId == fileId) {
+						i.remove();
+					}
+				}
+			}
+			for (Map<Integer, Set<Long>> gramsByFile : batchGrams.values()) {
+				gramsByFile.remove(fileId);
+			}
+			for (Iterator<Element> i = batchElements.iterator(); i.hasNext();) {
+				if (i.next().getFileId() == fileId) {
+					i.remove();
+				}
+			}
+			if (updateFileId == fileId) {
+				resetUpdate();
+			}
+		}
+	}
+
+	private void resetUpdate() {
+		updateFileId = -1;
+		updateConnection = null;
+		updateNatureId = null;
+		updateRows.clear();
+		updateElements.clear();
 	}
 
 	public void search(Connection connection, String pattern,
@@ -210,116 +603,55 @@ public class H2ElementDao implements IElementDao {
 		String tableName = getTableName(connection, elementType, natureId,
 				isReference);
 
-		Statement statement = connection.createStatement();
-		try {
-			StringBuilder query = new StringBuilder("SELECT * FROM ")
-					.append(tableName);
-
-			// Dummy pattern
-			query.append(" WHERE 1=1");
-
-			// Name patterns
-			if (pattern != null && pattern.length() > 0) {
-				if (isReference && matchRule == MatchRule.CAMEL_CASE) {
-					H2Index.warn("MatchRule.CAMEL_CASE is not supported by element references search."); //$NON-NLS-1$
-					matchRule = MatchRule.EXACT;
-				}
+		ElementQuery query = new ElementQuery(tableName, isReference);
 
-				// Exact pattern
-				if (matchRule == MatchRule.EXACT) {
-					query.append(" AND NAME='").append(pattern).append('\'');
-				}
-				// Prefix
-				else if (matchRule == MatchRule.PREFIX) {
-					query.append(" AND NAME LIKE '").append(
-							escapeBackslash(pattern)).append("%'");
-				}
-				// Camel-case
-				else if (matchRule == MatchRule.CAMEL_CASE) {
-					query.append(" AND CC_NAME LIKE '").append(
-							escapeBackslash(pattern)).append("%'");
-				}
-				// Set of names
-				else if (matchRule == MatchRule.SET) {
-					String[] patternSet = SEPARATOR_PATTERN.split(pattern);
-					query.append(" AND NAME IN (");
-					for (int i = 0; i < patternSet.length; ++i) {
-						if (i > 0) {
-							query.append(',');
-						}
-						query.append('\'').append(patternSet[i]).append('\'');
-					}
-					query.append(')');
-				}
-				// POSIX pattern
-				else if (matchRule == MatchRule.PATTERN) {
-					query.append(" AND NAME LIKE '").append(
-							escapeBackslash(pattern).replace('*', '%').replace(
-									'?', '_')).append("'");
-				}
-			}
-
-			// Flags
-			if (trueFlags != 0) {
-				query.append(" AND BITAND(FLAGS,").append(trueFlags).append(
-						") <> 0");
-			}
-			if (falseFlags != 0) {
-				query.append(" AND BITAND(FLAGS,").append(falseFlags).append(
-						") = 0");
-			}
-
-			// Qualifier
-			if (qualifier != null && qualifier.length() > 0) {
-				query.append(" AND QUALIFIER='").append(qualifier).append('\'');
-			}
-			// Parent
-			if (parent != null && parent.length() > 0) {
-				query.append(" AND PARENT='").append(parent).append('\'');
+		// Name patterns
+		if (pattern != null && pattern.length() > 0) {
+			if (isReference && matchRule == MatchRule.CAMEL_CASE) {
+				H2Index.warn("MatchRule.CAMEL_CASE is not supported by element references search."); //$NON-NLS-1$
+				matchRule = MatchRule.EXACT;
 			}
+			query.addName(pattern, matchRule);
+		}
 
-			// Files or container paths
-			if (filesId != null) {
-				query.append(" AND FILE_ID IN(");
-				for (int i = 0; i < filesId.length; ++i) {
-					if (i > 0) {
-						query.append(",");
-					}
-					query.append(filesId[i]);
-				}
-				query.append(")");
+		// Flags
+		if (trueFlags != 0) {
+			query.addTrueFlags(trueFlags);
+		}
+		if (falseFlags != 0) {
+			query.addFalseFlags(falseFlags);
+		}
 
-			} else if (containersId != null) {
-				query.append(" AND FILE_ID IN(SELECT ID FROM FILES WHERE CONTAINER_ID IN(");
-				for (int i = 0; i < containersId.length; ++i) {
-					if (i > 0) {
-						query.append(",");
-					}
-					query.append(containersId[i]);
-				}
-				query.append("))");
-			}
+		// Qualifier
+		if (qualifier != null && qualifier.length() > 0) {
+			query.addQualifier(qualifier);
+		}
+		// Parent
+		if (parent != null && parent.length() > 0) {
+			query.addParent(parent);
+		}
 
-			// Records limit
-			if (limit > 0) {
-				query.append(" LIMIT ").append(limit);
-			}
-			query.append(";");
+		// Files or container paths
+		if (filesId != null) {
+			query.addFiles(filesId);
+		} else if (containersId != null) {
+			query.addContainers(containersId);
+		}
 
-			if (H2Index.DEBUG) {
-				System.out.println("Query: " + query.toString());
-			}
+		if (H2Index.DEBUG) {
+			System.out.println("Query: " + query);
+		}
 
-			ResultSet result = statement.executeQuery(query.toString());
+		PreparedStatement statement = query.prepare(connection, limit);
+		try {
+			ResultSet result = statement.executeQuery();
 			try {
 				while (result.next()) {
-					++count;
 					if (monitor != null && monitor.isCanceled()) {
 						return;
 					}
 
 					int columnIndex = 0;
-					int id = result.getInt(++columnIndex);
 
 					int f = 0;
 					if (!isReference) {
@@ -337,6 +669,9 @@ public class H2ElementDao implements IElementDao {
 					}
 
 					String name = result.getString(++columnIndex);
+					if (!query.accept(name)) {
+						continue;
+					}
 					String camelCaseName = null;
 					if (!isReference) {
 						camelCaseName = result.getString(++columnIndex);
@@ -364,6 +699,9 @@ public class H2ElementDao implements IElementDao {
 					}
 
 					handler.handle(element);
+					if (++count == limit) {
+						break;
+					}
 				}
 			} finally {
 				result.close();
@@ -30,7 +30,8 @@ import org.eclipse.dltk.core.index.sql.IFileDao;
  */
 public class H2FileDao implements IFileDao {
 
-	private static final String Q_INSERT = "INSERT INTO FILES(PATH,TIMESTAMP,CONTAINER_ID) VALUES(?,?,?);"; //$NON-NLS-1$
+	private static final String Q_INSERT = "INSERT INTO FILES(PATH,TIMESTAMP,DIGEST,CONTAINER_ID) VALUES(?,?,?,?);"; //$NON-NLS-1$
+	private static final String Q_UPDATE = "UPDATE FILES SET TIMESTAMP=?, DIGEST=? WHERE ID=?;"; //$NON-NLS-1$
 	private static final String Q_SELECT = "SELECT * FROM FILES WHERE PATH=? AND CONTAINER_ID=?;"; //$NON-NLS-1$
 	private static final String Q_SELECT_BY_CONTAINER_ID = "SELECT * FROM FILES WHERE CONTAINER_ID=?;"; //$NON-NLS-1$
 	private static final String Q_SELECT_BY_ID = "SELECT * FROM FILES WHERE ID=?;"; //$NON-NLS-1$
@@ -39,6 +40,11 @@ public class H2FileDao implements IFileDao {
 
 	public File insert(Connection connection, String path, long timestamp,
 			int containerId) throws SQLException {
+		return insert(connection, path, timestamp, null, containerId);
+	}
+
+	public File insert(Connection connection, String path, long timestamp,
+			String digest, int containerId) throws SQLException {
 
 		PreparedStatement statement = connection.prepareStatement(Q_INSERT,
 				Statement.RETURN_GENERATED_KEYS);
@@ -46,6 +52,7 @@ public class H2FileDao implements IFileDao {
 			int param = 0;
 			statement.setString(++param, path);
 			statement.setLong(++param, timestamp);
+			statement.setString(++param, digest);
 			statement.setInt(++param, containerId);
 			statement.executeUpdate();
 
@@ -53,7 +60,7 @@ public class H2FileDao implements IFileDao {
 			try {
 				result.next();
 				File file = new File(result.getInt(1), path, timestamp,
-						containerId);
+						digest, containerId);
 				H2Cache.addFile(file);
 				return file;
 			} finally {
@@ -64,6 +71,26 @@ public class H2FileDao implements IFileDao {
 		}
 	}
 
+	public File update(Connection connection, File file, long timestamp,
+			String digest) throws SQLException {
+
+		PreparedStatement statement = connection.prepareStatement(Q_UPDATE);
+		try {
+			int param = 0;
+			statement.setLong(++param, timestamp);
+			statement.setString(++param, digest);
+			statement.setInt(++param, file.getId());
+			statement.executeUpdate();
+		} finally {
+			statement.close();
+		}
+
+		File updated = new File(file.getId(), file.getPath(), timestamp,
+				digest, file.getContainerId());
+		H2Cache.addFile(updated);
+		return updated;
+	}
+
 	public File select(Connection connection, String path, int containerId)
 			throws SQLException {
 
@@ -79,7 +106,8 @@ public class H2FileDao implements IFileDao {
 				try {
 					if (result.next()) {
 						file = new File(result.getInt(1), result.getString(2),
-								result.getLong(3), result.getInt(4));
+								result.getLong(3), result.getString(5),
+								result.getInt(4));
 
 						H2Cache.addFile(file);
 					}
@@ -110,7 +138,7 @@ public class H2FileDao implements IFileDao {
 					while (result.next()) {
 						File file = new File(result.getInt(1), result
 								.getString(2), result.getLong(3), result
-								.getInt(4));
+								.getString(5), result.getInt(4));
 
 						files.add(file);
 						H2Cache.addFile(file);
@@ -138,7 +166,8 @@ public class H2FileDao implements IFileDao {
 				try {
 					if (result.next()) {
 						file = new File(result.getInt(1), result.getString(2),
-								result.getLong(3), result.getInt(4));
+								result.getLong(3), result.getString(5),
+								result.getInt(4));
 
 						H2Cache.addFile(file);
 					}
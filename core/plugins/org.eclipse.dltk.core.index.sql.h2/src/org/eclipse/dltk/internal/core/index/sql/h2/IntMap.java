@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.index.sql.h2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Open addressing hash map with the primitive <code>int</code> keys and
+ * non-null values. The map is not synchronized.
+ */
+class IntMap<V> {
+
+	private int[] keys;
+	private Object[] values;
+	private int size;
+
+	IntMap() {
+		this(8);
+	}
+
+	IntMap(int expectedSize) {
+		int capacity = 4;
+		while (capacity * 3 < expectedSize * 4) {
+			capacity <<= 1;
+		}
+		keys = new int[capacity];
+		values = new Object[capacity];
+	}
+
+	private static int hash(int key) {
+		// spread the sequential identifiers
+		final int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private int indexOf(int key) {
+		final int mask = keys.length - 1;
+		int index = hash(key) & mask;
+		while (values[index] != null) {
+			if (keys[index] == key) {
+				return index;
+			}
+			index = (index + 1) & mask;
+		}
+		return -1;
+	}
+
+	boolean containsKey(int key) {
+		return indexOf(key) >= 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	V get(int key) {
+		final int index = indexOf(key);
+		return index >= 0 ? (V) values[index] : null;
+	}
+
+	@SuppressWarnings("unchecked")
+	V put(int key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException();
+		}
+		final int mask = keys.length - 1;
+		int index = hash(key) & mask;
+		while (values[index] != null) {
+			if (keys[index] == key) {
+				final V old = (V) values[index];
+				values[index] = value;
+				return old;
+			}
+			index = (index + 1) & mask;
+		}
+		keys[index] = key;
+		values[index] = value;
+		if (++size * 4 > keys.length * 3) {
+			resize(keys.length << 1);
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	V remove(int key) {
+		int index = indexOf(key);
+		if (index < 0) {
+			return null;
+		}
+		final V old = (V) values[index];
+		values[index] = null;
+		--size;
+		// shift back the following entries of the same cluster
+		final int mask = keys.length - 1;
+		int next = (index + 1) & mask;
+		while (values[next] != null) {
+			final int home = hash(keys[next]) & mask;
+			if (((next - home) & mask) >= ((next - index) & mask)) {
+				keys[index] = keys[next];
+				values[index] = values[next];
+				values[next] = null;
+				index = next;
+			}
+			next = (next + 1) & mask;
+		}
+		return old;
+	}
+
+	private void resize(int capacity) {
+		final int[] oldKeys = keys;
+		final Object[] oldValues = values;
+		keys = new int[capacity];
+		values = new Object[capacity];
+		final int mask = capacity - 1;
+		for (int i = 0; i < oldKeys.length; ++i) {
+			if (oldValues[i] != null) {
+				int index = hash(oldKeys[i]) & mask;
+				while (values[index] != null) {
+					index = (index + 1) & mask;
+				}
+				keys[index] = oldKeys[i];
+				values[index] = oldValues[i];
+			}
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	int[] keys() {
+		final int[] result = new int[size];
+		int count = 0;
+		for (int i = 0; i < keys.length; ++i) {
+			if (values[i] != null) {
+				result[count++] = keys[i];
+			}
+		}
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	List<V> values() {
+		final List<V> result = new ArrayList<V>(size);
+		for (int i = 0; i < values.length; ++i) {
+			if (values[i] != null) {
+				result.add((V) values[i]);
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.index.sql.h2;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * N-grams of the element declaration names stored in the
+ * <code>{table}_NGRAMS</code> posting table, which maps each n-gram to the
+ * files declaring the elements with it. The searches with the wildcards are
+ * answered by intersecting the postings of the literal parts of the pattern,
+ * so only the elements of the candidate files are matched against the
+ * pattern.
+ * <p>
+ * The gram is encoded as <code>long</code>: the kind in the upper 16 bits and
+ * up to 3 upper-cased characters (as the names are compared ignoring case) in
+ * the lower 48 bits. The trigrams are created for all the positions of the
+ * name, the prefixes of 1 to 3 characters are created for the upper case
+ * letters of the name, as the upper case letters of the camel-case pattern
+ * must be the leading upper case letters of the matching name.
+ * </p>
+ */
+class NameGrams {
+
+	private static final long KIND_NAME = 1L << 48;
+	private static final long KIND_CAMEL_CASE = 2L << 48;
+
+	private static final int N = 3;
+
+	private static long encode(long kind, CharSequence chars, int start,
+			int length) {
+		long gram = 0;
+		for (int i = 0; i < N; ++i) {
+			gram <<= 16;
+			if (i < length) {
+				gram |= Character.toUpperCase(chars.charAt(start + i));
+			}
+		}
+		return kind | gram;
+	}
+
+	/**
+	 * Adds the grams of the element declaration to the specified set
+	 */
+	static void addGrams(Set<Long> grams, String name) {
+		addNameGrams(grams, name, 0, name.length());
+		final String upperCase = getUpperCaseLetters(name);
+		if (upperCase != null) {
+			for (int i = 1; i <= N && i <= upperCase.length(); ++i) {
+				grams.add(Long.valueOf(encode(KIND_CAMEL_CASE, upperCase, 0, i)));
+			}
+		}
+	}
+
+	private static void addNameGrams(Set<Long> grams, String name, int start,
+			int end) {
+		for (int i = start; i + N <= end; ++i) {
+			grams.add(Long.valueOf(encode(KIND_NAME, name, i, N)));
+		}
+	}
+
+	/**
+	 * Returns the upper case letters of the name or <code>null</code> if
+	 * there are none.
+	 */
+	static String getUpperCaseLetters(String name) {
+		StringBuilder result = null;
+		for (int i = 0; i < name.length(); ++i) {
+			final char ch = name.charAt(i);
+			if (Character.isUpperCase(ch)) {
+				if (result == null) {
+					result = new StringBuilder();
+				}
+				result.append(ch);
+			}
+		}
+		return result != null ? result.toString() : null;
+	}
+
+	/**
+	 * Returns the start of the camel-case pattern before its second upper case
+	 * letter, every name matching the pattern starts with it.
+	 */
+	static String getFirstHump(String pattern) {
+		for (int i = 1; i < pattern.length(); ++i) {
+			if (Character.isUpperCase(pattern.charAt(i))) {
+				return pattern.substring(0, i);
+			}
+		}
+		return pattern;
+	}
+
+	private static boolean isWildcard(char ch) {
+		// '%' and '_' are passed to LIKE as is
+		return ch == '*' || ch == '?' || ch == '%' || ch == '_';
+	}
+
+	/**
+	 * Returns the grams every name matching the specified POSIX pattern must
+	 * have or <code>null</code> if the pattern has no literal parts long
+	 * enough.
+	 */
+	static Object[] getPatternGrams(String pattern) {
+		if (pattern.indexOf('\\') >= 0) {
+			return null;
+		}
+		final Set<Long> grams = new TreeSet<Long>();
+		int start = 0;
+		for (int i = 0; i <= pattern.length(); ++i) {
+			if (i == pattern.length() || isWildcard(pattern.charAt(i))) {
+				for (int j = start; j + N <= i; ++j) {
+					grams.add(Long.valueOf(encode(KIND_NAME, pattern, j, N)));
+				}
+				start = i + 1;
+			}
+		}
+		return grams.isEmpty() ? null : grams.toArray();
+	}
+
+	/**
+	 * Returns the grams every name matching the specified camel-case pattern
+	 * (see {@link org.eclipse.dltk.compiler.CharOperation#camelCaseMatch})
+	 * must have or <code>null</code> if there are none. Each part of the
+	 * pattern starting with the upper case letter appears in the name as is,
+	 * and the upper case letters of the pattern are the leading upper case
+	 * letters of the name.
+	 */
+	static Object[] getCamelCaseGrams(String pattern) {
+		final Set<Long> grams = new TreeSet<Long>();
+		int start = 0;
+		for (int i = 1; i <= pattern.length(); ++i) {
+			if (i == pattern.length()
+					|| Character.isUpperCase(pattern.charAt(i))) {
+				addNameGrams(grams, pattern, start, i);
+				start = i;
+			}
+		}
+		final String upperCase = getUpperCaseLetters(pattern);
+		if (upperCase != null) {
+			grams.add(Long.valueOf(encode(KIND_CAMEL_CASE, upperCase, 0,
+					Math.min(N, upperCase.length()))));
+		}
+		return grams.isEmpty() ? null : grams.toArray();
+	}
+}
@@ -39,7 +39,7 @@ import org.osgi.service.prefs.BackingStoreException;
  */
 public class Schema {
 
-	public static final String VERSION = "0.7"; //$NON-NLS-1$
+	public static final String VERSION = "1.0"; //$NON-NLS-1$
 
 	/** Contains already created tables names */
 	private static final Set<String> TABLES_CACHE = new HashSet<String>();
@@ -83,14 +83,27 @@ public class Schema {
 	 */
 	public String getTableName(int elementType, String natureId,
 			boolean isReference) {
+		return getTablePrefix(natureId, isReference) + elementType;
+	}
+
+	/**
+	 * Returns the common prefix of the element table names of the language
+	 * nature, followed by the element type in the table name.
+	 * 
+	 * @param natureId
+	 *            Language nature
+	 * @param isReference
+	 *            Whether the element is reference or declaration
+	 * @return
+	 */
+	public String getTablePrefix(String natureId, boolean isReference) {
 		StringBuilder tableName = new StringBuilder();
 		if (isReference) {
 			tableName.append("R_"); //$NON-NLS-1$
 		} else {
 			tableName.append("D_"); //$NON-NLS-1$
 		}
-		tableName.append(natureId.toUpperCase().replace('.', '_')).append('_')
-				.append(elementType).toString();
+		tableName.append(natureId.toUpperCase().replace('.', '_')).append('_');
 		return tableName.toString();
 	}
 
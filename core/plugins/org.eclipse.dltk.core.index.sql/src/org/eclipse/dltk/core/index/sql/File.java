@@ -26,11 +26,21 @@ public class File implements Serializable {
 	private String path;
 	private long timestamp;
 	private int containerId;
+	private String digest;
 
 	public File(int id, String path, long timestamp, int containerId) {
+		this(id, path, timestamp, null, containerId);
+	}
+
+	/**
+	 * @since 5.0
+	 */
+	public File(int id, String path, long timestamp, String digest,
+			int containerId) {
 		this.id = id;
 		this.path = path;
 		this.timestamp = timestamp;
+		this.digest = digest;
 		this.containerId = containerId;
 	}
 
@@ -61,6 +71,17 @@ public class File implements Serializable {
 		return timestamp;
 	}
 
+	/**
+	 * Returns digest of the file contents, or <code>null</code> if it's not
+	 * known
+	 * 
+	 * @return
+	 * @since 5.0
+	 */
+	public String getDigest() {
+		return digest;
+	}
+
 	public int getContainerId() {
 		return containerId;
 	}
@@ -67,6 +67,24 @@ public interface IElementDao {
 			int fileId, String natureId, boolean isReference)
 			throws SQLException;
 
+	/**
+	 * Starts replacing the elements of the already indexed file. The elements
+	 * of the file inserted until {@link #commitInsertions()} are compared with
+	 * the elements stored in the database: only the new elements are inserted
+	 * and only the elements which were not inserted again are deleted.
+	 * 
+	 * @param connection
+	 *            Database connection
+	 * @param fileId
+	 *            File ID
+	 * @param natureId
+	 *            Language nature ID
+	 * @throws SQLException
+	 * @since 5.0
+	 */
+	void beginUpdate(Connection connection, int fileId, String natureId)
+			throws SQLException;
+
 	/**
 	 * Commits previously inserted entries
 	 * 
@@ -74,6 +92,17 @@ public interface IElementDao {
 	 */
 	void commitInsertions() throws SQLException;
 
+	/**
+	 * Discards the entries of the file inserted since the last
+	 * {@link #commitInsertions()}, so they are neither written nor put into
+	 * the cache. Used when the insertion of the file is rolled back.
+	 *
+	 * @param fileId
+	 *            File ID
+	 * @since 5.0
+	 */
+	void discardInsertions(int fileId);
+
 	/**
 	 * Search elements in index.
 	 * 
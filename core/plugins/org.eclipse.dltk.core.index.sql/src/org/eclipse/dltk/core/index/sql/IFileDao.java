@@ -39,6 +39,45 @@ public interface IFileDao {
 	public File insert(Connection connection, String path, long timestamp,
 			int containerId) throws SQLException;
 
+	/**
+	 * Inserts new type into FILES table.
+	 * 
+	 * @param connection
+	 *            Database connection
+	 * @param path
+	 *            Element file
+	 * @param timestamp
+	 *            File last update time
+	 * @param digest
+	 *            Digest of the file contents, may be <code>null</code>
+	 * @param containerId
+	 *            Container path
+	 * @return new file DAO associated with added row
+	 * @throws SQLException
+	 * @since 5.0
+	 */
+	public File insert(Connection connection, String path, long timestamp,
+			String digest, int containerId) throws SQLException;
+
+	/**
+	 * Updates last update time and contents digest of the file, the elements
+	 * of the file are kept.
+	 * 
+	 * @param connection
+	 *            Database connection
+	 * @param file
+	 *            File to update
+	 * @param timestamp
+	 *            File last update time
+	 * @param digest
+	 *            Digest of the file contents, may be <code>null</code>
+	 * @return updated file DAO
+	 * @throws SQLException
+	 * @since 5.0
+	 */
+	public File update(Connection connection, File file, long timestamp,
+			String digest) throws SQLException;
+
 	/**
 	 * Selects file by path
 	 * 
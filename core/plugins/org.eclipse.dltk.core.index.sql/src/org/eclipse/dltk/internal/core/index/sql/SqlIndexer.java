@@ -11,9 +11,14 @@
  *******************************************************************************/
 package org.eclipse.dltk.internal.core.index.sql;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.core.runtime.IPath;
@@ -22,14 +27,17 @@ import org.eclipse.dltk.core.IDLTKLanguageToolkit;
 import org.eclipse.dltk.core.IDLTKLanguageToolkitExtension;
 import org.eclipse.dltk.core.IModelElement;
 import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.ModelException;
 import org.eclipse.dltk.core.environment.EnvironmentPathUtils;
 import org.eclipse.dltk.core.environment.IFileHandle;
 import org.eclipse.dltk.core.index.sql.Container;
 import org.eclipse.dltk.core.index.sql.DbFactory;
 import org.eclipse.dltk.core.index.sql.File;
 import org.eclipse.dltk.core.index.sql.IElementDao;
+import org.eclipse.dltk.core.index.sql.IFileDao;
 import org.eclipse.dltk.core.index.sql.SqlIndex;
 import org.eclipse.dltk.core.index2.AbstractIndexer;
+import org.eclipse.dltk.core.index2.IBulkIndexer;
 import org.eclipse.dltk.core.index2.search.ISearchEngine;
 import org.eclipse.dltk.internal.core.ExternalSourceModule;
 import org.eclipse.dltk.internal.core.SourceModule;
@@ -42,13 +50,39 @@ import org.eclipse.osgi.util.NLS;
  * @author michael
  * 
  */
-public class SqlIndexer extends AbstractIndexer {
+public class SqlIndexer extends AbstractIndexer implements IBulkIndexer {
+
+	/**
+	 * Number of the documents committed at once during the bulk load
+	 */
+	private static final int BULK_CHUNK_SIZE = 100;
 
 	private Connection connection;
 	private File file;
 	private String natureId;
 	private IElementDao elementDao;
 
+	private Connection bulkConnection;
+	private Container bulkContainer;
+	private IPath bulkContainerPath;
+	private int bulkChunkCount;
+	/** Files of the current chunk, which are not committed yet */
+	private final List<Integer> bulkChunkFiles = new ArrayList<Integer>();
+	/** The insertion failed for the current bulk document */
+	private SQLException bulkError;
+
+	/**
+	 * Thrown by the insertions of the bulk load to stop indexing the document,
+	 * which is rolled back then.
+	 */
+	private static class BulkInsertException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		BulkInsertException(SQLException cause) {
+			super(cause);
+		}
+	}
+
 	public SqlIndexer() {
 		final DbFactory db = DbFactory.getInstance();
 		if (db == null) {
@@ -66,7 +100,7 @@ public class SqlIndexer extends AbstractIndexer {
 					info.parent, file.getId(), natureId, false);
 
 		} catch (SQLException e) {
-			SqlIndex.error(
+			insertFailed(
 					"An exception was thrown while inserting model element declaration",
 					e);
 		}
@@ -80,17 +114,38 @@ public class SqlIndexer extends AbstractIndexer {
 					info.qualifier, null, file.getId(), natureId, true);
 
 		} catch (SQLException e) {
-			SqlIndex.error(
+			insertFailed(
 					"An exception was thrown while inserting model element reference",
 					e);
 		}
 	}
 
+	private void insertFailed(String message, SQLException e) {
+		if (bulkConnection != null && connection == bulkConnection) {
+			// the document is rolled back by indexBulkDocument()
+			bulkError = e;
+			throw new BulkInsertException(e);
+		}
+		SqlIndex.error(message, e);
+	}
+
 	public void indexDocument(ISourceModule sourceModule) {
 
 		final IFileHandle fileHandle = EnvironmentPathUtils
 				.getFile(sourceModule);
 
+		if (bulkConnection != null) {
+			try {
+				if (indexBulkDocument(sourceModule, fileHandle)) {
+					return;
+				}
+			} catch (Exception e) {
+				SqlIndex.error(
+						"An exception was thrown while indexing document", e);
+				return;
+			}
+		}
+
 		try {
 			DbFactory dbFactory = DbFactory.getInstance();
 			connection = dbFactory.createConnection();
@@ -105,44 +160,38 @@ public class SqlIndexer extends AbstractIndexer {
 
 				natureId = toolkit.getNatureId();
 
-				IPath containerPath;
-				if (sourceModule instanceof SourceModule) {
-					containerPath = sourceModule.getScriptProject().getPath();
-				} else {
-					containerPath = sourceModule.getAncestor(
-							IModelElement.PROJECT_FRAGMENT).getPath();
-				}
+				IPath containerPath = getContainerPath(sourceModule);
 				Container container = dbFactory.getContainerDao().insert(
 						connection, containerPath.toString());
 
-				String relativePath;
-				if (toolkit instanceof IDLTKLanguageToolkitExtension
-						&& ((IDLTKLanguageToolkitExtension) toolkit)
-								.isArchiveFileName(sourceModule.getPath()
-										.toString())) {
-					relativePath = ((ExternalSourceModule) sourceModule)
-							.getFullPath().toString();
-				} else {
-					relativePath = Util.relativePath(sourceModule.getPath(),
-							containerPath.segmentCount());
-				}
+				String relativePath = getRelativePath(toolkit, sourceModule,
+						containerPath);
 
 				long lastModified = fileHandle == null ? 0 : fileHandle
 						.lastModified();
 
-				File existing = dbFactory.getFileDao().select(connection,
-						relativePath, container.getId());
+				IFileDao fileDao = dbFactory.getFileDao();
+				File existing = fileDao.select(connection, relativePath,
+						container.getId());
 				if (existing != null) {
 					if (existing.getTimestamp() == lastModified) {
 						// File is not updated - nothing to do
 						return;
 					}
-					// Re-index:
-					dbFactory.getFileDao().deleteById(connection,
-							existing.getId());
+					String digest = getDigest(sourceModule);
+					file = fileDao.update(connection, existing, lastModified,
+							digest);
+					if (digest != null && digest.equals(existing.getDigest())) {
+						// File is touched but its contents are the same
+						return;
+					}
+					// Re-index, only the changed elements are replaced:
+					elementDao.beginUpdate(connection, file.getId(), natureId);
+				} else {
+					file = fileDao.insert(connection, relativePath,
+							lastModified, getDigest(sourceModule),
+							container.getId());
 				}
-				file = dbFactory.getFileDao().insert(connection, relativePath,
-						lastModified, container.getId());
 
 				super.indexDocument(sourceModule);
 
@@ -156,6 +205,221 @@ public class SqlIndexer extends AbstractIndexer {
 		}
 	}
 
+	/**
+	 * Returns the digest of the source module contents or <code>null</code>
+	 * if the contents are not available.
+	 */
+	private static String getDigest(ISourceModule sourceModule) {
+		final char[] contents;
+		try {
+			contents = sourceModule.getSourceAsCharArray();
+		} catch (ModelException e) {
+			return null;
+		}
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+		} catch (NoSuchAlgorithmException e) {
+			return null;
+		}
+		final byte[] buffer = new byte[4096];
+		int count = 0;
+		for (char ch : contents) {
+			buffer[count++] = (byte) (ch >> 8);
+			buffer[count++] = (byte) ch;
+			if (count == buffer.length) {
+				digest.update(buffer, 0, count);
+				count = 0;
+			}
+		}
+		digest.update(buffer, 0, count);
+		final StringBuilder result = new StringBuilder();
+		for (byte b : digest.digest()) {
+			result.append(Character.forDigit((b >> 4) & 0xF, 16));
+			result.append(Character.forDigit(b & 0xF, 16));
+		}
+		return result.toString();
+	}
+
+	private static IPath getContainerPath(ISourceModule sourceModule) {
+		if (sourceModule instanceof SourceModule) {
+			return sourceModule.getScriptProject().getPath();
+		} else {
+			return sourceModule.getAncestor(IModelElement.PROJECT_FRAGMENT)
+					.getPath();
+		}
+	}
+
+	private static String getRelativePath(IDLTKLanguageToolkit toolkit,
+			ISourceModule sourceModule, IPath containerPath) {
+		if (toolkit instanceof IDLTKLanguageToolkitExtension
+				&& ((IDLTKLanguageToolkitExtension) toolkit)
+						.isArchiveFileName(sourceModule.getPath().toString())) {
+			return ((ExternalSourceModule) sourceModule).getFullPath()
+					.toString();
+		} else {
+			return Util.relativePath(sourceModule.getPath(),
+					containerPath.segmentCount());
+		}
+	}
+
+	/**
+	 * Starts the bulk load if the container has no files in the index yet.
+	 * All the documents of the container are inserted through the same
+	 * connection without checking for the existing files and are committed in
+	 * chunks of {@link #BULK_CHUNK_SIZE} documents: the elements of the chunk
+	 * are written in one batch per table. Each file is inserted after its own
+	 * savepoint, so the document failed to be indexed is rolled back alone and
+	 * its elements are discarded from the batch.
+	 */
+	public boolean beginBulkLoad(IPath containerPath) {
+		if (bulkConnection != null) {
+			return false;
+		}
+		try {
+			DbFactory dbFactory = DbFactory.getInstance();
+			Connection connection = dbFactory.createConnection();
+			boolean started = false;
+			try {
+				connection.setAutoCommit(false);
+				Container container = dbFactory.getContainerDao().insert(
+						connection, containerPath.toString());
+				if (dbFactory.getFileDao().selectByContainerId(connection,
+						container.getId()).length == 0) {
+					connection.commit();
+					bulkConnection = connection;
+					bulkContainer = container;
+					bulkContainerPath = containerPath;
+					bulkChunkCount = 0;
+					bulkChunkFiles.clear();
+					started = true;
+				}
+			} finally {
+				if (!started) {
+					connection.close();
+				}
+			}
+			return started;
+		} catch (SQLException e) {
+			SqlIndex.error("An exception was thrown while starting bulk load",
+					e);
+		}
+		return false;
+	}
+
+	/**
+	 * @return <code>false</code> if the document doesn't belong to the
+	 *         container being loaded and should be indexed as usual
+	 */
+	private boolean indexBulkDocument(ISourceModule sourceModule,
+			IFileHandle fileHandle) throws SQLException {
+		IDLTKLanguageToolkit toolkit = DLTKLanguageManager
+				.getLanguageToolkit(sourceModule);
+		if (toolkit == null) {
+			return true;
+		}
+		IPath containerPath = getContainerPath(sourceModule);
+		if (!bulkContainerPath.equals(containerPath)) {
+			return false;
+		}
+		connection = bulkConnection;
+		natureId = toolkit.getNatureId();
+		long lastModified = fileHandle == null ? 0 : fileHandle.lastModified();
+		final Savepoint savepoint = connection.setSavepoint();
+		file = null;
+		bulkError = null;
+		boolean indexed = false;
+		try {
+			file = DbFactory.getInstance().getFileDao().insert(connection,
+					getRelativePath(toolkit, sourceModule, containerPath),
+					lastModified, getDigest(sourceModule),
+					bulkContainer.getId());
+
+			super.indexDocument(sourceModule);
+
+			// the parser could have caught the exception of the insertion
+			indexed = bulkError == null;
+		} finally {
+			if (indexed) {
+				connection.releaseSavepoint(savepoint);
+				bulkChunkFiles.add(file.getId());
+			} else {
+				rollbackBulkDocument(savepoint);
+			}
+		}
+		if (bulkError != null) {
+			throw bulkError;
+		}
+
+		if (++bulkChunkCount == BULK_CHUNK_SIZE) {
+			commitBulkChunk(connection);
+		}
+		return true;
+	}
+
+	/**
+	 * Rolls back the file and the elements of the document which failed
+	 * during the bulk load, keeping the documents indexed before it in the
+	 * current chunk.
+	 */
+	private void rollbackBulkDocument(Savepoint savepoint) throws SQLException {
+		if (file != null) {
+			elementDao.discardInsertions(file.getId());
+		}
+		bulkConnection.rollback(savepoint);
+		if (file != null) {
+			// the row is rolled back already, this removes the file from the
+			// cache of the DAO
+			DbFactory.getInstance().getFileDao()
+					.deleteById(bulkConnection, file.getId());
+		}
+	}
+
+	/**
+	 * Writes the elements of the current chunk and commits it. If this fails,
+	 * the whole chunk is rolled back, so its documents are not in the index
+	 * and are indexed as the new ones next time.
+	 */
+	private void commitBulkChunk(Connection connection) throws SQLException {
+		bulkChunkCount = 0;
+		try {
+			elementDao.commitInsertions();
+			connection.commit();
+		} catch (SQLException e) {
+			connection.rollback();
+			IFileDao fileDao = DbFactory.getInstance().getFileDao();
+			for (Integer fileId : bulkChunkFiles) {
+				fileDao.deleteById(connection, fileId.intValue());
+			}
+			connection.commit();
+			throw e;
+		} finally {
+			bulkChunkFiles.clear();
+		}
+	}
+
+	public void endBulkLoad(IPath containerPath) {
+		final Connection connection = bulkConnection;
+		if (connection == null) {
+			return;
+		}
+		bulkConnection = null;
+		bulkContainer = null;
+		bulkContainerPath = null;
+		try {
+			try {
+				commitBulkChunk(connection);
+			} finally {
+				connection.close();
+			}
+		} catch (SQLException e) {
+			SqlIndex.error(
+					NLS.bind(
+							"An exception thrown while completing bulk load of container ''{0}''",
+							containerPath.toString()), e);
+		}
+	}
+
 	public Map<String, Long> getDocuments(IPath containerPath) {
 		try {
 			DbFactory dbFactory = DbFactory.getInstance();
@@ -8,6 +8,7 @@ import java.util.Map;
 import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.core.SimpleClassDLTKExtensionManager;
 import org.eclipse.dltk.core.SimpleDLTKExtensionManager.ElementInfo;
+import org.eclipse.dltk.internal.core.caching.PersistentASTCache;
 
 public class ASTCacheManager {
 	private static SimpleClassDLTKExtensionManager manager = new SimpleClassDLTKExtensionManager(
@@ -15,9 +16,14 @@ public class ASTCacheManager {
 
 	private static Map<String, IASTCache[]> providers = null;
 
+	private static IASTCache[] persistentProviders;
+
 	public synchronized static IASTCache[] getProviders(String lang) {
 		if (providers == null) {
 			providers = new HashMap<String, IASTCache[]>();
+			final IASTCache persistent = PersistentASTCache.getInstance();
+			persistentProviders = persistent != null ? new IASTCache[] { persistent }
+					: null;
 
 			ElementInfo[] infos = manager.getElementInfos();
 			Map<String, List<IASTCache>> langToElementList = new HashMap<String, List<IASTCache>>();
@@ -34,10 +40,15 @@ public class ASTCacheManager {
 			for (Map.Entry<String, List<IASTCache>> entry : langToElementList
 					.entrySet()) {
 				List<IASTCache> list = entry.getValue();
+				if (persistentProviders != null) {
+					// the contributed providers are asked first
+					list.add(persistentProviders[0]);
+				}
 				IASTCache[] result = list.toArray(new IASTCache[list.size()]);
 				providers.put(entry.getKey(), result);
 			}
 		}
-		return providers.get(lang);
+		final IASTCache[] result = providers.get(lang);
+		return result != null ? result : persistentProviders;
 	}
 }
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.ast.parser;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Optional interface of the {@link ISourceParser} writing and reading the
+ * module declarations it builds, so they could be kept on disk between the
+ * sessions by the persistent AST cache (see
+ * {@link org.eclipse.dltk.core.DLTKCore#AST_CACHE_PERSISTENT}). The modules of
+ * the parsers not implementing this interface are not kept on disk.
+ *
+ * <p>
+ * The problems reported by the parser are written by the cache itself.
+ *
+ * @since 5.0
+ */
+public interface IASTSerializer {
+
+	/**
+	 * Returns the version of the format, the modules written with the other
+	 * versions are parsed again. It should be changed whenever the node
+	 * classes or the format change.
+	 */
+	int getSerializationVersion();
+
+	/**
+	 * Writes the module declaration built by this parser.
+	 *
+	 * @throws IOException
+	 *             if the module could not be written, it is then not cached
+	 */
+	void writeModule(IModuleDeclaration module, DataOutput out)
+			throws IOException;
+
+	/**
+	 * Reads the module declaration written by {@link #writeModule}.
+	 *
+	 * @throws IOException
+	 *             if the module could not be read, it is then parsed again
+	 */
+	IModuleDeclaration readModule(DataInput in) throws IOException;
+
+}
@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index2;
+
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * Optional extension of the {@link IIndexer} which could index the documents
+ * of the container faster when the container is not indexed yet (e.g. the
+ * libraries of the newly added interpreter). The documents of the container
+ * are indexed with {@link #indexDocument(org.eclipse.dltk.core.ISourceModule)}
+ * between the {@link #beginBulkLoad(IPath)} and {@link #endBulkLoad(IPath)}
+ * calls.
+ *
+ * @since 5.0
+ */
+public interface IBulkIndexer extends IIndexer {
+
+	/**
+	 * Starts the bulk load of the specified container.
+	 *
+	 * @param containerPath
+	 *            Container path
+	 * @return <code>true</code> if the bulk load is started and
+	 *         {@link #endBulkLoad(IPath)} must be called after the documents
+	 *         are indexed, <code>false</code> if the bulk load is not possible
+	 *         (e.g. the container already has documents in the index)
+	 */
+	public boolean beginBulkLoad(IPath containerPath);
+
+	/**
+	 * Completes the bulk load of the specified container, the indexed
+	 * documents are available for searching after this method returns.
+	 *
+	 * @param containerPath
+	 *            Container path
+	 */
+	public void endBulkLoad(IPath containerPath);
+}
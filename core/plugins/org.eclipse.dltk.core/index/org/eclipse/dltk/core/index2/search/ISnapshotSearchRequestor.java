@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index2.search;
+
+/**
+ * Optional extension of the {@link ISearchRequestor} which is notified about
+ * the progress of the search done through the {@link SnapshotSearchEngine}.
+ * 
+ * @since 5.0
+ */
+public interface ISnapshotSearchRequestor extends ISearchRequestor {
+
+	/**
+	 * Called after the matches from the last committed index contents have
+	 * been reported. If <code>stale</code> is <code>true</code> the indexer
+	 * was running, so the matches are possibly incomplete or out of date and
+	 * the late matches will follow from the background thread, completed by
+	 * {@link #updateComplete()}.
+	 * 
+	 * @param stale
+	 *            whether the indexer was running during the search
+	 */
+	public void snapshotComplete(boolean stale);
+
+	/**
+	 * Called from the background thread after the late matches have been
+	 * reported, also if the update was canceled or failed.
+	 */
+	public void updateComplete();
+
+}
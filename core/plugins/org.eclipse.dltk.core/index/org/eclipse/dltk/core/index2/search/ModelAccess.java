@@ -207,6 +207,48 @@ public class ModelAccess {
 		return result.toArray(new IType[result.size()]);
 	}
 
+	/**
+	 * Finds at most the specified number of type elements in index, the index
+	 * is not read further once the limit is reached.
+	 * 
+	 * @param name
+	 *            Element name
+	 * @param matchRule
+	 *            Match rule
+	 * @param trueFlags
+	 *            Logical OR of flags that must exist in element flags bitset.
+	 *            Set to <code>0</code> to disable filtering by trueFlags.
+	 * @param falseFlags
+	 *            Logical OR of flags that must not exist in the element flags
+	 *            bitset. Set to <code>0</code> to disable filtering by
+	 *            falseFlags.
+	 * @param limit
+	 *            Limit number of results (<code>0</code> - unlimited)
+	 * @param scope
+	 *            Search scope
+	 * @param monitor
+	 *            Progress monitor
+	 * @return elements array, or <code>null</code> in case error has occurred.
+	 * @since 5.0
+	 */
+	public IType[] findTypes(String name, MatchRule matchRule, int trueFlags,
+			int falseFlags, int limit, IDLTKSearchScope scope,
+			IProgressMonitor monitor) {
+
+		String qualifier = null;
+		if (name != null) {
+			final String[] parts = splitQualifier(name, scope);
+			qualifier = parts[0];
+			name = parts[1];
+		}
+		List<IType> result = new LinkedList<IType>();
+		if (!findElements(IModelElement.TYPE, qualifier, name, matchRule,
+				trueFlags, falseFlags, limit, scope, result, monitor)) {
+			return null;
+		}
+		return result.toArray(new IType[result.size()]);
+	}
+
 	/**
 	 * Finds type elements in index.
 	 * 
@@ -248,26 +290,48 @@ public class ModelAccess {
 
 		String qualifier = null;
 		if (name != null) {
-			ISearchPatternProcessor processor = DLTKLanguageManager
-					.getSearchPatternProcessor(scope.getLanguageToolkit());
-			if (processor != null) {
-				String delim = processor.getDelimiterReplacementString();
-				int i = name.lastIndexOf(delim);
-				if (i != -1) {
-					qualifier = name.substring(0, i);
-					name = name.substring(i + 1);
-				}
-			}
+			final String[] parts = splitQualifier(name, scope);
+			qualifier = parts[0];
+			name = parts[1];
 		}
 
 		return findElements(elementType, qualifier, name, matchRule, trueFlags,
 				falseFlags, scope, result, monitor);
 	}
 
+	/**
+	 * Splits the name into the qualifier (or <code>null</code>) and the
+	 * simple name using the delimiter of the language of the scope.
+	 */
+	private static String[] splitQualifier(String name, IDLTKSearchScope scope) {
+		ISearchPatternProcessor processor = DLTKLanguageManager
+				.getSearchPatternProcessor(scope.getLanguageToolkit());
+		if (processor != null) {
+			String delim = processor.getDelimiterReplacementString();
+			int i = name.lastIndexOf(delim);
+			if (i != -1) {
+				return new String[] { name.substring(0, i),
+						name.substring(i + 1) };
+			}
+		}
+		return new String[] { null, name };
+	}
+
 	protected <T extends IModelElement> boolean findElements(int elementType,
 			String qualifier, String name, MatchRule matchRule, int trueFlags,
 			int falseFlags, IDLTKSearchScope scope, final Collection<T> result,
 			IProgressMonitor monitor) {
+		return findElements(elementType, qualifier, name, matchRule,
+				trueFlags, falseFlags, 0, scope, result, monitor);
+	}
+
+	/**
+	 * @since 5.0
+	 */
+	protected <T extends IModelElement> boolean findElements(int elementType,
+			String qualifier, String name, MatchRule matchRule, int trueFlags,
+			int falseFlags, int limit, IDLTKSearchScope scope,
+			final Collection<T> result, IProgressMonitor monitor) {
 
 		IDLTKLanguageToolkit toolkit = scope.getLanguageToolkit();
 		if (toolkit == null) {
@@ -283,7 +347,7 @@ public class ModelAccess {
 		}
 
 		searchEngine.search(elementType, qualifier, name, trueFlags,
-				falseFlags, 0, SearchFor.DECLARATIONS, matchRule, scope,
+				falseFlags, limit, SearchFor.DECLARATIONS, matchRule, scope,
 				new ISearchRequestor() {
 
 					@SuppressWarnings("unchecked")
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index2.search;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.search.IDLTKSearchScope;
+import org.eclipse.dltk.internal.core.ModelManager;
+import org.eclipse.dltk.internal.core.search.SnapshotUpdateJob;
+
+/**
+ * Search engine answering immediately from the last committed index contents,
+ * instead of waiting until the indexer is ready. If the indexer is running the
+ * search is repeated in background when it is ready, and the matches which
+ * were not reported yet are passed to the same {@link ISearchRequestor}.
+ * Requestors implementing {@link ISnapshotSearchRequestor} are told whether
+ * the results are possibly stale and when the late matches are complete.
+ * 
+ * @since 5.0
+ */
+public class SnapshotSearchEngine implements ISearchEngine {
+
+	private final ISearchEngine engine;
+
+	/**
+	 * @param engine
+	 *            the search engine to query, see
+	 *            {@link ModelAccess#getSearchEngine(org.eclipse.dltk.core.IDLTKLanguageToolkit)}
+	 */
+	public SnapshotSearchEngine(ISearchEngine engine) {
+		this.engine = engine;
+	}
+
+	public void search(final int elementType, final String qualifier,
+			final String elementName, final int trueFlags,
+			final int falseFlags, final int limit, final SearchFor searchFor,
+			final MatchRule matchRule, final IDLTKSearchScope scope,
+			ISearchRequestor requestor, IProgressMonitor monitor) {
+		boolean stale = isIndexing();
+		final SnapshotRequestor snapshot = new SnapshotRequestor(requestor,
+				limit);
+		engine.search(elementType, qualifier, elementName, trueFlags,
+				falseFlags, limit, searchFor, matchRule, scope, snapshot,
+				monitor);
+		if (!stale) {
+			// could be started while the search was running
+			stale = isIndexing();
+		}
+		if (requestor instanceof ISnapshotSearchRequestor) {
+			((ISnapshotSearchRequestor) requestor).snapshotComplete(stale);
+		}
+		if (!stale) {
+			return;
+		}
+		new SnapshotUpdateJob() {
+			@Override
+			protected void update(IProgressMonitor monitor) {
+				engine.search(elementType, qualifier, elementName, trueFlags,
+						falseFlags, limit, searchFor, matchRule, scope,
+						snapshot, monitor);
+			}
+
+			@Override
+			protected void complete() {
+				snapshot.updateComplete();
+			}
+		}.schedule();
+	}
+
+	private static boolean isIndexing() {
+		return ModelManager.getModelManager().getIndexManager()
+				.awaitingJobsCount() > 0;
+	}
+
+	/**
+	 * Forwards only the matches which have not been reported yet.
+	 */
+	private static class SnapshotRequestor implements ISearchRequestor {
+
+		private final ISearchRequestor requestor;
+		private final int limit;
+		private final Set<String> reported = new HashSet<String>();
+
+		SnapshotRequestor(ISearchRequestor requestor, int limit) {
+			this.requestor = requestor;
+			this.limit = limit;
+		}
+
+		void updateComplete() {
+			if (requestor instanceof ISnapshotSearchRequestor) {
+				((ISnapshotSearchRequestor) requestor).updateComplete();
+			}
+		}
+
+		public void match(int elementType, int flags, int offset, int length,
+				int nameOffset, int nameLength, String elementName,
+				String metadata, String doc, String qualifier, String parent,
+				ISourceModule sourceModule, boolean isReference) {
+			final StringBuilder key = new StringBuilder();
+			key.append(sourceModule.getHandleIdentifier());
+			key.append('|').append(elementType);
+			key.append('|').append(offset);
+			key.append('|').append(length);
+			key.append('|').append(elementName);
+			key.append('|').append(isReference);
+			final boolean added;
+			synchronized (this) {
+				// the limit applies to the snapshot and late matches together
+				added = (limit == 0 || reported.size() < limit)
+						&& reported.add(key.toString());
+			}
+			if (added) {
+				requestor.match(elementType, flags, offset, length,
+						nameOffset, nameLength, elementName, metadata, doc,
+						qualifier, parent, sourceModule, isReference);
+			}
+		}
+	}
+
+}
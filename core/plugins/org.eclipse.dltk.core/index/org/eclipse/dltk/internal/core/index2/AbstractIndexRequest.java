@@ -134,7 +134,9 @@ public abstract class AbstractIndexRequest extends AbstractJob {
 					false);
 
 			if (toRemove.remove(relativePath)) {
-				if (documentNames.get(relativePath) < handle.lastModified()) {
+				// the indexer skips the documents which contents are the same
+				if (documentNames.get(relativePath).longValue() != handle
+						.lastModified()) {
 					toReindex.add(sourceModule);
 				}
 			} else {
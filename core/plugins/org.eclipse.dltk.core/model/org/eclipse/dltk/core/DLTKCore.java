@@ -356,6 +356,114 @@ public class DLTKCore extends Plugin {
 	 */
 	public static final String INDEXER_ENABLED = PLUGIN_ID + ".indexer"; //$NON-NLS-1$					
 
+	/**
+	 * Possible configurable option ID. Value should be {@link #ENABLED} or
+	 * {@link #DISABLED}. When enabled the index files are read through the
+	 * memory-mapped buffers instead of the file streams. Takes effect for the
+	 * indexes opened after the change.
+	 * 
+	 * @since 5.0
+	 */
+	public static final String INDEXER_MAPPED_FILES = PLUGIN_ID
+			+ ".indexer.mappedFiles"; //$NON-NLS-1$
+
+	/**
+	 * Possible configurable option ID. Value is the number of the threads
+	 * indexing the different containers in parallel. The value of
+	 * <code>"0"</code> means the number of available processors, the value of
+	 * <code>"1"</code> means all the indexing jobs are executed sequentially.
+	 * Takes effect after restart.
+	 * 
+	 * @since 5.0
+	 */
+	public static final String INDEXER_THREADS = PLUGIN_ID
+			+ ".indexer.threads"; //$NON-NLS-1$
+
+	/**
+	 * Possible configurable option ID. Value is the number of the threads
+	 * building the structure of the external source modules when a library is
+	 * opened as a whole. The value of <code>"0"</code> means the number of
+	 * available processors, the value of <code>"1"</code> means the modules are
+	 * built sequentially. Takes effect after restart.
+	 * 
+	 * @since 5.0
+	 */
+	public static final String STRUCTURE_BUILDER_THREADS = PLUGIN_ID
+			+ ".structureBuilder.threads"; //$NON-NLS-1$
+
+	/**
+	 * Possible configurable option ID. Value is the number of the threads
+	 * parsing the possible matches of a search in parallel. The value of
+	 * <code>"0"</code> means the number of available processors, the default
+	 * value of <code>"1"</code> means the possible matches are parsed
+	 * sequentially by the searching thread. The other values should be used
+	 * only if the match parsers of all the languages follow the contract of
+	 * {@link org.eclipse.dltk.core.search.IMatchLocatorParser}. Takes effect
+	 * after restart.
+	 * 
+	 * @since 5.0
+	 */
+	public static final String SEARCH_THREADS = PLUGIN_ID + ".search.threads"; //$NON-NLS-1$
+
+	/**
+	 * Possible configurable option ID. Value is the maximum number of the goal
+	 * results of the type inference cached for each project, the value of
+	 * <code>"0"</code> disables the cache. Takes effect after restart.
+	 * 
+	 * @since 5.0
+	 */
+	public static final String TYPE_INFERENCE_CACHE_SIZE = PLUGIN_ID
+			+ ".typeInference.cacheSize"; //$NON-NLS-1$
+
+	/**
+	 * Possible configurable option ID. Value is the number of the threads
+	 * initializing the independent goals of the type inference in parallel.
+	 * The value of <code>"0"</code> means the number of available processors,
+	 * the value of <code>"1"</code> means the goals are evaluated
+	 * sequentially. The goal evaluators of all the languages should allow
+	 * concurrent initialization before enabling it. Takes effect after
+	 * restart.
+	 * 
+	 * @since 5.0
+	 */
+	public static final String TYPE_INFERENCE_THREADS = PLUGIN_ID
+			+ ".typeInference.threads"; //$NON-NLS-1$
+
+	/**
+	 * Possible configurable option ID. Value should be {@link #ENABLED} or
+	 * {@link #DISABLED}. When enabled the ASTs of the parsed modules are kept
+	 * on disk, so the modules are not parsed again after restart until they
+	 * are changed. Applies to the languages which source parsers implement
+	 * {@link org.eclipse.dltk.ast.parser.IASTSerializer}. Takes effect after
+	 * restart.
+	 * 
+	 * @since 5.0
+	 */
+	public static final String AST_CACHE_PERSISTENT = PLUGIN_ID
+			+ ".astCache.persistent"; //$NON-NLS-1$
+
+	/**
+	 * Possible configurable option ID. Value is the maximum size in megabytes
+	 * of the ASTs kept on disk, the least recently used are deleted when it is
+	 * exceeded. Takes effect after restart.
+	 * 
+	 * @since 5.0
+	 */
+	public static final String AST_CACHE_PERSISTENT_SIZE = PLUGIN_ID
+			+ ".astCache.persistentSize"; //$NON-NLS-1$
+
+	/**
+	 * Possible configurable option ID. Value is the delay in milliseconds the
+	 * model deltas and the index updates of the resource changes are collected
+	 * for before being fired as a single delta with one index request per
+	 * project. The value of <code>"0"</code> means each resource change is
+	 * processed immediately. Takes effect for the next resource change.
+	 * 
+	 * @since 5.0
+	 */
+	public static final String DELTA_COALESCING_DELAY = PLUGIN_ID
+			+ ".delta.coalescingDelay"; //$NON-NLS-1$
+
 	/**
 	 * Possible project configurable option ID. Value is the identifier of
 	 * contributed {@link org.eclipse.dltk.ast.parser.ISourceParser}.
@@ -1,20 +1,15 @@
 package org.eclipse.dltk.core.caching;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.List;
 import java.util.zip.CRC32;
 
 import org.eclipse.core.runtime.IPath;
@@ -22,144 +17,106 @@ import org.eclipse.dltk.compiler.util.Util;
 import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.core.RuntimePerformanceMonitor;
 import org.eclipse.dltk.core.RuntimePerformanceMonitor.PerformanceNode;
-import org.eclipse.dltk.core.caching.cache.CacheEntry;
-import org.eclipse.dltk.core.caching.cache.CacheEntryAttribute;
-import org.eclipse.dltk.core.caching.cache.CacheFactory;
-import org.eclipse.dltk.core.caching.cache.CacheIndex;
 import org.eclipse.dltk.core.environment.EnvironmentManager;
 import org.eclipse.dltk.core.environment.IEnvironment;
 import org.eclipse.dltk.core.environment.IFileHandle;
-import org.eclipse.emf.common.util.EList;
-import org.eclipse.emf.ecore.EObject;
-import org.eclipse.emf.ecore.resource.Resource;
-import org.eclipse.emf.ecore.xmi.impl.XMIResourceImpl;
+import org.eclipse.dltk.internal.core.caching.MetadataStore;
+import org.eclipse.dltk.internal.core.caching.MetadataStore.Entry;
+import org.eclipse.dltk.internal.core.caching.MetadataStore.Key;
+import org.eclipse.dltk.internal.core.caching.MetadataStore.Value;
 
 /**
  * This class is designed to store any kind of information into metadata cache.
+ * <p>
+ * The attributes are kept in the {@link MetadataStore} - the append-only log
+ * with the index, so the readers do not block each other, the saves are
+ * incremental and only the accessed entries are loaded. The attributes
+ * requested by {@link #getEntryAsFile(IFileHandle, String)} are kept in the
+ * separate files.
+ * </p>
  */
 public class MetadataContentCache extends AbstractContentCache {
 	private static final int DAY_IN_MILIS = 60;// 1000 * 60 * 60 * 24;
 	private static final int SAVE_DELTA = 1000 * 60; // Minute
-	private Resource indexResource = null;
-	private long newSaveTime = 0;
-
-	private static class EntryKey {
-		private String environment;
-		private String path;
-
-		public EntryKey(String environment, String path) {
-			this.environment = environment;
-			this.path = path;
-		}
-
-		@Override
-		public int hashCode() {
-			final int prime = 31;
-			int result = 1;
-			result = prime * result
-					+ ((environment == null) ? 0 : environment.hashCode());
-			result = prime * result + ((path == null) ? 0 : path.hashCode());
-			return result;
-		}
-
-		@Override
-		public boolean equals(Object obj) {
-			if (this == obj)
-				return true;
-			if (obj == null)
-				return false;
-			if (getClass() != obj.getClass())
-				return false;
-			EntryKey other = (EntryKey) obj;
-			if (environment == null) {
-				if (other.environment != null)
-					return false;
-			} else if (!environment.equals(other.environment))
-				return false;
-			if (path == null) {
-				if (other.path != null)
-					return false;
-			} else if (!path.equals(other.path))
-				return false;
-			return true;
-		}
-	}
+	/**
+	 * The index of the former EMF based format.
+	 */
+	private static final String LEGACY_INDEX = "index"; //$NON-NLS-1$
+	private volatile long newSaveTime = 0;
 
-	private Map<EntryKey, CacheEntry> entryCache = new HashMap<EntryKey, CacheEntry>();
-	private IPath cacheLocation;
-	private CRC32 checksum = new CRC32();
+	private final IPath cacheLocation;
+	private final MetadataStore store;
+	private volatile boolean initialized;
+	private long lastIndex = 0;
 
 	public MetadataContentCache(IPath cacheLocation) {
 		this.cacheLocation = cacheLocation;
+		this.store = new MetadataStore(new File(cacheLocation.toOSString()));
 	}
 
-	private synchronized void initialize() {
-		if (indexResource == null) {
-			File file = new File(cacheLocation.toOSString());
-			if (!file.exists()) {
-				file.mkdir();
-			}
-
-			IPath indexFile = cacheLocation.append("index");
-			indexResource = new XMIResourceImpl();
-			indexFileHandle = new File(indexFile.toOSString());
-			if (indexFileHandle.exists()) {
-				try {
-					BufferedInputStream loadStream = new BufferedInputStream(
-							new FileInputStream(indexFileHandle), 4096);
-					indexResource.load(loadStream, null);
-					loadStream.close();
-				} catch (Exception e) {
-					save(false);
-					if (DLTKCore.DEBUG) {
-						// e.printStackTrace();
+	private void initialize() {
+		if (initialized) {
+			return;
+		}
+		synchronized (this) {
+			if (!initialized) {
+				final File legacyIndex = new File(cacheLocation.append(
+						LEGACY_INDEX).toOSString());
+				if (legacyIndex.exists()) {
+					// the attribute files of the former format
+					final File[] files = new File(cacheLocation.toOSString())
+							.listFiles();
+					if (files != null) {
+						for (File file : files) {
+							deleteTree(file);
+						}
 					}
 				}
+				initialized = true;
 			}
-			EList<EObject> contents = indexResource.getContents();
-			for (EObject eObject : contents) {
-				CacheIndex index = (CacheIndex) eObject;
-				// String to entry cache.
-				EList<CacheEntry> entries = index.getEntries();
-				for (CacheEntry cacheEntry : entries) {
-					entryCache.put(makeKey(cacheEntry), cacheEntry);
-				}
+		}
+	}
+
+	private static void deleteTree(File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				deleteTree(child);
 			}
 		}
+		file.delete();
 	}
 
-	private synchronized CacheEntry getEntry(IFileHandle handle) {
+	/**
+	 * Returns the valid entry of the handle or <code>null</code> if there is
+	 * no such entry. The entry is removed if the handle was modified.
+	 */
+	private Entry getEntry(IFileHandle handle) {
 		initialize();
-		EntryKey key = makeKey(handle);
-		if (entryCache.containsKey(key)) {
-			CacheEntry entry = entryCache.get(key);
-			long accessTime = entry.getLastAccessTime();
-			long timeMillis = System.currentTimeMillis();
-			if (timeMillis - accessTime > DAY_IN_MILIS) {
-				long entryTimestamp = entry.getTimestamp() / 1000;
-				long handleTimestamp = getHandleLastModification(handle) / 1000;
-				if (entryTimestamp == handleTimestamp) {
-					entry.setLastAccessTime(timeMillis);
-					return entry;
-				} else {
-					entry.setLastAccessTime(timeMillis);
-					removeCacheEntry(entry, key);
-				}
-			} else {
-				entry.setLastAccessTime(timeMillis);
-				return entry;
+		final Key key = makeKey(handle);
+		final Entry entry = store.get(key);
+		if (entry == null) {
+			return null;
+		}
+		final long timeMillis = System.currentTimeMillis();
+		if (timeMillis - entry.getLastAccessTime() > DAY_IN_MILIS) {
+			long entryTimestamp = entry.getTimestamp() / 1000;
+			long handleTimestamp = getHandleLastModification(handle) / 1000;
+			if (entryTimestamp != handleTimestamp) {
+				removeFiles(store.clear(key));
+				return null;
 			}
 		}
-		CacheIndex index = getCacheIndex(handle.getEnvironmentId());
-		CacheEntry entry = CacheFactory.eINSTANCE.createCacheEntry();
-		entry.setPath(handle.getPath().toPortableString());
-		entry.setTimestamp(getHandleLastModification(handle));
-		index.getEntries().add(entry);
-		entry.setLastAccessTime(System.currentTimeMillis());
-		entryCache.put(key, entry);
+		entry.setLastAccessTime(timeMillis);
 		return entry;
 	}
 
+	private long getTimestamp(IFileHandle handle) {
+		final Entry entry = getEntry(handle);
+		return entry != null ? entry.getTimestamp()
+				: getHandleLastModification(handle);
+	}
+
 	private long getHandleLastModification(IFileHandle handle) {
 		final IEnvironment environment = handle.getEnvironment();
 		if (environment != null && environment.isLocal()) {
@@ -179,62 +136,24 @@ public class MetadataContentCache extends AbstractContentCache {
 		return handle.lastModified();
 	}
 
-	private CacheIndex getCacheIndex(String environmentId) {
-		EList<EObject> contents = indexResource.getContents();
-		for (EObject eObject : contents) {
-			CacheIndex index = (CacheIndex) eObject;
-			if (index.getEnvironment().equals(environmentId)) {
-				return index;
+	private void removeFiles(List<Value> values) {
+		for (Value value : values) {
+			final String location = value.getLocation();
+			if (location != null) {
+				File file = new File(cacheLocation.append(location)
+						.toOSString());
+				if (file.exists()) {
+					file.delete();
+				}
 			}
 		}
-		CacheIndex index = CacheFactory.eINSTANCE.createCacheIndex();
-		index.setEnvironment(environmentId);
-		index.setLastIndex(0);
-		contents.add(index);
-		return index;
-	}
-
-	private void removeCacheEntry(CacheEntry entry, EntryKey key) {
-		if (entry == null || key == null) {
-			return;
-		}
-		// We need to remove old files
-		EList<CacheEntryAttribute> attributes = entry.getAttributes();
-		for (CacheEntryAttribute attr : attributes) {
-			removeAttribute(attr);
-		}
-		attributes.clear();
-		CacheIndex index = (CacheIndex) entry.eContainer();
-		index.getEntries().remove(entry);
-		entryCache.remove(key);
-	}
-
-	private void removeAttribute(CacheEntryAttribute attr) {
-		String location = attr.getLocation();
-		IPath cacheEntryFile = cacheLocation.append(location);
-		File file = new File(cacheEntryFile.toOSString());
-		if (file.exists()) {
-			file.delete();
-		}
 	}
 
-	private EntryKey makeKey(CacheEntry entry) {
-		CacheIndex index = (CacheIndex) entry.eContainer();
-		return new EntryKey(index.getEnvironment(), entry.getPath());
+	private Key makeKey(IFileHandle handle) {
+		return new Key(handle.getEnvironmentId(), handle.getPath().toString());
 	}
 
-	private EntryKey makeKey(IFileHandle handle) {
-		return new EntryKey(handle.getEnvironmentId(), handle.getPath()
-				.toString());
-	}
-
-	long changeCount = 0;
-	private File indexFileHandle;
-
-	public synchronized void save(boolean countSaves) {
-		if (indexResource == null) {
-			return;
-		}
+	public void save(boolean countSaves) {
 		if (countSaves) {
 			long current = System.currentTimeMillis();
 			if (current > newSaveTime) {
@@ -243,18 +162,7 @@ public class MetadataContentCache extends AbstractContentCache {
 				return;
 			}
 		}
-		try {
-			Map<String, Object> options = new HashMap<String, Object>();
-			options.put(Resource.OPTION_SAVE_ONLY_IF_CHANGED, Boolean.TRUE);
-			BufferedOutputStream outStream = new BufferedOutputStream(
-					new FileOutputStream(indexFileHandle), 4096);
-			indexResource.save(outStream, options);
-			outStream.close();
-		} catch (IOException e) {
-			if (DLTKCore.DEBUG) {
-				e.printStackTrace();
-			}
-		}
+		store.save(!countSaves);
 	}
 
 	public InputStream getCacheEntryAttribute(IFileHandle handle,
@@ -262,20 +170,27 @@ public class MetadataContentCache extends AbstractContentCache {
 		if (handle == null) {
 			return null;
 		}
-		File file = null;
-		CacheEntry entry = null;
-		synchronized (this) {
-			entry = getEntry(handle);
-			EList<CacheEntryAttribute> attributes = entry.getAttributes();
-			for (CacheEntryAttribute cacheEntryAttribute : attributes) {
-				if (cacheEntryAttribute.getName().equals(attribute)) {
-					file = new File(cacheLocation.append(
-							cacheEntryAttribute.getLocation()).toOSString());
-					break;
-				}
+		final Entry entry = getEntry(handle);
+		if (entry == null) {
+			return null;
+		}
+		final Value value = entry.get(attribute);
+		if (value == null) {
+			return null;
+		}
+		if (value.getLocation() == null) {
+			PerformanceNode node = RuntimePerformanceMonitor.begin();
+			final byte[] data = store.read(value);
+			if (data == null) {
+				return null;
 			}
+			node.done("Metadata", RuntimePerformanceMonitor.IOREAD,
+					data.length, EnvironmentManager.getLocalEnvironment());
+			return new ByteArrayInputStream(data);
 		}
-		if (file != null && file.exists()) {
+		File file = new File(cacheLocation.append(value.getLocation())
+				.toOSString());
+		if (file.exists()) {
 			try {
 				PerformanceNode node = RuntimePerformanceMonitor.begin();
 				ByteArrayOutputStream bout = new ByteArrayOutputStream();
@@ -292,56 +207,68 @@ public class MetadataContentCache extends AbstractContentCache {
 				}
 				return null;
 			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				if (DLTKCore.DEBUG) {
+					e.printStackTrace();
+				}
 			}
 		}
 
 		return null;
 	}
 
-	public synchronized OutputStream getCacheEntryAttributeOutputStream(
-			IFileHandle handle, String attribute) {
-		File file = getEntryAsFile(handle, attribute);
-		try {
-			return new BufferedOutputStream(new FileOutputStream(file), 4096);
-		} catch (FileNotFoundException e) {
-			if (DLTKCore.DEBUG) {
-				e.printStackTrace();
-			}
+	/**
+	 * Returns the stream storing the attribute when closed.
+	 */
+	public OutputStream getCacheEntryAttributeOutputStream(
+			IFileHandle handle, final String attribute) {
+		if (handle == null) {
+			return null;
 		}
-		return null;
+		final Key key = makeKey(handle);
+		final long timestamp = getTimestamp(handle);
+		return new ByteArrayOutputStream() {
+			private boolean closed = false;
+
+			@Override
+			public void close() throws IOException {
+				if (!closed) {
+					closed = true;
+					removeFiles(store.put(key, timestamp, attribute,
+							toByteArray()));
+					save(true);
+				}
+			}
+		};
 	}
 
-	public File getEntryAsFile(IFileHandle handle, String attribute) {
+	public synchronized File getEntryAsFile(IFileHandle handle,
+			String attribute) {
 		if (handle == null) {
 			return null;
 		}
-		CacheEntry entry = getEntry(handle);
-		File file = null;
-		EList<CacheEntryAttribute> attributes = entry.getAttributes();
-		for (CacheEntryAttribute cacheEntryAttribute : attributes) {
-			if (cacheEntryAttribute.getName().equals(attribute)) {
-				file = new File(cacheLocation.append(
-						cacheEntryAttribute.getLocation()).toOSString());
-				return file;
+		final Entry entry = getEntry(handle);
+		if (entry != null) {
+			final Value value = entry.get(attribute);
+			if (value != null && value.getLocation() != null) {
+				return new File(cacheLocation.append(value.getLocation())
+						.toOSString());
 			}
 		}
-
+		final long timestamp = entry != null ? entry.getTimestamp()
+				: getHandleLastModification(handle);
 		IPath location = generateNewLocation(handle.getPath(), handle
 				.getEnvironmentId());
-		CacheEntryAttribute attrEntry = CacheFactory.eINSTANCE
-				.createCacheEntryAttribute();
-		attrEntry.setLocation(location.toPortableString());
-		attrEntry.setName(attribute);
-		entry.getAttributes().add(attrEntry);
+		removeFiles(store.putFile(makeKey(handle), timestamp, attribute,
+				location.toPortableString()));
 		save(true);
-		file = new File(cacheLocation.append(location).toOSString());
-		return file;
+		return new File(cacheLocation.append(location).toOSString());
 	}
 
+	/*
+	 * Must be called when holding the lock of this cache.
+	 */
 	private IPath generateNewLocation(IPath path, String environment) {
-		checksum.reset();
+		final CRC32 checksum = new CRC32();
 		checksum.update(environment.getBytes());
 		IPath indexPath = cacheLocation.append(Long.toString(checksum
 				.getValue()));
@@ -357,55 +284,39 @@ public class MetadataContentCache extends AbstractContentCache {
 		if (!folderFile.exists()) {
 			folderFile.mkdir();
 		}
-		CacheIndex index = getCacheIndex(environment);
 		IPath location = null;
-		long i = index.getLastIndex() + 1;
 		while (true) {
-			location = folder.append(Long.toString(i++) + ".idx");
+			location = folder.append(Long.toString(++lastIndex) + ".idx");
 			File file = new File(location.toOSString());
 			if (!file.exists()) {
-				index.setLastIndex(i);
 				return location.removeFirstSegments(
 						cacheLocation.segmentCount()).setDevice(null);
 			}
 		}
 	}
 
-	public synchronized void removeCacheEntryAttributes(IFileHandle handle,
+	public void removeCacheEntryAttributes(IFileHandle handle,
 			String attribute) {
 		if (handle == null) {
 			return;
 		}
-		CacheEntry entry = getEntry(handle);
-		EList<CacheEntryAttribute> attributes = entry.getAttributes();
-		for (CacheEntryAttribute cacheEntryAttribute : attributes) {
-			if (cacheEntryAttribute.getName().equals(attribute)) {
-				removeAttribute(cacheEntryAttribute);
-				attributes.remove(cacheEntryAttribute);
-				save(true);
-				return;
-			}
-		}
+		initialize();
+		removeFiles(store.remove(makeKey(handle), attribute));
+		save(true);
 	}
 
-	public synchronized void clearCacheEntryAttributes(IFileHandle handle) {
+	public void clearCacheEntryAttributes(IFileHandle handle) {
 		if (handle == null) {
 			return;
 		}
-		EntryKey key = makeKey(handle);
-		if (entryCache.containsKey(key)) {
-			CacheEntry entry = entryCache.get(key);
-			removeCacheEntry(entry, key);
-			save(true);
-		}
+		initialize();
+		removeFiles(store.clear(makeKey(handle)));
+		save(true);
 	}
 
-	public synchronized void clear() {
+	public void clear() {
 		initialize();
-		Set<EntryKey> keySet = new HashSet<EntryKey>(entryCache.keySet());
-		for (EntryKey k : keySet) {
-			removeCacheEntry(entryCache.get(k), k);
-		}
+		removeFiles(store.clear());
 		save(true);
 	}
 
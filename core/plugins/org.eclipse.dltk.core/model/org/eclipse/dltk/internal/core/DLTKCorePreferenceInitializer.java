@@ -45,6 +45,15 @@ public class DLTKCorePreferenceInitializer extends
 				DLTKCore.CORE_ENABLE_BUILDPATH_EXCLUSION_PATTERNS,
 				DLTKCore.ENABLED);
 		defaultOptionsMap.put(DLTKCore.INDEXER_ENABLED, DLTKCore.ENABLED);
+		defaultOptionsMap.put(DLTKCore.INDEXER_MAPPED_FILES, DLTKCore.DISABLED);
+		defaultOptionsMap.put(DLTKCore.INDEXER_THREADS, "0"); //$NON-NLS-1$
+		defaultOptionsMap.put(DLTKCore.STRUCTURE_BUILDER_THREADS, "0"); //$NON-NLS-1$
+		defaultOptionsMap.put(DLTKCore.SEARCH_THREADS, "1"); //$NON-NLS-1$
+		defaultOptionsMap.put(DLTKCore.TYPE_INFERENCE_CACHE_SIZE, "1000"); //$NON-NLS-1$
+		defaultOptionsMap.put(DLTKCore.TYPE_INFERENCE_THREADS, "1"); //$NON-NLS-1$
+		defaultOptionsMap.put(DLTKCore.AST_CACHE_PERSISTENT, DLTKCore.DISABLED);
+		defaultOptionsMap.put(DLTKCore.AST_CACHE_PERSISTENT_SIZE, "64"); //$NON-NLS-1$
+		defaultOptionsMap.put(DLTKCore.DELTA_COALESCING_DELAY, "0"); //$NON-NLS-1$
 		defaultOptionsMap.put(DLTKCore.BUILDER_ENABLED, DLTKCore.ENABLED);
 		defaultOptionsMap.put(DLTKCore.CODEASSIST_CAMEL_CASE_MATCH,
 				DLTKCore.ENABLED);
@@ -0,0 +1,292 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.IJobManager;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.ElementChangedEvent;
+import org.eclipse.dltk.core.IModelElementDelta;
+import org.eclipse.dltk.core.IScriptProject;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.internal.core.search.ProjectIndexerManager;
+
+/**
+ * Collects the model deltas and the index updates of the resource changes
+ * when {@link DLTKCore#DELTA_COALESCING_DELAY} is set, and fires them as a
+ * single delta with one index request per project after the delay, or after
+ * the running workspace operation completes.
+ * <p>
+ * The model itself is updated for each resource change, only the
+ * notification of the listeners and the indexing of the source modules are
+ * deferred.
+ * </p>
+ */
+public class DeltaCoalescer {
+
+	/**
+	 * The maximum time in milliseconds to wait for the running workspace
+	 * operation, so a long build does not hold back the notifications.
+	 */
+	private static final long MAX_WORKSPACE_WAIT = 5000;
+
+	private final DeltaProcessingState state;
+
+	/*
+	 * The deltas waiting to be fired.
+	 */
+	private List<IModelElementDelta> deltas = new ArrayList<IModelElementDelta>();
+
+	/*
+	 * A table from IScriptProject to the table from the project relative path
+	 * to the changed ISourceModule or null if the module was removed.
+	 */
+	private Map<IScriptProject, Map<String, ISourceModule>> indexUpdates = new LinkedHashMap<IScriptProject, Map<String, ISourceModule>>();
+
+	/* The number of the resource changes since the last flush */
+	private int pendingEvents;
+
+	private int eventCount;
+	private int mergedEventCount;
+	private int notificationCount;
+	private int indexUpdateCount;
+	private int indexRequestCount;
+
+	/* Serializes the flushes, so the deltas are fired in order */
+	private final Object flushLock = new Object();
+
+	private final Job job = new Job(Messages.DeltaCoalescer_notifying) {
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			waitForWorkspace(monitor);
+			if (!monitor.isCanceled()) {
+				flush();
+			}
+			return Status.OK_STATUS;
+		}
+	};
+
+	public DeltaCoalescer(DeltaProcessingState state) {
+		this.state = state;
+		job.setSystem(true);
+	}
+
+	/**
+	 * Returns the coalescing delay in milliseconds or <code>0</code> if the
+	 * resource changes are processed immediately.
+	 */
+	public long getDelay() {
+		final String value = DLTKCore
+				.getOption(DLTKCore.DELTA_COALESCING_DELAY);
+		if (value != null) {
+			try {
+				return Math.max(0, Long.parseLong(value.trim()));
+			} catch (NumberFormatException e) {
+				// fall through
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Adds the deltas of the resource change and schedules the flush.
+	 */
+	public synchronized void add(List<IModelElementDelta> newDeltas, long delay) {
+		deltas.addAll(newDeltas);
+		++eventCount;
+		if (pendingEvents++ == 0) {
+			job.schedule(delay);
+		}
+	}
+
+	/**
+	 * Records the added or changed source module to be indexed with the next
+	 * flush.
+	 */
+	public synchronized void indexSourceModule(ISourceModule module,
+			String path) {
+		getIndexUpdates(module.getScriptProject()).put(path, module);
+		++indexUpdateCount;
+	}
+
+	/**
+	 * Records the removed source module to be removed from the index with the
+	 * next flush.
+	 */
+	public synchronized void removeSourceModule(IScriptProject project,
+			String path) {
+		getIndexUpdates(project).put(path, null);
+		++indexUpdateCount;
+	}
+
+	private Map<String, ISourceModule> getIndexUpdates(IScriptProject project) {
+		Map<String, ISourceModule> updates = indexUpdates.get(project);
+		if (updates == null) {
+			updates = new LinkedHashMap<String, ISourceModule>();
+			indexUpdates.put(project, updates);
+		}
+		return updates;
+	}
+
+	/**
+	 * Discards the index updates of the removed project.
+	 */
+	public synchronized void discard(IScriptProject project) {
+		indexUpdates.remove(project);
+	}
+
+	/**
+	 * Fires the collected deltas and issues the collected index updates.
+	 */
+	public void flush() {
+		synchronized (flushLock) {
+			final List<IModelElementDelta> pendingDeltas;
+			final Map<IScriptProject, Map<String, ISourceModule>> pendingUpdates;
+			synchronized (this) {
+				if (pendingEvents > 1) {
+					mergedEventCount += pendingEvents - 1;
+				}
+				pendingEvents = 0;
+				pendingDeltas = deltas;
+				pendingUpdates = indexUpdates;
+				deltas = new ArrayList<IModelElementDelta>();
+				indexUpdates = new LinkedHashMap<IScriptProject, Map<String, ISourceModule>>();
+				if (!pendingDeltas.isEmpty()) {
+					++notificationCount;
+				}
+				indexRequestCount += pendingUpdates.size();
+			}
+			if (DeltaProcessor.VERBOSE
+					&& (!pendingDeltas.isEmpty() || !pendingUpdates.isEmpty())) {
+				System.out.println("COALESCED " + pendingDeltas.size() //$NON-NLS-1$
+						+ " DELTAS, INDEXING " + pendingUpdates.size() //$NON-NLS-1$
+						+ " PROJECTS [" + Thread.currentThread() + "]"); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			updateIndexes(pendingUpdates);
+			if (!pendingDeltas.isEmpty()) {
+				final DeltaProcessor processor = new DeltaProcessor(state,
+						ModelManager.getModelManager());
+				for (IModelElementDelta delta : pendingDeltas) {
+					processor.registerModelDelta(delta);
+				}
+				processor.fire(null, ElementChangedEvent.POST_CHANGE);
+			}
+		}
+	}
+
+	private static void updateIndexes(
+			Map<IScriptProject, Map<String, ISourceModule>> updates) {
+		for (Map.Entry<IScriptProject, Map<String, ISourceModule>> entry : updates
+				.entrySet()) {
+			final List<ISourceModule> modules = new ArrayList<ISourceModule>();
+			final List<String> removedPaths = new ArrayList<String>();
+			for (Map.Entry<String, ISourceModule> update : entry.getValue()
+					.entrySet()) {
+				if (update.getValue() != null) {
+					modules.add(update.getValue());
+				} else {
+					removedPaths.add(update.getKey());
+				}
+			}
+			ProjectIndexerManager.indexSourceModules(entry.getKey(), modules,
+					removedPaths);
+		}
+	}
+
+	/**
+	 * Cancels the scheduled flush, issues the collected index updates and
+	 * discards the collected deltas.
+	 */
+	public void stop() {
+		job.cancel();
+		final Map<IScriptProject, Map<String, ISourceModule>> pendingUpdates;
+		synchronized (this) {
+			pendingEvents = 0;
+			pendingUpdates = indexUpdates;
+			deltas = new ArrayList<IModelElementDelta>();
+			indexUpdates = new LinkedHashMap<IScriptProject, Map<String, ISourceModule>>();
+		}
+		updateIndexes(pendingUpdates);
+	}
+
+	/*
+	 * Waits until the running workspace operation completes, so its resource
+	 * changes are fired together.
+	 */
+	private static void waitForWorkspace(final IProgressMonitor monitor) {
+		final long deadline = System.currentTimeMillis() + MAX_WORKSPACE_WAIT;
+		final ISchedulingRule rule = ResourcesPlugin.getWorkspace().getRoot();
+		final IJobManager jobManager = Job.getJobManager();
+		try {
+			jobManager.beginRule(rule, new NullProgressMonitor() {
+				@Override
+				public boolean isCanceled() {
+					return monitor.isCanceled()
+							|| System.currentTimeMillis() > deadline;
+				}
+			});
+		} catch (OperationCanceledException e) {
+			// fire the changes collected so far
+		} finally {
+			jobManager.endRule(rule);
+		}
+	}
+
+	/**
+	 * Returns the number of the coalesced resource changes.
+	 */
+	public synchronized int getEventCount() {
+		return eventCount;
+	}
+
+	/**
+	 * Returns the number of the resource changes merged into the delta of the
+	 * preceding resource change.
+	 */
+	public synchronized int getMergedEventCount() {
+		return mergedEventCount;
+	}
+
+	/**
+	 * Returns the number of the fired deltas.
+	 */
+	public synchronized int getNotificationCount() {
+		return notificationCount;
+	}
+
+	/**
+	 * Returns the number of the recorded updates of the source modules.
+	 */
+	public synchronized int getIndexUpdateCount() {
+		return indexUpdateCount;
+	}
+
+	/**
+	 * Returns the number of the issued index requests, one per project and
+	 * flush.
+	 */
+	public synchronized int getIndexRequestCount() {
+		return indexRequestCount;
+	}
+}
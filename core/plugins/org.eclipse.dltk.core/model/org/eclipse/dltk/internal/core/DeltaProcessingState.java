@@ -62,6 +62,12 @@ public class DeltaProcessingState implements IResourceChangeListener {
 	 */
 	private ThreadLocal deltaProcessors = new ThreadLocal();
 
+	/*
+	 * Collects the deltas and the index updates of the resource changes when
+	 * the coalescing is enabled.
+	 */
+	public final DeltaCoalescer coalescer = new DeltaCoalescer(this);
+
 	/* A table from IPath (from a buildpath entry) to RootInfo */
 	public HashMap roots = new HashMap();
 
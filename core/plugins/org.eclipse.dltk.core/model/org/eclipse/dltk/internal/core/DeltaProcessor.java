@@ -251,6 +251,11 @@ public class DeltaProcessor {
 	 * is.
 	 */
 	public int overridenEventType = -1;
+	/*
+	 * The delay of the coalescer or 0 if the current resource change is not
+	 * coalesced.
+	 */
+	private long coalescingDelay;
 
 	// /*
 	// * Map from IProject to BuildpathChange
@@ -1981,6 +1986,7 @@ public class DeltaProcessor {
 				// MARKER
 				// deltas
 				try {
+					this.coalescingDelay = this.state.coalescer.getDelay();
 					try {
 						this.stopDeltas();
 						this.checkProjectsBeingAddedOrRemoved(delta);
@@ -2020,11 +2026,18 @@ public class DeltaProcessor {
 						listenerCount = this.state.elementChangedListenerCount;
 					}
 					this.notifyTypeHierarchies(listeners, listenerCount);
+					if (this.coalescingDelay != 0) {
+						// the reconcile deltas are still fired below
+						this.state.coalescer.add(this.modelDeltas,
+								this.coalescingDelay);
+						this.flush();
+					}
 					this.fire(null, ElementChangedEvent.POST_CHANGE);
 				} finally {
 					// workaround for bug 15168 circular errors not reported
 					this.state.resetOldScriptProjectNames();
 					this.removedRoots = null;
+					this.coalescingDelay = 0;
 				}
 			}
 			return;
@@ -2819,6 +2832,7 @@ public class DeltaProcessor {
 						.getProject().getFullPath();
 				indexManager.removeIndexFamily(projectPath);
 				ProjectIndexerManager.removeProject(projectPath);
+				this.state.coalescer.discard(element.getScriptProject());
 				// NB: Discarding index jobs belonging to this project
 				// was done
 				// during PRE_DELETE
@@ -2938,6 +2952,12 @@ public class DeltaProcessor {
 				}
 			case IResourceDelta.ADDED:
 				if (ProjectIndexerManager.isIndexerEnabled(file.getProject())) {
+					if (this.coalescingDelay != 0) {
+						this.state.coalescer.indexSourceModule(
+								(ISourceModule) element,
+								Util.relativePath(file.getFullPath(), 1));
+						break;
+					}
 					IDLTKLanguageToolkit toolkit = null;
 					toolkit = DLTKLanguageManager.getLanguageToolkit(element);
 					ProjectIndexerManager.indexSourceModule(
@@ -2959,6 +2979,11 @@ public class DeltaProcessor {
 				/* remove project segment */
 				final String path = Util.relativePath(file.getFullPath(), 1);
 				indexManager.remove(path, project.getFullPath());
+				if (this.coalescingDelay != 0) {
+					this.state.coalescer.removeSourceModule(DLTKCore
+							.create(project), path);
+					break;
+				}
 				ProjectIndexerManager.removeSourceModule(DLTKCore
 						.create(project), path);
 				// Clean file from secondary types cache and update
@@ -13,6 +13,7 @@ import org.eclipse.dltk.core.IModelElement;
 import org.eclipse.dltk.core.IProjectFragment;
 import org.eclipse.dltk.core.IScriptFolder;
 import org.eclipse.dltk.core.ModelException;
+import org.eclipse.dltk.internal.core.util.ILRUCacheable;
 import org.eclipse.dltk.internal.core.util.LRUCache;
 
 /**
@@ -21,18 +22,68 @@ import org.eclipse.dltk.internal.core.util.LRUCache;
 public class ElementCache extends OverflowingLRUCache {
 	private IModelElement spaceLimitParent = null;
 
+	/**
+	 * The estimated space taken by an element info, not counting its children.
+	 */
+	private final int entryWeight;
+
+	/**
+	 * The estimated space taken by each child of an element info.
+	 */
+	private final int childWeight;
+
+	/**
+	 * The space limit to return to, when no parent needs a bigger one.
+	 */
+	private int budget;
+
+	/**
+	 * The number of elements closed to make space in this cache.
+	 */
+	private long evictions;
+
 	/**
 	 * Constructs a new element cache of the given size.
 	 */
 	public ElementCache(int size) {
-		super(size);
+		this(size, 0);
 	}
 
 	/**
 	 * Constructs a new element cache of the given size.
 	 */
 	public ElementCache(int size, int overflow) {
-		super(size, overflow);
+		this(size, overflow, 1, 0);
+	}
+
+	/**
+	 * Constructs a new element cache of the given space budget, where each
+	 * element info is charged <code>entryWeight</code> plus
+	 * <code>childWeight</code> per child.
+	 * 
+	 * @since 5.0
+	 */
+	public ElementCache(int budget, int overflow, int entryWeight,
+			int childWeight) {
+		super(budget, overflow);
+		this.entryWeight = entryWeight;
+		this.childWeight = childWeight;
+		this.budget = budget;
+	}
+
+	/*
+	 * Returns the estimated space taken by the given element info.
+	 */
+	@Override
+	protected int spaceFor(Object value) {
+		if (value instanceof ILRUCacheable) {
+			return super.spaceFor(value);
+		}
+		int space = entryWeight;
+		if (childWeight != 0 && value instanceof ModelElementInfo) {
+			space += childWeight * ((ModelElementInfo) value).size();
+		}
+		return space;
 	}
 
 	/**
@@ -60,6 +111,7 @@ public class ElementCache extends OverflowingLRUCache {
 				} else {
 					element.close();
 				}
+				++evictions;
 				return true;
 			}
 		} catch (ModelException npe) {
@@ -74,7 +126,8 @@ public class ElementCache extends OverflowingLRUCache {
 	 */
 	public void ensureSpaceLimit(int childrenSize, IModelElement parent) {
 		// ensure the children can be put without closing other elements
-		int spaceNeeded = 1 + (int) ((1 + fLoadFactor) * (childrenSize + fOverflow));
+		int spaceNeeded = 1 + (int) ((1 + fLoadFactor) * ((long) childrenSize
+				* entryWeight + fOverflow));
 		if (fSpaceLimit < spaceNeeded) {
 			// parent is being opened with more children than the space limit
 			shrink(); // remove overflow
@@ -88,7 +141,40 @@ public class ElementCache extends OverflowingLRUCache {
 	 */
 	@Override
 	protected LRUCache newInstance(int size, int overflow) {
-		return new ElementCache(size, overflow);
+		return new ElementCache(size, overflow, entryWeight, childWeight);
+	}
+
+	/**
+	 * Returns the space limit this cache returns to, when no parent needs a
+	 * bigger one.
+	 * 
+	 * @since 5.0
+	 */
+	public int getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Changes the space limit this cache returns to. The space limit is
+	 * changed immediately, unless it was increased for the children of a
+	 * parent, closing the least recently used elements as needed.
+	 * 
+	 * @since 5.0
+	 */
+	public void setBudget(int budget) {
+		this.budget = budget;
+		if (this.spaceLimitParent == null || budget > fSpaceLimit) {
+			setSpaceLimit(budget);
+		}
+	}
+
+	/**
+	 * Returns the number of elements closed to make space in this cache.
+	 * 
+	 * @since 5.0
+	 */
+	public long getEvictions() {
+		return evictions;
 	}
 
 	/*
@@ -102,4 +188,14 @@ public class ElementCache extends OverflowingLRUCache {
 		}
 	}
 
+	/**
+	 * If the given parent was the one that increased the space limit, reset the
+	 * space limit to the budget.
+	 * 
+	 * @since 5.0
+	 */
+	public void resetSpaceLimit(IModelElement parent) {
+		resetSpaceLimit(budget, parent);
+	}
+
 }
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+/**
+ * Watches the heap usage measured after the garbage collections. The
+ * {@link ModelCache} checks it to give memory back when the heap is nearly
+ * full and to take it again when there is enough room.
+ */
+class MemoryPressureMonitor implements NotificationListener {
+
+	/**
+	 * The part of a heap pool which should be used after a collection to
+	 * report the memory pressure, unless a threshold is already set for the
+	 * pool.
+	 */
+	static final double HIGH_USAGE = 0.85;
+
+	/**
+	 * The part of a heap pool below which the pressure is over.
+	 */
+	static final double LOW_USAGE = 0.6;
+
+	private final List<MemoryPoolMXBean> pools = new ArrayList<MemoryPoolMXBean>();
+	private NotificationEmitter emitter;
+	private volatile boolean exceeded;
+
+	void start() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() != MemoryType.HEAP
+					|| !pool.isCollectionUsageThresholdSupported()) {
+				continue;
+			}
+			final long max = pool.getUsage().getMax();
+			if (max <= 0) {
+				continue;
+			}
+			if (pool.getCollectionUsageThreshold() == 0) {
+				pool.setCollectionUsageThreshold((long) (max * HIGH_USAGE));
+			}
+			pools.add(pool);
+		}
+		if (!pools.isEmpty()) {
+			emitter = (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+			emitter.addNotificationListener(this, null, null);
+		}
+	}
+
+	void stop() {
+		if (emitter != null) {
+			try {
+				emitter.removeNotificationListener(this);
+			} catch (ListenerNotFoundException e) {
+				// ignore
+			}
+			emitter = null;
+		}
+		pools.clear();
+	}
+
+	public void handleNotification(Notification notification, Object handback) {
+		if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED
+				.equals(notification.getType())) {
+			exceeded = true;
+		}
+	}
+
+	/**
+	 * Answers if a collection threshold was exceeded since the previous call.
+	 */
+	boolean takePressure() {
+		if (exceeded) {
+			exceeded = false;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Answers if all the watched pools are used below {@link #LOW_USAGE} after
+	 * the last collections.
+	 */
+	boolean isRelieved() {
+		if (pools.isEmpty()) {
+			return false;
+		}
+		for (MemoryPoolMXBean pool : pools) {
+			final MemoryUsage usage = pool.getCollectionUsage();
+			if (usage == null || usage.getMax() <= 0
+					|| usage.getUsed() > usage.getMax() * LOW_USAGE) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -39,6 +39,39 @@ public class ModelCache {
 	public static final int DEFAULT_CHILDREN_SIZE = 500 * 20; // average 20
 	// children per
 	// openable
+	/**
+	 * Estimated space taken by the info of a project fragment, in bytes.
+	 */
+	static final int ROOT_WEIGHT = 2590;
+	/**
+	 * Estimated space taken by the info of a script folder, in bytes.
+	 */
+	static final int PKG_WEIGHT = 1782;
+	/**
+	 * Estimated space taken by the info of an openable, not counting its
+	 * children, in bytes. With the {@link #MEMBER_WEIGHT} of 20 children it
+	 * gives the 6629 bytes measured per openable.
+	 */
+	static final int OPENABLE_WEIGHT = 1029;
+	/**
+	 * Estimated space retained by a member of an openable, in bytes.
+	 */
+	static final int MEMBER_WEIGHT = 280;
+	/**
+	 * Estimated space retained by a child handle of a project fragment or a
+	 * script folder, in bytes.
+	 */
+	static final int HANDLE_WEIGHT = 64;
+	/**
+	 * The smallest part of the default budget the caches are reduced to under
+	 * memory pressure.
+	 */
+	static final double MIN_BUDGET_RATIO = 0.125;
+	/**
+	 * How often (in the number of infos put) to check if the memory pressure
+	 * is over, must be a power of 2.
+	 */
+	private static final int RELIEF_CHECK_INTERVAL = 1024;
 	/**
 	 * Active script Model Info
 	 */
@@ -60,9 +93,32 @@ public class ModelCache {
 	 */
 	protected ElementCache openableCache;
 	/**
-	 * Cache of open children of openable script Model elements
+	 * Cache of open children of openable script Model elements. It is bounded
+	 * by {@link #childrenLimit}: when it is exceeded the least recently used
+	 * openables are closed together with their children.
 	 */
 	protected Map childrenCache;
+	/**
+	 * The default budgets of the caches, for the budget ratio of 1.
+	 */
+	private final int rootBudget;
+	private final int pkgBudget;
+	private final int openableBudget;
+	private final int childrenBudget;
+	/**
+	 * The maximum number of infos in the {@link #childrenCache}.
+	 */
+	private int childrenLimit;
+	/**
+	 * The part of the default budgets the caches are allowed to use.
+	 */
+	private double budgetRatio = 1;
+	private int putCount;
+	private MemoryPressureMonitor memoryMonitor;
+
+	private final long[] hits = new long[ModelCacheStatistics.KIND_COUNT];
+	private final long[] misses = new long[ModelCacheStatistics.KIND_COUNT];
+	private long childrenEvictions;
 
 	public ModelCache() {
 		// set the size of the caches in function of the maximum amount of
@@ -88,11 +144,50 @@ public class ModelCache {
 		// (e.g. during
 		// delta
 		// processing)
-		this.rootCache = new ElementCache((int) (DEFAULT_ROOT_SIZE * ratio));
-		this.pkgCache = new ElementCache((int) (DEFAULT_PKG_SIZE * ratio));
-		this.openableCache = new ElementCache(
-				(int) (DEFAULT_OPENABLE_SIZE * ratio));
-		this.childrenCache = new HashMap((int) (DEFAULT_CHILDREN_SIZE * ratio));
+		// the entries are charged by their estimated size in bytes, so the
+		// budgets keep the memory the former element counts were sized for
+		this.rootBudget = budget(DEFAULT_ROOT_SIZE, ROOT_WEIGHT, ratio);
+		this.pkgBudget = budget(DEFAULT_PKG_SIZE, PKG_WEIGHT, ratio);
+		this.openableBudget = budget(DEFAULT_OPENABLE_SIZE, OPENABLE_WEIGHT
+				+ 20 * MEMBER_WEIGHT, ratio);
+		this.childrenBudget = budget(DEFAULT_CHILDREN_SIZE, 1, ratio);
+		this.rootCache = new ElementCache(rootBudget, 0, ROOT_WEIGHT,
+				HANDLE_WEIGHT);
+		this.pkgCache = new ElementCache(pkgBudget, 0, PKG_WEIGHT,
+				HANDLE_WEIGHT);
+		this.openableCache = new ElementCache(openableBudget, 0,
+				OPENABLE_WEIGHT, MEMBER_WEIGHT);
+		this.childrenLimit = childrenBudget;
+		this.childrenCache = new HashMap(childrenBudget);
+	}
+
+	private static int budget(int size, int weight, double ratio) {
+		return (int) Math.min(Integer.MAX_VALUE, Math.max(1, size * weight
+				* ratio));
+	}
+
+	/**
+	 * Starts reducing the budget of the caches under memory pressure.
+	 * 
+	 * @since 5.0
+	 */
+	public void startMemoryMonitor() {
+		if (memoryMonitor == null) {
+			memoryMonitor = new MemoryPressureMonitor();
+			memoryMonitor.start();
+		}
+	}
+
+	/**
+	 * Stops watching the memory pressure.
+	 * 
+	 * @since 5.0
+	 */
+	public void stopMemoryMonitor() {
+		if (memoryMonitor != null) {
+			memoryMonitor.stop();
+			memoryMonitor = null;
+		}
 	}
 
 	/**
@@ -105,17 +200,30 @@ public class ModelCache {
 		case IModelElement.SCRIPT_PROJECT:
 			return this.projectCache.get(element);
 		case IModelElement.PROJECT_FRAGMENT:
-			return this.rootCache.get(element);
+			return count(ModelCacheStatistics.PROJECT_FRAGMENTS,
+					this.rootCache.get(element));
 		case IModelElement.SCRIPT_FOLDER:
-			return this.pkgCache.get(element);
+			return count(ModelCacheStatistics.SCRIPT_FOLDERS,
+					this.pkgCache.get(element));
 		case IModelElement.SOURCE_MODULE:
 		case IModelElement.BINARY_MODULE:
-			return this.openableCache.get(element);
+			return count(ModelCacheStatistics.OPENABLES,
+					this.openableCache.get(element));
 		default:
-			return this.childrenCache.get(element);
+			return count(ModelCacheStatistics.CHILDREN,
+					this.childrenCache.get(element));
 		}
 	}
 
+	private Object count(int kind, Object info) {
+		if (info != null) {
+			++hits[kind];
+		} else {
+			++misses[kind];
+		}
+		return info;
+	}
+
 	/**
 	 * Returns the info for this element without disturbing the cache ordering.
 	 */
@@ -141,6 +249,7 @@ public class ModelCache {
 	 * Remember the info for the element.
 	 */
 	protected void putInfo(IModelElement element, Object info) {
+		checkMemoryPressure();
 		switch (element.getElementType()) {
 		case IModelElement.SCRIPT_MODEL:
 			this.modelInfo = (ModelInfo) info;
@@ -166,7 +275,114 @@ public class ModelCache {
 			break;
 		default:
 			this.childrenCache.put(element, info);
+			if (this.childrenCache.size() > this.childrenLimit) {
+				trimChildren();
+			}
+		}
+	}
+
+	/*
+	 * Closes the least recently used openables, so their children are removed
+	 * from the children cache, until it is filled to the load factor of the
+	 * openable cache.
+	 */
+	private void trimChildren() {
+		final int target = (int) ((1 - this.openableCache.getLoadFactor()) * this.childrenLimit);
+		final int sizeBefore = this.childrenCache.size();
+		while (this.childrenCache.size() > target) {
+			if (!this.openableCache.removeEldest()) {
+				break;
+			}
+		}
+		this.childrenEvictions += Math.max(0, sizeBefore
+				- this.childrenCache.size());
+	}
+
+	/*
+	 * Halves the budget of the caches when the heap was nearly full after a
+	 * collection, doubles it back when the memory pressure is over.
+	 */
+	private void checkMemoryPressure() {
+		if (this.memoryMonitor == null) {
+			return;
+		}
+		if (this.memoryMonitor.takePressure()) {
+			if (this.budgetRatio > MIN_BUDGET_RATIO) {
+				setBudgetRatio(Math.max(MIN_BUDGET_RATIO,
+						this.budgetRatio / 2));
+			}
+		} else if (this.budgetRatio < 1
+				&& (++this.putCount & (RELIEF_CHECK_INTERVAL - 1)) == 0
+				&& this.memoryMonitor.isRelieved()) {
+			setBudgetRatio(Math.min(1, this.budgetRatio * 2));
+		}
+	}
+
+	/**
+	 * Changes the part of the default budgets the caches are allowed to use,
+	 * closing the least recently used elements if they are reduced.
+	 * 
+	 * @since 5.0
+	 */
+	public void setBudgetRatio(double ratio) {
+		if (ModelManager.VERBOSE) {
+			System.out.println("Model cache budget ratio " + this.budgetRatio //$NON-NLS-1$
+					+ " -> " + ratio); //$NON-NLS-1$
 		}
+		this.budgetRatio = ratio;
+		this.childrenLimit = Math.max(1, (int) (this.childrenBudget * ratio));
+		if (this.childrenCache.size() > this.childrenLimit) {
+			trimChildren();
+		}
+		this.openableCache.setBudget(Math.max(1,
+				(int) (this.openableBudget * ratio)));
+		this.pkgCache.setBudget(Math.max(1, (int) (this.pkgBudget * ratio)));
+		this.rootCache.setBudget(Math.max(1, (int) (this.rootBudget * ratio)));
+	}
+
+	/**
+	 * Returns the part of the default budgets the caches are allowed to use.
+	 * 
+	 * @since 5.0
+	 */
+	public double getBudgetRatio() {
+		return this.budgetRatio;
+	}
+
+	/**
+	 * Returns the estimated number of the source modules which could be
+	 * opened without closing the open ones.
+	 *
+	 * @since 5.0
+	 */
+	public int getOpenableRoom() {
+		final int free = this.openableCache.getSpaceLimit()
+				- this.openableCache.getCurrentSpace();
+		return Math.max(0, free / (OPENABLE_WEIGHT + 20 * MEMBER_WEIGHT));
+	}
+
+	/**
+	 * Returns the snapshot of the hit, miss and eviction counters.
+	 * 
+	 * @since 5.0
+	 */
+	public ModelCacheStatistics getStatistics() {
+		final ElementCache[] caches = { this.rootCache, this.pkgCache,
+				this.openableCache };
+		final long[] evictions = new long[ModelCacheStatistics.KIND_COUNT];
+		final long[] space = new long[ModelCacheStatistics.KIND_COUNT];
+		final long[] spaceLimit = new long[ModelCacheStatistics.KIND_COUNT];
+		for (int i = 0; i < caches.length; ++i) {
+			evictions[i] = caches[i].getEvictions();
+			space[i] = caches[i].getCurrentSpace();
+			spaceLimit[i] = caches[i].getSpaceLimit();
+		}
+		evictions[ModelCacheStatistics.CHILDREN] = this.childrenEvictions;
+		space[ModelCacheStatistics.CHILDREN] = this.childrenCache.size();
+		spaceLimit[ModelCacheStatistics.CHILDREN] = this.childrenLimit;
+		return new ModelCacheStatistics(this.hits.clone(),
+				this.misses.clone(), evictions, space, spaceLimit,
+				this.budgetRatio);
 	}
 
 	/**
@@ -179,15 +395,15 @@ public class ModelCache {
 			break;
 		case IModelElement.SCRIPT_PROJECT:
 			this.projectCache.remove(element);
-			this.rootCache.resetSpaceLimit(DEFAULT_ROOT_SIZE, element);
+			this.rootCache.resetSpaceLimit(element);
 			break;
 		case IModelElement.PROJECT_FRAGMENT:
 			this.rootCache.remove(element);
-			this.pkgCache.resetSpaceLimit(DEFAULT_PKG_SIZE, element);
+			this.pkgCache.resetSpaceLimit(element);
 			break;
 		case IModelElement.SCRIPT_FOLDER:
 			this.pkgCache.remove(element);
-			this.openableCache.resetSpaceLimit(DEFAULT_OPENABLE_SIZE, element);
+			this.openableCache.resetSpaceLimit(element);
 			break;
 		case IModelElement.SOURCE_MODULE:
 		case IModelElement.BINARY_MODULE:
@@ -223,6 +439,13 @@ public class ModelCache {
 		buffer.append("]: "); //$NON-NLS-1$
 		buffer.append(nf.format(this.openableCache.fillingRatio()));
 		buffer.append("%\n"); //$NON-NLS-1$
+		buffer.append(prefix);
+		buffer.append("Children cache["); //$NON-NLS-1$
+		buffer.append(this.childrenLimit);
+		buffer.append("]: "); //$NON-NLS-1$
+		buffer.append(nf.format(this.childrenCache.size() * 100.0
+				/ this.childrenLimit));
+		buffer.append("%\n"); //$NON-NLS-1$
 		return buffer.toString();
 	}
 
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core;
+
+import java.text.NumberFormat;
+
+/**
+ * Snapshot of the {@link ModelCache} counters, as returned by
+ * {@link ModelManager#getCacheStatistics()}. The values are indexed by the
+ * cache kind: {@link #PROJECT_FRAGMENTS}, {@link #SCRIPT_FOLDERS},
+ * {@link #OPENABLES} and {@link #CHILDREN}.
+ *
+ * @since 5.0
+ */
+public final class ModelCacheStatistics {
+
+	public static final int PROJECT_FRAGMENTS = 0;
+	public static final int SCRIPT_FOLDERS = 1;
+	public static final int OPENABLES = 2;
+	public static final int CHILDREN = 3;
+
+	static final int KIND_COUNT = 4;
+
+	private static final String[] NAMES = { "Root", "Folder", "Openable", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			"Children" }; //$NON-NLS-1$
+
+	private final long[] hits;
+	private final long[] misses;
+	private final long[] evictions;
+	private final long[] space;
+	private final long[] spaceLimit;
+	private final double budgetRatio;
+
+	ModelCacheStatistics(long[] hits, long[] misses, long[] evictions,
+			long[] space, long[] spaceLimit, double budgetRatio) {
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+		this.space = space;
+		this.spaceLimit = spaceLimit;
+		this.budgetRatio = budgetRatio;
+	}
+
+	/**
+	 * Returns the number of the lookups answered from the cache.
+	 */
+	public long getHits(int kind) {
+		return hits[kind];
+	}
+
+	/**
+	 * Returns the number of the lookups of the elements which were not open.
+	 */
+	public long getMisses(int kind) {
+		return misses[kind];
+	}
+
+	/**
+	 * Returns the part of the lookups answered from the cache, or 0 if there
+	 * was no lookup yet.
+	 */
+	public double getHitRatio(int kind) {
+		final long total = hits[kind] + misses[kind];
+		return total != 0 ? (double) hits[kind] / total : 0;
+	}
+
+	/**
+	 * Returns the number of the elements closed to make space in the cache.
+	 */
+	public long getEvictions(int kind) {
+		return evictions[kind];
+	}
+
+	/**
+	 * Returns the estimated space taken by the cached infos, in bytes for the
+	 * element caches and in elements for the {@link #CHILDREN} cache.
+	 */
+	public long getSpace(int kind) {
+		return space[kind];
+	}
+
+	/**
+	 * Returns the current space limit, in the units of {@link #getSpace(int)}.
+	 */
+	public long getSpaceLimit(int kind) {
+		return spaceLimit[kind];
+	}
+
+	/**
+	 * Returns the part of the default budget the cache is currently allowed to
+	 * use, 1 unless the budget was reduced because of memory pressure.
+	 */
+	public double getBudgetRatio() {
+		return budgetRatio;
+	}
+
+	@Override
+	public String toString() {
+		final NumberFormat nf = NumberFormat.getPercentInstance();
+		final StringBuilder sb = new StringBuilder();
+		sb.append("Budget: ").append(nf.format(budgetRatio)); //$NON-NLS-1$
+		for (int i = 0; i < KIND_COUNT; ++i) {
+			sb.append('\n').append(NAMES[i]);
+			sb.append(" cache[").append(space[i]); //$NON-NLS-1$
+			sb.append('/').append(spaceLimit[i]);
+			sb.append("]: hits=").append(hits[i]); //$NON-NLS-1$
+			sb.append(" misses=").append(misses[i]); //$NON-NLS-1$
+			sb.append(" (").append(nf.format(getHitRatio(i))); //$NON-NLS-1$
+			sb.append(") evictions=").append(evictions[i]); //$NON-NLS-1$
+		}
+		return sb.toString();
+	}
+
+}
@@ -67,6 +67,7 @@ import org.eclipse.dltk.core.BuildpathContainerInitializer;
 import org.eclipse.dltk.core.DLTKContentTypeManager;
 import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.core.DLTKLanguageManager;
+import org.eclipse.dltk.core.ElementChangedEvent;
 import org.eclipse.dltk.core.IAccessRule;
 import org.eclipse.dltk.core.IArchive;
 import org.eclipse.dltk.core.IBuildpathAttribute;
@@ -92,11 +93,15 @@ import org.eclipse.dltk.core.environment.IFileHandle;
 import org.eclipse.dltk.core.search.indexing.IndexManager;
 import org.eclipse.dltk.internal.core.builder.ScriptBuilder;
 import org.eclipse.dltk.internal.core.caching.DLTKCoreCache;
+import org.eclipse.dltk.internal.core.caching.PersistentASTCache;
 import org.eclipse.dltk.internal.core.search.DLTKWorkspaceScope;
 import org.eclipse.dltk.internal.core.search.ProjectIndexerManager;
+import org.eclipse.dltk.internal.core.search.matching.MatchLocatorWorkers;
 import org.eclipse.dltk.internal.core.util.Messages;
 import org.eclipse.dltk.internal.core.util.Util;
 import org.eclipse.dltk.internal.core.util.WeakHashSet;
+import org.eclipse.dltk.ti.GoalCache;
+import org.eclipse.dltk.ti.GoalEvaluationWorkers;
 import org.eclipse.osgi.util.NLS;
 import org.osgi.service.prefs.BackingStoreException;
 
@@ -385,12 +390,19 @@ public class ModelManager implements ISaveParticipant {
 	// Preferences
 	HashSet<String> optionNames = new HashSet<String>(20);
 	Hashtable<String, String> optionsCache;
+	private static final int POOL_COUNT = 16;
 	/*
 	 * Pools of symbols used in the model. Used as a replacement for
 	 * String#intern() that could prevent garbage collection of strings on some
-	 * Interpreters.
+	 * Interpreters. Striped by the hash code, each pool is guarded by its own
+	 * monitor, so the concurrent structure builders rarely contend.
 	 */
-	private WeakHashSet stringSymbols = new WeakHashSet(5);
+	private final WeakHashSet[] stringSymbols = newPools();
+	/*
+	 * Pools of the canonical instances of the handles which do not change
+	 * after they are created, striped the same way.
+	 */
+	private final WeakHashSet[] handleSymbols = newPools();
 	Map workspaceScope = null;
 	public static final String DELTA_LISTENER_PERF = DLTKCore.PLUGIN_ID
 			+ "/perf/deltalistener"; //$NON-NLS-1$
@@ -455,6 +467,15 @@ public class ModelManager implements ISaveParticipant {
 		return this.cache.getInfo(element);
 	}
 
+	/**
+	 * Returns the snapshot of the model cache counters.
+	 * 
+	 * @since 5.0
+	 */
+	public synchronized ModelCacheStatistics getCacheStatistics() {
+		return this.cache.getStatistics();
+	}
+
 	/**
 	 * Returns the info for this element without disturbing the cache ordering.
 	 */
@@ -1115,16 +1136,64 @@ public class ModelManager implements ISaveParticipant {
 		return info.useCount;
 	}
 
-	public synchronized String intern(String s) {
+	public String intern(String s) {
 		// make sure to copy the string (so that it doesn't hold on the
 		// underlying char[] that might be much bigger than necessary)
-		return (String) this.stringSymbols.add(s);
+		return (String) intern(this.stringSymbols, s);
+	}
+
+	/**
+	 * Returns the canonical instance of the handle, so the equal handles
+	 * retained by the element infos and the search results share the same
+	 * instance. The handle must not be changed afterwards, e.g. its occurrence
+	 * count must be already resolved.
+	 * 
+	 * @since 5.0
+	 */
+	@SuppressWarnings("unchecked")
+	public <E extends IModelElement> E intern(E handle) {
+		if (handle == null) {
+			return null;
+		}
+		return (E) intern(this.handleSymbols, handle);
+	}
+
+	/**
+	 * Returns the number of the canonical handles.
+	 * 
+	 * @since 5.0
+	 */
+	public int getHandleCount() {
+		int count = 0;
+		for (WeakHashSet pool : this.handleSymbols) {
+			synchronized (pool) {
+				count += pool.elementSize;
+			}
+		}
+		return count;
+	}
+
+	private static WeakHashSet[] newPools() {
+		final WeakHashSet[] pools = new WeakHashSet[POOL_COUNT];
+		for (int i = 0; i < POOL_COUNT; ++i) {
+			pools[i] = new WeakHashSet(5);
+		}
+		return pools;
+	}
+
+	private static Object intern(WeakHashSet[] pools, Object o) {
+		final int hash = o.hashCode();
+		final WeakHashSet pool = pools[(hash ^ (hash >>> 16)) & (POOL_COUNT - 1)];
+		synchronized (pool) {
+			return pool.add(o);
+		}
 	}
 
 	public void startup() throws CoreException {
 		try {
 			// initialize Model model cache
 			this.cache = new ModelCache();
+			this.cache.startMemoryMonitor();
 			// request state folder creation (workaround 19885)
 			DLTKCore.getPlugin().getStateLocation();
 			// Initialize eclipse preferences
@@ -1218,8 +1287,26 @@ public class ModelManager implements ISaveParticipant {
 		getPluginPreferences(pluginId).addPreferenceChangeListener(listener);
 	}
 
+	private static int getThreadCount(String optionName) {
+		return getIntOption(optionName, 0);
+	}
+
+	private static int getIntOption(String optionName, int defaultValue) {
+		final String value = DLTKCore.getOption(optionName);
+		if (value != null) {
+			try {
+				return Integer.parseInt(value.trim());
+			} catch (NumberFormatException e) {
+				// fall through
+			}
+		}
+		return defaultValue;
+	}
+
 	private void startIndexing() {
 		if (indexManager != null) {
+			indexManager
+					.setWorkerCount(getThreadCount(DLTKCore.INDEXER_THREADS));
 			indexManager.reset();
 			// create contributed indexers in a job, so
 			// dltk.core initialization completes earlier.
@@ -1447,12 +1534,35 @@ public class ModelManager implements ISaveParticipant {
 		}
 		IWorkspace workspace = ResourcesPlugin.getWorkspace();
 		workspace.removeResourceChangeListener(this.deltaState);
+		this.deltaState.coalescer.stop();
 		DLTKContentTypeManager.uninstallListener();
 		workspace.removeSaveParticipant(DLTKCore.getDefault());
 
 		if (sourceModuleInfoCache != null) {
 			sourceModuleInfoCache.stop();
 		}
+		if (this.cache != null) {
+			this.cache.stopMemoryMonitor();
+		}
+		synchronized (this) {
+			if (structureBuilder != null) {
+				structureBuilder.shutdown();
+				structureBuilder = null;
+			}
+			if (matchLocatorWorkers != null) {
+				matchLocatorWorkers.shutdown();
+				matchLocatorWorkers = null;
+			}
+			if (goalCache != null) {
+				DLTKCore.removeElementChangedListener(goalCache);
+				goalCache = null;
+			}
+			if (goalEvaluationWorkers != null) {
+				goalEvaluationWorkers.shutdown();
+				goalEvaluationWorkers = null;
+			}
+		}
+		PersistentASTCache.shutdown();
 		if (this.indexManager != null) { // no more indexing
 			this.indexManager.shutdown();
 		}
@@ -3047,6 +3157,98 @@ public class ModelManager implements ISaveParticipant {
 		return sourceModuleInfoCache;
 	}
 
+	private ParallelStructureBuilder structureBuilder = null;
+
+	/**
+	 * Returns the builder of the external source modules structure.
+	 * 
+	 * @since 5.0
+	 */
+	public synchronized ParallelStructureBuilder getStructureBuilder() {
+		if (structureBuilder == null) {
+			structureBuilder = new ParallelStructureBuilder(
+					getThreadCount(DLTKCore.STRUCTURE_BUILDER_THREADS));
+		}
+		return structureBuilder;
+	}
+
+	private MatchLocatorWorkers matchLocatorWorkers = null;
+
+	/**
+	 * Returns the workers parsing the possible matches of the searches.
+	 * 
+	 * @since 5.0
+	 */
+	public synchronized MatchLocatorWorkers getMatchLocatorWorkers() {
+		if (matchLocatorWorkers == null) {
+			matchLocatorWorkers = new MatchLocatorWorkers(getIntOption(
+					DLTKCore.SEARCH_THREADS, 1));
+		}
+		return matchLocatorWorkers;
+	}
+
+	/**
+	 * Replaces the workers parsing the possible matches and stops the current
+	 * ones, the value of <code>null</code> restores the workers configured by
+	 * the {@link DLTKCore#SEARCH_THREADS} option. For testing purposes only,
+	 * must not be called while searching.
+	 *
+	 * @since 5.0
+	 */
+	public synchronized void setMatchLocatorWorkers(MatchLocatorWorkers workers) {
+		if (matchLocatorWorkers != null) {
+			matchLocatorWorkers.shutdown();
+		}
+		matchLocatorWorkers = workers;
+	}
+
+	private GoalCache goalCache = null;
+	private boolean goalCacheInitialized = false;
+
+	/**
+	 * Returns the cache of the goal results of the type inference shared by
+	 * the inferencers or <code>null</code> if it is disabled by the
+	 * {@link DLTKCore#TYPE_INFERENCE_CACHE_SIZE} option.
+	 * 
+	 * @since 5.0
+	 */
+	public synchronized GoalCache getGoalCache() {
+		if (!goalCacheInitialized) {
+			goalCacheInitialized = true;
+			final int size = getIntOption(DLTKCore.TYPE_INFERENCE_CACHE_SIZE,
+					GoalCache.DEFAULT_SIZE);
+			if (size > 0) {
+				goalCache = new GoalCache(size);
+				DLTKCore.addElementChangedListener(goalCache,
+						ElementChangedEvent.POST_CHANGE
+								| ElementChangedEvent.POST_RECONCILE);
+			}
+		}
+		return goalCache;
+	}
+
+	private GoalEvaluationWorkers goalEvaluationWorkers = null;
+	private boolean goalEvaluationWorkersInitialized = false;
+
+	/**
+	 * Returns the workers initializing the goals of the type inference in
+	 * parallel or <code>null</code> if the goals should be evaluated
+	 * sequentially, see {@link DLTKCore#TYPE_INFERENCE_THREADS}.
+	 * 
+	 * @since 5.0
+	 */
+	public synchronized GoalEvaluationWorkers getGoalEvaluationWorkers() {
+		if (!goalEvaluationWorkersInitialized) {
+			goalEvaluationWorkersInitialized = true;
+			final int threads = getIntOption(DLTKCore.TYPE_INFERENCE_THREADS,
+					1);
+			if (threads != 1) {
+				goalEvaluationWorkers = new GoalEvaluationWorkers(threads);
+			}
+		}
+		return goalEvaluationWorkers;
+	}
+
 	public static UserLibraryManager getUserLibraryManager() {
 		if (MANAGER.userLibraryManager == null) {
 			UserLibraryManager libraryManager = new UserLibraryManager();
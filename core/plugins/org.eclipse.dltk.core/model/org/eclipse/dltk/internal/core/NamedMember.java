@@ -29,7 +29,9 @@ public abstract class NamedMember extends Member {
 
 	public NamedMember(ModelElement parent, String name) {
 		super(parent);
-		this.name = name;
+		// the names are shared by the handles of the same members
+		this.name = name != null ? ModelManager.getModelManager().intern(name)
+				: null;
 	}
 
 	public String getElementName() {
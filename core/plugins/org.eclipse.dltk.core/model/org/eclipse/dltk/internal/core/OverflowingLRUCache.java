@@ -223,6 +223,29 @@ public abstract class OverflowingLRUCache extends LRUCache {
 		return false;
 	}
 
+	/**
+	 * Closes and removes the least recently used element which can be closed,
+	 * leaving the most recently used one in place. Returns true if an element
+	 * was removed, false otherwise.
+	 */
+	public boolean removeEldest() {
+		LRUCacheEntry entry = fEntryQueueTail;
+		try {
+			fTimestampsOn = false;
+			while (entry != null && entry != fEntryQueue) {
+				final LRUCacheEntry previous = entry._fPrevious;
+				this.privateRemoveEntry(entry, false, false);
+				if (fEntryTable.get(entry._fKey) == null) {
+					return true;
+				}
+				entry = previous;
+			}
+		} finally {
+			fTimestampsOn = true;
+		}
+		return false;
+	}
+
 	/**
 	 * Returns a new instance of the reciever.
 	 */
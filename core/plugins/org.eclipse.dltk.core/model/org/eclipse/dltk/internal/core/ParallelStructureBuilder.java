@@ -0,0 +1,269 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.ModelException;
+
+/**
+ * Builds the structure of the external source modules in parallel.
+ *
+ * <p>
+ * Each module is parsed by one of the worker threads into its own map of the
+ * element infos, exactly as {@link Openable#generateInfos} would do for the
+ * closed module. When all the modules are built the infos are published into
+ * the {@link ModelCache} at once, while holding the lock of the
+ * {@link ModelManager}, so the other threads see either none or all of them.
+ * The modules opened meanwhile by the other threads are kept as they are.
+ *
+ * <p>
+ * The number of the workers is defined by the
+ * {@link DLTKCore#STRUCTURE_BUILDER_THREADS} option, with a single worker the
+ * modules are built sequentially by the calling thread.
+ */
+public class ParallelStructureBuilder {
+
+	/**
+	 * The infos of the module built by a worker.
+	 */
+	private static class Built {
+		final AbstractExternalSourceModule module;
+		final HashMap newElements;
+
+		Built(AbstractExternalSourceModule module, HashMap newElements) {
+			this.module = module;
+			this.newElements = newElements;
+		}
+	}
+
+	private final int threads;
+	private ExecutorService workers;
+
+	public ParallelStructureBuilder(int threads) {
+		this.threads = threads > 0 ? threads : Runtime.getRuntime()
+				.availableProcessors();
+	}
+
+	/**
+	 * Returns the number of the worker threads.
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Builds the structure of the specified modules which are not open yet
+	 * and puts their infos into the model cache. The modules which could not
+	 * be opened are skipped, they report their problems when opened on their
+	 * own.
+	 *
+	 * @return the number of the opened modules
+	 * @throws OperationCanceledException
+	 *             if the monitor is canceled, nothing is published then
+	 */
+	public int build(List<? extends AbstractExternalSourceModule> modules,
+			IProgressMonitor monitor) {
+		final ModelManager manager = ModelManager.getModelManager();
+		final List<AbstractExternalSourceModule> closed = new ArrayList<AbstractExternalSourceModule>();
+		for (AbstractExternalSourceModule module : modules) {
+			if (!module.isWorkingCopy() && manager.getInfo(module) == null) {
+				closed.add(module);
+			}
+		}
+		// don't build more than the cache could hold
+		final int room;
+		synchronized (manager) {
+			room = manager.cache.getOpenableRoom();
+		}
+		while (closed.size() > room) {
+			closed.remove(closed.size() - 1);
+		}
+		if (closed.isEmpty()) {
+			return 0;
+		}
+		if (monitor != null) {
+			monitor.beginTask(Messages.ParallelStructureBuilder_building,
+					closed.size());
+		}
+		try {
+			final List<Built> results = threads == 1 || closed.size() == 1 ? buildSequentially(
+					closed, monitor) : buildInParallel(closed, monitor);
+			return publish(manager, results);
+		} finally {
+			if (monitor != null) {
+				monitor.done();
+			}
+		}
+	}
+
+	private List<Built> buildSequentially(
+			List<AbstractExternalSourceModule> modules, IProgressMonitor monitor) {
+		final List<Built> results = new ArrayList<Built>(modules.size());
+		for (AbstractExternalSourceModule module : modules) {
+			checkCanceled(monitor);
+			final Built built = buildModule(module);
+			if (built != null) {
+				results.add(built);
+			}
+			worked(monitor);
+		}
+		return results;
+	}
+
+	private List<Built> buildInParallel(
+			List<AbstractExternalSourceModule> modules, IProgressMonitor monitor) {
+		final CompletionService<Built> service = new ExecutorCompletionService<Built>(
+				getWorkers());
+		final List<Future<Built>> futures = new ArrayList<Future<Built>>(
+				modules.size());
+		for (final AbstractExternalSourceModule module : modules) {
+			futures.add(service.submit(new Callable<Built>() {
+				public Built call() {
+					return buildModule(module);
+				}
+			}));
+		}
+		final List<Built> results = new ArrayList<Built>(modules.size());
+		try {
+			for (int i = 0; i < futures.size(); ++i) {
+				final Future<Built> future = poll(service, monitor);
+				try {
+					final Built built = future.get();
+					if (built != null) {
+						results.add(built);
+					}
+				} catch (ExecutionException e) {
+					DLTKCore.error("Error building structure", e.getCause()); //$NON-NLS-1$
+				}
+				worked(monitor);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		} finally {
+			for (Future<Built> future : futures) {
+				future.cancel(false);
+			}
+		}
+		return results;
+	}
+
+	/*
+	 * Waits for the next completed module, checking the monitor.
+	 */
+	private static Future<Built> poll(CompletionService<Built> service,
+			IProgressMonitor monitor) throws InterruptedException {
+		for (;;) {
+			checkCanceled(monitor);
+			final Future<Built> future = service.poll(100,
+					TimeUnit.MILLISECONDS);
+			if (future != null) {
+				return future;
+			}
+		}
+	}
+
+	/*
+	 * Builds the infos of the module as Openable.generateInfos() does, the
+	 * parent is expected to be open.
+	 */
+	private static Built buildModule(AbstractExternalSourceModule module) {
+		final HashMap newElements = new HashMap();
+		final OpenableElementInfo info = (OpenableElementInfo) module
+				.createElementInfo();
+		newElements.put(module, info);
+		try {
+			info.setIsStructureKnown(module.buildStructure(info, null,
+					newElements, module.getResource()));
+			return new Built(module, newElements);
+		} catch (ModelException e) {
+			return null;
+		} catch (RuntimeException e) {
+			DLTKCore.error("Error building structure of " //$NON-NLS-1$
+					+ module.getPath(), e);
+			return null;
+		}
+	}
+
+	private static int publish(ModelManager manager, List<Built> results) {
+		int count = 0;
+		synchronized (manager) {
+			for (Built built : results) {
+				// keep the modules opened meanwhile by the other threads
+				if (manager.getInfo(built.module) == null) {
+					manager.putInfos(built.module, built.newElements);
+					++count;
+				}
+			}
+		}
+		return count;
+	}
+
+	private static void checkCanceled(IProgressMonitor monitor) {
+		if (monitor != null && monitor.isCanceled()) {
+			throw new OperationCanceledException();
+		}
+	}
+
+	private static void worked(IProgressMonitor monitor) {
+		if (monitor != null) {
+			monitor.worked(1);
+		}
+	}
+
+	private synchronized ExecutorService getWorkers() {
+		if (workers == null) {
+			workers = new ThreadPoolExecutor(threads, threads, 0L,
+					TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+					new ThreadFactory() {
+						private int threadNumber = 0;
+
+						public Thread newThread(Runnable r) {
+							final Thread thread = new Thread(r,
+									"DLTK Structure Builder #" //$NON-NLS-1$
+											+ (++threadNumber));
+							thread.setDaemon(true);
+							thread.setPriority(Thread.NORM_PRIORITY - 1);
+							return thread;
+						}
+					});
+		}
+		return workers;
+	}
+
+	/**
+	 * Stops the worker threads.
+	 */
+	public synchronized void shutdown() {
+		if (workers != null) {
+			workers.shutdownNow();
+			workers = null;
+		}
+	}
+
+}
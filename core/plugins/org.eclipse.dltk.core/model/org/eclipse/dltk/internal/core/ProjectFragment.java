@@ -31,6 +31,7 @@ import org.eclipse.dltk.core.IModelProvider;
 import org.eclipse.dltk.core.IModelStatusConstants;
 import org.eclipse.dltk.core.IProjectFragment;
 import org.eclipse.dltk.core.IScriptFolder;
+import org.eclipse.dltk.core.ISourceModule;
 import org.eclipse.dltk.core.ModelException;
 import org.eclipse.dltk.core.ScriptModelUtil;
 import org.eclipse.dltk.core.WorkingCopyOwner;
@@ -312,7 +313,8 @@ public class ProjectFragment extends Openable implements IProjectFragment {
 				}
 			}
 		}
-		return new ScriptFolder(this, path);
+		return ModelManager.getModelManager().intern(
+				new ScriptFolder(this, path));
 	}
 
 	public String getElementName() {
@@ -401,6 +403,34 @@ public class ProjectFragment extends Openable implements IProjectFragment {
 						.getResource(), this);
 	}
 
+	/**
+	 * Opens the external source modules of this fragment at once, building
+	 * their structure in parallel by the {@link ParallelStructureBuilder}. The
+	 * modules of the source folders are left as they are, as they could have
+	 * working copies. It is not called by the indexing, which parses the
+	 * modules on its own, so the model of a library is built only when
+	 * requested, by its modules being opened or by this method.
+	 *
+	 * @return the number of the opened modules
+	 * @since 5.0
+	 */
+	public int openSourceModules(IProgressMonitor monitor)
+			throws ModelException {
+		final List<AbstractExternalSourceModule> modules = new ArrayList<AbstractExternalSourceModule>();
+		final IModelElement[] folders = getChildren();
+		for (int i = 0; i < folders.length; ++i) {
+			final ISourceModule[] folderModules = ((IScriptFolder) folders[i])
+					.getSourceModules();
+			for (int j = 0; j < folderModules.length; ++j) {
+				if (folderModules[j] instanceof AbstractExternalSourceModule) {
+					modules.add((AbstractExternalSourceModule) folderModules[j]);
+				}
+			}
+		}
+		return ModelManager.getModelManager().getStructureBuilder()
+				.build(modules, monitor);
+	}
+
 	/*
 	 * Returns the exclusion patterns from the buildpath entry associated with
 	 * this root.
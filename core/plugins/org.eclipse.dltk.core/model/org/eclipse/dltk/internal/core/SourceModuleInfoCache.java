@@ -11,10 +11,14 @@ package org.eclipse.dltk.internal.core;
 
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.SoftReference;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
@@ -32,27 +36,62 @@ import org.eclipse.dltk.core.ISourceModuleInfoCache;
 /**
  * Used to cache some source module information. All information related to
  * source module are removed, then source module are changed.
+ * 
+ * <p>
+ * The lookups are answered from a {@link ConcurrentHashMap} without locking.
+ * The accesses are recorded in a buffer and applied to the access ordered list
+ * of the entries later, under the eviction lock, which is taken by the
+ * modifications, so the least recently used entries are evicted when the
+ * capacity is exceeded.
  */
 public class SourceModuleInfoCache implements ISourceModuleInfoCache,
 		IResourceChangeListener, IResourceDeltaVisitor {
 	@Internal
 	final int capacity = ModelCache.DEFAULT_ROOT_SIZE * 50;
 
+	/**
+	 * The number of the buffered accesses to apply them to the access order.
+	 */
+	private static final int READ_DRAIN_THRESHOLD = 64;
+
 	private final ReferenceQueue<ISourceModuleInfo> queue = new ReferenceQueue<ISourceModuleInfo>();
 
-	@SuppressWarnings("serial")
-	private final Map<ISourceModule, CacheReference> map = new LinkedHashMap<ISourceModule, CacheReference>(
-			16, 0.9f, true) {
-		protected boolean removeEldestEntry(
-				Map.Entry<ISourceModule, CacheReference> eldest) {
-			return size() > capacity;
-		}
-	};
+	private final ConcurrentMap<ISourceModule, CacheReference> map = new ConcurrentHashMap<ISourceModule, CacheReference>(
+			capacity * 4 / 3 + 1, 0.75f, 16);
+
+	/**
+	 * Guards the access ordered list of the entries.
+	 */
+	private final Lock evictionLock = new ReentrantLock();
+
+	/**
+	 * The least recently used entry, guarded by {@link #evictionLock}.
+	 */
+	private CacheReference head;
+
+	/**
+	 * The most recently used entry, guarded by {@link #evictionLock}.
+	 */
+	private CacheReference tail;
+
+	/**
+	 * The number of the linked entries, guarded by {@link #evictionLock}.
+	 */
+	private int linkedCount;
+
+	private final Queue<CacheReference> readBuffer = new ConcurrentLinkedQueue<CacheReference>();
+	private final AtomicInteger readBufferSize = new AtomicInteger();
 
 	private static class CacheReference extends
 			SoftReference<ISourceModuleInfo> {
 		final long modificationStamp;
 		final ISourceModule module;
+		/*
+		 * the links of the access ordered list, guarded by the eviction lock
+		 */
+		CacheReference previous;
+		CacheReference next;
+		boolean linked;
 
 		public CacheReference(ISourceModule module, ISourceModuleInfo referent,
 				ReferenceQueue<? super ISourceModuleInfo> q) {
@@ -84,32 +123,143 @@ public class SourceModuleInfoCache implements ISourceModuleInfoCache,
 		DLTKCore.removePreProcessingResourceChangedListener(this);
 	}
 
+	/*
+	 * Removes the entries which infos were garbage collected. Called under the
+	 * eviction lock.
+	 */
 	private void expungeStaleEntries() {
 		for (CacheReference r; (r = (CacheReference) queue.poll()) != null;) {
 			if (DEBUG) {
 				System.out.println("[Cache] expunge "
 						+ r.module.getElementName());
 			}
-			map.remove(r.module);
+			map.remove(r.module, r);
+			unlink(r);
 		}
 	}
 
-	public synchronized ISourceModuleInfo get(ISourceModule module) {
-		expungeStaleEntries();
-		final CacheReference ref = map.get(module);
+	public ISourceModuleInfo get(ISourceModule module) {
+		CacheReference ref = map.get(module);
 		if (ref != null) {
 			final ISourceModuleInfo info = ref.get();
 			if (info != null && ref.isValid(module)) {
+				recordAccess(ref);
 				return info;
 			}
 		}
 		final ISourceModuleInfo info = new SourceModuleInfo();
-		map.put(module, new CacheReference(module, info, queue));
-		return info;
+		final CacheReference newRef = new CacheReference(module, info, queue);
+		for (;;) {
+			if (ref == null) {
+				if (map.putIfAbsent(module, newRef) == null) {
+					afterWrite(newRef, null);
+					return info;
+				}
+			} else if (map.replace(module, ref, newRef)) {
+				afterWrite(newRef, ref);
+				return info;
+			}
+			// concurrently changed, retry
+			ref = map.get(module);
+			if (ref != null) {
+				final ISourceModuleInfo other = ref.get();
+				if (other != null && ref.isValid(module)) {
+					recordAccess(ref);
+					return other;
+				}
+			}
+		}
+	}
+
+	private void recordAccess(CacheReference ref) {
+		readBuffer.offer(ref);
+		if (readBufferSize.incrementAndGet() >= READ_DRAIN_THRESHOLD
+				&& evictionLock.tryLock()) {
+			try {
+				drainReadBuffer();
+			} finally {
+				evictionLock.unlock();
+			}
+		}
+	}
+
+	/*
+	 * Moves the recently accessed entries to the tail of the list. Called under
+	 * the eviction lock.
+	 */
+	private void drainReadBuffer() {
+		for (int i = readBufferSize.get(); i > 0; --i) {
+			final CacheReference ref = readBuffer.poll();
+			if (ref == null) {
+				break;
+			}
+			readBufferSize.decrementAndGet();
+			if (ref.linked) {
+				unlink(ref);
+				link(ref);
+			}
+		}
+	}
+
+	private void afterWrite(CacheReference newRef, CacheReference oldRef) {
+		evictionLock.lock();
+		try {
+			drainReadBuffer();
+			expungeStaleEntries();
+			if (oldRef != null) {
+				unlink(oldRef);
+			}
+			// could be replaced or removed concurrently
+			if (map.get(newRef.module) == newRef) {
+				link(newRef);
+			}
+			while (linkedCount > capacity && head != null) {
+				final CacheReference eldest = head;
+				unlink(eldest);
+				map.remove(eldest.module, eldest);
+			}
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	private void link(CacheReference ref) {
+		if (ref.linked) {
+			return;
+		}
+		ref.previous = tail;
+		ref.next = null;
+		if (tail != null) {
+			tail.next = ref;
+		} else {
+			head = ref;
+		}
+		tail = ref;
+		ref.linked = true;
+		++linkedCount;
+	}
+
+	private void unlink(CacheReference ref) {
+		if (!ref.linked) {
+			return;
+		}
+		if (ref.previous != null) {
+			ref.previous.next = ref.next;
+		} else {
+			head = ref.next;
+		}
+		if (ref.next != null) {
+			ref.next.previous = ref.previous;
+		} else {
+			tail = ref.previous;
+		}
+		ref.previous = null;
+		ref.next = null;
+		ref.linked = false;
+		--linkedCount;
 	}
 
-	public synchronized void resourceChanged(IResourceChangeEvent event) {
-		expungeStaleEntries();
+	public void resourceChanged(IResourceChangeEvent event) {
 		final IResourceDelta delta = event.getDelta();
 		try {
 			delta.accept(this);
@@ -162,44 +312,60 @@ public class SourceModuleInfoCache implements ISourceModuleInfoCache,
 
 	@Internal
 	static class SourceModuleInfo implements ISourceModuleInfo {
-		private Map<Object, Object> map;
+		private volatile Map<Object, Object> map;
 
-		public synchronized Object get(String key) {
-			if (map == null) {
+		public Object get(String key) {
+			final Map<Object, Object> m = map;
+			if (m == null) {
 				return null;
 			}
-			return map.get(key);
+			return m.get(key);
 		}
 
-		public synchronized void put(String key, Object value) {
-			if (map == null) {
-				map = new HashMap<Object, Object>();
+		public void put(String key, Object value) {
+			if (value == null) {
+				remove(key);
+				return;
+			}
+			Map<Object, Object> m = map;
+			if (m == null) {
+				synchronized (this) {
+					m = map;
+					if (m == null) {
+						m = new ConcurrentHashMap<Object, Object>(4, 0.75f, 1);
+						map = m;
+					}
+				}
 			}
-			map.put(key, value);
+			m.put(key, value);
 		}
 
-		public synchronized void remove(String key) {
-			if (map != null) {
-				map.remove(key);
+		public void remove(String key) {
+			final Map<Object, Object> m = map;
+			if (m != null) {
+				m.remove(key);
 			}
 		}
 
-		public synchronized boolean isEmpty() {
-			return this.map == null || this.map.isEmpty();
+		public boolean isEmpty() {
+			final Map<Object, Object> m = map;
+			return m == null || m.isEmpty();
 		}
 	}
 
-	/**
-	 * Not synchronized here, as it's called only from
-	 * {@link #resourceChanged(IResourceChangeEvent)} which is already
-	 * synchronized.
-	 */
 	private void removeByProject(IProject project) {
-		for (Iterator<ISourceModule> i = map.keySet().iterator(); i.hasNext();) {
-			final ISourceModule module = i.next();
-			if (project.equals(module.getScriptProject().getProject())) {
-				i.remove();
+		evictionLock.lock();
+		try {
+			for (Map.Entry<ISourceModule, CacheReference> entry : map
+					.entrySet()) {
+				final ISourceModule module = entry.getKey();
+				if (project.equals(module.getScriptProject().getProject())
+						&& map.remove(module, entry.getValue())) {
+					unlink(entry.getValue());
+				}
 			}
+		} finally {
+			evictionLock.unlock();
 		}
 	}
 
@@ -207,23 +373,47 @@ public class SourceModuleInfoCache implements ISourceModuleInfoCache,
 		remove(DLTKCore.createSourceModuleFrom(file));
 	}
 
-	public synchronized void remove(ISourceModule module) {
+	public void remove(ISourceModule module) {
 		if (DEBUG) {
 			System.out.println("[Cache] remove " + module.getElementName()); //$NON-NLS-1$
 		}
-		map.remove(module);
+		final CacheReference ref = map.remove(module);
+		if (ref != null) {
+			evictionLock.lock();
+			try {
+				unlink(ref);
+			} finally {
+				evictionLock.unlock();
+			}
+		}
 	}
 
 	private static final boolean DEBUG = false;
 
-	public synchronized void clear() {
-		// clear out reference queue.
-		while (queue.poll() != null)
-			;
-		map.clear();
+	public void clear() {
+		evictionLock.lock();
+		try {
+			// clear out reference queue.
+			while (queue.poll() != null)
+				;
+			drainReadBuffer();
+			map.clear();
+			for (CacheReference ref = head; ref != null;) {
+				final CacheReference next = ref.next;
+				ref.previous = null;
+				ref.next = null;
+				ref.linked = false;
+				ref = next;
+			}
+			head = null;
+			tail = null;
+			linkedCount = 0;
+		} finally {
+			evictionLock.unlock();
+		}
 	}
 
-	public synchronized int size() {
+	public int size() {
 		return map.size();
 	}
 
@@ -107,11 +107,9 @@ public class SourceModuleStructureRequestor implements ISourceElementRequestor,
 
 	private void createField(FieldInfo fieldInfo, ModelElementInfo parentInfo,
 			ModelElement parentHandle) {
-		ModelManager manager = ModelManager.getModelManager();
-
-		SourceField handle = new SourceField(parentHandle,
-				manager.intern(fieldInfo.name));
+		SourceField handle = new SourceField(parentHandle, fieldInfo.name);
 		this.resolveDuplicates(handle);
+		handle = ModelManager.getModelManager().intern(handle);
 
 		SourceFieldElementInfo info = new SourceFieldElementInfo();
 		info.setNameSourceStart(fieldInfo.nameSourceStart);
@@ -184,9 +182,9 @@ public class SourceModuleStructureRequestor implements ISourceElementRequestor,
 			ModelElementInfo parentInfo, ModelElement parentHandle) {
 		String nameString = methodInfo.name;
 		ModelManager manager = ModelManager.getModelManager();
-		SourceMethod handle = new SourceMethod(parentHandle,
-				manager.intern(nameString));
+		SourceMethod handle = new SourceMethod(parentHandle, nameString);
 		this.resolveDuplicates(handle);
+		handle = manager.intern(handle);
 
 		SourceMethodElementInfo info = new SourceMethodElementInfo();
 		info.setSourceRangeStart(methodInfo.declarationStart);
@@ -347,6 +345,7 @@ public class SourceModuleStructureRequestor implements ISourceElementRequestor,
 		SourceType handle = new SourceType(parentHandle, nameString);
 		// NB: occurenceCount is computed in resolveDuplicates
 		this.resolveDuplicates(handle);
+		handle = ModelManager.getModelManager().intern(handle);
 
 		SourceTypeElementInfo info = new SourceTypeElementInfo();
 		if (parentHandle.getElementType() == IModelElement.SOURCE_MODULE
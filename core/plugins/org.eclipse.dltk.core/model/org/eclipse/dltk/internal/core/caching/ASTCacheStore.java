@@ -0,0 +1,457 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.caching;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Adler32;
+
+import org.eclipse.dltk.core.DLTKCore;
+
+/**
+ * Bounded on-disk store of the binary records, keyed by a 20 bytes digest.
+ *
+ * <p>
+ * The records are appended to the segment files of the directory. When the
+ * current segment is full the next one is started, and when the total size
+ * exceeds the limit the oldest segment is deleted. A record read from the
+ * older half of the segments is appended again, so the recently used records
+ * survive the eviction of their segment - this makes the eviction an
+ * approximation of LRU.
+ *
+ * <p>
+ * Nothing but the segments is written: the index of the records is rebuilt
+ * lazily, on the first access, by scanning the record headers of the mapped
+ * segments, a segment truncated by a crash is cut at its last complete record.
+ * The data of a record is checksummed when it is read.
+ *
+ * <p>
+ * The segments are mapped once they are complete, the records of the segment
+ * being appended to are read from its file.
+ *
+ * <p>
+ * Record layout: <code>int MAGIC, byte VERSION, byte[20] key, int length,
+ * int checksum, byte[length] data</code>.
+ */
+public class ASTCacheStore {
+
+	private static final int MAGIC = 0x44415354; // DAST
+	static final byte VERSION = 2;
+	public static final int KEY_LENGTH = 20;
+	private static final int HEADER_LENGTH = 4 + 1 + KEY_LENGTH + 4 + 4;
+	private static final String SUFFIX = ".seg"; //$NON-NLS-1$
+
+	private static class Segment {
+		final int id;
+		final File file;
+		long length;
+		/**
+		 * The mapping of the complete segment, never remapped as the complete
+		 * segments do not change.
+		 */
+		MappedByteBuffer buffer;
+
+		Segment(int id, File file) {
+			this.id = id;
+			this.file = file;
+			this.length = file.length();
+		}
+	}
+
+	private static class Location {
+		final Segment segment;
+		final int offset;
+		final int length;
+		final int checksum;
+
+		Location(Segment segment, int offset, int length, int checksum) {
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+			this.checksum = checksum;
+		}
+	}
+
+	private static class Key {
+		final byte[] bytes;
+		final int hash;
+
+		Key(byte[] bytes) {
+			this.bytes = bytes;
+			this.hash = Arrays.hashCode(bytes);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Key && Arrays.equals(bytes, ((Key) obj).bytes);
+		}
+	}
+
+	private final File directory;
+	private final long maxSize;
+	private final long segmentSize;
+
+	private boolean loaded;
+	private final List<Segment> segments = new ArrayList<Segment>();
+	private final Map<Key, Location> index = new HashMap<Key, Location>();
+	private RandomAccessFile output;
+	private long totalSize;
+
+	public ASTCacheStore(File directory, long maxSize) {
+		this.directory = directory;
+		this.maxSize = maxSize;
+		this.segmentSize = Math.max(1 << 20, maxSize / 8);
+	}
+
+	/**
+	 * Returns the data of the record with the specified key or
+	 * <code>null</code> if there is no such record. The returned buffer is a
+	 * view of the mapped segment if possible.
+	 */
+	public synchronized ByteBuffer get(byte[] key) {
+		try {
+			load();
+			final Location location = index.get(new Key(key));
+			if (location == null) {
+				return null;
+			}
+			final ByteBuffer data = read(location);
+			if (checksum(data) != location.checksum) {
+				index.remove(new Key(key));
+				return null;
+			}
+			if (isOld(location.segment)) {
+				// keep the recently used records in the newer segments
+				final byte[] copy = new byte[data.remaining()];
+				data.duplicate().get(copy);
+				append(key, copy);
+			}
+			return data;
+		} catch (IOException e) {
+			DLTKCore.error("Error reading AST cache", e); //$NON-NLS-1$
+			reset();
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the record with the specified key.
+	 */
+	public synchronized void put(byte[] key, byte[] data) {
+		try {
+			load();
+			append(key, data);
+		} catch (IOException e) {
+			DLTKCore.error("Error writing AST cache", e); //$NON-NLS-1$
+			reset();
+		}
+	}
+
+	/**
+	 * Forgets the record with the specified key, e.g. if it could not be
+	 * decoded.
+	 */
+	public synchronized void remove(byte[] key) {
+		index.remove(new Key(key));
+	}
+
+	/**
+	 * Returns the total size of the segments.
+	 */
+	public synchronized long size() {
+		try {
+			load();
+		} catch (IOException e) {
+			return 0;
+		}
+		return totalSize;
+	}
+
+	/**
+	 * Closes the files, the records are kept.
+	 */
+	public synchronized void close() {
+		closeOutput();
+		for (Segment segment : segments) {
+			segment.buffer = null;
+		}
+		segments.clear();
+		index.clear();
+		totalSize = 0;
+		loaded = false;
+	}
+
+	/**
+	 * Deletes all the records.
+	 */
+	public synchronized void clear() {
+		close();
+		final File[] files = listSegments();
+		if (files != null) {
+			for (File file : files) {
+				delete(file);
+			}
+		}
+	}
+
+	private void reset() {
+		clear();
+	}
+
+	private boolean isOld(Segment segment) {
+		return segments.size() > 1
+				&& segments.indexOf(segment) < segments.size() / 2;
+	}
+
+	private File[] listSegments() {
+		return directory.listFiles(new FileFilter() {
+			public boolean accept(File file) {
+				return file.isFile() && file.getName().endsWith(SUFFIX)
+						&& parseId(file.getName()) >= 0;
+			}
+		});
+	}
+
+	private static int parseId(String name) {
+		try {
+			return Integer.parseInt(name.substring(0, name.length()
+					- SUFFIX.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private void load() throws IOException {
+		if (loaded) {
+			return;
+		}
+		loaded = true;
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create " + directory); //$NON-NLS-1$
+		}
+		final File[] files = listSegments();
+		if (files != null) {
+			final Segment[] found = new Segment[files.length];
+			for (int i = 0; i < files.length; ++i) {
+				found[i] = new Segment(parseId(files[i].getName()), files[i]);
+			}
+			Arrays.sort(found, new Comparator<Segment>() {
+				public int compare(Segment o1, Segment o2) {
+					return o1.id < o2.id ? -1 : o1.id == o2.id ? 0 : 1;
+				}
+			});
+			for (int i = 0; i < found.length; ++i) {
+				final Segment segment = found[i];
+				segments.add(segment);
+				scan(segment, i < found.length - 1);
+				totalSize += segment.length;
+			}
+		}
+	}
+
+	/*
+	 * Adds the records of the segment to the index. The later records replace
+	 * the earlier ones with the same key. The mapping is kept only if the
+	 * segment is complete, as the last segment could be appended to.
+	 */
+	private void scan(Segment segment, boolean complete) throws IOException {
+		final MappedByteBuffer buffer = mapFile(segment);
+		int offset = 0;
+		while (offset + HEADER_LENGTH <= buffer.limit()) {
+			buffer.position(offset);
+			if (buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+				break;
+			}
+			final byte[] key = new byte[KEY_LENGTH];
+			buffer.get(key);
+			final int length = buffer.getInt();
+			final int checksum = buffer.getInt();
+			final int dataOffset = offset + HEADER_LENGTH;
+			if (length < 0 || dataOffset + length > buffer.limit()) {
+				break;
+			}
+			index.put(new Key(key), new Location(segment, dataOffset, length,
+					checksum));
+			offset = dataOffset + length;
+		}
+		if (offset < segment.length) {
+			// cut the incomplete or the corrupted tail
+			complete = false;
+			final RandomAccessFile file = new RandomAccessFile(segment.file,
+					"rw"); //$NON-NLS-1$
+			try {
+				file.setLength(offset);
+			} finally {
+				file.close();
+			}
+			segment.length = offset;
+		}
+		if (complete) {
+			segment.buffer = buffer;
+		}
+	}
+
+	private static MappedByteBuffer mapFile(Segment segment)
+			throws IOException {
+		final RandomAccessFile file = new RandomAccessFile(segment.file, "r"); //$NON-NLS-1$
+		try {
+			return file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+					segment.length);
+		} finally {
+			file.close();
+		}
+	}
+
+	private boolean isActive(Segment segment) {
+		return segment == segments.get(segments.size() - 1);
+	}
+
+	private ByteBuffer read(Location location) throws IOException {
+		final Segment segment = location.segment;
+		if (isActive(segment)) {
+			return readActive(location);
+		}
+		if (segment.buffer == null) {
+			segment.buffer = mapFile(segment);
+		}
+		final ByteBuffer buffer = segment.buffer.duplicate();
+		buffer.position(location.offset);
+		buffer.limit(location.offset + location.length);
+		return buffer.slice();
+	}
+
+	/*
+	 * Reads the record of the segment being appended to, which is not mapped
+	 * as its length changes with every record.
+	 */
+	private ByteBuffer readActive(Location location) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(location.length);
+		final RandomAccessFile file = output != null ? output
+				: new RandomAccessFile(location.segment.file, "r"); //$NON-NLS-1$
+		try {
+			final FileChannel channel = file.getChannel();
+			long position = location.offset;
+			while (buffer.hasRemaining()) {
+				final int count = channel.read(buffer, position);
+				if (count < 0) {
+					throw new IOException("Unexpected end of " //$NON-NLS-1$
+							+ location.segment.file);
+				}
+				position += count;
+			}
+		} finally {
+			if (file != output) {
+				file.close();
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private static int checksum(ByteBuffer data) {
+		final Adler32 checksum = new Adler32();
+		final byte[] chunk = new byte[Math.min(8192, data.remaining())];
+		final ByteBuffer buffer = data.duplicate();
+		while (buffer.hasRemaining()) {
+			final int length = Math.min(chunk.length, buffer.remaining());
+			buffer.get(chunk, 0, length);
+			checksum.update(chunk, 0, length);
+		}
+		return (int) checksum.getValue();
+	}
+
+	private void append(byte[] key, byte[] data) throws IOException {
+		Segment segment = segments.isEmpty() ? null : segments.get(segments
+				.size() - 1);
+		if (segment == null || segment.length > 0
+				&& segment.length + HEADER_LENGTH + data.length > segmentSize) {
+			segment = startSegment(segment != null ? segment.id + 1 : 0);
+		}
+		if (output == null) {
+			output = new RandomAccessFile(segment.file, "rw"); //$NON-NLS-1$
+		}
+		final int checksum = checksum(ByteBuffer.wrap(data));
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+		header.putInt(MAGIC);
+		header.put(VERSION);
+		header.put(key);
+		header.putInt(data.length);
+		header.putInt(checksum);
+		final long offset = segment.length;
+		output.seek(offset);
+		output.write(header.array());
+		output.write(data);
+		segment.length += HEADER_LENGTH + data.length;
+		totalSize += HEADER_LENGTH + data.length;
+		index.put(new Key(key.clone()), new Location(segment,
+				(int) offset + HEADER_LENGTH, data.length, checksum));
+		evict();
+	}
+
+	private Segment startSegment(int id) {
+		closeOutput();
+		final Segment segment = new Segment(id, new File(directory, id
+				+ SUFFIX));
+		segments.add(segment);
+		return segment;
+	}
+
+	private void evict() {
+		while (totalSize > maxSize && segments.size() > 1) {
+			final Segment eldest = segments.remove(0);
+			for (Iterator<Location> i = index.values().iterator(); i.hasNext();) {
+				if (i.next().segment == eldest) {
+					i.remove();
+				}
+			}
+			totalSize -= eldest.length;
+			eldest.buffer = null;
+			delete(eldest.file);
+		}
+	}
+
+	private static void delete(File file) {
+		if (!file.delete() && file.exists()) {
+			// still mapped on some platforms
+			file.deleteOnExit();
+		}
+	}
+
+	private void closeOutput() {
+		if (output != null) {
+			try {
+				output.close();
+			} catch (IOException e) {
+				// ignore
+			}
+			output = null;
+		}
+	}
+
+}
@@ -0,0 +1,1114 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.caching;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.eclipse.dltk.core.DLTKCore;
+
+/**
+ * Binary storage of the metadata cache entries: an append-only log of the
+ * changes and the index of the entries.
+ *
+ * <p>
+ * Every change is appended to the log as a record, so the save is
+ * incremental. The index is the snapshot of all the entries at some log
+ * length, sorted by the key hash; only its fixed-width slot table is read on
+ * load, the entries are decoded when accessed. The log records after the
+ * indexed length are replayed on load. The index is rewritten when the tail is
+ * long enough, and the log is compacted on the full save when most of it is
+ * garbage.
+ *
+ * <p>
+ * The readers do not block each other: the values are read with the
+ * positional reads of the file channels, the writers append under a separate
+ * lock and only the rewriting of the index excludes everybody.
+ *
+ * <p>
+ * Log layout: <code>int MAGIC, int VERSION, long generation</code> followed by
+ * the records <code>byte type, int length, byte[length] body</code>. Index
+ * layout:
+ * <code>int MAGIC, int VERSION, long generation, long logLength, long garbage,
+ * int count</code>, the slots <code>int hash, int offset, int length</code>
+ * and the entry blocks.
+ */
+public class MetadataStore {
+
+	public static final class Key {
+		final String environment;
+		final String path;
+		final int hash;
+
+		public Key(String environment, String path) {
+			this.environment = environment;
+			this.path = path;
+			this.hash = 31 * environment.hashCode() + path.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key) obj;
+			return hash == other.hash && path.equals(other.path)
+					&& environment.equals(other.environment);
+		}
+
+		@Override
+		public String toString() {
+			return environment + ":" + path; //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * The attribute value: either the data stored in the log or the location
+	 * of the file relative to the cache directory.
+	 */
+	public static final class Value {
+		final Log log;
+		final long offset;
+		final int length;
+		final String location;
+
+		Value(Log log, long offset, int length) {
+			this.log = log;
+			this.offset = offset;
+			this.length = length;
+			this.location = null;
+		}
+
+		Value(String location) {
+			this.log = null;
+			this.offset = 0;
+			this.length = 0;
+			this.location = location;
+		}
+
+		/**
+		 * Returns the location of the file or <code>null</code> if the value
+		 * is stored in the log.
+		 */
+		public String getLocation() {
+			return location;
+		}
+	}
+
+	public static final class Entry {
+		final Key key;
+		final long timestamp;
+		final Map<String, Value> attributes = new ConcurrentHashMap<String, Value>(
+				4);
+		volatile boolean removed;
+		private volatile long lastAccessTime;
+
+		Entry(Key key, long timestamp) {
+			this.key = key;
+			this.timestamp = timestamp;
+		}
+
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		public Value get(String attribute) {
+			return attributes.get(attribute);
+		}
+
+		public long getLastAccessTime() {
+			return lastAccessTime;
+		}
+
+		public void setLastAccessTime(long lastAccessTime) {
+			this.lastAccessTime = lastAccessTime;
+		}
+	}
+
+	private static final byte PUT = 1;
+	private static final byte FILE = 2;
+	private static final byte REMOVE = 3;
+	private static final byte CLEAR = 4;
+
+	private static final int LOG_MAGIC = 0x444D434C; // DMCL
+	private static final int INDEX_MAGIC = 0x444D4349; // DMCI
+	private static final int VERSION = 1;
+	private static final int LOG_HEADER_LENGTH = 4 + 4 + 8;
+	private static final int INDEX_HEADER_LENGTH = 4 + 4 + 8 + 8 + 8 + 4;
+	private static final int SLOT_LENGTH = 4 + 4 + 4;
+
+	private static final String PREFIX = "metadata-"; //$NON-NLS-1$
+	private static final String LOG_SUFFIX = ".log"; //$NON-NLS-1$
+	private static final String INDEX_SUFFIX = ".idx"; //$NON-NLS-1$
+	private static final String TEMP_SUFFIX = ".tmp"; //$NON-NLS-1$
+
+	/**
+	 * The unindexed tail of the log which is always acceptable.
+	 */
+	private static final long REINDEX_MIN = 1 << 20;
+	/**
+	 * The garbage which is always acceptable.
+	 */
+	private static final long COMPACT_MIN = 1 << 20;
+
+	private static final boolean DEBUG = false;
+
+	/**
+	 * File read with the positional reads, reopened if closed by the
+	 * interrupt of a reading thread.
+	 */
+	private static abstract class StoreFile {
+		final File file;
+		private final String mode;
+		private volatile RandomAccessFile raf;
+		private volatile FileChannel channel;
+		private volatile boolean closed;
+
+		StoreFile(File file, String mode) throws IOException {
+			this.file = file;
+			this.mode = mode;
+			this.raf = new RandomAccessFile(file, mode);
+			this.channel = raf.getChannel();
+		}
+
+		byte[] read(long offset, int length) throws IOException {
+			final ByteBuffer buffer = ByteBuffer.allocate(length);
+			FileChannel current = channel;
+			boolean interrupted = false;
+			try {
+				while (buffer.hasRemaining()) {
+					try {
+						if (current.read(buffer, offset + buffer.position()) < 0) {
+							throw new EOFException();
+						}
+					} catch (ClosedChannelException e) {
+						// closed by the interrupt of this or another reader
+						interrupted |= Thread.interrupted();
+						current = reopen(current);
+					}
+				}
+			} finally {
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return buffer.array();
+		}
+
+		void write(ByteBuffer buffer, long offset) throws IOException {
+			FileChannel current = channel;
+			boolean interrupted = false;
+			try {
+				while (buffer.hasRemaining()) {
+					try {
+						current.write(buffer, offset + buffer.position());
+					} catch (ClosedChannelException e) {
+						interrupted |= Thread.interrupted();
+						current = reopen(current);
+					}
+				}
+			} finally {
+				if (interrupted) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		FileChannel channel() {
+			return channel;
+		}
+
+		private synchronized FileChannel reopen(FileChannel current)
+				throws IOException {
+			if (closed) {
+				throw new ClosedChannelException();
+			}
+			if (channel == current) {
+				raf = new RandomAccessFile(file, mode);
+				channel = raf.getChannel();
+			}
+			return channel;
+		}
+
+		synchronized void close() {
+			closed = true;
+			try {
+				raf.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+
+	private static final class Log extends StoreFile {
+		final long generation;
+		volatile long length;
+
+		private Log(File file, long generation, long length) throws IOException {
+			super(file, "rw"); //$NON-NLS-1$
+			this.generation = generation;
+			this.length = length;
+		}
+
+		static Log create(File file, long generation) throws IOException {
+			final Log log = new Log(file, generation, 0);
+			final ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_LENGTH);
+			header.putInt(LOG_MAGIC).putInt(VERSION).putLong(generation);
+			log.append(header.array());
+			return log;
+		}
+
+		static Log open(File file) throws IOException {
+			final long generation;
+			final RandomAccessFile header = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+			try {
+				if (header.length() < LOG_HEADER_LENGTH
+						|| header.readInt() != LOG_MAGIC
+						|| header.readInt() != VERSION) {
+					return null;
+				}
+				generation = header.readLong();
+			} finally {
+				header.close();
+			}
+			return new Log(file, generation, file.length());
+		}
+
+		/**
+		 * Appends the record and returns its offset. Must be called when
+		 * holding the append lock.
+		 */
+		long append(byte[] record) throws IOException {
+			final long offset = length;
+			write(ByteBuffer.wrap(record), offset);
+			length = offset + record.length;
+			return offset;
+		}
+
+		void truncate(long newLength) throws IOException {
+			channel().truncate(newLength);
+			length = newLength;
+		}
+
+		void force() throws IOException {
+			channel().force(false);
+		}
+	}
+
+	private static final class Index extends StoreFile {
+		final long generation;
+		final long logLength;
+		final long garbage;
+		final int[] hashes;
+		final int[] offsets;
+		final int[] lengths;
+
+		private Index(File file, DataInputStream header) throws IOException {
+			super(file, "r"); //$NON-NLS-1$
+			this.generation = header.readLong();
+			this.logLength = header.readLong();
+			this.garbage = header.readLong();
+			final int count = header.readInt();
+			this.hashes = new int[count];
+			this.offsets = new int[count];
+			this.lengths = new int[count];
+			for (int i = 0; i < count; ++i) {
+				hashes[i] = header.readInt();
+				offsets[i] = header.readInt();
+				lengths[i] = header.readInt();
+			}
+		}
+
+		static Index open(File file) {
+			if (!file.isFile()) {
+				return null;
+			}
+			try {
+				final DataInputStream in = new DataInputStream(
+						new BufferedInputStream(
+								new FileInputStream(file), 65536));
+				try {
+					if (in.readInt() != INDEX_MAGIC
+							|| in.readInt() != VERSION) {
+						return null;
+					}
+					return new Index(file, in);
+				} finally {
+					in.close();
+				}
+			} catch (IOException e) {
+				return null;
+			}
+		}
+
+		Entry find(Key key, Log log) throws IOException {
+			int low = 0;
+			int high = hashes.length - 1;
+			while (low <= high) {
+				final int mid = (low + high) >>> 1;
+				if (hashes[mid] < key.hash) {
+					low = mid + 1;
+				} else {
+					high = mid - 1;
+				}
+			}
+			for (int i = low; i < hashes.length && hashes[i] == key.hash; ++i) {
+				final Entry entry = readEntry(i, log);
+				if (entry.key.equals(key)) {
+					return entry;
+				}
+			}
+			return null;
+		}
+
+		void readAll(Map<Key, Entry> result, Log log) throws IOException {
+			for (int i = 0; i < hashes.length; ++i) {
+				final Entry entry = readEntry(i, log);
+				result.put(entry.key, entry);
+			}
+		}
+
+		private Entry readEntry(int i, Log log) throws IOException {
+			final DataInputStream in = new DataInputStream(
+					new ByteArrayInputStream(read(offsets[i], lengths[i])));
+			final Key key = new Key(in.readUTF(), in.readUTF());
+			final Entry entry = new Entry(key, in.readLong());
+			final int count = in.readInt();
+			for (int a = 0; a < count; ++a) {
+				final String name = in.readUTF();
+				if (in.readByte() == FILE) {
+					entry.attributes.put(name, new Value(in.readUTF()));
+				} else {
+					entry.attributes.put(name,
+							new Value(log, in.readLong(), in.readInt()));
+				}
+			}
+			return entry;
+		}
+
+		static void write(File file, Log log, long garbage,
+				Collection<Entry> entries) throws IOException {
+			final Entry[] sorted = entries.toArray(new Entry[entries.size()]);
+			Arrays.sort(sorted, new Comparator<Entry>() {
+				public int compare(Entry o1, Entry o2) {
+					return o1.key.hash < o2.key.hash ? -1
+							: o1.key.hash == o2.key.hash ? 0 : 1;
+				}
+			});
+			final ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+			final DataOutputStream blockOut = new DataOutputStream(blocks);
+			final int[] offsets = new int[sorted.length];
+			final int[] lengths = new int[sorted.length];
+			final int base = INDEX_HEADER_LENGTH + sorted.length * SLOT_LENGTH;
+			for (int i = 0; i < sorted.length; ++i) {
+				final Entry entry = sorted[i];
+				offsets[i] = base + blockOut.size();
+				blockOut.writeUTF(entry.key.environment);
+				blockOut.writeUTF(entry.key.path);
+				blockOut.writeLong(entry.timestamp);
+				final List<Map.Entry<String, Value>> attributes = new ArrayList<Map.Entry<String, Value>>(
+						entry.attributes.entrySet());
+				blockOut.writeInt(attributes.size());
+				for (Map.Entry<String, Value> attribute : attributes) {
+					blockOut.writeUTF(attribute.getKey());
+					final Value value = attribute.getValue();
+					if (value.location != null) {
+						blockOut.writeByte(FILE);
+						blockOut.writeUTF(value.location);
+					} else {
+						blockOut.writeByte(PUT);
+						blockOut.writeLong(value.offset);
+						blockOut.writeInt(value.length);
+					}
+				}
+				lengths[i] = base + blockOut.size() - offsets[i];
+			}
+			final DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(file), 65536));
+			try {
+				out.writeInt(INDEX_MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(log.generation);
+				out.writeLong(log.length);
+				out.writeLong(garbage);
+				out.writeInt(sorted.length);
+				for (int i = 0; i < sorted.length; ++i) {
+					out.writeInt(sorted[i].key.hash);
+					out.writeInt(offsets[i]);
+					out.writeInt(lengths[i]);
+				}
+				blocks.writeTo(out);
+			} finally {
+				out.close();
+			}
+		}
+	}
+
+	private final File directory;
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Object appendLock = new Object();
+	/**
+	 * The entries read from the index or changed after it was written,
+	 * including the removed ones hiding their stale index copies.
+	 */
+	private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+	private volatile boolean loaded;
+	private Log log;
+	private Index index;
+	/**
+	 * The number of the log bytes no longer referenced, guarded by the append
+	 * lock.
+	 */
+	private long garbage;
+
+	public MetadataStore(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Returns the entry with the specified key or <code>null</code> if there
+	 * is no such entry.
+	 */
+	public Entry get(Key key) {
+		ensureLoaded();
+		lock.readLock().lock();
+		try {
+			return lookup(key);
+		} catch (IOException e) {
+			DLTKCore.error("Error reading metadata index", e); //$NON-NLS-1$
+			return null;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the data of the value stored in the log or <code>null</code> if
+	 * it could not be read, e.g. if the log was compacted meanwhile.
+	 */
+	public byte[] read(Value value) {
+		if (value.log == null) {
+			return null;
+		}
+		lock.readLock().lock();
+		try {
+			return value.log.read(value.offset, value.length);
+		} catch (IOException e) {
+			if (DEBUG) {
+				e.printStackTrace();
+			}
+			return null;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Stores the attribute data, returns the values replaced.
+	 */
+	public List<Value> put(Key key, long timestamp, String attribute,
+			byte[] data) {
+		ensureLoaded();
+		lock.readLock().lock();
+		try {
+			synchronized (appendLock) {
+				final ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+						64 + data.length);
+				final DataOutputStream out = new DataOutputStream(bytes);
+				writeKey(out, key);
+				out.writeLong(timestamp);
+				out.writeUTF(attribute);
+				out.writeInt(data.length);
+				out.write(data);
+				final byte[] record = record(PUT, bytes);
+				final long offset = log.append(record);
+				return applyPut(key, timestamp, attribute, new Value(log,
+						offset + record.length - data.length, data.length));
+			}
+		} catch (IOException e) {
+			DLTKCore.error("Error writing metadata", e); //$NON-NLS-1$
+			return Collections.emptyList();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Stores the location of the attribute file, returns the values replaced.
+	 */
+	public List<Value> putFile(Key key, long timestamp, String attribute,
+			String location) {
+		ensureLoaded();
+		lock.readLock().lock();
+		try {
+			synchronized (appendLock) {
+				final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				final DataOutputStream out = new DataOutputStream(bytes);
+				writeKey(out, key);
+				out.writeLong(timestamp);
+				out.writeUTF(attribute);
+				out.writeUTF(location);
+				log.append(record(FILE, bytes));
+				return applyPut(key, timestamp, attribute, new Value(location));
+			}
+		} catch (IOException e) {
+			DLTKCore.error("Error writing metadata", e); //$NON-NLS-1$
+			return Collections.emptyList();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes the attribute, returns the values removed.
+	 */
+	public List<Value> remove(Key key, String attribute) {
+		ensureLoaded();
+		lock.readLock().lock();
+		try {
+			synchronized (appendLock) {
+				final Entry entry = lookup(key);
+				if (entry == null || entry.get(attribute) == null) {
+					return Collections.emptyList();
+				}
+				final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				final DataOutputStream out = new DataOutputStream(bytes);
+				writeKey(out, key);
+				out.writeUTF(attribute);
+				log.append(record(REMOVE, bytes));
+				return applyRemove(key, attribute);
+			}
+		} catch (IOException e) {
+			DLTKCore.error("Error writing metadata", e); //$NON-NLS-1$
+			return Collections.emptyList();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes the entry, returns the values removed.
+	 */
+	public List<Value> clear(Key key) {
+		ensureLoaded();
+		lock.readLock().lock();
+		try {
+			synchronized (appendLock) {
+				if (lookup(key) == null) {
+					return Collections.emptyList();
+				}
+				final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				writeKey(new DataOutputStream(bytes), key);
+				log.append(record(CLEAR, bytes));
+				return applyClear(key);
+			}
+		} catch (IOException e) {
+			DLTKCore.error("Error writing metadata", e); //$NON-NLS-1$
+			return Collections.emptyList();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes all the entries, returns the values removed.
+	 */
+	public List<Value> clear() {
+		ensureLoaded();
+		lock.writeLock().lock();
+		try {
+			final Map<Key, Entry> all = collect();
+			final List<Value> values = new ArrayList<Value>();
+			for (Entry entry : all.values()) {
+				values.addAll(entry.attributes.values());
+			}
+			closeFiles();
+			deleteFiles(null);
+			log = createLog(0);
+			index = null;
+			garbage = 0;
+			return values;
+		} catch (IOException e) {
+			DLTKCore.error("Error clearing metadata", e); //$NON-NLS-1$
+			return Collections.emptyList();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Flushes the log. Rewrites the index if the log tail is long, or if
+	 * <code>full</code> is specified and the index is not up to date, then the
+	 * log is compacted too if it is mostly garbage.
+	 */
+	public void save(boolean full) {
+		if (!loaded) {
+			return;
+		}
+		lock.writeLock().lock();
+		try {
+			if (log == null) {
+				return;
+			}
+			log.force();
+			final long indexed = index != null ? index.logLength
+					: LOG_HEADER_LENGTH;
+			final long tail = log.length - indexed;
+			if (full) {
+				if (tail > 0 || index != null && index.garbage != garbage) {
+					rewriteIndex(garbage > COMPACT_MIN
+							&& garbage * 2 > log.length);
+				}
+			} else if (tail > Math.max(REINDEX_MIN, indexed / 4)) {
+				rewriteIndex(false);
+			}
+		} catch (IOException e) {
+			DLTKCore.error("Error saving metadata", e); //$NON-NLS-1$
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Closes the files, the store is loaded again on the next access.
+	 */
+	public void close() {
+		lock.writeLock().lock();
+		try {
+			closeFiles();
+			entries.clear();
+			loaded = false;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/*
+	 * Must be called when holding the read or the write lock.
+	 */
+	private Entry lookup(Key key) throws IOException {
+		final Entry entry = entries.get(key);
+		if (entry != null) {
+			return entry.removed ? null : entry;
+		}
+		if (index != null) {
+			final Entry indexed = index.find(key, log);
+			if (indexed != null) {
+				final Entry previous = entries.putIfAbsent(key, indexed);
+				if (previous != null) {
+					return previous.removed ? null : previous;
+				}
+				return indexed;
+			}
+		}
+		return null;
+	}
+
+	private List<Value> applyPut(Key key, long timestamp, String attribute,
+			Value value) throws IOException {
+		final List<Value> replaced = new ArrayList<Value>();
+		Entry entry = lookup(key);
+		if (entry != null && entry.timestamp != timestamp) {
+			replaced.addAll(discard(entry));
+			entry = null;
+		}
+		if (entry == null) {
+			entry = new Entry(key, timestamp);
+			entries.put(key, entry);
+		}
+		final Value previous = entry.attributes.put(attribute, value);
+		if (previous != null) {
+			garbage += previous.length;
+			replaced.add(previous);
+		}
+		return replaced;
+	}
+
+	private List<Value> applyRemove(Key key, String attribute)
+			throws IOException {
+		final Entry entry = lookup(key);
+		if (entry != null) {
+			final Value previous = entry.attributes.remove(attribute);
+			if (previous != null) {
+				garbage += previous.length;
+				return Collections.singletonList(previous);
+			}
+		}
+		return Collections.emptyList();
+	}
+
+	private List<Value> applyClear(Key key) throws IOException {
+		final Entry entry = lookup(key);
+		if (entry == null) {
+			return Collections.emptyList();
+		}
+		final List<Value> removed = discard(entry);
+		final Entry tombstone = new Entry(key, 0);
+		tombstone.removed = true;
+		entries.put(key, tombstone);
+		return removed;
+	}
+
+	private List<Value> discard(Entry entry) {
+		entry.removed = true;
+		final List<Value> values = new ArrayList<Value>(
+				entry.attributes.values());
+		for (Value value : values) {
+			garbage += value.length;
+		}
+		return values;
+	}
+
+	private static void writeKey(DataOutputStream out, Key key)
+			throws IOException {
+		out.writeUTF(key.environment);
+		out.writeUTF(key.path);
+	}
+
+	private static byte[] record(byte type, ByteArrayOutputStream body) {
+		final ByteBuffer record = ByteBuffer.allocate(1 + 4 + body.size());
+		record.put(type);
+		record.putInt(body.size());
+		record.put(body.toByteArray());
+		return record.array();
+	}
+
+	private void ensureLoaded() {
+		if (loaded) {
+			return;
+		}
+		lock.writeLock().lock();
+		try {
+			if (!loaded) {
+				load();
+				loaded = true;
+			}
+		} catch (IOException e) {
+			DLTKCore.error("Error loading metadata", e); //$NON-NLS-1$
+			closeFiles();
+			deleteFiles(null);
+			try {
+				log = createLog(0);
+				loaded = true;
+			} catch (IOException e1) {
+				throw new IllegalStateException(e1);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void load() throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create " + directory); //$NON-NLS-1$
+		}
+		final File[] logs = listFiles(LOG_SUFFIX);
+		Arrays.sort(logs, new Comparator<File>() {
+			public int compare(File o1, File o2) {
+				final long g1 = generationOf(o1);
+				final long g2 = generationOf(o2);
+				return g1 > g2 ? -1 : g1 == g2 ? 0 : 1;
+			}
+		});
+		// the newest valid log
+		for (int i = 0; i < logs.length; ++i) {
+			log = Log.open(logs[i]);
+			if (log != null) {
+				if (i + 1 < logs.length
+						&& !indexFile(log.generation).isFile()) {
+					// the interrupted compaction, the older log is complete
+					log.close();
+					log = null;
+					continue;
+				}
+				break;
+			}
+		}
+		if (log == null) {
+			log = createLog(0);
+		}
+		// the files of the interrupted compactions
+		deleteFiles(log);
+		index = Index.open(indexFile(log.generation));
+		if (index != null
+				&& (index.generation != log.generation || index.logLength > log.length)) {
+			index.close();
+			index = null;
+		}
+		garbage = index != null ? index.garbage : 0;
+		replay(index != null ? index.logLength : LOG_HEADER_LENGTH);
+	}
+
+	/*
+	 * Applies the log records starting at the specified position.
+	 */
+	private void replay(long start) throws IOException {
+		final long length = log.length;
+		long position = start;
+		final FileChannel channel = log.channel();
+		channel.position(start);
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(
+				Channels.newInputStream(channel), 65536));
+		int count = 0;
+		while (position + 5 <= length) {
+			final byte type = in.readByte();
+			final int bodyLength = in.readInt();
+			if (bodyLength < 0 || position + 5 + bodyLength > length) {
+				break;
+			}
+			final byte[] body = new byte[bodyLength];
+			in.readFully(body);
+			final DataInputStream record = new DataInputStream(
+					new ByteArrayInputStream(body));
+			final Key key = new Key(record.readUTF(), record.readUTF());
+			if (type == PUT) {
+				final long timestamp = record.readLong();
+				final String attribute = record.readUTF();
+				final int dataLength = record.readInt();
+				applyPut(key, timestamp, attribute, new Value(log, position + 5
+						+ bodyLength - dataLength, dataLength));
+			} else if (type == FILE) {
+				final long timestamp = record.readLong();
+				final String attribute = record.readUTF();
+				applyPut(key, timestamp, attribute, new Value(record.readUTF()));
+			} else if (type == REMOVE) {
+				applyRemove(key, record.readUTF());
+			} else if (type == CLEAR) {
+				applyClear(key);
+			} else {
+				break;
+			}
+			position += 5 + bodyLength;
+			++count;
+		}
+		if (position < length) {
+			// cut the incomplete or the corrupted tail
+			log.truncate(position);
+		}
+		if (DEBUG) {
+			System.out.println("[Metadata] replayed " + count //$NON-NLS-1$
+					+ " records of " + log.file); //$NON-NLS-1$
+		}
+	}
+
+	/*
+	 * Returns all the live entries. Must be called when holding the write
+	 * lock.
+	 */
+	private Map<Key, Entry> collect() throws IOException {
+		final Map<Key, Entry> all = new HashMap<Key, Entry>();
+		if (index != null) {
+			index.readAll(all, log);
+		}
+		for (Entry entry : entries.values()) {
+			if (entry.removed) {
+				all.remove(entry.key);
+			} else {
+				all.put(entry.key, entry);
+			}
+		}
+		for (Iterator<Entry> i = all.values().iterator(); i.hasNext();) {
+			if (i.next().attributes.isEmpty()) {
+				i.remove();
+			}
+		}
+		return all;
+	}
+
+	/*
+	 * Must be called when holding the write lock.
+	 */
+	private void rewriteIndex(boolean compact) throws IOException {
+		Map<Key, Entry> all = collect();
+		Log target = log;
+		if (compact) {
+			target = createLog(log.generation);
+			all = copy(all, target);
+			target.force();
+		}
+		final File file = indexFile(target.generation);
+		final File temp = new File(file.getPath() + TEMP_SUFFIX);
+		Index.write(temp, target, compact ? 0 : garbage, all.values());
+		if (index != null) {
+			index.close();
+			index = null;
+		}
+		if (!rename(temp, file)) {
+			throw new IOException("Could not replace " + file); //$NON-NLS-1$
+		}
+		if (compact) {
+			final Log old = log;
+			log = target;
+			old.close();
+			delete(old.file);
+			delete(indexFile(old.generation));
+			garbage = 0;
+		}
+		index = Index.open(file);
+		// the index holds everything now
+		entries.clear();
+		if (DEBUG) {
+			System.out.println("[Metadata] indexed " + all.size() //$NON-NLS-1$
+					+ " entries" + (compact ? ", compacted" : "")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+	}
+
+	private Map<Key, Entry> copy(Map<Key, Entry> all, Log target)
+			throws IOException {
+		final Map<Key, Entry> result = new HashMap<Key, Entry>();
+		for (Entry entry : all.values()) {
+			final Entry copy = new Entry(entry.key, entry.timestamp);
+			for (Map.Entry<String, Value> attribute : entry.attributes
+					.entrySet()) {
+				final Value value = attribute.getValue();
+				final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				final DataOutputStream out = new DataOutputStream(bytes);
+				writeKey(out, entry.key);
+				out.writeLong(entry.timestamp);
+				out.writeUTF(attribute.getKey());
+				if (value.location != null) {
+					out.writeUTF(value.location);
+					target.append(record(FILE, bytes));
+					copy.attributes.put(attribute.getKey(), value);
+				} else {
+					final byte[] data = value.log.read(value.offset,
+							value.length);
+					out.writeInt(data.length);
+					out.write(data);
+					final byte[] record = record(PUT, bytes);
+					final long offset = target.append(record);
+					copy.attributes.put(attribute.getKey(), new Value(target,
+							offset + record.length - data.length, data.length));
+				}
+			}
+			result.put(copy.key, copy);
+		}
+		return result;
+	}
+
+	private void closeFiles() {
+		if (index != null) {
+			index.close();
+			index = null;
+		}
+		if (log != null) {
+			log.close();
+			log = null;
+		}
+	}
+
+	private File logFile(long generation) {
+		return new File(directory, PREFIX + generation + LOG_SUFFIX);
+	}
+
+	private File indexFile(long generation) {
+		return new File(directory, PREFIX + generation + INDEX_SUFFIX);
+	}
+
+	private Log createLog(long currentGeneration) throws IOException {
+		final long generation = Math.max(currentGeneration + 1,
+				System.currentTimeMillis());
+		return Log.create(logFile(generation), generation);
+	}
+
+	private static long generationOf(File file) {
+		final String name = file.getName();
+		try {
+			return Long.parseLong(name.substring(PREFIX.length(),
+					name.length() - LOG_SUFFIX.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private File[] listFiles(final String suffix) {
+		final File[] files = directory.listFiles(new FileFilter() {
+			public boolean accept(File file) {
+				final String name = file.getName();
+				return file.isFile() && name.startsWith(PREFIX)
+						&& name.endsWith(suffix);
+			}
+		});
+		return files != null ? files : new File[0];
+	}
+
+	/*
+	 * Deletes the store files except the ones of the specified log.
+	 */
+	private void deleteFiles(Log keep) {
+		final File[] files = directory.listFiles(new FileFilter() {
+			public boolean accept(File file) {
+				return file.isFile() && file.getName().startsWith(PREFIX);
+			}
+		});
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			if (keep == null
+					|| !file.equals(keep.file)
+					&& !file.equals(indexFile(keep.generation))) {
+				delete(file);
+			}
+		}
+	}
+
+	private static boolean rename(File source, File target) {
+		if (source.renameTo(target)) {
+			return true;
+		}
+		// not atomic on some platforms
+		return (!target.exists() || target.delete()) && source.renameTo(target);
+	}
+
+	private static void delete(File file) {
+		if (!file.delete() && file.exists()) {
+			file.deleteOnExit();
+		}
+	}
+
+}
@@ -0,0 +1,358 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.caching;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import org.eclipse.dltk.ast.parser.IASTCache;
+import org.eclipse.dltk.ast.parser.IASTSerializer;
+import org.eclipse.dltk.ast.parser.IModuleDeclaration;
+import org.eclipse.dltk.ast.parser.ISourceParser;
+import org.eclipse.dltk.compiler.problem.DefaultProblem;
+import org.eclipse.dltk.compiler.problem.DefaultProblemIdentifier;
+import org.eclipse.dltk.compiler.problem.IProblem;
+import org.eclipse.dltk.compiler.problem.ProblemCollector;
+import org.eclipse.dltk.compiler.problem.ProblemSeverity;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.DLTKLanguageManager;
+import org.eclipse.dltk.core.IDLTKLanguageToolkit;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.ModelException;
+
+/**
+ * The built-in {@link IASTCache} keeping the ASTs between the sessions, so the
+ * modules are not parsed again after restart until they are changed.
+ *
+ * <p>
+ * Only the languages which source parsers implement {@link IASTSerializer}
+ * are cached: the parser writes its module declaration and the cache writes
+ * the reported problems, the entries are stored in the {@link ASTCacheStore}
+ * under the plugin state location. The key is the digest of the module
+ * contents, its path, the class of the source parser and the version of its
+ * format, so the changed modules and the modules of the changed parser are
+ * parsed again. The modules which could not be written (e.g. reporting the
+ * problems of the language specific classes) are not cached.
+ *
+ * <p>
+ * Enabled with the {@link DLTKCore#AST_CACHE_PERSISTENT} option.
+ */
+public class PersistentASTCache implements IASTCache {
+
+	private static final String DIRECTORY = "astcache"; //$NON-NLS-1$
+	private static final long MEGABYTE = 1024 * 1024;
+	private static final int DEFAULT_SIZE = 64;
+
+	private static final boolean DEBUG = false;
+
+	private static PersistentASTCache instance;
+
+	/**
+	 * Returns the shared instance if enabled or <code>null</code> otherwise.
+	 */
+	public static synchronized PersistentASTCache getInstance() {
+		if (instance == null
+				&& DLTKCore.ENABLED.equals(DLTKCore
+						.getOption(DLTKCore.AST_CACHE_PERSISTENT))) {
+			final File directory = DLTKCore.getPlugin().getStateLocation()
+					.append(DIRECTORY).toFile();
+			instance = new PersistentASTCache(new ASTCacheStore(directory,
+					getMaxSize() * MEGABYTE));
+		}
+		return instance;
+	}
+
+	private static int getMaxSize() {
+		final String value = DLTKCore
+				.getOption(DLTKCore.AST_CACHE_PERSISTENT_SIZE);
+		if (value != null) {
+			try {
+				final int size = Integer.parseInt(value);
+				if (size > 0) {
+					return size;
+				}
+			} catch (NumberFormatException e) {
+				// fall through
+			}
+		}
+		return DEFAULT_SIZE;
+	}
+
+	/**
+	 * Closes the files of the shared instance.
+	 */
+	public static synchronized void shutdown() {
+		if (instance != null) {
+			instance.store.close();
+			instance = null;
+		}
+	}
+
+	private final ASTCacheStore store;
+
+	public PersistentASTCache(ASTCacheStore store) {
+		this.store = store;
+	}
+
+	public ASTCacheEntry restoreModule(ISourceModule module) {
+		final IASTSerializer serializer = getSerializer(module);
+		if (serializer == null) {
+			return null;
+		}
+		final byte[] key = keyOf(module, serializer);
+		if (key == null) {
+			return null;
+		}
+		final ByteBuffer data = store.get(key);
+		if (data == null) {
+			return null;
+		}
+		try {
+			return decode(serializer, data);
+		} catch (IOException e) {
+			if (DEBUG) {
+				System.out.println("[ASTCache] not restored " //$NON-NLS-1$
+						+ module.getPath() + ": " + e); //$NON-NLS-1$
+			}
+		} catch (RuntimeException e) {
+			DLTKCore.error("Error reading AST of " + module.getPath(), e); //$NON-NLS-1$
+		} catch (StackOverflowError e) {
+			DLTKCore.error("Error reading AST of " + module.getPath(), e); //$NON-NLS-1$
+		}
+		store.remove(key);
+		return null;
+	}
+
+	public void storeModule(ISourceModule module,
+			IModuleDeclaration moduleDeclaration, ProblemCollector problems) {
+		final IASTSerializer serializer = getSerializer(module);
+		if (serializer == null) {
+			return;
+		}
+		final byte[] key = keyOf(module, serializer);
+		if (key == null) {
+			return;
+		}
+		// the module was parsed successfully, so failing to cache it must not
+		// fail the parsing
+		try {
+			store.put(key, encode(serializer, moduleDeclaration, problems));
+		} catch (IOException e) {
+			if (DEBUG) {
+				System.out.println("[ASTCache] not stored " //$NON-NLS-1$
+						+ module.getPath() + ": " + e); //$NON-NLS-1$
+			}
+		} catch (RuntimeException e) {
+			DLTKCore.error("Error writing AST of " + module.getPath(), e); //$NON-NLS-1$
+		} catch (StackOverflowError e) {
+			DLTKCore.error("Error writing AST of " + module.getPath(), e); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Thrown when the reported problem is not a {@link DefaultProblem}.
+	 */
+	@SuppressWarnings("serial")
+	public static class UnsupportedProblemException extends IOException {
+		public UnsupportedProblemException(Class<?> clazz) {
+			super(clazz.getName());
+		}
+	}
+
+	/**
+	 * Writes the module declaration with the specified serializer followed by
+	 * the problems.
+	 *
+	 * @throws UnsupportedProblemException
+	 *             if some problem is not a {@link DefaultProblem}
+	 */
+	public static byte[] encode(IASTSerializer serializer,
+			IModuleDeclaration moduleDeclaration, ProblemCollector problems)
+			throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		serializer.writeModule(moduleDeclaration, out);
+		writeProblems(problems, out);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Reads the entry written by {@link #encode}.
+	 */
+	public static ASTCacheEntry decode(IASTSerializer serializer,
+			ByteBuffer data) throws IOException {
+		final byte[] bytes = new byte[data.remaining()];
+		data.duplicate().get(bytes);
+		final DataInputStream in = new DataInputStream(
+				new ByteArrayInputStream(bytes));
+		final ASTCacheEntry entry = new ASTCacheEntry();
+		entry.module = serializer.readModule(in);
+		if (entry.module == null) {
+			throw new IOException("Module expected"); //$NON-NLS-1$
+		}
+		entry.problems = readProblems(in);
+		if (in.read() != -1) {
+			throw new IOException("Unexpected data after problems"); //$NON-NLS-1$
+		}
+		return entry;
+	}
+
+	private static void writeProblems(ProblemCollector problems,
+			DataOutputStream out) throws IOException {
+		if (problems == null) {
+			out.writeInt(-1);
+			return;
+		}
+		final List<IProblem> list = problems.getProblems();
+		out.writeInt(list.size());
+		for (IProblem problem : list) {
+			if (problem.getClass() != DefaultProblem.class) {
+				throw new UnsupportedProblemException(problem.getClass());
+			}
+			final DefaultProblem p = (DefaultProblem) problem;
+			writeString(out, p.getOriginatingFileName());
+			writeString(out, p.getMessage());
+			// the same encoding as used by the problem markers
+			out.writeUTF(DefaultProblemIdentifier.encode(p.getID()));
+			final String[] arguments = p.getArguments();
+			if (arguments == null) {
+				out.writeInt(-1);
+			} else {
+				out.writeInt(arguments.length);
+				for (String argument : arguments) {
+					writeString(out, argument);
+				}
+			}
+			final ProblemSeverity severity = p.getSeverity();
+			writeString(out, severity != null ? severity.name() : null);
+			out.writeInt(p.getSourceStart());
+			out.writeInt(p.getSourceEnd());
+			out.writeInt(p.getSourceLineNumber());
+			out.writeInt(p.getColumn());
+		}
+	}
+
+	private static ProblemCollector readProblems(DataInputStream in)
+			throws IOException {
+		final int count = in.readInt();
+		if (count < 0) {
+			return null;
+		}
+		final ProblemCollector problems = new ProblemCollector();
+		for (int i = 0; i < count; ++i) {
+			final String fileName = readString(in);
+			final String message = readString(in);
+			final String id = in.readUTF();
+			final int argumentCount = in.readInt();
+			String[] arguments = null;
+			if (argumentCount >= 0) {
+				arguments = new String[argumentCount];
+				for (int j = 0; j < argumentCount; ++j) {
+					arguments[j] = readString(in);
+				}
+			}
+			final String severity = readString(in);
+			final ProblemSeverity problemSeverity;
+			try {
+				problemSeverity = severity != null ? ProblemSeverity
+						.valueOf(severity) : null;
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Unknown severity " + severity); //$NON-NLS-1$
+			}
+			final int start = in.readInt();
+			final int end = in.readInt();
+			final int line = in.readInt();
+			final int column = in.readInt();
+			problems.reportProblem(new DefaultProblem(fileName, message,
+					DefaultProblemIdentifier.decode(id), arguments,
+					problemSeverity, start, end, line, column));
+		}
+		return problems;
+	}
+
+	private static void writeString(DataOutputStream out, String value)
+			throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	/**
+	 * Returns the serializer of the language of the module or
+	 * <code>null</code> if its source parser does not support the persistent
+	 * cache.
+	 */
+	private static IASTSerializer getSerializer(ISourceModule module) {
+		final ISourceParser parser = getSourceParser(module);
+		return parser instanceof IASTSerializer ? (IASTSerializer) parser
+				: null;
+	}
+
+	private static ISourceParser getSourceParser(ISourceModule module) {
+		final IDLTKLanguageToolkit toolkit = DLTKLanguageManager
+				.getLanguageToolkit(module);
+		if (toolkit == null) {
+			return null;
+		}
+		return DLTKLanguageManager.getSourceParser(module.getScriptProject()
+				.getProject(), toolkit.getNatureId());
+	}
+
+	private static final Charset UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	/**
+	 * Returns the digest of the module contents, its path, the parser and the
+	 * version of its format, or <code>null</code> if the contents are not
+	 * available.
+	 */
+	static byte[] keyOf(ISourceModule module, IASTSerializer serializer) {
+		final char[] contents;
+		try {
+			contents = module.getSourceAsCharArray();
+		} catch (ModelException e) {
+			return null;
+		}
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+			digest.update(ASTCacheStore.VERSION);
+			digest.update(UTF8.encode(serializer.getClass().getName()));
+			digest.update((byte) 0);
+			final int version = serializer.getSerializationVersion();
+			digest.update(new byte[] { (byte) (version >>> 24),
+					(byte) (version >>> 16), (byte) (version >>> 8),
+					(byte) version });
+			digest.update(UTF8.encode(module.getPath().toString()));
+			digest.update((byte) 0);
+			digest.update(UTF8.encode(CharBuffer.wrap(contents)));
+			return digest.digest();
+		} catch (NoSuchAlgorithmException e) {
+			return null;
+		}
+	}
+
+}
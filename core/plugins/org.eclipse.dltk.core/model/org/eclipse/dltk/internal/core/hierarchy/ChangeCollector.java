@@ -89,11 +89,37 @@ public class ChangeCollector {
 				}
 				break;
 			case IModelElementDelta.CHANGED:
-				addAffectedChildren(newDelta);
+				if ((newDelta.getFlags() & IModelElementDelta.F_CONTENT) != 0
+						&& newDelta.getAffectedChildren().length == 0) {
+					addContentChange(cu);
+				} else {
+					addAffectedChildren(newDelta);
+				}
 				break;
 		}
 	}
 	
+	/*
+	 * Adds the changes of the types of the given compilation unit changed without fine-grained deltas,
+	 * e.g. saved outside of a working copy: all its types are checked for the super types change.
+	 */
+	private void addContentChange(ISourceModule cu) throws ModelException {
+		ArrayList allTypes = new ArrayList();
+		getAllTypesFromElement(cu, allTypes);
+		for (int i = 0, length = allTypes.size(); i < length; i++) {
+			IType type = (IType)allTypes.get(i);
+			addTypeChange(type, IModelElementDelta.F_SUPER_TYPES, (SimpleDelta)this.changes.get(type));
+		}
+		ArrayList existingTypes = new ArrayList();
+		getAllTypesFromHierarchy((ModelElement)cu, existingTypes);
+		for (int i = 0, length = existingTypes.size(); i < length; i++) {
+			IType type = (IType)existingTypes.get(i);
+			if (!allTypes.contains(type)) {
+				addTypeRemoval(type, (SimpleDelta)this.changes.get(type));
+			}
+		}
+	}
+	
 //	private void addChange(IImportContainer importContainer, IModelElementDelta newDelta) throws ModelException {
 //		int newKind = newDelta.getKind();
 //		if (newKind == IModelElementDelta.CHANGED) {
@@ -320,7 +346,7 @@ public class ChangeCollector {
 			}
 		} else {
 			// check whether the type removal affects the hierarchy
-			if (this.hierarchy.contains(type)) {
+			if (this.hierarchy.contains(type) || this.hierarchy.containsSubtype(type)) {
 				SimpleDelta typeDelta = new SimpleDelta();
 				typeDelta.removed();
 				this.changes.put(type, typeDelta);
@@ -419,6 +445,13 @@ public class ChangeCollector {
 		return existingFlags != newFlags;
 	}
 
+	/*
+	 * Returns the types changed in a way affecting the hierarchy.
+	 */
+	public IType[] getChangedTypes() {
+		return (IType[])this.changes.keySet().toArray(new IType[this.changes.size()]);
+	}
+
 	/*
 	 * Whether the hierarchy needs refresh according to the changes collected so far.
 	 */
@@ -7,6 +7,7 @@
  *******************************************************************************/
 package org.eclipse.dltk.internal.core.hierarchy;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -17,6 +18,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.dltk.compiler.CharOperation;
 import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.core.DLTKLanguageManager;
 import org.eclipse.dltk.core.IDLTKLanguageToolkit;
@@ -28,13 +30,20 @@ import org.eclipse.dltk.core.IType;
 import org.eclipse.dltk.core.ModelException;
 import org.eclipse.dltk.core.index2.search.ISearchEngine.MatchRule;
 import org.eclipse.dltk.core.index2.search.ModelAccess;
+import org.eclipse.dltk.core.search.DLTKSearchParticipant;
 import org.eclipse.dltk.core.search.IDLTKSearchConstants;
 import org.eclipse.dltk.core.search.IDLTKSearchScope;
 import org.eclipse.dltk.core.search.SearchEngine;
+import org.eclipse.dltk.core.search.SearchParticipant;
 import org.eclipse.dltk.core.search.SearchPattern;
 import org.eclipse.dltk.core.search.TypeNameRequestor;
+import org.eclipse.dltk.internal.compiler.env.AccessRuleSet;
 import org.eclipse.dltk.internal.core.ModelElement;
+import org.eclipse.dltk.internal.core.ModelManager;
 import org.eclipse.dltk.internal.core.Openable;
+import org.eclipse.dltk.internal.core.search.IndexQueryRequestor;
+import org.eclipse.dltk.internal.core.search.SubTypeSearchJob;
+import org.eclipse.dltk.internal.core.search.matching.SuperTypeReferencePattern;
 import org.eclipse.dltk.internal.core.util.HandleFactory;
 
 public class HierarchyResolver {
@@ -148,6 +157,11 @@ public class HierarchyResolver {
 	}
 
 	protected void computeSubtypes(IType focusType) throws CoreException {
+		if (hasSuperTypeReferences(focusType)) {
+			computeSubtypesFor(focusType, resolveDown(focusType),
+					new HashSet<IType>());
+			return;
+		}
 
 		// Collect all inheritance information:
 		final Map<String, List<String>> superTypeToExtender = new HashMap<String, List<String>>();
@@ -191,16 +205,219 @@ public class HierarchyResolver {
 		}
 
 		// Create file hierarchy resolver for filtering non-included elements
+		IFileHierarchyInfo hierarchyInfo = resolveDown(focusType);
+
+		computeSubtypesFor(focusType, superTypeToExtender, cache,
+				hierarchyInfo, new HashSet<IType>(), delimiter);
+	}
+
+	private IFileHierarchyInfo resolveDown(IType focusType)
+			throws CoreException {
 		IFileHierarchyResolver fileHierarchyResolver = createFileHierarchyResolver(focusType);
-		IFileHierarchyInfo hierarchyInfo = null;
 		if (fileHierarchyResolver != null) {
-			hierarchyInfo = fileHierarchyResolver.resolveDown(
+			return fileHierarchyResolver.resolveDown(
 					focusType.getSourceModule(),
 					hierarchyBuilder.hierarchy.progressMonitor);
 		}
+		return null;
+	}
 
-		computeSubtypesFor(focusType, superTypeToExtender, cache,
-				hierarchyInfo, new HashSet<IType>(), delimiter);
+	/**
+	 * Returns whether the supertype references are recorded in the index, so
+	 * the subtypes can be found without resolving all the types of the scope.
+	 * It is not the case if the new indexing infrastructure is used.
+	 */
+	private static boolean hasSuperTypeReferences(IType type) {
+		return ModelAccess.getIndexerParticipant(DLTKLanguageManager
+				.getLanguageToolkit(type)) == null;
+	}
+
+	/**
+	 * Computes the subtypes of the specified type following the supertype
+	 * references recorded in the index.
+	 */
+	protected void computeSubtypesFor(IType type,
+			IFileHierarchyInfo hierarchyInfo, Set<IType> processedTypes)
+			throws CoreException {
+		processedTypes.add(type);
+		hierarchyBuilder.hierarchy.checkCanceled();
+		IType[] subTypes = findSubtypes(type, hierarchyInfo);
+		for (int i = 0; i < subTypes.length; i++) {
+			hierarchyBuilder.hierarchy.addSubtype(type, subTypes[i]);
+		}
+		for (int i = 0; i < subTypes.length; i++) {
+			IType subType = subTypes[i];
+			if (!processedTypes.contains(subType)) {
+				computeSubtypesFor(subType, hierarchyInfo, processedTypes);
+			}
+		}
+	}
+
+	/**
+	 * Returns the direct subtypes of the specified type. Only the modules
+	 * referencing its name as a supertype in the index are opened.
+	 */
+	private IType[] findSubtypes(IType type, IFileHierarchyInfo hierarchyInfo)
+			throws CoreException {
+		final String qualifiedName = type
+				.getTypeQualifiedName(getDelimiterReplacementString(type));
+		final List<IType> result = new ArrayList<IType>();
+		final List<IType> filteredTypes = new ArrayList<IType>();
+		final HandleFactory handleFactory = new HandleFactory();
+		for (String path : findSubtypePaths(qualifiedName)) {
+			Openable openable = handleFactory.createOpenable(path,
+					hierarchyBuilder.hierarchy.scope);
+			if (!(openable instanceof ISourceModule)) {
+				continue;
+			}
+			final ISourceModule module = (ISourceModule) openable;
+			final List<IType> types = new ArrayList<IType>();
+			collectTypes(module.getTypes(), types);
+			for (IType candidate : types) {
+				if (!extendsType(candidate, qualifiedName)) {
+					continue;
+				}
+				if (hierarchyInfo != null && !hierarchyInfo.exists(module)) {
+					filteredTypes.add(candidate);
+				} else {
+					result.add(candidate);
+				}
+			}
+		}
+		// the same way as searchTypes()
+		if (result.isEmpty()) {
+			result.addAll(filteredTypes);
+		}
+		return result.toArray(new IType[result.size()]);
+	}
+
+	private static void collectTypes(IType[] types, List<IType> result)
+			throws ModelException {
+		for (IType type : types) {
+			result.add(type);
+			collectTypes(type.getTypes(), result);
+		}
+	}
+
+	private static boolean extendsType(IType type, String superTypeName)
+			throws ModelException {
+		String[] superClasses = type.getSuperClasses();
+		if (superClasses != null) {
+			for (String superClass : superClasses) {
+				if (superTypeName.equals(superClass)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the paths of the documents having the supertype references to
+	 * the specified name.
+	 */
+	private Set<String> findSubtypePaths(String superTypeName) {
+		final Set<String> paths = new HashSet<String>();
+		// the simple name the way SuperTypeReferencePattern records it
+		char[] superSimpleName = CharOperation.lastSegment(CharOperation
+				.lastSegment(superTypeName.toCharArray(), '.'), '$');
+		final IDLTKSearchScope scope = hierarchyBuilder.hierarchy.scope;
+		SuperTypeReferencePattern pattern = new SuperTypeReferencePattern(null,
+				superSimpleName, SuperTypeReferencePattern.ALL_SUPER_TYPES,
+				SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE,
+				scope.getLanguageToolkit());
+		IndexQueryRequestor requestor = new IndexQueryRequestor() {
+			public boolean acceptIndexMatch(String documentPath,
+					SearchPattern indexRecord, SearchParticipant participant,
+					AccessRuleSet access) {
+				paths.add(documentPath);
+				return true;
+			}
+		};
+		SubTypeSearchJob job = new SubTypeSearchJob(pattern,
+				new DLTKSearchParticipant(), scope, requestor);
+		try {
+			ModelManager.getModelManager().getIndexManager()
+					.performConcurrentJob(job,
+							IDLTKSearchConstants.WAIT_UNTIL_READY_TO_SEARCH,
+							null);
+		} finally {
+			job.finished();
+		}
+		return paths;
+	}
+
+	/**
+	 * Applies the changes of the specified types to the computed subtypes of
+	 * the focus type: the changed types are detached from their supertypes,
+	 * attached again according to their current supertypes and the subtypes
+	 * no longer reachable from the focus type are dropped.
+	 *
+	 * @return <code>false</code> if the hierarchy should be computed again,
+	 *         i.e. if the focus type or its supertypes are changed or if the
+	 *         subtypes are not recorded in the index
+	 */
+	public boolean update(IType[] changedTypes) throws CoreException {
+		final TypeHierarchy hierarchy = hierarchyBuilder.hierarchy;
+		final IType focusType = hierarchyBuilder.getType();
+		if (!hasSuperTypeReferences(focusType)) {
+			return false;
+		}
+		final Set<IType> supertypes = new HashSet<IType>(Arrays
+				.asList(hierarchy.getAllSupertypes(focusType)));
+		supertypes.add(focusType);
+		for (IType type : changedTypes) {
+			if (supertypes.contains(type)) {
+				return false;
+			}
+		}
+		for (IType type : changedTypes) {
+			hierarchy.removeSubtype(type);
+		}
+		final IFileHierarchyInfo hierarchyInfo = resolveDown(focusType);
+		final Set<IType> subtypes = new HashSet<IType>(Arrays.asList(hierarchy
+				.getAllSubtypes(focusType)));
+		subtypes.add(focusType);
+		final List<IType> pending = new ArrayList<IType>(Arrays
+				.asList(changedTypes));
+		boolean attached;
+		do {
+			attached = false;
+			for (Iterator<IType> i = pending.iterator(); i.hasNext();) {
+				final IType type = i.next();
+				if (!type.exists()) {
+					i.remove();
+					continue;
+				}
+				boolean linked = false;
+				for (IType superType : subtypes.toArray(new IType[subtypes
+						.size()])) {
+					final String superTypeName = superType
+							.getTypeQualifiedName(getDelimiterReplacementString(superType));
+					if (extendsType(type, superTypeName)) {
+						hierarchy.addSubtype(superType, type);
+						linked = true;
+					}
+				}
+				if (linked) {
+					i.remove();
+					attached = true;
+					if (!subtypes.contains(type)) {
+						computeSubtypesFor(type, hierarchyInfo,
+								new HashSet<IType>(subtypes));
+					}
+					subtypes.add(type);
+					subtypes.addAll(Arrays.asList(hierarchy
+							.getAllSubtypes(type)));
+				}
+			}
+		} while (attached && !pending.isEmpty());
+		// drop the detached subtrees
+		final Set<IType> reachable = new HashSet<IType>(Arrays
+				.asList(hierarchy.getAllSubtypes(focusType)));
+		reachable.addAll(supertypes);
+		hierarchy.retainSubtypes(reachable);
+		return true;
 	}
 
 	protected void computeSubtypesFor(IType focusType,
@@ -18,6 +18,7 @@ import java.util.Iterator;
 import java.util.Map;
 
 import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.dltk.compiler.CharOperation;
@@ -172,6 +173,20 @@ public class IndexBasedHierarchyBuilder extends HierarchyBuilder {
 		}
 	}
 
+	/**
+	 * Applies the changes of the specified types to the hierarchy. Returns
+	 * <code>false</code> if the hierarchy should be built again.
+	 */
+	public boolean update(IType[] changedTypes) throws CoreException {
+		ModelManager manager = ModelManager.getModelManager();
+		try {
+			manager.cacheZipFiles();
+			return this.hierarchyResolver.update(changedTypes);
+		} finally {
+			manager.flushZipFiles();
+		}
+	}
+
 	private void buildForProject(ScriptProject project,
 			ArrayList potentialSubtypes,
 			org.eclipse.dltk.core.ISourceModule[] workingCopies,
@@ -154,6 +154,12 @@ public class TypeHierarchy implements ITypeHierarchy, IElementChangedListener {
 	 */
 	protected ChangeCollector changeCollector;
 
+	/*
+	 * Whether changes other than the ones of the types were reported since the
+	 * last refresh, so the collected changes cannot be applied incrementally
+	 */
+	protected boolean structureChanged;
+
 	/**
 	 * Creates an empty TypeHierarchy
 	 */
@@ -198,6 +204,11 @@ public class TypeHierarchy implements ITypeHierarchy, IElementChangedListener {
 	protected void initializeRegions() {
 
 		IType[] allTypes = getAllTypes();
+		if (this.focusType != null) {
+			// the subtypes are not connected to their superclasses
+			allTypes = growAndAddToArray(allTypes,
+					getAllSubtypes(this.focusType));
+		}
 		for (int i = 0; i < allTypes.length; i++) {
 			IType type = allTypes[i];
 			Openable o = (Openable) ((ModelElement) type).getOpenableParent();
@@ -244,6 +255,39 @@ public class TypeHierarchy implements ITypeHierarchy, IElementChangedListener {
 		this.rootClasses.add(type);
 	}
 
+	/**
+	 * Removes the given subtype from all the types.
+	 */
+	protected void removeSubtype(IType subtype) {
+		for (TypeVector subtypes : this.typeToSubtypes.values()) {
+			subtypes.remove(subtype);
+		}
+	}
+
+	/**
+	 * Removes the subtypes of the types not in the given set.
+	 */
+	protected void retainSubtypes(Set<IType> types) {
+		for (Iterator<IType> i = this.typeToSubtypes.keySet().iterator(); i
+				.hasNext();) {
+			if (!types.contains(i.next())) {
+				i.remove();
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the type is a subtype of a type in this hierarchy.
+	 */
+	boolean containsSubtype(IType type) {
+		for (TypeVector subtypes : this.typeToSubtypes.values()) {
+			if (subtypes.contains(type)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Adds the given subtype to the type.
 	 */
@@ -339,6 +383,41 @@ public class TypeHierarchy implements ITypeHierarchy, IElementChangedListener {
 		} // else a RegionBasedTypeHierarchy should be used
 	}
 
+	/**
+	 * Returns whether the changes collected since the last refresh can be
+	 * applied to this hierarchy instead of computing it again.
+	 */
+	protected boolean canUpdate() {
+		return this.computeSubtypes && this.focusType != null
+				&& this.classToSuperclass != null && !this.structureChanged
+				&& this.changeCollector != null;
+	}
+
+	/**
+	 * Applies the changes collected since the last refresh, computes this
+	 * hierarchy again if they cannot be applied.
+	 */
+	protected void update() throws ModelException, CoreException {
+		IndexBasedHierarchyBuilder builder = new IndexBasedHierarchyBuilder(
+				this, this.scope);
+		boolean updated = false;
+		try {
+			updated = builder.update(this.changeCollector.getChangedTypes());
+		} finally {
+			if (!updated) {
+				// the hierarchy could be changed partially
+				this.structureChanged = true;
+			}
+		}
+		if (updated) {
+			this.files = new HashMap<IOpenable, ArrayList<IType>>(5);
+			this.projectRegion = new Region();
+			this.packageRegion = new Region();
+		} else {
+			builder.build(this.computeSubtypes);
+		}
+	}
+
 	/**
 	 * @see ITypeHierarchy
 	 */
@@ -364,6 +443,10 @@ public class TypeHierarchy implements ITypeHierarchy, IElementChangedListener {
 	public void elementChanged(ElementChangedEvent event) {
 		// type hierarchy change has already been fired
 		if (this.needsRefresh) {
+			if (canUpdate()) {
+				// keep collecting the changes to apply them on refresh
+				isAffected(event.getDelta());
+			}
 			return;
 		}
 
@@ -685,7 +768,8 @@ public class TypeHierarchy implements ITypeHierarchy, IElementChangedListener {
 	boolean includesTypeOrSupertype(IType type) {
 		try {
 			// check type
-			if (hasTypeNamed(type.getElementName())) {
+			if (hasTypeNamed(type.getElementName())
+					|| hasSubtypeNamed(type.getElementName())) {
 				return true;
 			}
 
@@ -702,7 +786,8 @@ public class TypeHierarchy implements ITypeHierarchy, IElementChangedListener {
 					int lastSeparator = superinterfaceName.lastIndexOf('.');
 					String simpleName = superinterfaceName
 							.substring(lastSeparator + 1);
-					if (hasTypeNamed(simpleName)) {
+					if (hasTypeNamed(simpleName)
+							|| hasSubtypeNamed(simpleName)) {
 						return true;
 					}
 				}
@@ -791,7 +876,8 @@ public class TypeHierarchy implements ITypeHierarchy, IElementChangedListener {
 		switch (delta.getKind()) {
 		case IModelElementDelta.ADDED:
 		case IModelElementDelta.REMOVED:
-			return element.equals(this.javaProject().getModel());
+			return markStructureChanged(element.equals(this.javaProject()
+					.getModel()));
 		case IModelElementDelta.CHANGED:
 			return isAffectedByChildren(delta);
 		}
@@ -823,7 +909,7 @@ public class TypeHierarchy implements ITypeHierarchy, IElementChangedListener {
 					IBuildpathEntry element2 = classpath[j];
 					if (element2.getEntryKind() == IBuildpathEntry.BPE_PROJECT
 							&& element2.getPath().equals(element.getPath())) {
-						return true;
+						return markStructureChanged(true);
 					}
 				}
 				if (this.focusType != null) {
@@ -836,7 +922,7 @@ public class TypeHierarchy implements ITypeHierarchy, IElementChangedListener {
 						IBuildpathEntry element2 = classpath[j];
 						if (element2.getEntryKind() == IBuildpathEntry.BPE_PROJECT
 								&& element2.getPath().equals(hierarchyProject)) {
-							return true;
+							return markStructureChanged(true);
 						}
 					}
 				}
@@ -852,7 +938,7 @@ public class TypeHierarchy implements ITypeHierarchy, IElementChangedListener {
 				IModelElement pkg = pkgs[i];
 				IScriptProject javaProject = pkg.getScriptProject();
 				if (javaProject != null && javaProject.equals(element)) {
-					return true;
+					return markStructureChanged(true);
 				}
 			}
 			return false;
@@ -873,11 +959,12 @@ public class TypeHierarchy implements ITypeHierarchy, IElementChangedListener {
 			// if the package fragment is in the projects being considered, this
 			// could
 			// introduce new types, changing the hierarchy
-			return this.projectRegion.contains(element);
+			return markStructureChanged(this.projectRegion.contains(element));
 		case IModelElementDelta.REMOVED:
 			// is a change if the package fragment contains types in this
 			// hierarchy
-			return packageRegionContainsSamePackageFragment(element);
+			return markStructureChanged(packageRegionContainsSamePackageFragment(
+					element));
 		case IModelElementDelta.CHANGED:
 			// look at the files in the package fragment
 			return isAffectedByChildren(delta);
@@ -893,7 +980,7 @@ public class TypeHierarchy implements ITypeHierarchy, IElementChangedListener {
 			IModelElement element) {
 		switch (delta.getKind()) {
 		case IModelElementDelta.ADDED:
-			return this.projectRegion.contains(element);
+			return markStructureChanged(this.projectRegion.contains(element));
 		case IModelElementDelta.REMOVED:
 		case IModelElementDelta.CHANGED:
 			int flags = delta.getFlags();
@@ -913,7 +1000,7 @@ public class TypeHierarchy implements ITypeHierarchy, IElementChangedListener {
 							for (int j = 0; j < classpath.length; j++) {
 								IBuildpathEntry entry = classpath[j];
 								if (entry.getPath().equals(rootPath)) {
-									return true;
+									return markStructureChanged(true);
 								}
 							}
 						} catch (ModelException e) {
@@ -933,7 +1020,7 @@ public class TypeHierarchy implements ITypeHierarchy, IElementChangedListener {
 				IModelElement[] pkgs = this.packageRegion.getElements();
 				for (int i = 0; i < pkgs.length; i++) {
 					if (pkgs[i].getParent().equals(element)) {
-						return true;
+						return markStructureChanged(true);
 					}
 				}
 				return false;
@@ -961,9 +1048,10 @@ public class TypeHierarchy implements ITypeHierarchy, IElementChangedListener {
 					e.printStackTrace();
 				}
 			}
+			// the collected changes are applied on refresh
+			this.changeCollector = collector;
 			if (cu.isWorkingCopy()) {
 				// changes to working copies are batched
-				this.changeCollector = collector;
 				return false;
 			} else {
 				return collector.needsRefresh();
@@ -972,6 +1060,16 @@ public class TypeHierarchy implements ITypeHierarchy, IElementChangedListener {
 		return false;
 	}
 
+	/**
+	 * Records that this hierarchy should be computed again if affected.
+	 */
+	private boolean markStructureChanged(boolean affected) {
+		if (affected) {
+			this.structureChanged = true;
+		}
+		return affected;
+	}
+
 	/**
 	 * Returns the java project this hierarchy was created in.
 	 */
@@ -1204,9 +1302,14 @@ public class TypeHierarchy implements ITypeHierarchy, IElementChangedListener {
 				}
 			}
 
-			compute();
+			if (canUpdate()) {
+				update();
+			} else {
+				compute();
+			}
 			initializeRegions();
 			this.needsRefresh = false;
+			this.structureChanged = false;
 			this.changeCollector = null;
 
 			if (DEBUG) {
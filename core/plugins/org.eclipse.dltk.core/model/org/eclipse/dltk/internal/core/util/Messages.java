@@ -134,6 +134,8 @@ public class Messages extends NLS {
 	public static String engine_searching;
 	public static String engine_searching_indexing;
 	public static String engine_searching_matching;
+	public static String engine_searching_updating;
+	public static String mixin_updating;
 
 	public static String process_name;
 
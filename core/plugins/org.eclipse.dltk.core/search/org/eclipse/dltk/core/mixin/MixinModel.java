@@ -11,12 +11,23 @@ package org.eclipse.dltk.core.mixin;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Enumeration;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
@@ -26,9 +37,12 @@ import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.ListenerList;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.dltk.compiler.CharOperation;
 import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.core.DLTKLanguageManager;
@@ -48,12 +62,22 @@ import org.eclipse.dltk.core.mixin.IMixinRequestor.ElementInfo;
 import org.eclipse.dltk.core.search.IDLTKSearchScope;
 import org.eclipse.dltk.core.search.SearchEngine;
 import org.eclipse.dltk.core.search.indexing.IIndexConstants;
-import org.eclipse.dltk.internal.core.OverflowingLRUCache;
 import org.eclipse.dltk.internal.core.mixin.IInternalMixinElement;
 import org.eclipse.dltk.internal.core.mixin.MixinCache;
 import org.eclipse.dltk.internal.core.mixin.MixinManager;
-import org.eclipse.dltk.internal.core.util.LRUCache;
-
+import org.eclipse.dltk.internal.core.util.Messages;
+
+/**
+ * The model of the mixin elements of the modules.
+ * <p>
+ * The lookups of the known elements and keys are answered without locking.
+ * The modifications are done under the lock of the model, the modules are
+ * parsed without holding it, so the lookups are not blocked while a module is
+ * parsed. The collections read without locking are replaced as a whole when
+ * changed, except the children of the elements which are kept in the
+ * concurrent maps.
+ * </p>
+ */
 public class MixinModel {
 	private static final long REQUEST_CACHE_EXPIRE_TIME = 2000;
 	private static final boolean DEBUG = false;
@@ -66,33 +90,79 @@ public class MixinModel {
 	private static final int KEYS_CACHE_LIMIT = 500000;
 	private static final int REQUEST_CACHE_LIMIT = 500;
 
+	/**
+	 * The number of the buffered accesses to apply them to the order of the
+	 * cache.
+	 */
+	private static final int READ_DRAIN_THRESHOLD = 64;
+
+	/**
+	 * Guards the modifications of the model.
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * The least recently used order of the elements, guarded by {@link #lock}.
+	 */
 	private final MixinCache cache;
 
 	/**
-	 * Contains map of source modules to mixin elements.
+	 * The elements of the {@link #cache} by their keys, read without locking.
 	 */
-	private Map<ISourceModule, List<MixinElement>> elementToMixinCache = new HashMap<ISourceModule, List<MixinElement>>();
+	private final ConcurrentMap<String, MixinElement> elements = new ConcurrentHashMap<String, MixinElement>();
 
-	private final RequestCache requestCache = new RequestCache(
-			REQUEST_CACHE_LIMIT);
+	/**
+	 * The keys of the elements found without locking, applied to the order of
+	 * the {@link #cache} later.
+	 */
+	private final Queue<String> readBuffer = new ConcurrentLinkedQueue<String>();
+	private final AtomicInteger readBufferSize = new AtomicInteger();
+
+	/**
+	 * Contains map of source modules to mixin elements, guarded by
+	 * {@link #lock}.
+	 */
+	private final Map<ISourceModule, List<MixinElement>> elementToMixinCache = new HashMap<ISourceModule, List<MixinElement>>();
+
+	/**
+	 * The recent requests by their patterns. The map is never modified, it is
+	 * replaced under the {@link #lock}.
+	 */
+	private volatile Map<String, RequestCacheEntry> requestCache = Collections
+			.emptyMap();
+
+	/**
+	 * Incremented when the requests are invalidated, so the requests running
+	 * concurrently are not cached.
+	 */
+	private volatile int requestGeneration;
 
 	// true if exists, false if doesn't
-	private Map<String, Boolean> knownKeysCache = new HashMap<String, Boolean>();
+	private final ConcurrentMap<String, Boolean> knownKeysCache = new ConcurrentHashMap<String, Boolean>();
 	// boolean, for the atomicity of it
-	public boolean removes = true;
+	public volatile boolean removes = true;
 
 	private final IDLTKLanguageToolkit toolkit;
 
 	private final IScriptProject project;
 
-	private MixinRequestor mixinRequestor = new MixinRequestor();
+	/**
+	 * modules required to be reparsed, guarded by {@link #lock}
+	 */
+	private final Set<ISourceModule> modulesToReparse = new HashSet<ISourceModule>();
 
-	private ISourceModule currentModule;
+	/**
+	 * the modules being parsed, guarded by {@link #lock}
+	 */
+	private final Map<ISourceModule, ModuleParse> parses = new HashMap<ISourceModule, ModuleParse>();
 
 	/**
-	 * modules required to be reparsed
+	 * the added modules to be reparsed in the background, guarded by
+	 * {@link #lock}
 	 */
-	private Set<ISourceModule> modulesToReparse = new HashSet<ISourceModule>();
+	private final Set<ISourceModule> pendingModules = new LinkedHashSet<ISourceModule>();
+
+	private final Job reparseJob = new ReparseJob();
 
 	/**
 	 * Creates workspace instance
@@ -128,6 +198,7 @@ public class MixinModel {
 		ResourcesPlugin.getWorkspace().removeResourceChangeListener(
 				changedListener);
 		MixinModelRegistry.unregister(this);
+		reparseJob.cancel();
 	}
 
 	// long-running operation
@@ -135,36 +206,39 @@ public class MixinModel {
 		if (DLTKCore.VERBOSE) {
 			System.out.println("MixinModel.get(" + key + ')'); //$NON-NLS-1$
 		}
-		MixinElement element = null;
-		synchronized (this) {
-			if (knownKeysCache.get(key) == Boolean.FALSE) {
+		if (knownKeysCache.get(key) == Boolean.FALSE) {
+			return null;
+		}
+		MixinElement element = elements.get(key);
+		if (element != null) {
+			recordAccess(key);
+		} else {
+			if (!removes) {
 				return null;
 			}
-			element = (MixinElement) cache.get(key);
-			if (element == null) {
-				if (!removes) {
-					return null;
-				} else {
-					element = new MixinElement(key, currentModule);
-					cache.put(key, element);
-					cache.ensureSpaceLimit(1, element);
+			lock.lock();
+			try {
+				element = getCreateEmpty(key, null);
+				if (DLTKCore.VERBOSE) {
+					System.out
+							.println("Filling ratio:" + this.cache.fillingRatio()); //$NON-NLS-1$
+					this.cache.printStats();
 				}
-			}
-			if (DLTKCore.VERBOSE) {
-				System.out
-						.println("Filling ratio:" + this.cache.fillingRatio()); //$NON-NLS-1$
-				this.cache.printStats();
+			} finally {
+				lock.unlock();
 			}
 		}
 		buildElementTree(element);
-		synchronized (this) {
-			if (element.isFinal() && element.sourceModules.size() > 0) {
-				knownKeysCache.put(key, Boolean.TRUE);
-				return element;
-			}
-			knownKeysCache.put(key, Boolean.FALSE);
-			cache.remove(element.key);
-			cache.resetSpaceLimit(CACHE_LIMIT, element);
+		if (element.isFinal() && !element.sourceModules.isEmpty()) {
+			knownKeysCache.put(key, Boolean.TRUE);
+			return element;
+		}
+		knownKeysCache.put(key, Boolean.FALSE);
+		lock.lock();
+		try {
+			removeElement(element);
+		} finally {
+			lock.unlock();
 		}
 		return null;
 	}
@@ -177,6 +251,9 @@ public class MixinModel {
 		}
 	}
 
+	/*
+	 * Not modified once put into the request cache.
+	 */
 	private static class RequestCacheEntry {
 		long expireTime;
 		String prefix = null;
@@ -184,25 +261,6 @@ public class MixinModel {
 		Set<String> keys = null;
 	}
 
-	private static class RequestCache extends OverflowingLRUCache {
-
-		public RequestCache(int size) {
-			super(size);
-		}
-
-		public RequestCache(int size, int overflow) {
-			super(size, overflow);
-		}
-
-		protected boolean close(LRUCacheEntry entry) {
-			return true;
-		}
-
-		protected LRUCache newInstance(int size, int overflow) {
-			return new RequestCache(size, overflow);
-		}
-	};
-
 	/**
 	 * @deprecated
 	 */
@@ -231,14 +289,17 @@ public class MixinModel {
 
 		Set<MixinElement> result = new HashSet<MixinElement>();
 
-		synchronized (this) {
+		lock.lock();
+		try {
 			for (String key : entry.keys) {
-				MixinElement element = getCreateEmpty(key);
+				MixinElement element = getCreateEmpty(key, null);
 				if (!monitor.isCanceled()) {
 					markElementAsFinal(element);
 				}
 				addKeyToSet(result, element, pattern);
 			}
+		} finally {
+			lock.unlock();
 		}
 		if (TRACE) {
 			long end = System.currentTimeMillis();
@@ -261,7 +322,7 @@ public class MixinModel {
 		}
 		result.add(element);
 		knownKeysCache.put(element.key, Boolean.TRUE);
-		for (MixinElement child : element.children)
+		for (MixinElement child : element.getChildElements())
 			addKeyToSet(result, child, pattern);
 	}
 
@@ -269,15 +330,12 @@ public class MixinModel {
 	private RequestCacheEntry findFromMixin(String pattern,
 			IProgressMonitor monitor) {
 		PerformanceNode p = RuntimePerformanceMonitor.begin();
-		RequestCacheEntry entry;
-		synchronized (this) {
-			entry = (RequestCacheEntry) requestCache.get(pattern);
-			if (entry != null && entry.expireTime >= System.currentTimeMillis())
-				return entry;
-			entry = new RequestCacheEntry();
-			// TODO searches with clashing keys
-			// requestCache.put(pattern, entry);
-		}
+		RequestCacheEntry entry = requestCache.get(pattern);
+		if (entry != null && entry.expireTime >= System.currentTimeMillis())
+			return entry;
+		final int generation = requestGeneration;
+		entry = new RequestCacheEntry();
+		// TODO searches with clashing keys
 		Map<ISourceModule, Set<String>> keys = new HashMap<ISourceModule, Set<String>>();
 		ISourceModule[] containedModules = null;
 		try {
@@ -296,14 +354,37 @@ public class MixinModel {
 			entry.keys.addAll(strs);
 		}
 		if (!monitor.isCanceled()) {
-			synchronized (this) {
-				requestCache.put(pattern, entry);
-			}
+			putRequest(entry, generation);
 		}
 		p.done(getNature(), "Mixin model search items", 0);
 		return entry;
 	}
 
+	/**
+	 * Puts the request into the copy of the request cache, unless the requests
+	 * were invalidated since the given generation.
+	 */
+	private void putRequest(RequestCacheEntry entry, int generation) {
+		lock.lock();
+		try {
+			if (generation != requestGeneration) {
+				return;
+			}
+			final Map<String, RequestCacheEntry> requests = new LinkedHashMap<String, RequestCacheEntry>(
+					requestCache);
+			requests.remove(entry.prefix);
+			requests.put(entry.prefix, entry);
+			for (Iterator<String> i = requests.keySet().iterator(); requests
+					.size() > REQUEST_CACHE_LIMIT;) {
+				i.next();
+				i.remove();
+			}
+			requestCache = requests;
+		} finally {
+			lock.unlock();
+		}
+	}
+
 	/**
 	 * @deprecated
 	 */
@@ -328,27 +409,23 @@ public class MixinModel {
 
 	// long-running operation
 	public boolean keyExists(String key) {
-		synchronized (this) {
-			// TODO: For this version we cache all information, so should be
-			// false.
-			if (!removes) {
-				return cache.get(key) != null;
-			}
-			MixinElement e = (MixinElement) this.cache.get(key);
-			if (e != null && e.sourceModules.size() > 0) {
-				return true;
-			}
-			Boolean cached = knownKeysCache.get(key);
-			if (cached != null)
-				return cached;
+		MixinElement e = this.elements.get(key);
+		// TODO: For this version we cache all information, so should be
+		// false.
+		if (!removes) {
+			return e != null;
+		}
+		if (e != null && !e.sourceModules.isEmpty()) {
+			return true;
 		}
+		Boolean cached = knownKeysCache.get(key);
+		if (cached != null)
+			return cached;
 		boolean exists = get(key) != null;
-		synchronized (this) {
-			if (knownKeysCache.size() > KEYS_CACHE_LIMIT) {
-				knownKeysCache.clear();
-			}
-			knownKeysCache.put(key, exists);
+		if (knownKeysCache.size() > KEYS_CACHE_LIMIT) {
+			knownKeysCache.clear();
 		}
+		knownKeysCache.put(key, exists);
 		return exists;
 	}
 
@@ -360,9 +437,11 @@ public class MixinModel {
 		}
 		ISourceModule[] containedModules = findModules(element.getKey());
 		if (containedModules.length == 0) {
-			synchronized (cache) {
-				cache.remove(element.key);
-				cache.resetSpaceLimit(CACHE_LIMIT, element);
+			lock.lock();
+			try {
+				removeElement(element);
+			} finally {
+				lock.unlock();
 			}
 			return;
 		}
@@ -370,43 +449,149 @@ public class MixinModel {
 			reportModule(module);
 		}
 		// mark selected element and all subelements as finished.
-		synchronized (this) {
+		lock.lock();
+		try {
 			markElementAsFinal(element);
+		} finally {
+			lock.unlock();
 		}
 	}
 
 	// called with lock being held
 	private void markElementAsFinal(MixinElement element) {
 		element.bFinal = true;
-		for (MixinElement child : element.children) {
+		for (MixinElement child : element.getChildElements()) {
 			markElementAsFinal(child);
 		}
 	}
 
-	// TODO long-running operation. shouldn't be synchronized
-	public synchronized void reportModule(ISourceModule sourceModule) {
-			if (!elementToMixinCache.containsKey(sourceModule)) {
-				elementToMixinCache.put(sourceModule,
-						new ArrayList<MixinElement>());
+	/**
+	 * Parses the module if it is not in the model yet or it should be
+	 * reparsed. The module is parsed without holding the lock of the model,
+	 * the concurrent reports of the same module wait for its parse.
+	 */
+	public void reportModule(ISourceModule sourceModule) {
+		ModuleParse parse;
+		boolean owner = false;
+		lock.lock();
+		try {
+			parse = parses.get(sourceModule);
+			if (parse != null) {
+				if (isParsing(Thread.currentThread())) {
+					// reported by the parser, waiting could deadlock
+					return;
+				}
 			} else {
-				// Module already in model. So we do not to rebuild it.
-				if (!modulesToReparse.remove(sourceModule)) {
+				if (elementToMixinCache.containsKey(sourceModule)
+						&& !modulesToReparse.contains(sourceModule)) {
+					// Module already in model. So we do not to rebuild it.
 					return;
 				}
 				// We need to reparse module if some elements are moved from it.
+				modulesToReparse.remove(sourceModule);
+				parse = new ModuleParse(sourceModule);
+				parses.put(sourceModule, parse);
+				owner = true;
+			}
+		} finally {
+			lock.unlock();
+		}
+		if (owner) {
+			parse(parse);
+		} else {
+			try {
+				parse.done.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	// called with lock being held
+	private boolean isParsing(Thread thread) {
+		for (ModuleParse parse : parses.values()) {
+			if (parse.owner == thread) {
+				return true;
 			}
+		}
+		return false;
+	}
+
+	private void parse(ModuleParse parse) {
 		try {
 			IMixinParser mixinParser = MixinManager
-					.getMixinParser(sourceModule);
+					.getMixinParser(parse.module);
 			if (mixinParser != null) {
-				this.currentModule = sourceModule;
-				mixinParser.setRequirestor(mixinRequestor);
-				mixinParser.parserSourceModule(true, sourceModule);
-				this.currentModule = null;
+				// the parser instances are shared
+				synchronized (mixinParser) {
+					mixinParser.setRequirestor(parse);
+					mixinParser.parserSourceModule(true, parse.module);
+				}
 			}
 		} catch (CoreException e) {
 			DLTKCore.error("Error in reportModule", e); //$NON-NLS-1$
-			return;
+		} finally {
+			lock.lock();
+			try {
+				if (parses.get(parse.module) == parse) {
+					parses.remove(parse.module);
+				}
+				if (!parse.stale) {
+					addModuleElements(parse);
+				}
+			} finally {
+				lock.unlock();
+				parse.done.countDown();
+			}
+		}
+	}
+
+	/*
+	 * Adds the reported elements of the module to the model. Called with lock
+	 * being held.
+	 */
+	private void addModuleElements(ModuleParse parse) {
+		final ISourceModule module = parse.module;
+		final Set<MixinElement> moduleElements = new LinkedHashSet<MixinElement>();
+		final Map<MixinElement, List<Object>> moduleObjects = new HashMap<MixinElement, List<Object>>();
+		for (ElementInfo info : parse.infos) {
+			knownKeysCache.put(info.key, Boolean.TRUE);
+			String[] list = info.key.split("\\" //$NON-NLS-1$
+					+ IMixinRequestor.MIXIN_NAME_SEPARATOR);
+			MixinElement element = getCreateEmpty(info.key, module);
+			moduleElements.add(element);
+			element.addModule(module);
+			if (info.object != null) {
+				List<Object> objects = moduleObjects.get(element);
+				if (objects == null) {
+					objects = new ArrayList<Object>();
+					moduleObjects.put(element, objects);
+				}
+				objects.add(info.object);
+			}
+			// Append as childs for all other elements. Also append modules to
+			// all selected elements.
+			for (int i = 0; i < list.length - 1; ++i) {
+				MixinElement parent = getCreateEmpty(element.getParentKey(),
+						module);
+				parent.addChild(element);
+				moduleElements.add(parent);
+				element = parent;
+			}
+		}
+		final List<MixinElement> previous = elementToMixinCache.put(module,
+				new ArrayList<MixinElement>(moduleElements));
+		if (previous != null) {
+			// the objects of the reparsed module are replaced
+			for (MixinElement element : previous) {
+				if (!moduleObjects.containsKey(element)) {
+					element.setObjects(module, null);
+				}
+			}
+		}
+		for (Map.Entry<MixinElement, List<Object>> entry : moduleObjects
+				.entrySet()) {
+			entry.getKey().setObjects(module, entry.getValue());
 		}
 	}
 
@@ -435,19 +620,109 @@ public class MixinModel {
 	 * if cache doesn't contain required element
 	 * 
 	 * @param key
+	 * @param module
+	 *            the module of the created element or <code>null</code>
 	 * @return
 	 */
-	private MixinElement getCreateEmpty(String key) {
+	private MixinElement getCreateEmpty(String key, ISourceModule module) {
 		// called with lock being held
-		MixinElement element = (MixinElement) cache.get(key);
+		drainReadBuffer();
+		MixinElement element = elements.get(key);
 		if (element == null) {
-			element = new MixinElement(key, currentModule);
+			element = new MixinElement(key, module);
 			this.cache.put(key, element);
+			this.elements.put(key, element);
 			this.cache.ensureSpaceLimit(1, element);
+		} else {
+			this.cache.get(key);
 		}
 		return element;
 	}
 
+	// called with lock being held
+	private void removeElement(MixinElement element) {
+		elements.remove(element.key, element);
+		if (cache.peek(element.key) == element) {
+			cache.remove(element.key);
+		}
+		cache.resetSpaceLimit(CACHE_LIMIT, element);
+	}
+
+	private void recordAccess(String key) {
+		readBuffer.offer(key);
+		if (readBufferSize.incrementAndGet() >= READ_DRAIN_THRESHOLD
+				&& lock.tryLock()) {
+			try {
+				drainReadBuffer();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/*
+	 * Moves the recently accessed elements to the head of the cache. Called
+	 * with lock being held.
+	 */
+	private void drainReadBuffer() {
+		for (int i = readBufferSize.get(); i > 0; --i) {
+			final String key = readBuffer.poll();
+			if (key == null) {
+				break;
+			}
+			readBufferSize.decrementAndGet();
+			cache.get(key);
+		}
+	}
+
+	/*
+	 * Schedules the added module to be reparsed in the background.
+	 */
+	private void addPendingModule(ISourceModule module) {
+		lock.lock();
+		try {
+			if (!modulesToReparse.add(module)) {
+				return;
+			}
+			pendingModules.add(module);
+		} finally {
+			lock.unlock();
+		}
+		reparseJob.schedule();
+	}
+
+	private class ReparseJob extends Job {
+
+		public ReparseJob() {
+			super(Messages.mixin_updating);
+			setSystem(true);
+			setPriority(DECORATE);
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			for (;;) {
+				if (monitor.isCanceled()) {
+					return Status.CANCEL_STATUS;
+				}
+				final ISourceModule module;
+				lock.lock();
+				try {
+					final Iterator<ISourceModule> i = pendingModules
+							.iterator();
+					if (!i.hasNext()) {
+						return Status.OK_STATUS;
+					}
+					module = i.next();
+					i.remove();
+				} finally {
+					lock.unlock();
+				}
+				reportModule(module);
+			}
+		}
+	}
+
 	private interface IMixinChangedListener extends IElementChangedListener,
 			IResourceChangeListener {
 	}
@@ -455,12 +730,9 @@ public class MixinModel {
 	private IMixinChangedListener changedListener = new IMixinChangedListener() {
 		public void elementChanged(ElementChangedEvent event) {
 			IModelElementDelta delta = event.getDelta();
-			synchronized (MixinModel.this) {
-				processDelta(delta);
-			}
+			processDelta(delta);
 		}
 
-		// called with lock being held
 		private void processDelta(IModelElementDelta delta) {
 			IModelElement element = delta.getElement();
 			if (delta.getKind() == IModelElementDelta.REMOVED
@@ -510,12 +782,9 @@ public class MixinModel {
 			}
 			if (delta.getKind() == IModelElementDelta.ADDED) {
 				if (element.getElementType() == IModelElement.SOURCE_MODULE) {
-					if (modulesToReparse.add((ISourceModule) element)) {
-						reportModule((ISourceModule) element);
-					}
+					addPendingModule((ISourceModule) element);
 				}
-				knownKeysCache.clear();
-				requestCache.flush();
+				clearKeysCache();
 			}
 
 			if ((delta.getFlags() & IModelElementDelta.F_CHILDREN) != 0) {
@@ -559,7 +828,8 @@ public class MixinModel {
 					}
 					// remove all resources with given project from model.
 					List<ISourceModule> toRemove = new ArrayList<ISourceModule>();
-					synchronized (this) {
+					lock.lock();
+					try {
 						IProject project = (IProject) resource;
 						for (ISourceModule module : elementToMixinCache
 								.keySet()) {
@@ -578,6 +848,8 @@ public class MixinModel {
 						for (ISourceModule module : toRemove) {
 							remove(module);
 						}
+					} finally {
+						lock.unlock();
 					}
 				}
 				return;
@@ -605,72 +877,89 @@ public class MixinModel {
 		System.out.println(getLogContext() + " " + message); //$NON-NLS-1$
 	}
 
-	public synchronized void remove(ISourceModule element) {
+	public void remove(ISourceModule element) {
 		if (DEBUG) {
 			log("remove " + element.getElementName()); //$NON-NLS-1$
 		}
-		List<MixinElement> mixinCache = elementToMixinCache.get(element);
-		if (mixinCache != null) {
-			removeFromRequestCache(element);
-
-			for (MixinElement mixin : mixinCache) {
-				removes = true;
-				knownKeysCache.remove(mixin.key);
-				mixin.bFinal = false;
-				mixin.sourceModules.remove(element);
-				mixin.sourceModuleToObject.remove(element);
-				if (mixin.sourceModules.size() == 0) {
-					// Remove frob parent.
-					String parentKey = mixin.getParentKey();
-					if (parentKey != null) {
-						MixinElement parent = (MixinElement) this.cache
-								.get(parentKey);
-						if (parent != null) {
-							parent.children.remove(mixin);
-							parent.bFinal = false;
+		lock.lock();
+		try {
+			// the running parse could report the former elements
+			final ModuleParse parse = parses.remove(element);
+			if (parse != null) {
+				parse.stale = true;
+			}
+			pendingModules.remove(element);
+			modulesToReparse.remove(element);
+			List<MixinElement> mixinCache = elementToMixinCache.remove(element);
+			if (mixinCache != null) {
+				removeFromRequestCache(element);
+
+				for (MixinElement mixin : mixinCache) {
+					removes = true;
+					knownKeysCache.remove(mixin.key);
+					mixin.bFinal = false;
+					mixin.removeModule(element);
+					if (mixin.sourceModules.isEmpty()) {
+						// Remove frob parent.
+						String parentKey = mixin.getParentKey();
+						if (parentKey != null) {
+							MixinElement parent = this.elements.get(parentKey);
+							if (parent != null) {
+								parent.removeChild(mixin);
+								parent.bFinal = false;
+							}
 						}
+						// Remove from cache
+						removeElement(mixin);
 					}
-					// Remove from cache
-					cache.remove(mixin.key);
-					cache.resetSpaceLimit(CACHE_LIMIT, mixin);
 				}
 			}
-			this.elementToMixinCache.remove(element);
+		} finally {
+			lock.unlock();
 		}
 	}
 
 	/**
 	 * @param folder
 	 */
-	protected synchronized void removeFolder(IScriptFolder folder) {
+	protected void removeFolder(IScriptFolder folder) {
 		final IPath folderPath = folder.getPath();
-		final List<ISourceModule> modulesToRemove = new ArrayList<ISourceModule>();
-		for (final ISourceModule module : elementToMixinCache.keySet()) {
-			final IPath path = module.getPath();
-			if (folderPath.isPrefixOf(path)) {
-				modulesToRemove.add(module);
+		lock.lock();
+		try {
+			final List<ISourceModule> modulesToRemove = new ArrayList<ISourceModule>();
+			for (final ISourceModule module : elementToMixinCache.keySet()) {
+				final IPath path = module.getPath();
+				if (folderPath.isPrefixOf(path)) {
+					modulesToRemove.add(module);
+				}
 			}
-		}
-		for (ISourceModule module : modulesToRemove) {
-			remove(module);
+			for (ISourceModule module : modulesToRemove) {
+				remove(module);
+			}
+		} finally {
+			lock.unlock();
 		}
 	}
 
 	// called with lock being held
 	private void removeFromRequestCache(ISourceModule element) {
+		++requestGeneration;
 		// Clear requests cache.
-		@SuppressWarnings("unchecked")
-		Enumeration<RequestCacheEntry> enumeration = this.requestCache
-				.elements();
-		while (enumeration.hasMoreElements()) {
-			RequestCacheEntry entry = enumeration.nextElement();
+		Map<String, RequestCacheEntry> requests = null;
+		for (RequestCacheEntry entry : this.requestCache.values()) {
 			if (entry.modules != null) {
 				if (entry.modules.contains(element)) {
-					// we can do it now
-					this.requestCache.remove(entry.prefix);
+					if (requests == null) {
+						requests = new LinkedHashMap<String, RequestCacheEntry>(
+								this.requestCache);
+					}
+					requests.remove(entry.prefix);
 				}
 			}
 		}
+		if (requests != null) {
+			this.requestCache = requests;
+		}
 	}
 
 	/***************************************************************************
@@ -686,14 +975,21 @@ public class MixinModel {
 
 	private static final Object[] NO_OBJECTS = new Object[0];
 
+	/*
+	 * The modules and the objects of the element are replaced when changed,
+	 * the children are kept in the concurrent map created when the first child
+	 * is added. All of them are changed with lock being held.
+	 */
 	private final class MixinElement implements IMixinElement,
 			IInternalMixinElement {
-		private String key;
-		private boolean bFinal = false;
-		private List<ISourceModule> sourceModules = new ArrayList<ISourceModule>();
-		private Map<ISourceModule, List<Object>> sourceModuleToObject = new HashMap<ISourceModule, List<Object>>();
+		private final String key;
+		private volatile boolean bFinal = false;
+		private volatile List<ISourceModule> sourceModules = Collections
+				.emptyList();
+		private volatile Map<ISourceModule, List<Object>> sourceModuleToObject = Collections
+				.emptyMap();
 
-		private Set<MixinElement> children = new HashSet<MixinElement>();
+		private volatile ConcurrentMap<String, MixinElement> children;
 
 		public boolean equals(Object obj) {
 			if (this == obj)
@@ -714,23 +1010,7 @@ public class MixinModel {
 
 		public String toString() {
 			return this.getLastKeySegment() + " final[" + this.bFinal + "]" //$NON-NLS-1$ //$NON-NLS-2$
-					+ this.children + " "; //$NON-NLS-1$
-		}
-
-		/*
-		 * public MixinElement(ElementInfo info, ISourceModule module) {
-		 * this(info.key, currentModule); addInfo(info, module); }
-		 */
-		// called with lock being held
-		void addInfo(ElementInfo info, ISourceModule module) {
-			if (info.object != null) {
-				List<Object> list = this.sourceModuleToObject.get(module);
-				if (list == null) {
-					list = new ArrayList<Object>();
-					this.sourceModuleToObject.put(module, list);
-				}
-				list.add(info.object);
-			}
+					+ this.getChildElements() + " "; //$NON-NLS-1$
 		}
 
 		// called with lock being held
@@ -743,16 +1023,69 @@ public class MixinModel {
 		void addModule(ISourceModule currentModule) {
 			if (currentModule != null) {
 				if (!this.sourceModules.contains(currentModule)) {
-					this.sourceModules.add(currentModule);
+					final List<ISourceModule> modules = new ArrayList<ISourceModule>(
+							this.sourceModules.size() + 1);
+					modules.addAll(this.sourceModules);
+					modules.add(currentModule);
+					this.sourceModules = modules;
 				}
 			}
 		}
 
+		// called with lock being held
+		void removeModule(ISourceModule module) {
+			if (this.sourceModules.contains(module)) {
+				final List<ISourceModule> modules = new ArrayList<ISourceModule>(
+						this.sourceModules);
+				modules.remove(module);
+				this.sourceModules = modules;
+			}
+			setObjects(module, null);
+		}
+
+		// called with lock being held
+		void setObjects(ISourceModule module, List<Object> objects) {
+			if (objects == null && !sourceModuleToObject.containsKey(module)) {
+				return;
+			}
+			final Map<ISourceModule, List<Object>> map = new HashMap<ISourceModule, List<Object>>(
+					sourceModuleToObject);
+			if (objects != null) {
+				map.put(module, objects);
+			} else {
+				map.remove(module);
+			}
+			this.sourceModuleToObject = map;
+		}
+
+		// called with lock being held
+		void addChild(MixinElement child) {
+			if (children == null) {
+				children = new ConcurrentHashMap<String, MixinElement>(4,
+						0.75f, 1);
+			}
+			children.put(child.key, child);
+		}
+
+		// called with lock being held
+		void removeChild(MixinElement child) {
+			if (children != null) {
+				children.remove(child.key);
+			}
+		}
+
+		Collection<MixinElement> getChildElements() {
+			final Map<String, MixinElement> map = children;
+			if (map == null) {
+				return Collections.emptyList();
+			}
+			return map.values();
+		}
+
 		public IMixinElement[] getChildren() {
 			this.validate();
-			synchronized (MixinModel.this) {
-				return children.toArray(new IMixinElement[children.size()]);
-			}
+			final Collection<MixinElement> elements = getChildElements();
+			return elements.toArray(new IMixinElement[elements.size()]);
 		}
 
 		public IMixinElement getChildren(String key) {
@@ -796,37 +1129,31 @@ public class MixinModel {
 			if (!isFinal()) {
 				get(key);
 			}
-			synchronized (MixinModel.this) {
-				return this.sourceModules
-						.toArray(new ISourceModule[this.sourceModules.size()]);
-			}
+			final List<ISourceModule> modules = this.sourceModules;
+			return modules.toArray(new ISourceModule[modules.size()]);
 		}
 
 		public Object[] getObjects(ISourceModule module) {
 			this.validate();
-			synchronized (MixinModel.this) {
-				List<Object> list = this.sourceModuleToObject.get(module);
-				if (list == null)
-					return NO_OBJECTS;
-				Object[] objs = list.toArray();
-				for (Object obj : objs) {
-					notifyInitializeListener(this, module, obj);
-				}
-				return objs;
+			List<Object> list = this.sourceModuleToObject.get(module);
+			if (list == null)
+				return NO_OBJECTS;
+			Object[] objs = list.toArray();
+			for (Object obj : objs) {
+				notifyInitializeListener(this, module, obj);
 			}
+			return objs;
 		}
 
 		public Object[] getAllObjects() {
 			this.validate();
-			synchronized (MixinModel.this) {
-				Set<Object> objects = new HashSet<Object>();
-				for (ISourceModule module : sourceModules) {
-					for (Object obj : this.getObjects(module)) {
-						objects.add(obj);
-					}
+			Set<Object> objects = new HashSet<Object>();
+			for (ISourceModule module : this.sourceModules) {
+				for (Object obj : this.getObjects(module)) {
+					objects.add(obj);
 				}
-				return objects.toArray();
 			}
+			return objects.toArray();
 		}
 
 		public boolean isFinal() {
@@ -834,12 +1161,12 @@ public class MixinModel {
 		}
 
 		public void close() {
-			synchronized (MixinModel.this) {
+			lock.lock();
+			try {
 				knownKeysCache.remove(key);
 				removes = true;
 				this.bFinal = false;
-				for (int i = 0; i < sourceModules.size(); i++) {
-					ISourceModule module = sourceModules.get(i);
+				for (ISourceModule module : sourceModules) {
 					List<MixinElement> list = elementToMixinCache.get(module);
 					if (list != null) {
 						list.remove(this);
@@ -847,23 +1174,25 @@ public class MixinModel {
 							elementToMixinCache.remove(module);
 						}
 					}
+					// reparsed when reported next time
 					if (elementToMixinCache.containsKey(module)) {
 						modulesToReparse.add(module);
 					}
 				}
-				this.sourceModules.clear();
-				this.sourceModuleToObject.clear();
+				this.sourceModules = Collections.emptyList();
+				this.sourceModuleToObject = Collections.emptyMap();
+				elements.remove(key, this);
 
 				// Lets also clean parent data
 				// Remove frob parent.
 				String parentKey = getParentKey();
 				MixinElement element = this;
 				while (parentKey != null) {
-					MixinElement parent = (MixinElement) cache.get(parentKey);
+					MixinElement parent = elements.get(parentKey);
 					if (parent != null) {
 						removes = true;
 						knownKeysCache.remove(parent.key);
-						parent.children.remove(element);
+						parent.removeChild(element);
 						parent.bFinal = false;
 						element = parent;
 						parentKey = parent.getParentKey();
@@ -871,6 +1200,8 @@ public class MixinModel {
 						break;
 					}
 				}
+			} finally {
+				lock.unlock();
 			}
 		}
 
@@ -882,97 +1213,106 @@ public class MixinModel {
 		}
 	};
 
-	private final class MixinRequestor implements IMixinRequestor {
+	/*
+	 * The parse of the module collecting the reported elements, they are added
+	 * to the model when the parse is finished.
+	 */
+	private static final class ModuleParse implements IMixinRequestor {
+		final ISourceModule module;
+		final Thread owner = Thread.currentThread();
+		final CountDownLatch done = new CountDownLatch(1);
+		final List<ElementInfo> infos = new ArrayList<ElementInfo>();
+		/**
+		 * Set when the module was changed during the parse, guarded by the
+		 * lock of the model.
+		 */
+		boolean stale;
+
+		ModuleParse(ISourceModule module) {
+			this.module = module;
+		}
+
 		public void reportElement(ElementInfo info) {
 			// if( DLTKCore.VERBOSE_MIXIN ) {
 			// System.out.println("Append mixin:" + info.key);
 			// }
-			synchronized (MixinModel.this) {
-				knownKeysCache.put(info.key, Boolean.TRUE);
-				String[] list = info.key.split("\\" //$NON-NLS-1$
-						+ IMixinRequestor.MIXIN_NAME_SEPARATOR);
-				MixinElement element = getCreateEmpty(info.key);
-				addElementToModules(element);
-				element.addModule(currentModule);
-				element.addInfo(info, currentModule);
-				// Append as childs for all other elements. Also append modules
-				// to
-				// all selected elements.
-				if (list.length != 1) {
-					for (int i = 0; i < list.length - 1; ++i) {
-						MixinElement parent = getCreateEmpty(element
-								.getParentKey());
-						parent.children.add(element);
-						addElementToModules(parent);
-						element = parent;
-					}
-				}
-			}
-		}
-
-		// called with lock being held
-		private void addElementToModules(MixinElement element) {
-			List<MixinElement> elements = MixinModel.this.elementToMixinCache
-					.get(currentModule);
-			if (elements == null) {
-				elements = new ArrayList<MixinElement>();
-				MixinModel.this.elementToMixinCache
-						.put(currentModule, elements);
-			}
-			elements.add(element);
+			infos.add(info);
 		}
 	}
 
-	public synchronized void makeAllModuleElementsFinal(ISourceModule module) {
-		List<MixinElement> elements = elementToMixinCache.get(module);
-		if (elements != null) {
-			for (MixinElement mixin : elements) {
-				removes = true;
-				mixin.bFinal = true;
+	public void makeAllModuleElementsFinal(ISourceModule module) {
+		lock.lock();
+		try {
+			List<MixinElement> elements = elementToMixinCache.get(module);
+			if (elements != null) {
+				for (MixinElement mixin : elements) {
+					removes = true;
+					mixin.bFinal = true;
+				}
 			}
+		} finally {
+			lock.unlock();
 		}
 	}
 
-	public synchronized void makeAllElementsFinalIfNoCacheRemoves() {
+	public void makeAllElementsFinalIfNoCacheRemoves() {
 		if (removes) {
 			return;
 		}
-		Enumeration<?> elements = cache.elements();
-		while (elements.hasMoreElements()) {
-			MixinElement e = (MixinElement) elements.nextElement();
-			e.bFinal = true;
+		lock.lock();
+		try {
+			for (MixinElement e : elements.values()) {
+				e.bFinal = true;
+			}
+		} finally {
+			lock.unlock();
 		}
-
 	}
 
 	public void setRemovesToZero() {
 		removes = false;
 	}
 
-	public synchronized void clearKeysCache(String key) {
-		knownKeysCache.remove(key);
-		requestCache.remove(key);
-		// MixinElement e = (MixinElement)this.cache.get(key);
+	public void clearKeysCache(String key) {
+		lock.lock();
+		try {
+			knownKeysCache.remove(key);
+			++requestGeneration;
+			if (requestCache.containsKey(key)) {
+				final Map<String, RequestCacheEntry> requests = new LinkedHashMap<String, RequestCacheEntry>(
+						requestCache);
+				requests.remove(key);
+				requestCache = requests;
+			}
+			// MixinElement e = (MixinElement)this.cache.get(key);
+		} finally {
+			lock.unlock();
+		}
 	}
 
-	public synchronized void clearKeysCache() {
-		knownKeysCache.clear();
-		requestCache.flush();
+	public void clearKeysCache() {
+		lock.lock();
+		try {
+			knownKeysCache.clear();
+			++requestGeneration;
+			requestCache = Collections.emptyMap();
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	// // Mixin object initialize listeners code
-	public synchronized void addObjectInitializeListener(
+	public void addObjectInitializeListener(
 			IMixinObjectInitializeListener mixinObjectInitializeListener) {
 		this.mixinObjectInitializeListeners.add(mixinObjectInitializeListener);
 	}
 
-	public synchronized void removeObjectInitializeListener(
+	public void removeObjectInitializeListener(
 			IMixinObjectInitializeListener mixinObjectInitializeListener) {
 		this.mixinObjectInitializeListeners
 				.remove(mixinObjectInitializeListener);
 	}
 
-	// called with lock being help
 	private void notifyInitializeListener(IMixinElement element,
 			ISourceModule module, Object o) {
 		Object[] listeners = mixinObjectInitializeListeners.getListeners();
@@ -982,12 +1322,24 @@ public class MixinModel {
 		}
 	}
 
-	protected synchronized void clear() {
-		cache.flush();
-		elementToMixinCache.clear();
-		knownKeysCache.clear();
-		modulesToReparse.clear();
-		requestCache.flush();
+	protected void clear() {
+		lock.lock();
+		try {
+			cache.flush();
+			elements.clear();
+			elementToMixinCache.clear();
+			knownKeysCache.clear();
+			modulesToReparse.clear();
+			pendingModules.clear();
+			for (ModuleParse parse : parses.values()) {
+				parse.stale = true;
+			}
+			parses.clear();
+			++requestGeneration;
+			requestCache = Collections.emptyMap();
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	public String getNature() {
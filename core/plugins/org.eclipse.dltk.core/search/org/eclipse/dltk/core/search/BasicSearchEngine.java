@@ -39,6 +39,7 @@ import org.eclipse.dltk.core.ModelException;
 import org.eclipse.dltk.core.WorkingCopyOwner;
 import org.eclipse.dltk.core.search.indexing.IIndexConstants;
 import org.eclipse.dltk.core.search.indexing.IndexManager;
+import org.eclipse.dltk.core.search.matching.MatchLocator;
 import org.eclipse.dltk.core.search.matching.ModuleFactory;
 import org.eclipse.dltk.internal.compiler.env.AccessRestriction;
 import org.eclipse.dltk.internal.compiler.env.AccessRuleSet;
@@ -54,8 +55,10 @@ import org.eclipse.dltk.internal.core.search.HierarchyScope;
 import org.eclipse.dltk.internal.core.search.IRestrictedAccessMethodRequestor;
 import org.eclipse.dltk.internal.core.search.IRestrictedAccessTypeRequestor;
 import org.eclipse.dltk.internal.core.search.IndexQueryRequestor;
+import org.eclipse.dltk.internal.core.search.LimitedSearchRequestor;
 import org.eclipse.dltk.internal.core.search.PathCollector;
 import org.eclipse.dltk.internal.core.search.PatternSearchJob;
+import org.eclipse.dltk.internal.core.search.StreamingSearchJob;
 import org.eclipse.dltk.internal.core.search.SuperHierarchyScope;
 import org.eclipse.dltk.internal.core.search.matching.DLTKSearchPattern;
 import org.eclipse.dltk.internal.core.search.matching.MethodDeclarationPattern;
@@ -250,6 +253,39 @@ public class BasicSearchEngine {
 	void findMatches(SearchPattern pattern, SearchParticipant[] participants,
 			IDLTKSearchScope scope, SearchRequestor requestor,
 			IProgressMonitor monitor) throws CoreException {
+		findMatches(pattern, participants, scope, requestor,
+				IDLTKSearchConstants.WAIT_UNTIL_READY_TO_SEARCH, monitor);
+	}
+
+	/**
+	 * Searches for matches to a given query, querying the index with the
+	 * specified waiting policy.
+	 * 
+	 * @param waitingPolicy
+	 *            one of the waiting policies defined in
+	 *            {@link IDLTKSearchConstants}
+	 */
+	void findMatches(SearchPattern pattern, SearchParticipant[] participants,
+			IDLTKSearchScope scope, SearchRequestor requestor,
+			int waitingPolicy, IProgressMonitor monitor) throws CoreException {
+		findMatches(pattern, participants, scope, requestor, waitingPolicy, 0,
+				monitor);
+	}
+
+	/**
+	 * Searches for matches to a given query, reporting at most the specified
+	 * number of matches. With the limit the documents found in each index are
+	 * located before the next index is queried, and the search stops as soon
+	 * as the limit is reached.
+	 * 
+	 * @param limit
+	 *            the maximum number of the reported matches, <code>0</code>
+	 *            means unlimited
+	 */
+	void findMatches(SearchPattern pattern, SearchParticipant[] participants,
+			IDLTKSearchScope scope, SearchRequestor requestor,
+			int waitingPolicy, int limit, IProgressMonitor monitor)
+			throws CoreException {
 		if (monitor != null && monitor.isCanceled()) {
 			throw new OperationCanceledException();
 		}
@@ -270,6 +306,8 @@ public class BasicSearchEngine {
 
 		IndexManager indexManager = ModelManager.getModelManager()
 				.getIndexManager();
+		final LimitedSearchRequestor limitedRequestor = limit > 0 ? new LimitedSearchRequestor(
+				requestor, limit) : null;
 		try {
 			requestor.beginReporting();
 			for (int i = 0; i < participants.length; i++) {
@@ -277,6 +315,10 @@ public class BasicSearchEngine {
 				if (monitor != null && monitor.isCanceled()) {
 					throw new OperationCanceledException();
 				}
+				if (limitedRequestor != null
+						&& limitedRequestor.isLimitReached()) {
+					break;
+				}
 
 				try {
 					if (monitor != null)
@@ -285,10 +327,17 @@ public class BasicSearchEngine {
 								participant.getDescription()));
 					participant.beginSearching();
 					requestor.enterParticipant(participant);
+					if (limitedRequestor != null) {
+						streamMatches(indexManager, pattern, participant,
+								scope, limitedRequestor, waitingPolicy,
+								monitor == null ? null
+										: new SubProgressMonitor(monitor, 100));
+						continue;
+					}
 					final String[] indexMatchPaths = collectMatchingPaths(
 							indexManager, pattern, participant, scope,
-							monitor == null ? null : new SubProgressMonitor(
-									monitor, 50));
+							waitingPolicy, monitor == null ? null
+									: new SubProgressMonitor(monitor, 50));
 
 					// locate index matches if any (note that all search matches
 					// could have been issued during index querying)
@@ -322,6 +371,7 @@ public class BasicSearchEngine {
 										: new SubProgressMonitor(monitor, 50));
 					}
 				} catch (Exception e) {
+					rethrowLimitedCancel(limitedRequestor, e);
 					DLTKCore.error("Error in findMatches()", e); //$NON-NLS-1$
 				} finally {
 					requestor.exitParticipant(participant);
@@ -329,6 +379,7 @@ public class BasicSearchEngine {
 				}
 			}
 		} catch (Exception e) {
+			rethrowLimitedCancel(limitedRequestor, e);
 			DLTKCore.error("Error in findMatches()", e); //$NON-NLS-1$
 		} finally {
 			requestor.endReporting();
@@ -338,13 +389,55 @@ public class BasicSearchEngine {
 		}
 	}
 
+	/*
+	 * The cancellation of the limited search is thrown to the caller, the
+	 * unlimited search keeps logging it and returning normally as before.
+	 */
+	private static void rethrowLimitedCancel(
+			LimitedSearchRequestor limitedRequestor, Exception e) {
+		if (limitedRequestor != null && e instanceof OperationCanceledException) {
+			throw (OperationCanceledException) e;
+		}
+	}
+
+	/*
+	 * Queries the indexes and locates the matches of the found documents in
+	 * batches, until all the indexes are queried or the limit is reached.
+	 */
+	private void streamMatches(IndexManager indexManager,
+			SearchPattern pattern, SearchParticipant participant,
+			IDLTKSearchScope scope, LimitedSearchRequestor requestor,
+			int waitingPolicy, IProgressMonitor monitor) throws CoreException {
+		final StreamingSearchJob job = new StreamingSearchJob(pattern,
+				participant, scope, requestor,
+				requestor.newCancelMonitor(monitor));
+		job.addWorkingCopies(getWorkingCopies());
+		try {
+			indexManager.performConcurrentJob(job, waitingPolicy,
+					requestor.newMonitor(monitor));
+			if (monitor != null && monitor.isCanceled())
+				throw new OperationCanceledException();
+			job.locatePending();
+		} catch (OperationCanceledException e) {
+			if (!requestor.isLimitReached()) {
+				throw e;
+			}
+		} catch (MatchLocator.WrappedCoreException e) {
+			throw e.coreException;
+		}
+		if (VERBOSE) {
+			Util.verbose("Streamed " + job.getDocumentCount() //$NON-NLS-1$
+					+ " documents, reported " + requestor.getCount() //$NON-NLS-1$
+					+ " matches"); //$NON-NLS-1$
+		}
+	}
+
 	private String[] collectMatchingPaths(IndexManager indexManager,
 			SearchPattern pattern, SearchParticipant participant,
-			IDLTKSearchScope scope, IProgressMonitor monitor) {
+			IDLTKSearchScope scope, int waitingPolicy, IProgressMonitor monitor) {
 		final PathCollector pathCollector = new PathCollector();
 		indexManager.performConcurrentJob(new PatternSearchJob(pattern,
-				participant, scope, pathCollector),
-				IDLTKSearchConstants.WAIT_UNTIL_READY_TO_SEARCH, monitor);
+				participant, scope, pathCollector), waitingPolicy, monitor);
 		if (monitor != null && monitor.isCanceled())
 			throw new OperationCanceledException();
 		return pathCollector.getPaths();
@@ -396,6 +489,7 @@ public class BasicSearchEngine {
 					participant.beginSearching();
 					final String[] indexMatchPaths = collectMatchingPaths(
 							indexManager, pattern, participant, scope,
+							IDLTKSearchConstants.WAIT_UNTIL_READY_TO_SEARCH,
 							subMonitor);
 
 					if (indexMatchPaths != null) {
@@ -700,6 +794,46 @@ public class BasicSearchEngine {
 		findMatches(pattern, participants, scope, requestor, monitor);
 	}
 
+	/**
+	 * Searches for matches of a given search pattern, querying the index with
+	 * the specified waiting policy.
+	 * 
+	 * @see SearchEngine#search(SearchPattern, SearchParticipant[],
+	 *      IDLTKSearchScope, SearchRequestor, int, IProgressMonitor) for
+	 *      detailed comment
+	 * @since 5.0
+	 */
+	public void search(SearchPattern pattern, SearchParticipant[] participants,
+			IDLTKSearchScope scope, SearchRequestor requestor,
+			int waitingPolicy, IProgressMonitor monitor) throws CoreException {
+		if (VERBOSE) {
+			Util.verbose("BasicSearchEngine.search(SearchPattern, SearchParticipant[], IDLTKSearchScope, SearchRequestor, int, IProgressMonitor)"); //$NON-NLS-1$
+		}
+		findMatches(pattern, participants, scope, requestor, waitingPolicy,
+				monitor);
+	}
+
+	/**
+	 * Searches for matches of a given search pattern, querying the index with
+	 * the specified waiting policy and reporting at most the specified number
+	 * of matches.
+	 * 
+	 * @see SearchEngine#search(SearchPattern, SearchParticipant[],
+	 *      IDLTKSearchScope, SearchRequestor, int, int, IProgressMonitor) for
+	 *      detailed comment
+	 * @since 5.0
+	 */
+	public void search(SearchPattern pattern, SearchParticipant[] participants,
+			IDLTKSearchScope scope, SearchRequestor requestor,
+			int waitingPolicy, int limit, IProgressMonitor monitor)
+			throws CoreException {
+		if (VERBOSE) {
+			Util.verbose("BasicSearchEngine.search(SearchPattern, SearchParticipant[], IDLTKSearchScope, SearchRequestor, int, int, IProgressMonitor)"); //$NON-NLS-1$
+		}
+		findMatches(pattern, participants, scope, requestor, waitingPolicy,
+				limit, monitor);
+	}
+
 	/**
 	 * Searches for matches of a given search pattern. Search patterns can be
 	 * created using helper methods (from a String pattern or a Script element)
@@ -869,6 +1003,27 @@ public class BasicSearchEngine {
 			final IRestrictedAccessTypeRequestor nameRequestor,
 			int waitingPolicy, IProgressMonitor progressMonitor)
 			throws ModelException {
+		searchAllTypeNames(packageName, packageMatchRule, typeName,
+				typeMatchRule, searchFor, scope, nameRequestor, waitingPolicy,
+				0, progressMonitor);
+	}
+
+	/**
+	 * Searches for the top-level types and member types in the given scope,
+	 * passing at most the specified number of types to the requestor. The
+	 * index query stops when the limit is reached.
+	 * 
+	 * @param limit
+	 *            the maximum number of the accepted types, <code>0</code>
+	 *            means unlimited
+	 * @since 5.0
+	 */
+	public void searchAllTypeNames(final char[] packageName,
+			final int packageMatchRule, char[] typeName,
+			final int typeMatchRule, int searchFor, IDLTKSearchScope scope,
+			final IRestrictedAccessTypeRequestor nameRequestor,
+			int waitingPolicy, final int limit,
+			IProgressMonitor progressMonitor) throws ModelException {
 
 		if (VERBOSE) {
 			Util.verbose("BasicSearchEngine.searchAllTypeNames(char[], char[], int, int, IJavaSearchScope, IRestrictedAccessTypeRequestor, int, IProgressMonitor)"); //$NON-NLS-1$
@@ -933,6 +1088,8 @@ public class BasicSearchEngine {
 			}
 		}
 		final String singleWkcpPath = workingCopyPath;
+		// the number of the accepted types
+		final int[] accepted = new int[1];
 		// final List documentPathFilter = new ArrayList();
 		// Index requestor
 		IndexQueryRequestor searchRequestor = new IndexQueryRequestor() {
@@ -997,8 +1154,10 @@ public class BasicSearchEngine {
 					nameRequestor.acceptType(record.modifiers, record.pkg,
 							record.simpleName, record.enclosingTypeNames,
 							record.superTypes, documentPath, accessRestriction);
+					++accepted[0];
 				}
-				return true;
+				// stop the query when the limit is reached
+				return limit == 0 || accepted[0] < limit;
 			}
 		};
 
@@ -1007,11 +1166,17 @@ public class BasicSearchEngine {
 				progressMonitor.beginTask(Messages.engine_searching, 100);
 			}
 			// add type names from indexes
-			indexManager.performConcurrentJob(new PatternSearchJob(pattern,
-					getDefaultSearchParticipant(), // Script search only
-					scope, searchRequestor), waitingPolicy,
-					progressMonitor == null ? null : new SubProgressMonitor(
-							progressMonitor, 100));
+			try {
+				indexManager.performConcurrentJob(new PatternSearchJob(pattern,
+						getDefaultSearchParticipant(), // Script search only
+						scope, searchRequestor), waitingPolicy,
+						progressMonitor == null ? null
+								: new SubProgressMonitor(progressMonitor, 100));
+			} catch (OperationCanceledException e) {
+				if (limit == 0 || accepted[0] < limit) {
+					throw e;
+				}
+			}
 
 			// add type names from working copies
 			if (copies != null) {
@@ -1020,6 +1185,9 @@ public class BasicSearchEngine {
 					if (!scope.encloses(workingCopy)) {
 						continue;
 					}
+					if (limit != 0 && accepted[0] >= limit) {
+						break;
+					}
 					final String path = workingCopy.getPath().toString();
 					// if (workingCopy.isConsistent()) {
 					// IPackageDeclaration[] packageDeclarations =
@@ -1053,6 +1221,9 @@ public class BasicSearchEngine {
 											.stringArrayToCharCharArray(type
 													.getSuperClasses()), path,
 									null);
+							if (limit != 0 && ++accepted[0] >= limit) {
+								break;
+							}
 						}
 					}
 					// }
@@ -1601,6 +1772,8 @@ public class BasicSearchEngine {
 			}
 		}
 		final String singleWkcpPath = workingCopyPath;
+		// the number of the accepted types
+		final int[] accepted = new int[1];
 		// final List documentPathFilter = new ArrayList();
 		// Index requestor
 		IndexQueryRequestor searchRequestor = new IndexQueryRequestor() {
@@ -153,6 +153,19 @@ public interface IDLTKSearchConstants {
 	 * the workspace before starting the search.
 	 */
 	int WAIT_UNTIL_READY_TO_SEARCH = IJob.WaitUntilReady;
+	/**
+	 * The search operation starts immediately and answers from the last
+	 * published index contents, while the indexer keeps running. The indexer
+	 * publishes the changes after each batch of modules, the search reads them
+	 * without waiting for the indexer. If the indexer
+	 * has not finished, the results are possibly stale: the search is repeated
+	 * in background once the indexer is ready and the matches not reported yet
+	 * are streamed to the same requestor.
+	 * 
+	 * @see SearchRequestor#snapshotComplete(boolean)
+	 * @since 5.0
+	 */
+	int READ_SNAPSHOT_TO_SEARCH = IJob.ReadSnapshot;
 	
 	
 }
@@ -12,9 +12,34 @@ package org.eclipse.dltk.core.search;
 import org.eclipse.dltk.ast.declarations.MethodDeclaration;
 import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
 import org.eclipse.dltk.ast.declarations.TypeDeclaration;
+import org.eclipse.dltk.core.search.matching.MatchLocator;
 import org.eclipse.dltk.core.search.matching.PossibleMatch;
 import org.eclipse.dltk.internal.core.search.matching.MatchingNodeSet;
 
+/**
+ * Parses the possible matches of a search and collects their nodes matching
+ * the search pattern.
+ * 
+ * <p>
+ * When the {@link org.eclipse.dltk.core.DLTKCore#SEARCH_THREADS} option
+ * allows more than one thread, the {@link MatchLocator} creates a parser per
+ * worker thread and calls {@link #setNodeSet(MatchingNodeSet)},
+ * {@link #parse(PossibleMatch)} and {@link #parseBodies(ModuleDeclaration)}
+ * of the same module on a worker thread, while the matches are reported by
+ * the searching thread with its own parser. So the parsers:
+ * <ul>
+ * <li>are used by a single thread at a time, but not always the same one;</li>
+ * <li>must not modify the state shared with the other parsers or the
+ * {@link MatchLocator} (e.g. the pattern locator and its caches) while
+ * parsing, only the node set of the current possible match;</li>
+ * <li>must return the same results from {@link #processType(TypeDeclaration)}
+ * and {@link #processMethod(MethodDeclaration)} for the nodes created by any
+ * of them, as these are called when the matches are reported.</li>
+ * </ul>
+ * The parsers which could not follow this contract require the default value
+ * of <code>"1"</code> of that option.
+ * </p>
+ */
 public interface IMatchLocatorParser {
 
 	void setNodeSet(MatchingNodeSet nodeSet);
@@ -36,9 +36,12 @@ import org.eclipse.dltk.internal.compiler.env.AccessRuleSet;
 import org.eclipse.dltk.internal.core.ModelManager;
 import org.eclipse.dltk.internal.core.Openable;
 import org.eclipse.dltk.internal.core.search.IndexQueryRequestor;
+import org.eclipse.dltk.internal.core.search.LimitedSearchRequestor;
 import org.eclipse.dltk.internal.core.search.MethodNameMatchRequestorWrapper;
 import org.eclipse.dltk.internal.core.search.MethodNameRequestorWrapper;
 import org.eclipse.dltk.internal.core.search.PatternSearchJob;
+import org.eclipse.dltk.internal.core.search.SnapshotSearchRequestor;
+import org.eclipse.dltk.internal.core.search.SnapshotUpdateJob;
 import org.eclipse.dltk.internal.core.search.TypeNameMatchRequestorWrapper;
 import org.eclipse.dltk.internal.core.search.TypeNameRequestorWrapper;
 import org.eclipse.dltk.internal.core.search.matching.MixinPattern;
@@ -368,6 +371,134 @@ public class SearchEngine {
 		}
 	}
 
+	/**
+	 * Searches for matches of a given search pattern, querying the index with
+	 * the specified waiting policy.
+	 * <p>
+	 * With {@link IDLTKSearchConstants#READ_SNAPSHOT_TO_SEARCH} the matches are
+	 * reported immediately from the last committed index contents. The
+	 * requestor is told with {@link SearchRequestor#snapshotComplete(boolean)}
+	 * whether the indexer was running. In that case the search is repeated in
+	 * background when the indexer is ready, the matches not reported yet are
+	 * passed to the requestor and {@link SearchRequestor#updateComplete()} is
+	 * sent at the end. This method returns without waiting for the update.
+	 * </p>
+	 * 
+	 * @param pattern
+	 *            the pattern to search
+	 * @param participants
+	 *            the particpants in the search
+	 * @param scope
+	 *            the search scope
+	 * @param requestor
+	 *            the requestor to report the matches to
+	 * @param waitingPolicy
+	 *            one of the waiting policies defined in
+	 *            {@link IDLTKSearchConstants}
+	 * @param monitor
+	 *            the progress monitor used to report progress
+	 * @exception CoreException
+	 *                if the search failed
+	 * @since 5.0
+	 */
+	public void search(final SearchPattern pattern,
+			final SearchParticipant[] participants,
+			final IDLTKSearchScope scope, SearchRequestor requestor,
+			int waitingPolicy, IProgressMonitor monitor) throws CoreException {
+		search(pattern, participants, scope, requestor, waitingPolicy, 0,
+				monitor);
+	}
+
+	/**
+	 * Searches for matches of a given search pattern, querying the index with
+	 * the specified waiting policy, and reports at most the specified number
+	 * of matches.
+	 * <p>
+	 * With a limit the indexes are queried one by one and the matches of the
+	 * found documents are located and reported between the queries, so the
+	 * first matches are reported early. The search stops reading the indexes
+	 * and parsing the documents as soon as the limit is reached. Clients
+	 * which need only the first matches, e.g. to check whether there is any
+	 * match, should specify the limit.
+	 * </p>
+	 * 
+	 * @param pattern
+	 *            the pattern to search
+	 * @param participants
+	 *            the particpants in the search
+	 * @param scope
+	 *            the search scope
+	 * @param requestor
+	 *            the requestor to report the matches to
+	 * @param waitingPolicy
+	 *            one of the waiting policies defined in
+	 *            {@link IDLTKSearchConstants}
+	 * @param limit
+	 *            the maximum number of the reported matches, <code>0</code>
+	 *            means unlimited
+	 * @param monitor
+	 *            the progress monitor used to report progress
+	 * @exception CoreException
+	 *                if the search failed
+	 * @see #search(SearchPattern, SearchParticipant[], IDLTKSearchScope,
+	 *      SearchRequestor, int, IProgressMonitor)
+	 * @since 5.0
+	 */
+	public void search(final SearchPattern pattern,
+			final SearchParticipant[] participants,
+			final IDLTKSearchScope scope, SearchRequestor requestor,
+			int waitingPolicy, final int limit, IProgressMonitor monitor)
+			throws CoreException {
+		if (waitingPolicy != IDLTKSearchConstants.READ_SNAPSHOT_TO_SEARCH) {
+			doSearch(pattern, participants, scope, requestor, waitingPolicy,
+					limit, monitor);
+			return;
+		}
+		if (limit > 0) {
+			// the limit applies to the snapshot and the update together
+			requestor = new LimitedSearchRequestor(requestor, limit);
+		}
+		final SnapshotSearchRequestor snapshot = new SnapshotSearchRequestor(
+				requestor);
+		doSearch(pattern, participants, scope, snapshot, waitingPolicy, limit,
+				monitor);
+		if (snapshot.isStale()) {
+			snapshot.startUpdate();
+			new SnapshotUpdateJob() {
+				@Override
+				protected void update(IProgressMonitor monitor)
+						throws CoreException {
+					doSearch(pattern, participants, scope, snapshot,
+							IDLTKSearchConstants.WAIT_UNTIL_READY_TO_SEARCH,
+							limit, monitor);
+				}
+
+				@Override
+				protected void complete() {
+					snapshot.updateComplete();
+				}
+			}.schedule();
+		}
+	}
+
+	private void doSearch(SearchPattern pattern,
+			SearchParticipant[] participants, IDLTKSearchScope scope,
+			SearchRequestor requestor, int waitingPolicy, int limit,
+			IProgressMonitor monitor) throws CoreException {
+		if (this.newSearchEngine != null
+				&& this.newSearchEngine.isEnabled(scope.getLanguageToolkit())) {
+			// the new indexer reads the committed contents without waiting
+			if (limit > 0 && !(requestor instanceof LimitedSearchRequestor)) {
+				requestor = new LimitedSearchRequestor(requestor, limit);
+			}
+			this.newSearchEngine.search(pattern, participants, scope,
+					requestor, monitor);
+		} else {
+			this.basicEngine.search(pattern, participants, scope, requestor,
+					waitingPolicy, limit, monitor);
+		}
+	}
+
 	public List searchSourceOnly(SearchPattern pattern,
 			SearchParticipant[] participants, IDLTKSearchScope scope,
 			IProgressMonitor monitor) throws CoreException {
@@ -681,12 +812,34 @@ public class SearchEngine {
 			final int typeMatchRule, int searchFor, IDLTKSearchScope scope,
 			final TypeNameMatchRequestor nameMatchRequestor, int waitingPolicy,
 			IProgressMonitor progressMonitor) throws ModelException {
+		searchAllTypeNames(packageName, packageMatchRule, typeName,
+				typeMatchRule, searchFor, scope, nameMatchRequestor,
+				waitingPolicy, 0, progressMonitor);
+	}
+
+	/**
+	 * Searches for the top-level types and member types in the given scope
+	 * as
+	 * {@link #searchAllTypeNames(char[], int, char[], int, int, IDLTKSearchScope, TypeNameMatchRequestor, int, IProgressMonitor)}
+	 * does, but passes at most the specified number of matches to the
+	 * requestor and stops querying the indexes when the limit is reached.
+	 * 
+	 * @param limit
+	 *            the maximum number of the reported matches, <code>0</code>
+	 *            means unlimited
+	 * @since 5.0
+	 */
+	public void searchAllTypeNames(final char[] packageName,
+			final int packageMatchRule, final char[] typeName,
+			final int typeMatchRule, int searchFor, IDLTKSearchScope scope,
+			final TypeNameMatchRequestor nameMatchRequestor, int waitingPolicy,
+			int limit, IProgressMonitor progressMonitor) throws ModelException {
 
 		TypeNameMatchRequestorWrapper requestorWrapper = new TypeNameMatchRequestorWrapper(
 				nameMatchRequestor, scope);
 		this.basicEngine.searchAllTypeNames(packageName, packageMatchRule,
 				typeName, typeMatchRule, searchFor, scope, requestorWrapper,
-				waitingPolicy, progressMonitor);
+				waitingPolicy, limit, progressMonitor);
 	}
 
 	/**
@@ -91,4 +91,46 @@ public abstract class SearchRequestor {
 	public void exitParticipant(SearchParticipant participant) {
 		// do nothing
 	}
+
+	/**
+	 * Notification sent after the matches of a search started with the
+	 * {@link IDLTKSearchConstants#READ_SNAPSHOT_TO_SEARCH} waiting policy have
+	 * been reported from the last committed index contents, before
+	 * {@link #endReporting()}.
+	 * <p>
+	 * If <code>stale</code> is <code>true</code> the indexer was still running,
+	 * so the reported matches are possibly incomplete or out of date. The
+	 * search is then repeated in background when the indexer is ready: the
+	 * matches not reported yet are passed to
+	 * {@link #acceptSearchMatch(SearchMatch)} (from the background thread,
+	 * without another {@link #beginReporting()}) and
+	 * {@link #updateComplete()} is sent at the end.
+	 * </p>
+	 * <p>
+	 * The default implementation of this method does nothing. Subclasses may
+	 * override.
+	 * </p>
+	 * 
+	 * @param stale
+	 *            whether the indexer was running during the search
+	 * @since 5.0
+	 */
+	public void snapshotComplete(boolean stale) {
+		// do nothing
+	}
+
+	/**
+	 * Notification sent after the late matches of a stale snapshot search have
+	 * been reported, see {@link #snapshotComplete(boolean)}. It is sent from the
+	 * background thread, also if the update was canceled or failed.
+	 * <p>
+	 * The default implementation of this method does nothing. Subclasses may
+	 * override.
+	 * </p>
+	 * 
+	 * @since 5.0
+	 */
+	public void updateComplete() {
+		// do nothing
+	}
 }
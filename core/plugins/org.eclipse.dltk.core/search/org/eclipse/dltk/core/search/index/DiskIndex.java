@@ -18,7 +18,14 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.regex.Pattern;
 
 import org.eclipse.dltk.compiler.CharOperation;
@@ -32,6 +39,13 @@ import org.eclipse.dltk.internal.core.util.Messages;
 import org.eclipse.dltk.internal.core.util.SimpleWordSet;
 import org.eclipse.dltk.internal.core.util.Util;
 
+/**
+ * The on-disk generation of the index. The header information is immutable
+ * once the generation is initialized or written by
+ * {@link #mergeWith(MemoryIndex)} (which returns the new generation), so any
+ * number of readers could query it concurrently: the decoded data is kept in
+ * the thread-safe caches and decoding is never done under a lock.
+ */
 public class DiskIndex {
 
 	String fileName;
@@ -51,18 +65,26 @@ public class DiskIndex {
 
 	private HashtableOfIntValues categoryOffsets;
 
-	private int cacheUserCount;
+	private final AtomicInteger cacheUserCount = new AtomicInteger(-1);
 
-	private String[][] cachedChunks; // decompressed chunks of document names
+	// decompressed chunks of document names
+	private volatile AtomicReferenceArray<String[]> cachedChunks;
 
 	private HashtableOfObject categoryTables; // category name ->
-	// HashtableOfObject(words ->
-	// int[] of document #'s) or
-	// offset if not read yet
+	// HashtableOfObject(words -> int[] of document #'s), used while writing
 
-	private char[] cachedCategoryName;
+	// offset of the category table -> HashtableOfObject(words -> int[] of
+	// document #'s or offset if not read yet), tables are not modified once
+	// published
+	private final ConcurrentMap<Integer, HashtableOfObject> tableCache = new ConcurrentHashMap<Integer, HashtableOfObject>();
+
+	private volatile int cachedCategoryOffset;
 	char separator = Index.DEFAULT_SEPARATOR;
 
+	boolean mapped; // read the file through a memory-mapped buffer
+
+	private volatile ByteBuffer mappedBuffer; // mapped lazily, whole file
+
 	public static final String SIGNATURE = "DLTK INDEX VERSION 1.014"; //$NON-NLS-1$
 
 	public final static boolean DEBUG = false;
@@ -102,6 +124,47 @@ public class DiskIndex {
 		}
 	}
 
+	/**
+	 * {@link InputStream} over a (duplicated) mapped buffer, so the existing
+	 * stream based decoders could be used without opening the file.
+	 */
+	static class MappedInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		MappedInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		public int read() {
+			return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+		}
+
+		public int read(byte[] b, int off, int len) {
+			if (len == 0)
+				return 0;
+			int remaining = this.buffer.remaining();
+			if (remaining == 0)
+				return -1;
+			if (len > remaining)
+				len = remaining;
+			this.buffer.get(b, off, len);
+			return len;
+		}
+
+		public long skip(long n) {
+			if (n <= 0)
+				return 0;
+			int count = (int) Math.min(n, this.buffer.remaining());
+			this.buffer.position(this.buffer.position() + count);
+			return count;
+		}
+
+		public int available() {
+			return this.buffer.remaining();
+		}
+	}
+
 	DiskIndex(String fileName) {
 		this.fileName = fileName;
 
@@ -111,10 +174,9 @@ public class DiskIndex {
 		this.sizeOfLastChunk = -1;
 		this.chunkOffsets = null;
 		this.documentReferenceSize = -1;
-		this.cacheUserCount = -1;
 		this.cachedChunks = null;
 		this.categoryTables = null;
-		this.cachedCategoryName = null;
+		this.cachedCategoryOffset = -1;
 		this.categoryOffsets = null;
 	}
 
@@ -129,10 +191,9 @@ public class DiskIndex {
 				for (int i = 0, l = docNames.length; i < l; i++)
 					results.add(docNames[i]);
 			} else {
-				SimpleLookupTable docsToRefs = memoryIndex.docsToReferences;
 				for (int i = 0, l = docNames.length; i < l; i++) {
 					String docName = docNames[i];
-					if (!docsToRefs.containsKey(docName))
+					if (!memoryIndex.containsDocument(docName))
 						results.add(docName);
 				}
 			}
@@ -142,11 +203,10 @@ public class DiskIndex {
 					if (docNames[i].startsWith(substring, 0))
 						results.add(docNames[i]);
 			} else {
-				SimpleLookupTable docsToRefs = memoryIndex.docsToReferences;
 				for (int i = 0, l = docNames.length; i < l; i++) {
 					String docName = docNames[i];
 					if (docName.startsWith(substring, 0)
-							&& !docsToRefs.containsKey(docName))
+							&& !memoryIndex.containsDocument(docName))
 						results.add(docName);
 				}
 			}
@@ -164,17 +224,17 @@ public class DiskIndex {
 		EntryResult result = (EntryResult) results.get(word);
 		if (memoryIndex == null) {
 			if (result == null)
-				results.put(word, new EntryResult(word, wordsToDocNumbers));
+				results.put(word, new EntryResult(word, wordsToDocNumbers,
+						this));
 			else
 				result.addDocumentTable(wordsToDocNumbers);
 		} else {
-			SimpleLookupTable docsToRefs = memoryIndex.docsToReferences;
 			if (result == null)
 				result = new EntryResult(word, null);
 			int[] docNumbers = readDocumentNumbers(wordsToDocNumbers.get(word));
 			for (int i = 0, l = docNumbers.length; i < l; i++) {
 				String docName = readDocumentName(docNumbers[i]);
-				if (!docsToRefs.containsKey(docName))
+				if (!memoryIndex.containsDocument(docName))
 					result.addDocumentName(docName);
 			}
 			if (!result.isEmpty())
@@ -213,7 +273,8 @@ public class DiskIndex {
 			switch (matchRule) {
 			case SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE:
 				for (int i = 0, l = categories.length; i < l; i++) {
-					HashtableOfObject wordsToDocNumbers = readCategoryTable(
+					HashtableOfObject wordsToDocNumbers = this.mapped ? readCategoryEntry(
+							categories[i], key) : readCategoryTable(
 							categories[i], false);
 					if (wordsToDocNumbers != null
 							&& wordsToDocNumbers.containsKey(key))
@@ -297,21 +358,22 @@ public class DiskIndex {
 
 	private void cacheDocumentNames() throws IOException {
 		// will need all document names so get them now
-		this.cachedChunks = new String[this.numberOfChunks][];
-		DataInputStream stream = new DataInputStream(new BufferedInputStream(
-				new FileInputStream(getIndexFile()),
-				this.numberOfChunks > 5 ? 4096 : 2048));
+		AtomicReferenceArray<String[]> chunks = new AtomicReferenceArray<String[]>(
+				this.numberOfChunks);
+		DataInputStream stream = openStream(this.chunkOffsets[0],
+				this.numberOfChunks > 5 ? 4096 : 2048);
 		try {
-			stream.skip(this.chunkOffsets[0]);
 			for (int i = 0; i < this.numberOfChunks; i++) {
 				int size = i == this.numberOfChunks - 1 ? this.sizeOfLastChunk
 						: CHUNK_SIZE;
-				readChunk(this.cachedChunks[i] = new String[size], stream, 0,
-						size);
+				String[] chunk = new String[size];
+				readChunk(chunk, stream, 0, size);
+				chunks.set(i, chunk);
 			}
 		} finally {
 			stream.close();
 		}
+		this.cachedChunks = chunks;
 	}
 
 	private String[] computeDocumentNames(String[] onDiskNames,
@@ -481,6 +543,57 @@ public class DiskIndex {
 		return new File(this.fileName);
 	}
 
+	private ByteBuffer getMappedBuffer() throws IOException {
+		ByteBuffer buffer = this.mappedBuffer;
+		if (buffer == null) {
+			synchronized (this) {
+				buffer = this.mappedBuffer;
+				if (buffer == null) {
+					FileInputStream file = new FileInputStream(getIndexFile());
+					try {
+						// the mapping stays valid after the channel is closed
+						FileChannel channel = file.getChannel();
+						buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+								channel.size());
+					} finally {
+						file.close();
+					}
+					this.mappedBuffer = buffer;
+				}
+			}
+		}
+		return buffer;
+	}
+
+	/**
+	 * Returns the stream positioned at the specified offset of the index file.
+	 * In mapped mode the stream reads directly from the mapped buffer.
+	 */
+	private DataInputStream openStream(int offset, int bufferSize)
+			throws IOException {
+		if (this.mapped) {
+			ByteBuffer buffer = getMappedBuffer().duplicate();
+			buffer.position(offset);
+			return new DataInputStream(new MappedInputStream(buffer));
+		}
+		DataInputStream stream = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(getIndexFile()), bufferSize));
+		try {
+			stream.skip(offset);
+		} catch (IOException e) {
+			stream.close();
+			throw e;
+		}
+		return stream;
+	}
+
+	/**
+	 * Releases the mapped buffer (if any), so the file could be replaced.
+	 */
+	void releaseMapping() {
+		this.mappedBuffer = null;
+	}
+
 	void initialize(boolean reuseExistingFile) throws IOException {
 		File indexFile = getIndexFile();
 		if (indexFile.exists()) {
@@ -507,6 +620,7 @@ public class DiskIndex {
 				throw new IOException("Failed to delete index " + this.fileName); //$NON-NLS-1$
 			}
 		}
+		releaseMapping();
 		if (indexFile.createNewFile()) {
 			RandomAccessFile file = new RandomAccessFile(this.fileName, "rw"); //$NON-NLS-1$
 			try {
@@ -614,8 +728,8 @@ public class DiskIndex {
 					}
 				}
 			}
-			onDisk.categoryTables.put(categoryName, null); // flush cached
-			// table
+			onDisk.tableCache.remove(Integer.valueOf(onDisk.categoryOffsets
+					.get(categoryName))); // flush cached table
 		}
 		writeCategoryTable(categoryName, wordsToDocs, stream);
 	}
@@ -644,12 +758,15 @@ public class DiskIndex {
 			// deleted documents that had never been saved
 
 			// index is now empty since all the saved documents were removed
+			releaseMapping();
 			DiskIndex newDiskIndex = new DiskIndex(this.fileName);
+			newDiskIndex.mapped = this.mapped;
 			newDiskIndex.initialize(false);
 			return newDiskIndex;
 		}
 
 		DiskIndex newDiskIndex = new DiskIndex(this.fileName + ".tmp"); //$NON-NLS-1$
+		newDiskIndex.mapped = this.mapped;
 		File newIndexFile = newDiskIndex.getIndexFile();
 		try {
 			newDiskIndex.initializeFrom(this, newIndexFile);
@@ -691,6 +808,7 @@ public class DiskIndex {
 			newDiskIndex.writeOffsetToHeader(offsetToHeader);
 
 			// rename file by deleting previous index file & renaming temp one
+			releaseMapping();
 			File old = getIndexFile();
 			if (old.exists() && !old.delete()) {
 				if (DEBUG)
@@ -718,15 +836,13 @@ public class DiskIndex {
 		return newDiskIndex;
 	}
 
-	private synchronized String[] readAllDocumentNames() throws IOException {
+	private String[] readAllDocumentNames() throws IOException {
 		if (this.numberOfChunks <= 0)
 			return new String[0];
 
-		DataInputStream stream = new DataInputStream(new BufferedInputStream(
-				new FileInputStream(getIndexFile()),
-				this.numberOfChunks > 5 ? 4096 : 2048));
+		DataInputStream stream = openStream(this.chunkOffsets[0],
+				this.numberOfChunks > 5 ? 4096 : 2048);
 		try {
-			stream.skip(this.chunkOffsets[0]);
 			int lastIndex = this.numberOfChunks - 1;
 			String[] docNames = new String[lastIndex * CHUNK_SIZE
 					+ sizeOfLastChunk];
@@ -739,38 +855,39 @@ public class DiskIndex {
 		}
 	}
 
-	private synchronized HashtableOfObject readCategoryTable(
-			char[] categoryName, boolean readDocNumbers) throws IOException {
+	private HashtableOfObject readCategoryTable(char[] categoryName,
+			boolean readDocNumbers) throws IOException {
 		// result will be null if categoryName is unknown
 		int offset = this.categoryOffsets.get(categoryName);
 		if (offset == HashtableOfIntValues.NO_VALUE)
 			return null;
 
-		if (this.categoryTables == null) {
-			this.categoryTables = new HashtableOfObject(3);
-		} else {
-			HashtableOfObject cachedTable = (HashtableOfObject) this.categoryTables
-					.get(categoryName);
-			if (cachedTable != null) {
-				if (readDocNumbers) { // must cache remaining document number
-					// arrays
-					Object[] arrayOffsets = cachedTable.valueTable;
-					for (int i = 0, l = arrayOffsets.length; i < l; i++)
-						if (arrayOffsets[i] instanceof Integer)
-							arrayOffsets[i] = readDocumentNumbers(arrayOffsets[i]);
-				}
-				return cachedTable;
+		Integer cacheKey = Integer.valueOf(offset);
+		HashtableOfObject cachedTable = this.tableCache.get(cacheKey);
+		if (cachedTable != null) {
+			if (readDocNumbers && hasOffsets(cachedTable)) {
+				// must cache remaining document number arrays, published
+				// tables are never modified so the resolved copy is cached
+				HashtableOfObject resolvedTable = new HashtableOfObject(
+						cachedTable.elementSize);
+				char[][] words = cachedTable.keyTable;
+				Object[] arrayOffsets = cachedTable.valueTable;
+				for (int i = 0, l = words.length; i < l; i++)
+					if (words[i] != null)
+						resolvedTable.put(words[i],
+								readDocumentNumbers(arrayOffsets[i]));
+				this.tableCache.put(cacheKey, resolvedTable);
+				cachedTable = resolvedTable;
 			}
+			return cachedTable;
 		}
 
-		DataInputStream stream = new DataInputStream(new BufferedInputStream(
-				new FileInputStream(getIndexFile()), 2048));
+		DataInputStream stream = openStream(offset, 2048);
 		HashtableOfObject categoryTable = null;
 		char[][] matchingWords = null;
 		int count = 0;
 		int firstOffset = -1;
 		try {
-			stream.skip(offset);
 			int size = stream.readInt();
 			try {
 				if (size < 0) { // DEBUG
@@ -834,21 +951,13 @@ public class DiskIndex {
 					// file
 				}
 			}
-			this.categoryTables.put(categoryName, categoryTable);
-			// cache the table as long as its not too big
-			// in practise, some tables can be greater than 500K when the
-			// contain more than 10K elements
-			this.cachedCategoryName = categoryTable.elementSize < 10000 ? categoryName
-					: null;
 		} finally {
 			stream.close();
 		}
 
 		if (matchingWords != null && count > 0) {
-			stream = new DataInputStream(new BufferedInputStream(
-					new FileInputStream(getIndexFile()), 2048));
+			stream = openStream(firstOffset, 2048);
 			try {
-				stream.skip(firstOffset);
 				for (int i = 0; i < count; i++)
 					// each array follows the previous one
 					categoryTable.put(matchingWords[i],
@@ -857,9 +966,114 @@ public class DiskIndex {
 				stream.close();
 			}
 		}
+		// publish the table when it is complete
+		this.tableCache.put(cacheKey, categoryTable);
+		// cache the table as long as its not too big
+		// in practise, some tables can be greater than 500K when the
+		// contain more than 10K elements
+		if (categoryTable.elementSize < 10000)
+			this.cachedCategoryOffset = offset;
 		return categoryTable;
 	}
 
+	private static boolean hasOffsets(HashtableOfObject table) {
+		Object[] arrayOffsets = table.valueTable;
+		for (int i = 0, l = arrayOffsets.length; i < l; i++)
+			if (arrayOffsets[i] instanceof Integer)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Mapped mode lookup of the single word in the category table: the table
+	 * is scanned in the mapped buffer without decoding the other words, and
+	 * the document numbers are left in the file until requested.
+	 */
+	private HashtableOfObject readCategoryEntry(char[] categoryName,
+			char[] key) throws IOException {
+		int offset = this.categoryOffsets.get(categoryName);
+		if (offset == HashtableOfIntValues.NO_VALUE)
+			return null;
+		HashtableOfObject cachedTable = this.tableCache.get(Integer
+				.valueOf(offset));
+		if (cachedTable != null)
+			return cachedTable;
+
+		ByteBuffer buffer = getMappedBuffer();
+		int largeArraySize = 256;
+		int size = buffer.getInt(offset);
+		int position = offset + 4;
+		for (int i = 0; i < size; i++) {
+			int utflen = buffer.getShort(position) & 0xFFFF;
+			position += 2;
+			boolean found = utfEquals(buffer, position, utflen, key);
+			position += utflen;
+			int arrayOffset = buffer.getInt(position);
+			position += 4;
+			if (found) {
+				HashtableOfObject table = new HashtableOfObject(1);
+				if (arrayOffset <= 0)
+					table.put(key, new int[] { -arrayOffset });
+				else if (arrayOffset < largeArraySize)
+					// in-lined array, size is stored at (position - 4)
+					table.put(key, new Integer(position - 4));
+				else
+					table.put(key, new Integer(buffer.getInt(position)));
+				return table;
+			}
+			if (arrayOffset >= largeArraySize)
+				position += 4;
+			else if (arrayOffset > 0)
+				position += arrayOffset * this.documentReferenceSize;
+		}
+		return null;
+	}
+
+	/**
+	 * Compares the UTF encoded word in the buffer with the specified chars,
+	 * the format is the same as in {@link Util#readUTF(java.io.DataInput)}.
+	 */
+	private static boolean utfEquals(ByteBuffer buffer, int position,
+			int utflen, char[] word) {
+		int length = word.length;
+		if (utflen < length)
+			return false;
+		int end = position + utflen;
+		int index = 0;
+		while (position < end) {
+			if (index == length)
+				return false;
+			int c = buffer.get(position++) & 0xFF;
+			char ch;
+			switch (c >> 4) {
+			case 0:
+			case 1:
+			case 2:
+			case 3:
+			case 4:
+			case 5:
+			case 6:
+			case 7:
+				ch = (char) c;
+				break;
+			case 12:
+			case 13:
+				ch = (char) (((c & 0x1F) << 6) | (buffer.get(position++) & 0x3F));
+				break;
+			case 14:
+				ch = (char) (((c & 0x0F) << 12)
+						| ((buffer.get(position++) & 0x3F) << 6) | (buffer
+						.get(position++) & 0x3F));
+				break;
+			default:
+				return false;
+			}
+			if (ch != word[index++])
+				return false;
+		}
+		return index == length;
+	}
+
 	private void readChunk(String[] docNames, DataInputStream stream,
 			int index, int size) throws IOException {
 		String current = stream.readUTF();
@@ -908,54 +1122,86 @@ public class DiskIndex {
 		return result;
 	}
 
-	synchronized String readDocumentName(int docNumber) throws IOException {
-		if (this.cachedChunks == null)
-			this.cachedChunks = new String[this.numberOfChunks][];
+	String readDocumentName(int docNumber) throws IOException {
+		AtomicReferenceArray<String[]> chunks = this.cachedChunks;
+		if (chunks == null)
+			this.cachedChunks = chunks = new AtomicReferenceArray<String[]>(
+					this.numberOfChunks);
 
 		int chunkNumber = docNumber / CHUNK_SIZE;
-		String[] chunk = this.cachedChunks[chunkNumber];
+		String[] chunk = chunks.get(chunkNumber);
 		if (chunk == null) {
 			boolean isLastChunk = chunkNumber == this.numberOfChunks - 1;
 			int start = this.chunkOffsets[chunkNumber];
-			int numberOfBytes = (isLastChunk ? this.startOfCategoryTables
-					: this.chunkOffsets[chunkNumber + 1]) - start;
-			if (numberOfBytes < 0)
-				throw new IllegalArgumentException();
-			byte[] bytes = new byte[numberOfBytes];
-			FileInputStream file = new FileInputStream(getIndexFile());
-			try {
-				file.skip(start);
-				if (file.read(bytes, 0, numberOfBytes) != numberOfBytes)
-					throw new IOException();
-			} finally {
-				file.close();
+			DataInputStream stream;
+			if (this.mapped) {
+				stream = openStream(start, 0);
+			} else {
+				int numberOfBytes = (isLastChunk ? this.startOfCategoryTables
+						: this.chunkOffsets[chunkNumber + 1]) - start;
+				if (numberOfBytes < 0)
+					throw new IllegalArgumentException();
+				byte[] bytes = new byte[numberOfBytes];
+				FileInputStream file = new FileInputStream(getIndexFile());
+				try {
+					file.skip(start);
+					if (file.read(bytes, 0, numberOfBytes) != numberOfBytes)
+						throw new IOException();
+				} finally {
+					file.close();
+				}
+				stream = new DataInputStream(new ByteArrayInputStream(bytes));
 			}
-			DataInputStream stream = new DataInputStream(
-					new ByteArrayInputStream(bytes));
 			int numberOfNames = isLastChunk ? this.sizeOfLastChunk : CHUNK_SIZE;
-			chunk = this.cachedChunks[chunkNumber] = new String[numberOfNames];
+			chunk = new String[numberOfNames];
 			readChunk(chunk, stream, 0, numberOfNames);
+			chunks.set(chunkNumber, chunk);
 		}
 		return chunk[docNumber - (chunkNumber * CHUNK_SIZE)];
 	}
 
-	synchronized int[] readDocumentNumbers(Object arrayOffset)
+	int[] readDocumentNumbers(Object arrayOffset)
 			throws IOException {
 		// arrayOffset is either a cached array of docNumbers or an Integer
 		// offset in the file
 		if (arrayOffset instanceof int[])
 			return (int[]) arrayOffset;
 
-		DataInputStream stream = new DataInputStream(new BufferedInputStream(
-				new FileInputStream(getIndexFile()), 2048));
+		if (this.mapped)
+			return readDocumentArray(getMappedBuffer(),
+					((Integer) arrayOffset).intValue());
+
+		DataInputStream stream = openStream(((Integer) arrayOffset).intValue(),
+				2048);
 		try {
-			stream.skip(((Integer) arrayOffset).intValue());
 			return readDocumentArray(stream, stream.readInt());
 		} finally {
 			stream.close();
 		}
 	}
 
+	private int[] readDocumentArray(ByteBuffer buffer, int offset) {
+		// same layout as writeDocumentNumbers(): size followed by the numbers
+		int arraySize = buffer.getInt(offset);
+		offset += 4;
+		int[] result = new int[arraySize];
+		switch (this.documentReferenceSize) {
+		case 1:
+			for (int i = 0; i < arraySize; i++)
+				result[i] = buffer.get(offset + i) & 0xFF;
+			break;
+		case 2:
+			for (int i = 0; i < arraySize; i++)
+				result[i] = buffer.getShort(offset + (i << 1)) & 0xFFFF;
+			break;
+		default:
+			for (int i = 0; i < arraySize; i++)
+				result[i] = buffer.getInt(offset + (i << 2));
+			break;
+		}
+		return result;
+	}
+
 	private void readHeaderInfo(RandomAccessFile file) throws IOException {
 		file.seek(this.headerInfoOffset);
 
@@ -979,28 +1225,26 @@ public class DiskIndex {
 		// to
 		// category
 		// table
-		this.categoryTables = new HashtableOfObject(3);
 	}
 
-	synchronized void startQuery() {
-		this.cacheUserCount++;
+	void startQuery() {
+		this.cacheUserCount.incrementAndGet();
 	}
 
-	synchronized void stopQuery() {
-		if (--this.cacheUserCount < 0) {
+	void stopQuery() {
+		int count = this.cacheUserCount.decrementAndGet();
+		if (count < 0) {
 			// clear cached items
-			this.cacheUserCount = -1;
+			if (count < -1)
+				this.cacheUserCount.compareAndSet(count, -1);
 			this.cachedChunks = null;
-			if (this.categoryTables != null) {
-				if (this.cachedCategoryName == null) {
-					this.categoryTables = null;
-				} else if (this.categoryTables.elementSize > 1) {
-					HashtableOfObject newTables = new HashtableOfObject(3);
-					newTables.put(this.cachedCategoryName,
-							this.categoryTables.get(this.cachedCategoryName));
-					this.categoryTables = newTables;
-				}
-			}
+			// tables are cheap to decode again from the mapped buffer, so
+			// nothing is kept on the heap between the queries
+			Integer cachedKey = this.mapped || this.cachedCategoryOffset < 0 ? null
+					: Integer.valueOf(this.cachedCategoryOffset);
+			for (Integer key : this.tableCache.keySet())
+				if (!key.equals(cachedKey))
+					this.tableCache.remove(key);
 		}
 	}
 
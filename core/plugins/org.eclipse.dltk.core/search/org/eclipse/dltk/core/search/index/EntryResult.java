@@ -20,12 +20,20 @@ public class EntryResult {
 
 	private SimpleSet documentNames;
 
+	// the generation the document tables were read from
+	private DiskIndex diskIndex;
+
 	public EntryResult(char[] word, HashtableOfObject table) {
 		this.word = word;
 		if (table != null)
 			this.documentTables = new HashtableOfObject[] { table };
 	}
 
+	EntryResult(char[] word, HashtableOfObject table, DiskIndex diskIndex) {
+		this(word, table);
+		this.diskIndex = diskIndex;
+	}
+
 	public void addDocumentName(String documentName) {
 		if (this.documentNames == null)
 			this.documentNames = new SimpleSet(3);
@@ -50,23 +58,26 @@ public class EntryResult {
 
 	public String[] getDocumentNames(Index index) throws java.io.IOException {
 		if (this.documentTables != null) {
+			// document numbers are only valid for the generation they were
+			// read from, the index could be saved since then
+			DiskIndex diskIndex = this.diskIndex != null ? this.diskIndex
+					: index.diskIndex;
 			int length = this.documentTables.length;
 			if (length == 1 && this.documentNames == null) { // have a single
 				// table
 				Object offset = this.documentTables[0].get(word);
-				int[] numbers = index.diskIndex.readDocumentNumbers(offset);
+				int[] numbers = diskIndex.readDocumentNumbers(offset);
 				String[] names = new String[numbers.length];
 				for (int i = 0, l = numbers.length; i < l; i++)
-					names[i] = index.diskIndex.readDocumentName(numbers[i]);
+					names[i] = diskIndex.readDocumentName(numbers[i]);
 				return names;
 			}
 
 			for (int i = 0; i < length; i++) {
 				Object offset = this.documentTables[i].get(word);
-				int[] numbers = index.diskIndex.readDocumentNumbers(offset);
+				int[] numbers = diskIndex.readDocumentNumbers(offset);
 				for (int j = 0, k = numbers.length; j < k; j++)
-					addDocumentName(index.diskIndex
-							.readDocumentName(numbers[j]));
+					addDocumentName(diskIndex.readDocumentName(numbers[j]));
 			}
 		}
 
@@ -11,6 +11,8 @@ package org.eclipse.dltk.core.search.index;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.eclipse.core.runtime.Path;
 import org.eclipse.dltk.compiler.CharOperation;
@@ -27,8 +29,16 @@ import org.eclipse.dltk.core.search.indexing.ReadWriteMonitor;
  * 
  * Queries can search a single category or several at the same time.
  * 
- * Indexes are not synchronized structures and should only be queried/updated
- * one at a time.
+ * Indexes should only be updated one at a time (with the write lock of the
+ * {@link #monitor}), while any number of readers could query them at the same
+ * time. Each {@link #save()} publishes the new immutable {@link DiskIndex}
+ * generation, queries use the generation which was current when they started
+ * and the results are resolved against the generation they were read from.
+ * 
+ * The writer updating the index in several steps calls {@link #publish()}
+ * after each step, the readers of {@link #getSnapshot()} see the last saved
+ * disk generation and the memory indexes published since, without waiting for
+ * the monitor.
  */
 
 public class Index {
@@ -43,9 +53,31 @@ public class Index {
 	public static final char JAR_SEPARATOR = IDLTKSearchScope.FILE_ENTRY_SEPARATOR
 			.charAt(0);
 
-	protected DiskIndex diskIndex;
+	protected volatile DiskIndex diskIndex;
+
+	protected volatile MemoryIndex memoryIndex;
+
+	private static class Published {
+		final DiskIndex diskIndex;
+		final MemoryIndex memoryIndex;
 
-	protected MemoryIndex memoryIndex;
+		Published(DiskIndex diskIndex, MemoryIndex memoryIndex) {
+			this.diskIndex = diskIndex;
+			this.memoryIndex = memoryIndex;
+		}
+	}
+
+	/**
+	 * The contents read by the snapshots, <code>null</code> if the subclass
+	 * does not support them.
+	 */
+	private volatile Published published;
+
+	/**
+	 * The snapshot readers do not hold the monitor, so {@link #save()} waits
+	 * for them before the index file is replaced.
+	 */
+	private final ReadWriteLock fileLock = new ReentrantReadWriteLock();
 
 	/**
 	 * Mask used on match rule for indexing.
@@ -109,9 +141,11 @@ public class Index {
 
 		this.memoryIndex = new MemoryIndex();
 		this.diskIndex = new DiskIndex(fileName);
+		this.diskIndex.mapped = isMappingEnabled();
 		this.diskIndex.initialize(reuseExistingFile);
 		if (reuseExistingFile)
 			this.separator = this.diskIndex.separator;
+		this.published = new Published(this.diskIndex, null);
 	}
 
 	protected Index(String fileName, String containerPath) {
@@ -119,6 +153,12 @@ public class Index {
 		this.monitor = new ReadWriteMonitor();
 	}
 
+	private static boolean isMappingEnabled() {
+		return DLTKCore.getPlugin() != null
+				&& DLTKCore.ENABLED.equals(DLTKCore
+						.getOption(DLTKCore.INDEXER_MAPPED_FILES));
+	}
+
 	public void addIndexEntry(char[] category, char[] key,
 			String containerRelativePath) {
 		if (DLTKCore.DEBUG_INDEX) {
@@ -154,16 +194,22 @@ public class Index {
 			}
 		}
 
+		// the snapshot of the generations to query
+		return query(this.diskIndex, this.memoryIndex, categories, key,
+				matchRule);
+	}
+
+	static EntryResult[] query(DiskIndex diskIndex, MemoryIndex memoryIndex,
+			char[][] categories, char[] key, int matchRule) throws IOException {
 		HashtableOfObject results;
 		int rule = matchRule & MATCH_RULE_INDEX_MASK;
-		if (this.memoryIndex.hasChanged()) {
-			results = this.diskIndex.addQueryResults(categories, key, rule,
-					this.memoryIndex);
-			results = this.memoryIndex.addQueryResults(categories, key, rule,
+		if (memoryIndex != null && memoryIndex.hasChanged()) {
+			results = diskIndex.addQueryResults(categories, key, rule,
+					memoryIndex);
+			results = memoryIndex.addQueryResults(categories, key, rule,
 					results);
 		} else {
-			results = this.diskIndex.addQueryResults(categories, key, rule,
-					null);
+			results = diskIndex.addQueryResults(categories, key, rule, null);
 		}
 		if (results == null)
 			return null;
@@ -184,13 +230,17 @@ public class Index {
 	 * returns all of them.
 	 */
 	public String[] queryDocumentNames(String substring) throws IOException {
+		return queryDocumentNames(this.diskIndex, this.memoryIndex, substring);
+	}
+
+	static String[] queryDocumentNames(DiskIndex diskIndex,
+			MemoryIndex memoryIndex, String substring) throws IOException {
 		SimpleSet results;
-		if (this.memoryIndex.hasChanged()) {
-			results = this.diskIndex.addDocumentNames(substring,
-					this.memoryIndex);
-			this.memoryIndex.addDocumentNames(substring, results);
+		if (memoryIndex != null && memoryIndex.hasChanged()) {
+			results = diskIndex.addDocumentNames(substring, memoryIndex);
+			memoryIndex.addDocumentNames(substring, results);
 		} else {
-			results = this.diskIndex.addDocumentNames(substring, null);
+			results = diskIndex.addDocumentNames(substring, null);
 		}
 		if (results.elementSize == 0)
 			return null;
@@ -217,21 +267,158 @@ public class Index {
 			System.out.println("Index for " + this.containerPath + " (" + new Path(diskIndex.fileName).lastSegment() + ") saved"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$		
 		}
 		// int numberOfChanges = this.memoryIndex.docsToReferences.elementSize;
-		this.diskIndex.separator = this.separator;
-		this.diskIndex = this.diskIndex.mergeWith(this.memoryIndex);
-		this.memoryIndex = new MemoryIndex();
+		this.fileLock.writeLock().lock();
+		try {
+			this.diskIndex.separator = this.separator;
+			this.diskIndex = this.diskIndex
+					.mergeWith(this.memoryIndex.flatten());
+			this.memoryIndex = new MemoryIndex();
+			if (this.published != null)
+				this.published = new Published(this.diskIndex, null);
+		} finally {
+			this.fileLock.writeLock().unlock();
+		}
 		// if (numberOfChanges > 1000)
 		// System.gc(); // reclaim space if the MemoryIndex was very BIG
 	}
 
-	public void startQuery() {
-		if (this.diskIndex != null)
+	/**
+	 * Makes the changes since the last call visible to the readers of
+	 * {@link #getSnapshot()} without saving the index, the changes are kept in
+	 * memory until {@link #save()}. Similarly sized published memory indexes
+	 * are merged, so the readers check a logarithmic number of them.
+	 * 
+	 * Must own the write lock of the monitor.
+	 * 
+	 * @since 5.0
+	 */
+	public void publish() {
+		final MemoryIndex current = this.memoryIndex;
+		if (this.published == null || current == null
+				|| current.docsToReferences.elementSize == 0)
+			return;
+		MemoryIndex head = current;
+		while (head.older != null
+				&& head.older.docsToReferences.elementSize <= 2 * head.docsToReferences.elementSize)
+			head = MemoryIndex.merge(head.older, head);
+		this.memoryIndex = new MemoryIndex(head);
+		this.published = new Published(this.diskIndex, head);
+	}
+
+	/**
+	 * Returns the read-only view of the last saved and published contents of
+	 * this index, which is queried without entering the monitor, so the
+	 * readers are not blocked by the writer updating the index in steps, or
+	 * <code>null</code> if the snapshots are not supported.
+	 * 
+	 * @since 5.0
+	 */
+	public Index getSnapshot() {
+		if (this.published == null)
+			return null;
+		return new Snapshot(this);
+	}
+
+	/**
+	 * The view of the published contents, the generations are read when the
+	 * first query is started, so it must be queried between
+	 * {@link #startQuery()} and {@link #stopQuery()}. Used by one thread.
+	 */
+	private static class Snapshot extends Index {
+		private final Index index;
+		private Published contents;
+		private int queries;
+
+		Snapshot(Index index) {
+			super(null, index.containerPath);
+			this.index = index;
+			this.separator = index.separator;
+		}
+
+		@Override
+		public void startQuery() {
+			if (this.queries++ == 0) {
+				this.index.fileLock.readLock().lock();
+				this.contents = this.index.published;
+				this.diskIndex = this.contents.diskIndex;
+			}
 			this.diskIndex.startQuery();
+		}
+
+		@Override
+		public void stopQuery() {
+			this.diskIndex.stopQuery();
+			if (--this.queries == 0) {
+				this.index.fileLock.readLock().unlock();
+			}
+		}
+
+		@Override
+		public EntryResult[] query(char[][] categories, char[] key,
+				int matchRule) throws IOException {
+			return query(this.contents.diskIndex, this.contents.memoryIndex,
+					categories, key, matchRule);
+		}
+
+		@Override
+		public String[] queryDocumentNames(String substring)
+				throws IOException {
+			startQuery();
+			try {
+				return queryDocumentNames(this.contents.diskIndex,
+						this.contents.memoryIndex, substring);
+			} finally {
+				stopQuery();
+			}
+		}
+
+		@Override
+		public void addIndexEntry(char[] category, char[] key,
+				String containerRelativePath) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void remove(String containerRelativePath) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean hasChanged() {
+			return false;
+		}
+
+		@Override
+		public void save() {
+			// read-only
+		}
+
+		@Override
+		public void publish() {
+			// read-only
+		}
+
+		@Override
+		public Index getSnapshot() {
+			return this;
+		}
+
+		@Override
+		public String toString() {
+			return "Snapshot of " + this.index; //$NON-NLS-1$
+		}
+	}
+
+	public void startQuery() {
+		final DiskIndex diskIndex = this.diskIndex;
+		if (diskIndex != null)
+			diskIndex.startQuery();
 	}
 
 	public void stopQuery() {
-		if (this.diskIndex != null)
-			this.diskIndex.stopQuery();
+		final DiskIndex diskIndex = this.diskIndex;
+		if (diskIndex != null)
+			diskIndex.stopQuery();
 	}
 
 	public String toString() {
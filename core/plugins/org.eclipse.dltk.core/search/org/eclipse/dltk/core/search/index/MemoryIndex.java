@@ -36,24 +36,103 @@ public class MemoryIndex {
 
 	HashtableOfObject lastReferenceTable;
 
+	/**
+	 * The memory index published by {@link Index#publish()} before this one
+	 * was created, it is not modified anymore and its documents are shadowed
+	 * by the documents of this one.
+	 */
+	MemoryIndex older;
+
 	MemoryIndex() {
 		this.docsToReferences = new SimpleLookupTable(7);
 		this.allWords = new SimpleWordSet(7);
 	}
 
+	MemoryIndex(MemoryIndex older) {
+		this();
+		this.older = older;
+	}
+
+	/**
+	 * Returns the new memory index with the documents of both the specified
+	 * published ones, the documents of the newer one taking precedence. The
+	 * reference tables are shared, as they are not modified once published.
+	 */
+	static MemoryIndex merge(MemoryIndex older, MemoryIndex newer) {
+		final MemoryIndex merged = new MemoryIndex(older.older);
+		merged.putAll(older);
+		merged.putAll(newer);
+		return merged;
+	}
+
+	private void putAll(MemoryIndex index) {
+		Object[] paths = index.docsToReferences.keyTable;
+		Object[] referenceTables = index.docsToReferences.valueTable;
+		for (int i = 0, l = paths.length; i < l; i++)
+			if (paths[i] != null)
+				this.docsToReferences.put(paths[i], referenceTables[i]);
+	}
+
+	/**
+	 * Returns the single memory index with the documents of this one and all
+	 * the older ones, to be merged into the disk index.
+	 */
+	MemoryIndex flatten() {
+		if (this.older == null)
+			return this;
+		MemoryIndex flat = this.older.flatten();
+		if (flat == this.older) {
+			flat = merge(this.older, this);
+		} else {
+			flat.putAll(this);
+		}
+		flat.older = null;
+		return flat;
+	}
+
+	/**
+	 * Answers whether the document has been added/changed/deleted in this or
+	 * any older memory index.
+	 */
+	boolean containsDocument(String documentName) {
+		for (MemoryIndex index = this; index != null; index = index.older)
+			if (index.docsToReferences.containsKey(documentName))
+				return true;
+		return false;
+	}
+
+	/*
+	 * Answers whether the document of the older memory index is shadowed by
+	 * this one or the ones between them.
+	 */
+	private boolean isShadowed(MemoryIndex layer, String documentName) {
+		for (MemoryIndex index = this; index != layer; index = index.older)
+			if (index.docsToReferences.containsKey(documentName))
+				return true;
+		return false;
+	}
+
 	void addDocumentNames(String substring, SimpleSet results) {
 		// assumed the disk index already skipped over documents which have been
 		// added/changed/deleted
+		for (MemoryIndex layer = this; layer != null; layer = layer.older)
+			layer.addLayerDocumentNames(this, substring, results);
+	}
+
+	private void addLayerDocumentNames(MemoryIndex newest, String substring,
+			SimpleSet results) {
 		Object[] paths = this.docsToReferences.keyTable;
 		Object[] referenceTables = this.docsToReferences.valueTable;
 		if (substring == null) { // add all new/changed documents
 			for (int i = 0, l = referenceTables.length; i < l; i++)
-				if (referenceTables[i] != null)
+				if (referenceTables[i] != null
+						&& !newest.isShadowed(this, (String) paths[i]))
 					results.add(paths[i]);
 		} else {
 			for (int i = 0, l = referenceTables.length; i < l; i++)
 				if (referenceTables[i] != null
-						&& ((String) paths[i]).startsWith(substring, 0))
+						&& ((String) paths[i]).startsWith(substring, 0)
+						&& !newest.isShadowed(this, (String) paths[i]))
 					results.add(paths[i]);
 		}
 	}
@@ -85,6 +164,15 @@ public class MemoryIndex {
 			int matchRule, HashtableOfObject results) {
 		// assumed the disk index already skipped over documents which have been
 		// added/changed/deleted
+		for (MemoryIndex layer = this; layer != null; layer = layer.older)
+			results = layer.addLayerQueryResults(this, categories, key,
+					matchRule, results);
+		return results;
+	}
+
+	private HashtableOfObject addLayerQueryResults(MemoryIndex newest,
+			char[][] categories, char[] key, int matchRule,
+			HashtableOfObject results) {
 		// results maps a word -> EntryResult
 		Object[] paths = this.docsToReferences.keyTable;
 		Object[] referenceTables = this.docsToReferences.valueTable;
@@ -92,7 +180,8 @@ public class MemoryIndex {
 				&& key != null) {
 			nextPath: for (int i = 0, l = referenceTables.length; i < l; i++) {
 				HashtableOfObject categoryToWords = (HashtableOfObject) referenceTables[i];
-				if (categoryToWords != null) {
+				if (categoryToWords != null
+						&& !newest.isShadowed(this, (String) paths[i])) {
 					for (int j = 0, m = categories.length; j < m; j++) {
 						SimpleWordSet wordSet = (SimpleWordSet) categoryToWords
 								.get(categories[j]);
@@ -117,7 +206,8 @@ public class MemoryIndex {
 									: 0);
 			for (int i = 0, l = referenceTables.length; i < l; i++) {
 				HashtableOfObject categoryToWords = (HashtableOfObject) referenceTables[i];
-				if (categoryToWords != null) {
+				if (categoryToWords != null
+						&& !newest.isShadowed(this, (String) paths[i])) {
 					for (int j = 0, m = categories.length; j < m; j++) {
 						SimpleWordSet wordSet = (SimpleWordSet) categoryToWords
 								.get(categories[j]);
@@ -157,7 +247,8 @@ public class MemoryIndex {
 		} else {
 			for (int i = 0, l = referenceTables.length; i < l; i++) {
 				HashtableOfObject categoryToWords = (HashtableOfObject) referenceTables[i];
-				if (categoryToWords != null) {
+				if (categoryToWords != null
+						&& !newest.isShadowed(this, (String) paths[i])) {
 					for (int j = 0, m = categories.length; j < m; j++) {
 						SimpleWordSet wordSet = (SimpleWordSet) categoryToWords
 								.get(categories[j]);
@@ -187,7 +278,7 @@ public class MemoryIndex {
 	}
 
 	boolean hasChanged() {
-		return this.docsToReferences.elementSize > 0;
+		return this.docsToReferences.elementSize > 0 || this.older != null;
 	}
 
 	void remove(String documentName) {
@@ -198,6 +289,10 @@ public class MemoryIndex {
 		this.docsToReferences.put(documentName, null);
 	}
 
+	/**
+	 * Answers whether the changes of this memory index, without the published
+	 * older ones, are numerous enough to be saved.
+	 */
 	boolean shouldMerge() {
 		return this.docsToReferences.elementSize >= NUM_CHANGES;
 	}
@@ -22,12 +22,12 @@ import java.io.IOException;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.dltk.compiler.CharOperation;
-import org.eclipse.dltk.compiler.util.HashtableOfObject;
 import org.eclipse.dltk.compiler.util.ObjectVector;
 import org.eclipse.dltk.compiler.util.SimpleSet;
 import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.core.search.indexing.IIndexConstants;
 import org.eclipse.dltk.core.search.indexing.IndexManager;
+import org.eclipse.dltk.internal.core.mixin.MixinKeyTrie;
 import org.eclipse.dltk.internal.core.util.Util;
 
 public class MixinIndex extends Index {
@@ -36,7 +36,11 @@ public class MixinIndex extends Index {
 	private static final char[] OLD_HEADER_2 = "MIXIN INDEX 0.2".toCharArray(); //$NON-NLS-1$
 	private static final char[] HEADER = "MIXIN INDEX 0.3".toCharArray(); //$NON-NLS-1$
 
-	private final HashtableOfObject keyToDocs = new HashtableOfObject(10);
+	/**
+	 * The keys and their documents, the queries visit only the keys starting
+	 * with the literal prefix of the pattern.
+	 */
+	private final MixinKeyTrie keyToDocs = new MixinKeyTrie();
 	private final SimpleSet documentNames = new SimpleSet(10);
 
 	private final String fileName;
@@ -83,12 +87,7 @@ public class MixinIndex extends Index {
 	}
 
 	private void addIndexEntry(char[] key, String containerRelativePath) {
-		SimpleSet docs = (SimpleSet) keyToDocs.get(key);
-		if (docs == null) {
-			docs = new SimpleSet(1);
-			keyToDocs.put(key, docs);
-		}
-		docs.add(containerRelativePath);
+		keyToDocs.add(key, containerRelativePath);
 	}
 
 	public File getIndexFile() {
@@ -113,30 +112,18 @@ public class MixinIndex extends Index {
 		if (!isMixinCategory(categories))
 			return new EntryResult[0];
 		final ObjectVector results = new ObjectVector();
-		performQuery(key, matchRule, results);
-		final EntryResult[] entryResults = new EntryResult[results.size];
-		results.copyInto(entryResults);
-		return entryResults;
-	}
-
-	private void performQuery(char[] key, int matchRule, ObjectVector results) {
-		final char[][] keyTable = keyToDocs.keyTable;
-		for (int i = 0, keyLen = keyTable.length; i < keyLen; i++) {
-			final char[] nextKey = keyTable[i];
-			if (nextKey == null)
-				continue;
-			if (Index.isMatch(key, nextKey, matchRule)) {
+		keyToDocs.query(key, matchRule, new MixinKeyTrie.IKeyVisitor() {
+			public void visit(char[] nextKey, String[] documents) {
 				final EntryResult s = new EntryResult(nextKey, null);
 				results.add(s);
-				final Object[] docTable = ((SimpleSet) keyToDocs.valueTable[i]).values;
-				for (int j = 0, docLen = docTable.length; j < docLen; j++) {
-					final String doc = (String) docTable[j];
-					if (doc != null) {
-						s.addDocumentName(doc);
-					}
+				for (String doc : documents) {
+					s.addDocumentName(doc);
 				}
 			}
-		}
+		});
+		final EntryResult[] entryResults = new EntryResult[results.size];
+		results.copyInto(entryResults);
+		return entryResults;
 	}
 
 	private static String[] extractKeysFromTable(SimpleSet table,
@@ -170,13 +157,7 @@ public class MixinIndex extends Index {
 	public void remove(String containerRelativePath) {
 		this.dirty = true;
 		if (documentNames.remove(containerRelativePath) != null) {
-			final char[][] keyTable = keyToDocs.keyTable;
-			for (int i = 0; i < keyTable.length; i++) {
-				final SimpleSet docs = (SimpleSet) keyToDocs.valueTable[i];
-				if (docs != null) {
-					docs.remove(containerRelativePath);
-				}
-			}
+			keyToDocs.remove(containerRelativePath);
 		}
 	}
 
@@ -189,27 +170,23 @@ public class MixinIndex extends Index {
 		File f = getIndexFile();
 		FileOutputStream fouts = new FileOutputStream(f, false);
 		BufferedOutputStream bufout = new BufferedOutputStream(fouts, 2048);
-		DataOutputStream stream = new DataOutputStream(bufout);
+		final DataOutputStream stream = new DataOutputStream(bufout);
 		final SimpleSet allDocuments = new SimpleSet();
 		allDocuments.addAll(documentNames);
 		Util.writeUTF(stream, HEADER);
-		int keyCount = keyToDocs.elementSize;
+		int keyCount = keyToDocs.size();
 		stream.writeInt(keyCount);
-		for (int i = 0; i < keyToDocs.keyTable.length; i++) {
-			char[] key = keyToDocs.keyTable[i];
-			if (key == null)
-				continue;
-			Util.writeUTF(stream, key);
-			final SimpleSet docs = (SimpleSet) keyToDocs.valueTable[i];
-			stream.writeInt(docs.elementSize);
-			for (int j = 0; j < docs.values.length; j++) {
-				final String docName = (String) docs.values[j];
-				if (docName != null) {
+		keyToDocs.visit(new MixinKeyTrie.IKeyVisitor() {
+			public void visit(char[] key, String[] documents)
+					throws IOException {
+				Util.writeUTF(stream, key);
+				stream.writeInt(documents.length);
+				for (String docName : documents) {
 					Util.writeUTF(stream, docName.toCharArray());
 					allDocuments.remove(docName);
 				}
 			}
-		}
+		});
 		stream.writeInt(allDocuments.size());
 		for (int i = 0, docTableLen = allDocuments.values.length; i < docTableLen; ++i) {
 			String docName = (String) allDocuments.values[i];
@@ -227,6 +204,11 @@ public class MixinIndex extends Index {
 					+ (System.currentTimeMillis() - start));
 			System.out.println("Mixin modules: " + this.documentNames.size()); //$NON-NLS-1$
 			System.out.println("Mixin keys: " + this.keyToDocs.size()); //$NON-NLS-1$
+			final long keysSize = this.keyToDocs.estimateSize();
+			System.out.println("Mixin keys memory: " + keysSize //$NON-NLS-1$
+					+ " bytes, " //$NON-NLS-1$
+					+ keysSize * 1000000 / Math.max(1, keyToDocs.size())
+					+ " per million keys"); //$NON-NLS-1$
 		}
 	}
 
@@ -11,6 +11,8 @@
  *******************************************************************************/
 package org.eclipse.dltk.core.search.indexing;
 
+import java.util.Collection;
+
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.dltk.core.IDLTKLanguageToolkit;
 import org.eclipse.dltk.core.IProjectFragment;
@@ -38,6 +40,32 @@ public interface IProjectIndexer {
 
 	}
 
+	/**
+	 * Optional interface of the indexers processing the changes of the
+	 * several source modules of the project as a single request.
+	 * 
+	 * @since 5.0
+	 */
+	public interface Batched extends IProjectIndexer {
+
+		/**
+		 * Indexes the changed modules and removes the documents of the
+		 * removed modules from the index of the project.
+		 * 
+		 * @param project
+		 * @param toolkit
+		 * @param modules
+		 *            the added or changed modules
+		 * @param removedPaths
+		 *            the project relative paths of the removed modules
+		 */
+		void indexSourceModules(IScriptProject project,
+				IDLTKLanguageToolkit toolkit,
+				Collection<ISourceModule> modules,
+				Collection<String> removedPaths);
+
+	}
+
 	/**
 	 * @param project
 	 */
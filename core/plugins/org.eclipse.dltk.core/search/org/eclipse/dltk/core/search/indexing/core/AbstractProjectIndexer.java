@@ -11,6 +11,8 @@
  *******************************************************************************/
 package org.eclipse.dltk.core.search.indexing.core;
 
+import java.util.Collection;
+
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.core.DLTKLanguageManager;
@@ -28,7 +30,7 @@ import org.eclipse.dltk.internal.core.search.processing.IJob;
 import org.eclipse.osgi.util.NLS;
 
 public abstract class AbstractProjectIndexer implements IProjectIndexer,
-		IProjectIndexer.Internal {
+		IProjectIndexer.Internal, IProjectIndexer.Batched {
 
 	private final IndexManager manager = ModelManager.getModelManager()
 			.getIndexManager();
@@ -115,6 +117,16 @@ public abstract class AbstractProjectIndexer implements IProjectIndexer,
 		request(new SourceModuleRequest(this, module, toolkit));
 	}
 
+	/**
+	 * @since 5.0
+	 */
+	public void indexSourceModules(IScriptProject project,
+			IDLTKLanguageToolkit toolkit, Collection<ISourceModule> modules,
+			Collection<String> removedPaths) {
+		request(new SourceModuleChangesRequest(this, project, toolkit,
+				modules, removedPaths));
+	}
+
 	public void reconciled(ISourceModule workingCopy,
 			IDLTKLanguageToolkit toolkit) {
 	}
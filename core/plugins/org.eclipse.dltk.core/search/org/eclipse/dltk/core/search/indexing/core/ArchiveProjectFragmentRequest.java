@@ -15,7 +15,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -23,7 +22,6 @@ import java.util.Set;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.dltk.compiler.CharOperation;
-import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.core.IDLTKLanguageToolkit;
 import org.eclipse.dltk.core.IExternalSourceModule;
 import org.eclipse.dltk.core.IModelElement;
@@ -40,8 +38,10 @@ import org.eclipse.dltk.core.search.indexing.IIndexConstants;
 import org.eclipse.dltk.core.search.indexing.IProjectIndexer;
 import org.eclipse.dltk.core.search.indexing.ReadWriteMonitor;
 import org.eclipse.dltk.internal.core.BuiltinSourceModule;
+import org.eclipse.dltk.internal.core.search.processing.IPartitionedJob;
 
-public class ArchiveProjectFragmentRequest extends IndexRequest {
+public class ArchiveProjectFragmentRequest extends IndexRequest implements
+		IPartitionedJob {
 
 	protected final IProjectFragment fragment;
 	protected final IDLTKLanguageToolkit toolkit;
@@ -57,6 +57,13 @@ public class ArchiveProjectFragmentRequest extends IndexRequest {
 		return fragment.getElementName();
 	}
 
+	/**
+	 * The fragments are indexed in parallel, each into its own index.
+	 */
+	public Object getPartition() {
+		return fragment.getPath();
+	}
+
 	protected void run() throws CoreException, IOException {
 		IEnvironment environment = EnvironmentManager.getEnvironment(fragment
 				.getScriptProject());
@@ -88,33 +95,29 @@ public class ArchiveProjectFragmentRequest extends IndexRequest {
 		imon.enterWrite();
 		try {
 			index.separator = Index.JAR_SEPARATOR;
-			index.addIndexEntry(IIndexConstants.STAMP, CharOperation.NO_CHAR,
-					SIGNATURE_PREFIX + signature);
-			for (Iterator<Object> i = changes.iterator(); !isCancelled
-					&& i.hasNext();) {
-				final Object change = i.next();
+		} finally {
+			imon.exitWrite();
+		}
+		// the signature is added after the last module, so the archive is
+		// checked again next time if the indexing is interrupted
+		changes.add(SIGNATURE_CHANGE);
+		applyChanges(index, changes, new IChangeHandler() {
+			public void apply(Index index, Object change) {
 				if (change instanceof String) {
 					index.remove((String) change);
 				} else if (change instanceof ISourceModule) {
-					ISourceModule module = (ISourceModule) change;
-					getIndexer().indexSourceModule(index, toolkit, module,
-							containerPath);
+					getIndexer().indexSourceModule(index, toolkit,
+							(ISourceModule) change, containerPath);
+				} else if (change == SIGNATURE_CHANGE) {
+					index.addIndexEntry(IIndexConstants.STAMP,
+							CharOperation.NO_CHAR, SIGNATURE_PREFIX + signature);
 				}
 			}
-
-		} catch (Throwable e) {
-			e.printStackTrace();
-		} finally {
-			try {
-				index.save();
-			} catch (IOException e) {
-				DLTKCore.error("error saving index", e); //$NON-NLS-1$
-			} finally {
-				imon.exitWrite();
-			}
-		}
+		});
 	}
 
+	private static final Object SIGNATURE_CHANGE = new Object();
+
 	// TODO (alex) use content cache for it probably
 	private static final String SIGNATURE_PREFIX = "###.LIBRARY.###.SIGNATURE.###";
 
@@ -13,13 +13,11 @@ package org.eclipse.dltk.core.search.indexing.core;
 
 import java.io.IOException;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
-import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.core.IDLTKLanguageToolkit;
 import org.eclipse.dltk.core.IExternalSourceModule;
 import org.eclipse.dltk.core.IModelElement;
@@ -33,11 +31,12 @@ import org.eclipse.dltk.core.environment.IEnvironment;
 import org.eclipse.dltk.core.environment.IFileHandle;
 import org.eclipse.dltk.core.search.index.Index;
 import org.eclipse.dltk.core.search.indexing.IProjectIndexer;
-import org.eclipse.dltk.core.search.indexing.ReadWriteMonitor;
 import org.eclipse.dltk.internal.core.BuiltinSourceModule;
 import org.eclipse.dltk.internal.core.ModelManager;
+import org.eclipse.dltk.internal.core.search.processing.IPartitionedJob;
 
-public class ExternalProjectFragmentRequest extends IndexRequest {
+public class ExternalProjectFragmentRequest extends IndexRequest implements
+		IPartitionedJob {
 
 	protected final IProjectFragment fragment;
 	protected final IDLTKLanguageToolkit toolkit;
@@ -53,6 +52,13 @@ public class ExternalProjectFragmentRequest extends IndexRequest {
 		return fragment.getElementName();
 	}
 
+	/**
+	 * The fragments are indexed in parallel, each into its own index.
+	 */
+	public Object getPartition() {
+		return fragment.getPath();
+	}
+
 	protected void run() throws CoreException, IOException {
 		IEnvironment environment = EnvironmentManager.getEnvironment(fragment
 				.getScriptProject());
@@ -65,7 +71,7 @@ public class ExternalProjectFragmentRequest extends IndexRequest {
 			return;
 		}
 		final IPath containerPath = fragment.getPath();
-		Set<IFileHandle> parentFolders = new HashSet<IFileHandle>();
+		final Set<IFileHandle> parentFolders = new HashSet<IFileHandle>();
 		final List<Object> changes = checkChanges(index, modules,
 				containerPath, getEnvironment(), parentFolders);
 		if (DEBUG) {
@@ -74,19 +80,16 @@ public class ExternalProjectFragmentRequest extends IndexRequest {
 		if (changes.isEmpty()) {
 			return;
 		}
-		final ReadWriteMonitor imon = index.monitor;
-		imon.enterWrite();
-		try {
-			for (Iterator<Object> i = changes.iterator(); !isCancelled
-					&& i.hasNext();) {
-				final Object change = i.next();
+		final boolean updateTimestamps = changes.size() > 1;
+		applyChanges(index, changes, new IChangeHandler() {
+			public void apply(Index index, Object change) {
 				if (change instanceof String) {
 					index.remove((String) change);
 				} else if (change instanceof ISourceModule) {
 					ISourceModule module = (ISourceModule) change;
 					IFileHandle file = EnvironmentPathUtils.getFile(module,
 							false);
-					if (file != null && changes.size() > 1) {
+					if (file != null && updateTimestamps) {
 						IFileHandle parentHandle = file.getParent();
 						if (parentHandle != null
 								&& parentFolders.add(parentHandle.getParent())) {
@@ -98,18 +101,7 @@ public class ExternalProjectFragmentRequest extends IndexRequest {
 							containerPath);
 				}
 			}
-
-		} catch (Throwable e) {
-			e.printStackTrace();
-		} finally {
-			try {
-				index.save();
-			} catch (IOException e) {
-				DLTKCore.error("error saving index", e); //$NON-NLS-1$
-			} finally {
-				imon.exitWrite();
-			}
-		}
+		});
 	}
 
 	protected IEnvironment getEnvironment() {
@@ -21,12 +21,14 @@ import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.core.ISourceModule;
 import org.eclipse.dltk.core.ModelException;
 import org.eclipse.dltk.core.caching.IContentCache;
 import org.eclipse.dltk.core.environment.EnvironmentPathUtils;
 import org.eclipse.dltk.core.environment.IEnvironment;
 import org.eclipse.dltk.core.environment.IFileHandle;
+import org.eclipse.dltk.core.search.IDLTKSearchConstants;
 import org.eclipse.dltk.core.search.index.Index;
 import org.eclipse.dltk.core.search.indexing.AbstractJob;
 import org.eclipse.dltk.core.search.indexing.IProjectIndexer;
@@ -38,6 +40,28 @@ import org.eclipse.dltk.internal.core.ModelManager;
  * @since 2.0
  */
 public abstract class IndexRequest extends AbstractJob {
+
+	/**
+	 * The number of the changes applied to the index under one write lock. The
+	 * changes are published after each batch, so the searches reading the
+	 * snapshot of the index ({@link IDLTKSearchConstants#READ_SNAPSHOT_TO_SEARCH})
+	 * see them before the whole container is indexed.
+	 * 
+	 * @since 5.0
+	 */
+	protected static final int WRITE_BATCH_SIZE = 50;
+
+	/**
+	 * Applies a single change returned by
+	 * {@link IndexRequest#checkChanges(Index, Collection, IPath, IEnvironment, Set)}
+	 * , called with the write lock of the index held.
+	 * 
+	 * @since 5.0
+	 */
+	protected interface IChangeHandler {
+		void apply(Index index, Object change);
+	}
+
 	private IProjectIndexer indexer;
 
 	public IndexRequest(IProjectIndexer indexer) {
@@ -152,6 +176,48 @@ public abstract class IndexRequest extends AbstractJob {
 		}
 	}
 
+	/**
+	 * Applies the changes to the index in batches of
+	 * {@link #WRITE_BATCH_SIZE}, each under its own write lock and followed by
+	 * {@link Index#publish()}. The index is saved once, after the last batch.
+	 * Stops when the request is cancelled or a change fails.
+	 * 
+	 * @return whether all the changes were applied
+	 * @since 5.0
+	 */
+	protected boolean applyChanges(Index index, List<?> changes,
+			IChangeHandler handler) {
+		final ReadWriteMonitor imon = index.monitor;
+		final Iterator<?> i = changes.iterator();
+		try {
+			while (!isCancelled && i.hasNext()) {
+				imon.enterWrite();
+				try {
+					for (int count = 0; count < WRITE_BATCH_SIZE
+							&& !isCancelled && i.hasNext(); ++count) {
+						handler.apply(index, i.next());
+					}
+				} catch (Throwable e) {
+					DLTKCore.error("error updating index", e); //$NON-NLS-1$
+					return false;
+				} finally {
+					index.publish();
+					imon.exitWrite();
+				}
+			}
+			return !i.hasNext();
+		} finally {
+			imon.enterWrite();
+			try {
+				index.save();
+			} catch (IOException e) {
+				DLTKCore.error("error saving index", e); //$NON-NLS-1$
+			} finally {
+				imon.exitWrite();
+			}
+		}
+	}
+
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
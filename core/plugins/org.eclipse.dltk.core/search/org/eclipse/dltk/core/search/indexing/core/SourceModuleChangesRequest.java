@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.search.indexing.core;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.dltk.core.IDLTKLanguageToolkit;
+import org.eclipse.dltk.core.IScriptProject;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.environment.EnvironmentManager;
+import org.eclipse.dltk.core.environment.IEnvironment;
+import org.eclipse.dltk.core.search.index.Index;
+import org.eclipse.dltk.core.search.indexing.IProjectIndexer;
+import org.eclipse.dltk.core.search.indexing.ReadWriteMonitor;
+
+/**
+ * Request to index the changed source modules and to remove the removed
+ * source modules of the project under a single write lock of the index.
+ *
+ * @since 5.0
+ */
+public class SourceModuleChangesRequest extends IndexRequest {
+
+	private final IScriptProject project;
+	private final IDLTKLanguageToolkit toolkit;
+	private final Collection<ISourceModule> modules;
+	private final Collection<String> removedPaths;
+
+	/**
+	 * @param indexer
+	 * @param project
+	 * @param toolkit
+	 * @param modules
+	 *            the added or changed modules
+	 * @param removedPaths
+	 *            the project relative paths of the removed modules
+	 */
+	public SourceModuleChangesRequest(IProjectIndexer indexer,
+			IScriptProject project, IDLTKLanguageToolkit toolkit,
+			Collection<ISourceModule> modules, Collection<String> removedPaths) {
+		super(indexer);
+		this.project = project;
+		this.toolkit = toolkit;
+		this.modules = modules;
+		this.removedPaths = removedPaths;
+	}
+
+	@Override
+	protected String getName() {
+		return project.getElementName();
+	}
+
+	@Override
+	public boolean belongsTo(String jobFamily) {
+		return jobFamily.equals(project.getElementName());
+	}
+
+	@Override
+	protected void run() throws CoreException, IOException {
+		IEnvironment environment = EnvironmentManager.getEnvironment(project);
+		if (environment == null || !environment.connect()) {
+			return;
+		}
+		final Index index = getIndexer().getProjectIndex(project);
+		final IPath containerPath = project.getPath();
+		final ReadWriteMonitor imon = index.monitor;
+		imon.enterWrite();
+		try {
+			for (Iterator<String> i = removedPaths.iterator(); !isCancelled
+					&& i.hasNext();) {
+				index.remove(i.next());
+			}
+			for (Iterator<ISourceModule> i = modules.iterator(); !isCancelled
+					&& i.hasNext();) {
+				getIndexer().indexSourceModule(index, toolkit, i.next(),
+						containerPath);
+			}
+		} finally {
+			imon.exitWrite();
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = super.hashCode();
+		result = prime * result + ((modules == null) ? 0 : modules.hashCode());
+		result = prime * result + ((project == null) ? 0 : project.hashCode());
+		result = prime * result
+				+ ((removedPaths == null) ? 0 : removedPaths.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!super.equals(obj))
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		SourceModuleChangesRequest other = (SourceModuleChangesRequest) obj;
+		if (modules == null) {
+			if (other.modules != null)
+				return false;
+		} else if (!modules.equals(other.modules))
+			return false;
+		if (project == null) {
+			if (other.project != null)
+				return false;
+		} else if (!project.equals(other.project))
+			return false;
+		if (removedPaths == null) {
+			if (other.removedPaths != null)
+				return false;
+		} else if (!removedPaths.equals(other.removedPaths))
+			return false;
+		return true;
+	}
+}
@@ -13,7 +13,6 @@ package org.eclipse.dltk.core.search.indexing.core;
 
 import java.io.IOException;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -28,7 +27,6 @@ import org.eclipse.dltk.core.environment.IEnvironment;
 import org.eclipse.dltk.core.environment.IFileHandle;
 import org.eclipse.dltk.core.search.index.Index;
 import org.eclipse.dltk.core.search.indexing.IProjectIndexer;
-import org.eclipse.dltk.core.search.indexing.ReadWriteMonitor;
 
 /**
  * @since 2.0
@@ -78,12 +76,8 @@ public class SourceModulesRequest extends IndexRequest {
 		if (changes.isEmpty()) {
 			return;
 		}
-		final ReadWriteMonitor imon = index.monitor;
-		imon.enterWrite();
-		try {
-			for (Iterator<?> i = changes.iterator(); !isCancelled
-					&& i.hasNext();) {
-				final Object change = i.next();
+		applyChanges(index, changes, new IChangeHandler() {
+			public void apply(Index index, Object change) {
 				if (change instanceof String) {
 					index.remove((String) change);
 				} else {
@@ -91,19 +85,7 @@ public class SourceModulesRequest extends IndexRequest {
 							(ISourceModule) change, containerPath);
 				}
 			}
-		} catch (Throwable t) {
-			if (DLTKCore.DEBUG) {
-				t.printStackTrace();
-			}
-		} finally {
-			try {
-				index.save();
-			} catch (IOException e) {
-				DLTKCore.error("error saving index", e); //$NON-NLS-1$
-			} finally {
-				imon.exitWrite();
-			}
-		}
+		});
 	}
 
 	@Override
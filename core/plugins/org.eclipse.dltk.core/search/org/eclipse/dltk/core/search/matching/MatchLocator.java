@@ -14,7 +14,15 @@ package org.eclipse.dltk.core.search.matching;
 
 import java.io.IOException;
 import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.Assert;
@@ -76,6 +84,7 @@ import org.eclipse.dltk.internal.core.SourceRefElement;
 import org.eclipse.dltk.internal.core.search.IndexQueryRequestor;
 import org.eclipse.dltk.internal.core.search.matching.AndPattern;
 import org.eclipse.dltk.internal.core.search.matching.InternalSearchPattern;
+import org.eclipse.dltk.internal.core.search.matching.MatchLocatorWorkers;
 import org.eclipse.dltk.internal.core.search.matching.MatchingNodeSet;
 import org.eclipse.dltk.internal.core.search.matching.OrPattern;
 import org.eclipse.dltk.internal.core.util.HandleFactory;
@@ -314,7 +323,7 @@ public class MatchLocator implements IMatchLocator, ITypeRequestor {
 	protected IModelElement createMethodHandle(IType type, String methodName) {
 		IMethod methodHandle = type.getMethod(methodName);
 		resolveDuplicates(methodHandle);
-		return methodHandle;
+		return ModelManager.getModelManager().intern(methodHandle);
 	}
 
 	/**
@@ -335,7 +344,7 @@ public class MatchLocator implements IMatchLocator, ITypeRequestor {
 	protected IModelElement createTypeHandle(IType parent, String name) {
 		final IType typeHandle = parent.getType(name);
 		resolveDuplicates(typeHandle);
-		return typeHandle;
+		return ModelManager.getModelManager().intern(typeHandle);
 	}
 
 	/*
@@ -347,7 +356,7 @@ public class MatchLocator implements IMatchLocator, ITypeRequestor {
 
 		IMethod methodHandle = module.getMethod(methodName);
 		resolveDuplicates(methodHandle);
-		return methodHandle;
+		return ModelManager.getModelManager().intern(methodHandle);
 	}
 
 	/*
@@ -357,7 +366,7 @@ public class MatchLocator implements IMatchLocator, ITypeRequestor {
 	protected IModelElement createFieldHandle(IType type, String methodName) {
 		IField fieldHandle = type.getField(methodName);
 		resolveDuplicates(fieldHandle);
-		return fieldHandle;
+		return ModelManager.getModelManager().intern(fieldHandle);
 	}
 
 	/*
@@ -369,7 +378,7 @@ public class MatchLocator implements IMatchLocator, ITypeRequestor {
 
 		IField fieldHandle = module.getField(methodName);
 		resolveDuplicates(fieldHandle);
-		return fieldHandle;
+		return ModelManager.getModelManager().intern(fieldHandle);
 	}
 
 	/**
@@ -381,7 +390,7 @@ public class MatchLocator implements IMatchLocator, ITypeRequestor {
 		if (openable instanceof ISourceModule)
 			type = ((ISourceModule) openable).getType(simpleTypeName);
 		resolveDuplicates(type);
-		return type;
+		return ModelManager.getModelManager().intern(type);
 	}
 
 	/**
@@ -403,7 +412,7 @@ public class MatchLocator implements IMatchLocator, ITypeRequestor {
 		if (openable instanceof ISourceModule)
 			method = ((ISourceModule) openable).getMethod(simpleTypeName);
 		resolveDuplicates(method);
-		return method;
+		return ModelManager.getModelManager().intern(method);
 	}
 
 	/**
@@ -418,7 +427,7 @@ public class MatchLocator implements IMatchLocator, ITypeRequestor {
 			field = null;
 		}
 		resolveDuplicates(field);
-		return field;
+		return ModelManager.getModelManager().intern(field);
 	}
 
 	protected boolean encloses(IModelElement element) {
@@ -427,12 +436,16 @@ public class MatchLocator implements IMatchLocator, ITypeRequestor {
 
 	protected void getMethodBodies(ModuleDeclaration unit,
 			MatchingNodeSet nodeSet) {
+		getMethodBodies(this.parser, unit, nodeSet);
+	}
 
+	private static void getMethodBodies(IMatchLocatorParser parser,
+			ModuleDeclaration unit, MatchingNodeSet nodeSet) {
 		try {
-			this.parser.setNodeSet(nodeSet);
-			this.parser.parseBodies(unit);
+			parser.setNodeSet(nodeSet);
+			parser.parseBodies(unit);
 		} finally {
-			this.parser.setNodeSet(null);
+			parser.setNodeSet(null);
 		}
 	}
 
@@ -490,6 +503,15 @@ public class MatchLocator implements IMatchLocator, ITypeRequestor {
 			PossibleMatch[] possibleMatches, int start, int length)
 			throws CoreException {
 		initialize(scriptProject, length);
+		if (length > 1) {
+			final MatchLocatorWorkers workers = ModelManager.getModelManager()
+					.getMatchLocatorWorkers();
+			if (workers.getThreads() > 1) {
+				locateMatchesInParallel(scriptProject, workers,
+						possibleMatches, start, length);
+				return;
+			}
+		}
 		// create and resolve binding (equivalent to beginCompilation() in
 		// Compiler)
 		for (int i = start, maxUnits = start + length; i < maxUnits; i++) {
@@ -510,6 +532,124 @@ public class MatchLocator implements IMatchLocator, ITypeRequestor {
 		}
 	}
 
+	/*
+	 * Parses the possible matches by the workers, each worker with its own
+	 * parser, and reports them by the calling thread in the original order, so
+	 * the requestor is called sequentially as before. The number of the parsed
+	 * modules not reported yet is limited by the workers. The parsers must
+	 * follow the contract described by IMatchLocatorParser.
+	 */
+	private void locateMatchesInParallel(IScriptProject scriptProject,
+			MatchLocatorWorkers workers, PossibleMatch[] possibleMatches,
+			int start, int length) throws CoreException {
+		final String natureId = DLTKLanguageManager.getLanguageToolkit(
+				scriptProject).getNatureId();
+		final Queue<IMatchLocatorParser> parsers = new ConcurrentLinkedQueue<IMatchLocatorParser>();
+		final LinkedList<Future<PossibleMatch>> inFlight = new LinkedList<Future<PossibleMatch>>();
+		final int maxInFlight = workers.getMaxInFlight();
+		int next = start;
+		final int end = start + length;
+		try {
+			while (next < end || !inFlight.isEmpty()) {
+				while (next < end && inFlight.size() < maxInFlight) {
+					inFlight.add(workers.submit(newParseTask(
+							possibleMatches[next++], parsers, natureId)));
+				}
+				final PossibleMatch possibleMatch = waitFor(inFlight
+						.removeFirst());
+				try {
+					worked();
+					process(possibleMatch);
+				} finally {
+					possibleMatch.cleanUp();
+				}
+			}
+		} finally {
+			for (Future<PossibleMatch> future : inFlight) {
+				future.cancel(false);
+			}
+		}
+	}
+
+	private Callable<PossibleMatch> newParseTask(
+			final PossibleMatch possibleMatch,
+			final Queue<IMatchLocatorParser> parsers, final String natureId) {
+		return new Callable<PossibleMatch>() {
+			public PossibleMatch call() {
+				if (isCanceled()) {
+					return possibleMatch;
+				}
+				IMatchLocatorParser parser = parsers.poll();
+				if (parser == null) {
+					parser = DLTKLanguageManager.createMatchParser(natureId,
+							MatchLocator.this);
+				}
+				try {
+					parse(parser, possibleMatch);
+				} finally {
+					parsers.add(parser);
+				}
+				return possibleMatch;
+			}
+		};
+	}
+
+	/*
+	 * Waits for the parsed possible match, checking the monitor.
+	 */
+	private PossibleMatch waitFor(Future<PossibleMatch> future) {
+		try {
+			for (;;) {
+				if (isCanceled()) {
+					throw new OperationCanceledException();
+				}
+				try {
+					return future.get(100, TimeUnit.MILLISECONDS);
+				} catch (TimeoutException e) {
+					// check the monitor again
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	private boolean isCanceled() {
+		return this.progressMonitor != null
+				&& this.progressMonitor.isCanceled();
+	}
+
+	/*
+	 * Parses the possible match and collects its matching nodes, without
+	 * touching the state of this locator, so it could be called by the
+	 * workers.
+	 */
+	private static void parse(IMatchLocatorParser parser,
+			PossibleMatch possibleMatch) {
+		if (BasicSearchEngine.VERBOSE)
+			System.out
+					.println("Parsing " + possibleMatch.openable.toStringWithAncestors()); //$NON-NLS-1$
+		try {
+			parser.setNodeSet(possibleMatch.nodeSet);
+			ModuleDeclaration parsedUnit = parser.parse(possibleMatch);
+			if (parsedUnit != null) {
+				getMethodBodies(parser, parsedUnit, possibleMatch.nodeSet);
+				possibleMatch.parsedUnit = parsedUnit;
+			}
+		} finally {
+			parser.setNodeSet(null);
+		}
+	}
+
 	private boolean parse(PossibleMatch possibleMatch) {
 		if (this.progressMonitor != null && this.progressMonitor.isCanceled())
 			throw new OperationCanceledException();
@@ -0,0 +1,440 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.mixin;
+
+import java.io.IOException;
+
+import org.eclipse.dltk.compiler.CharOperation;
+import org.eclipse.dltk.compiler.util.SimpleSet;
+import org.eclipse.dltk.core.search.SearchPattern;
+import org.eclipse.dltk.core.search.index.Index;
+
+/**
+ * The compressed trie of the mixin keys and the names of the documents
+ * declaring them.
+ * <p>
+ * The edges are labeled with the character sequences, so a node is created
+ * only where the keys diverge and the common prefixes of the keys are stored
+ * once. The prefix queries and the case sensitive pattern queries visit only
+ * the subtree of the literal prefix of the pattern.
+ * </p>
+ * <p>
+ * The trie is not synchronized, it is guarded by the monitor of the index.
+ * </p>
+ */
+public class MixinKeyTrie {
+
+	/**
+	 * Visitor of the keys of the trie.
+	 */
+	public interface IKeyVisitor {
+		/**
+		 * @param key
+		 *            the key, owned by the visitor
+		 * @param documents
+		 *            the names of the documents declaring the key, must not
+		 *            be modified
+		 */
+		void visit(char[] key, String[] documents) throws IOException;
+	}
+
+	/**
+	 * The number of the documents of the key kept in the array, the set is
+	 * used for more of them.
+	 */
+	private static final int MAX_ARRAY_DOCUMENTS = 8;
+
+	/*
+	 * Estimated sizes in bytes, assuming the 64-bit VM with compressed
+	 * references.
+	 */
+	private static final int NODE_SIZE = 24;
+	private static final int ARRAY_HEADER_SIZE = 16;
+	private static final int REFERENCE_SIZE = 4;
+	private static final int SET_SIZE = 24;
+
+	private static final char[] NO_CHARS = new char[0];
+
+	private static final class Node {
+		/**
+		 * The characters of the edge from the parent.
+		 */
+		char[] label;
+		/**
+		 * The children sorted by the first character of their labels or
+		 * <code>null</code> if there are no children.
+		 */
+		Node[] children;
+		/**
+		 * <code>null</code> if the path of the node is not a key, the name of
+		 * the document, the array or the {@link SimpleSet} of the names.
+		 */
+		Object documents;
+
+		Node(char[] label) {
+			this.label = label;
+		}
+	}
+
+	private final Node root = new Node(NO_CHARS);
+
+	private int size;
+
+	/**
+	 * Returns the number of the keys.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Adds the document of the key.
+	 */
+	public void add(char[] key, String document) {
+		Node node = root;
+		int offset = 0;
+		while (offset < key.length) {
+			final int index = indexOf(node, key[offset]);
+			if (index < 0) {
+				final Node child = new Node(CharOperation.subarray(key, offset,
+						key.length));
+				insertChild(node, -index - 1, child);
+				node = child;
+				break;
+			}
+			final Node child = node.children[index];
+			final int common = commonLength(child.label, key, offset,
+					key.length);
+			if (common < child.label.length) {
+				// split the edge at the end of the common part
+				final Node middle = new Node(CharOperation.subarray(
+						child.label, 0, common));
+				child.label = CharOperation.subarray(child.label, common,
+						child.label.length);
+				middle.children = new Node[] { child };
+				node.children[index] = middle;
+				node = middle;
+			} else {
+				node = child;
+			}
+			offset += common;
+		}
+		if (node.documents == null) {
+			++size;
+		}
+		node.documents = addDocument(node.documents, document);
+	}
+
+	/**
+	 * Removes the document from all the keys, the keys without the documents
+	 * are removed.
+	 */
+	public void remove(String document) {
+		remove(root, document);
+	}
+
+	private void remove(Node node, String document) {
+		if (node.documents != null) {
+			node.documents = removeDocument(node.documents, document);
+			if (node.documents == null) {
+				--size;
+			}
+		}
+		final Node[] children = node.children;
+		if (children == null) {
+			return;
+		}
+		int count = 0;
+		for (int i = 0; i < children.length; ++i) {
+			Node child = children[i];
+			remove(child, document);
+			if (child.documents == null) {
+				if (child.children == null) {
+					continue;
+				}
+				if (child.children.length == 1) {
+					// merge with the only child
+					final Node grandChild = child.children[0];
+					grandChild.label = CharOperation.concat(child.label,
+							grandChild.label);
+					child = grandChild;
+				}
+			}
+			children[count++] = child;
+		}
+		if (count == 0) {
+			node.children = null;
+		} else if (count != children.length) {
+			node.children = new Node[count];
+			System.arraycopy(children, 0, node.children, 0, count);
+		}
+	}
+
+	/**
+	 * Visits all the keys.
+	 */
+	public void visit(IKeyVisitor visitor) throws IOException {
+		visit(root, new char[32], 0, null, 0, visitor);
+	}
+
+	/**
+	 * Visits the keys matching the pattern as defined by
+	 * {@link Index#isMatch(char[], char[], int)}.
+	 */
+	public void query(char[] pattern, int matchRule, IKeyVisitor visitor)
+			throws IOException {
+		if (pattern == null) {
+			visit(visitor);
+			return;
+		}
+		final int prefixLength = literalPrefixLength(pattern, matchRule);
+		final boolean exact = prefixLength == pattern.length
+				&& prefixLength != 0
+				&& (matchRule & (SearchPattern.R_PREFIX_MATCH | SearchPattern.R_PATTERN_MATCH)) == 0;
+		Node node = root;
+		char[] path = new char[Math.max(32, prefixLength)];
+		int pathLength = 0;
+		int offset = 0;
+		while (offset < prefixLength) {
+			final int index = indexOf(node, pattern[offset]);
+			if (index < 0) {
+				return;
+			}
+			node = node.children[index];
+			final int common = commonLength(node.label, pattern, offset,
+					prefixLength);
+			if (offset + common < prefixLength && common < node.label.length) {
+				return;
+			}
+			path = append(path, pathLength, node.label);
+			pathLength += node.label.length;
+			offset += common;
+		}
+		if (exact) {
+			if (pathLength == prefixLength && node.documents != null) {
+				final char[] key = new char[pathLength];
+				System.arraycopy(path, 0, key, 0, pathLength);
+				if (Index.isMatch(pattern, key, matchRule)) {
+					visitor.visit(key, toArray(node.documents));
+				}
+			}
+			return;
+		}
+		visit(node, path, pathLength, pattern, matchRule, visitor);
+	}
+
+	/**
+	 * Returns the length of the prefix the matching keys start with.
+	 */
+	private static int literalPrefixLength(char[] pattern, int matchRule) {
+		if ((matchRule & SearchPattern.R_CASE_SENSITIVE) == 0
+				|| (matchRule & (SearchPattern.R_CAMELCASE_MATCH | SearchPattern.R_REGEXP_MATCH)) != 0) {
+			return 0;
+		}
+		if ((matchRule & SearchPattern.R_PATTERN_MATCH) != 0) {
+			for (int i = 0; i < pattern.length; ++i) {
+				if (pattern[i] == '*' || pattern[i] == '?') {
+					return i;
+				}
+			}
+		}
+		return pattern.length;
+	}
+
+	/*
+	 * Visits the subtree of the node which path is in the buffer.
+	 */
+	private void visit(Node node, char[] path, int pathLength,
+			char[] pattern, int matchRule, IKeyVisitor visitor)
+			throws IOException {
+		if (node.documents != null) {
+			final char[] key = new char[pathLength];
+			System.arraycopy(path, 0, key, 0, pathLength);
+			if (pattern == null || Index.isMatch(pattern, key, matchRule)) {
+				visitor.visit(key, toArray(node.documents));
+			}
+		}
+		final Node[] children = node.children;
+		if (children != null) {
+			for (Node child : children) {
+				final char[] childPath = append(path, pathLength, child.label);
+				visit(child, childPath, pathLength + child.label.length,
+						pattern, matchRule, visitor);
+			}
+		}
+	}
+
+	/**
+	 * Returns the estimated heap size of the trie in bytes. The names of the
+	 * documents are not counted, as they are shared with the index.
+	 */
+	public long estimateSize() {
+		return estimateSize(root);
+	}
+
+	private static long estimateSize(Node node) {
+		long result = NODE_SIZE
+				+ align(ARRAY_HEADER_SIZE + 2 * node.label.length);
+		if (node.documents instanceof String[]) {
+			result += align(ARRAY_HEADER_SIZE + REFERENCE_SIZE
+					* ((String[]) node.documents).length);
+		} else if (node.documents instanceof SimpleSet) {
+			result += SET_SIZE
+					+ align(ARRAY_HEADER_SIZE + REFERENCE_SIZE
+							* ((SimpleSet) node.documents).values.length);
+		}
+		if (node.children != null) {
+			result += align(ARRAY_HEADER_SIZE + REFERENCE_SIZE
+					* node.children.length);
+			for (Node child : node.children) {
+				result += estimateSize(child);
+			}
+		}
+		return result;
+	}
+
+	private static long align(long size) {
+		return (size + 7) & ~7L;
+	}
+
+	private static char[] append(char[] path, int pathLength, char[] label) {
+		if (pathLength + label.length > path.length) {
+			final char[] newPath = new char[Math.max(path.length * 2,
+					pathLength + label.length)];
+			System.arraycopy(path, 0, newPath, 0, pathLength);
+			path = newPath;
+		}
+		System.arraycopy(label, 0, path, pathLength, label.length);
+		return path;
+	}
+
+	private static int commonLength(char[] label, char[] key, int offset,
+			int end) {
+		final int max = Math.min(label.length, end - offset);
+		int i = 0;
+		while (i < max && label[i] == key[offset + i]) {
+			++i;
+		}
+		return i;
+	}
+
+	/**
+	 * Returns the index of the child which label starts with the character or
+	 * <code>(-(insertion point) - 1)</code>.
+	 */
+	private static int indexOf(Node node, char c) {
+		final Node[] children = node.children;
+		if (children == null) {
+			return -1;
+		}
+		int low = 0;
+		int high = children.length - 1;
+		while (low <= high) {
+			final int mid = (low + high) >>> 1;
+			final char midChar = children[mid].label[0];
+			if (midChar < c) {
+				low = mid + 1;
+			} else if (midChar > c) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	private static void insertChild(Node node, int index, Node child) {
+		final Node[] children = node.children;
+		if (children == null) {
+			node.children = new Node[] { child };
+			return;
+		}
+		final Node[] newChildren = new Node[children.length + 1];
+		System.arraycopy(children, 0, newChildren, 0, index);
+		newChildren[index] = child;
+		System.arraycopy(children, index, newChildren, index + 1,
+				children.length - index);
+		node.children = newChildren;
+	}
+
+	private static Object addDocument(Object documents, String document) {
+		if (documents == null) {
+			return document;
+		}
+		if (documents instanceof String) {
+			if (documents.equals(document)) {
+				return documents;
+			}
+			return new String[] { (String) documents, document };
+		}
+		if (documents instanceof String[]) {
+			final String[] array = (String[]) documents;
+			for (String name : array) {
+				if (name.equals(document)) {
+					return documents;
+				}
+			}
+			if (array.length < MAX_ARRAY_DOCUMENTS) {
+				final String[] newArray = new String[array.length + 1];
+				System.arraycopy(array, 0, newArray, 0, array.length);
+				newArray[array.length] = document;
+				return newArray;
+			}
+			final SimpleSet set = new SimpleSet(array.length * 2);
+			for (String name : array) {
+				set.add(name);
+			}
+			set.add(document);
+			return set;
+		}
+		((SimpleSet) documents).add(document);
+		return documents;
+	}
+
+	private static Object removeDocument(Object documents, String document) {
+		if (documents instanceof String) {
+			return documents.equals(document) ? null : documents;
+		}
+		if (documents instanceof String[]) {
+			final String[] array = (String[]) documents;
+			for (int i = 0; i < array.length; ++i) {
+				if (array[i].equals(document)) {
+					if (array.length == 2) {
+						return array[1 - i];
+					}
+					final String[] newArray = new String[array.length - 1];
+					System.arraycopy(array, 0, newArray, 0, i);
+					System.arraycopy(array, i + 1, newArray, i, array.length
+							- i - 1);
+					return newArray;
+				}
+			}
+			return documents;
+		}
+		final SimpleSet set = (SimpleSet) documents;
+		set.remove(document);
+		return set.elementSize != 0 ? set : null;
+	}
+
+	private static String[] toArray(Object documents) {
+		if (documents instanceof String) {
+			return new String[] { (String) documents };
+		}
+		if (documents instanceof String[]) {
+			return (String[]) documents;
+		}
+		final SimpleSet set = (SimpleSet) documents;
+		final String[] result = new String[set.elementSize];
+		set.asArray(result);
+		return result;
+	}
+}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.search;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
+import org.eclipse.dltk.core.search.SearchMatch;
+import org.eclipse.dltk.core.search.SearchParticipant;
+import org.eclipse.dltk.core.search.SearchRequestor;
+
+/**
+ * Passes at most the specified number of matches to the wrapped requestor,
+ * the monitors created by it are canceled when the limit is reached, so the
+ * search stops early.
+ */
+public class LimitedSearchRequestor extends SearchRequestor {
+
+	private final SearchRequestor requestor;
+	private final int limit;
+
+	/*
+	 * Written by the reporting thread, read by the match locator workers.
+	 */
+	private volatile int count;
+
+	public LimitedSearchRequestor(SearchRequestor requestor, int limit) {
+		this.requestor = requestor;
+		this.limit = limit;
+	}
+
+	/**
+	 * Returns the maximum number of the reported matches.
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * Returns the number of the reported matches.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns whether the limit has been reached.
+	 */
+	public boolean isLimitReached() {
+		return count >= limit;
+	}
+
+	@Override
+	public void acceptSearchMatch(SearchMatch match) throws CoreException {
+		if (count < limit) {
+			++count;
+			requestor.acceptSearchMatch(match);
+		}
+	}
+
+	@Override
+	public void beginReporting() {
+		requestor.beginReporting();
+	}
+
+	@Override
+	public void endReporting() {
+		requestor.endReporting();
+	}
+
+	@Override
+	public void enterParticipant(SearchParticipant participant) {
+		requestor.enterParticipant(participant);
+	}
+
+	@Override
+	public void exitParticipant(SearchParticipant participant) {
+		requestor.exitParticipant(participant);
+	}
+
+	@Override
+	public void snapshotComplete(boolean stale) {
+		requestor.snapshotComplete(stale);
+	}
+
+	@Override
+	public void updateComplete() {
+		requestor.updateComplete();
+	}
+
+	/**
+	 * Returns the monitor reporting the progress to the specified one, which
+	 * is canceled also when the limit is reached.
+	 */
+	public IProgressMonitor newMonitor(IProgressMonitor monitor) {
+		return new ProgressMonitorWrapper(
+				monitor != null ? monitor : new NullProgressMonitor()) {
+			@Override
+			public boolean isCanceled() {
+				return isLimitReached() || super.isCanceled();
+			}
+		};
+	}
+
+	/**
+	 * Returns the monitor ignoring the progress, which is canceled when the
+	 * specified one is canceled or when the limit is reached. It could be
+	 * passed to the repeated tasks, which begin and finish it each time.
+	 */
+	public IProgressMonitor newCancelMonitor(final IProgressMonitor monitor) {
+		return new NullProgressMonitor() {
+			@Override
+			public boolean isCanceled() {
+				return isLimitReached() || monitor != null
+						&& monitor.isCanceled();
+			}
+		};
+	}
+
+}
@@ -22,11 +22,11 @@ import org.eclipse.dltk.core.search.indexing.IndexManager;
 import org.eclipse.dltk.core.search.indexing.ReadWriteMonitor;
 import org.eclipse.dltk.core.search.matching.MatchLocator;
 import org.eclipse.dltk.internal.core.ModelManager;
-import org.eclipse.dltk.internal.core.search.processing.IJob;
+import org.eclipse.dltk.internal.core.search.processing.ISnapshotJob;
 import org.eclipse.dltk.internal.core.search.processing.JobManager;
 
 
-public class PatternSearchJob implements IJob {
+public class PatternSearchJob implements ISnapshotJob {
 
 	protected SearchPattern pattern;
 
@@ -40,6 +40,9 @@ public class PatternSearchJob implements IJob {
 
 	protected long executionTime = 0;
 
+	// whether the snapshots of the indexes are read
+	private boolean readSnapshot;
+
 	public PatternSearchJob(SearchPattern pattern,
 			SearchParticipant participant, IDLTKSearchScope scope,
 			IndexQueryRequestor requestor) {
@@ -90,6 +93,15 @@ public class PatternSearchJob implements IJob {
 		}
 	}
 
+	public boolean executeSnapshot(IProgressMonitor progressMonitor) {
+		this.readSnapshot = true;
+		try {
+			return execute(progressMonitor);
+		} finally {
+			this.readSnapshot = false;
+		}
+	}
+
 	public Index[] getIndexes(IProgressMonitor progressMonitor) {
 		// acquire the in-memory indexes on the fly
 		IPath[] indexLocations = this.participant.selectIndexes(this.pattern,
@@ -139,11 +151,24 @@ public class PatternSearchJob implements IJob {
 		if (progressMonitor != null && progressMonitor.isCanceled())
 			throw new OperationCanceledException();
 
+		if (this.readSnapshot) {
+			final Index snapshot = index.getSnapshot();
+			if (snapshot != null) {
+				// read without the monitor held by the indexer
+				return search(snapshot, null, progressMonitor);
+			}
+		}
 		ReadWriteMonitor monitor = index.monitor;
 		if (monitor == null)
 			return COMPLETE; // index got deleted since acquired
+		return search(index, monitor, progressMonitor);
+	}
+
+	private boolean search(Index index, ReadWriteMonitor monitor,
+			IProgressMonitor progressMonitor) {
 		try {
-			monitor.enterRead(); // ask permission to read
+			if (monitor != null)
+				monitor.enterRead(); // ask permission to read
 			long start = System.currentTimeMillis();
 			MatchLocator.findIndexMatches(this.pattern, index, requestor,
 					this.participant, this.scope, progressMonitor);
@@ -154,7 +179,8 @@ public class PatternSearchJob implements IJob {
 				e.printStackTrace();
 			return FAILED;
 		} finally {
-			monitor.exitRead(); // finished reading
+			if (monitor != null)
+				monitor.exitRead(); // finished reading
 		}
 	}
 
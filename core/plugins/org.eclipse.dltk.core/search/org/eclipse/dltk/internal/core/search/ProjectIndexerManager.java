@@ -10,6 +10,7 @@
 package org.eclipse.dltk.internal.core.search;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -358,6 +359,53 @@ public class ProjectIndexerManager {
 		}
 	}
 
+	/**
+	 * Indexes the added or changed modules and removes the removed modules of
+	 * the project. The indexers implementing {@link IProjectIndexer.Batched}
+	 * receive all the changes as a single request.
+	 * 
+	 * @param project
+	 * @param modules
+	 *            the added or changed modules
+	 * @param removedPaths
+	 *            the project relative paths of the removed modules
+	 * @since 5.0
+	 */
+	public static void indexSourceModules(IScriptProject project,
+			Collection<ISourceModule> modules, Collection<String> removedPaths) {
+		final IProjectIndexer[] indexers = getIndexers(project);
+		if (indexers == null) {
+			return;
+		}
+		final IDLTKLanguageToolkit toolkit = DLTKLanguageManager
+				.getLanguageToolkit(project);
+		final List<ISourceModule> batch = new ArrayList<ISourceModule>(
+				modules.size());
+		for (ISourceModule module : modules) {
+			final IDLTKLanguageToolkit moduleToolkit = DLTKLanguageManager
+					.getLanguageToolkit(module);
+			if (moduleToolkit == null
+					|| toolkit.getNatureId().equals(moduleToolkit.getNatureId())) {
+				batch.add(module);
+			} else {
+				indexSourceModule(module, moduleToolkit);
+			}
+		}
+		for (IProjectIndexer indexer : indexers) {
+			if (indexer instanceof IProjectIndexer.Batched) {
+				((IProjectIndexer.Batched) indexer).indexSourceModules(project,
+						toolkit, batch, removedPaths);
+			} else {
+				for (String path : removedPaths) {
+					indexer.removeSourceModule(project, path);
+				}
+				for (ISourceModule module : batch) {
+					indexer.indexSourceModule(module, toolkit);
+				}
+			}
+		}
+	}
+
 	/**
 	 * @param workingCopy
 	 */
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.search;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.search.SearchMatch;
+import org.eclipse.dltk.core.search.SearchParticipant;
+import org.eclipse.dltk.core.search.SearchRequestor;
+import org.eclipse.dltk.internal.core.ModelManager;
+
+/**
+ * Requestor of the search answered from the index snapshot. It remembers the
+ * reported matches, so when the search is repeated after the indexer is ready
+ * ({@link #startUpdate()}) only the new matches are forwarded to the client
+ * requestor.
+ */
+public class SnapshotSearchRequestor extends SearchRequestor {
+
+	private final SearchRequestor requestor;
+	private final Set<String> reported = new HashSet<String>();
+	private boolean stale;
+	private boolean updating;
+
+	public SnapshotSearchRequestor(SearchRequestor requestor) {
+		this.requestor = requestor;
+		this.stale = isIndexing();
+	}
+
+	private static boolean isIndexing() {
+		return ModelManager.getModelManager().getIndexManager()
+				.awaitingJobsCount() > 0;
+	}
+
+	/**
+	 * Answers whether the indexer was running during the snapshot search.
+	 */
+	public boolean isStale() {
+		return stale;
+	}
+
+	/**
+	 * Switches this requestor to report the late matches: the life cycle
+	 * notifications are no longer forwarded and the matches already reported
+	 * are skipped.
+	 */
+	public void startUpdate() {
+		updating = true;
+	}
+
+	/**
+	 * Notifies the client requestor the late matches have been reported.
+	 */
+	public void updateComplete() {
+		requestor.updateComplete();
+	}
+
+	@Override
+	public void acceptSearchMatch(SearchMatch match) throws CoreException {
+		if (reported.add(keyOf(match))) {
+			requestor.acceptSearchMatch(match);
+		}
+	}
+
+	private static String keyOf(SearchMatch match) {
+		final StringBuilder sb = new StringBuilder();
+		final Object element = match.getElement();
+		if (element instanceof IModelElement) {
+			sb.append(((IModelElement) element).getHandleIdentifier());
+		} else {
+			sb.append(element);
+		}
+		sb.append('|');
+		final IResource resource = match.getResource();
+		if (resource != null) {
+			sb.append(resource.getFullPath());
+		}
+		sb.append('|').append(match.getOffset());
+		sb.append('|').append(match.getLength());
+		return sb.toString();
+	}
+
+	@Override
+	public void beginReporting() {
+		if (!updating) {
+			requestor.beginReporting();
+		}
+	}
+
+	@Override
+	public void endReporting() {
+		if (!updating) {
+			if (!stale) {
+				// could be started while the search was running
+				stale = isIndexing();
+			}
+			requestor.snapshotComplete(stale);
+			requestor.endReporting();
+		}
+	}
+
+	@Override
+	public void enterParticipant(SearchParticipant participant) {
+		requestor.enterParticipant(participant);
+	}
+
+	@Override
+	public void exitParticipant(SearchParticipant participant) {
+		requestor.exitParticipant(participant);
+	}
+
+}
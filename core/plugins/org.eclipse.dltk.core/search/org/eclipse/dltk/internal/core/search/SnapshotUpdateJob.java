@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.search;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubProgressMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.internal.core.ModelManager;
+import org.eclipse.dltk.internal.core.util.Messages;
+
+/**
+ * Background job repeating the search answered from the index snapshot once
+ * the indexer is ready, so the matches of the modules indexed in the meantime
+ * could be reported.
+ */
+public abstract class SnapshotUpdateJob extends Job {
+
+	public SnapshotUpdateJob() {
+		super(Messages.engine_searching_updating);
+		setSystem(true);
+		setPriority(DECORATE);
+	}
+
+	@Override
+	protected IStatus run(IProgressMonitor monitor) {
+		monitor.beginTask(getName(), 2);
+		try {
+			ModelManager.getModelManager().getIndexManager()
+					.waitUntilReady(new SubProgressMonitor(monitor, 1));
+			if (monitor.isCanceled()) {
+				return Status.CANCEL_STATUS;
+			}
+			update(new SubProgressMonitor(monitor, 1));
+			return Status.OK_STATUS;
+		} catch (OperationCanceledException e) {
+			return Status.CANCEL_STATUS;
+		} catch (CoreException e) {
+			DLTKCore.error("Error updating search results", e); //$NON-NLS-1$
+			return Status.OK_STATUS;
+		} finally {
+			monitor.done();
+			complete();
+		}
+	}
+
+	/**
+	 * Repeats the search, reporting only the matches which were not reported
+	 * from the snapshot.
+	 */
+	protected abstract void update(IProgressMonitor monitor)
+			throws CoreException;
+
+	/**
+	 * Called when the update is finished, canceled or failed.
+	 */
+	protected abstract void complete();
+
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.search;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.search.IDLTKSearchScope;
+import org.eclipse.dltk.core.search.SearchDocument;
+import org.eclipse.dltk.core.search.SearchParticipant;
+import org.eclipse.dltk.core.search.SearchPattern;
+import org.eclipse.dltk.core.search.index.Index;
+import org.eclipse.dltk.core.search.matching.MatchLocator;
+import org.eclipse.dltk.core.search.matching.ModuleFactory;
+import org.eclipse.dltk.internal.compiler.env.AccessRuleSet;
+
+/**
+ * Queries the indexes one by one and locates the matches of the collected
+ * documents in batches between the queries, outside of the read lock of the
+ * index, instead of collecting all the documents first. When the limit of
+ * the requestor is reached the remaining indexes are not queried and the
+ * remaining documents are not parsed.
+ */
+public class StreamingSearchJob extends PatternSearchJob {
+
+	/**
+	 * The number of the collected documents located at once.
+	 */
+	private static final int BATCH_SIZE = 32;
+
+	private final LimitedSearchRequestor searchRequestor;
+	private final IProgressMonitor matchMonitor;
+
+	private final Set<String> paths = new HashSet<String>();
+	private final List<SearchDocument> pending = new ArrayList<SearchDocument>();
+
+	/**
+	 * @param matchMonitor
+	 *            the monitor passed to
+	 *            {@link SearchParticipant#locateMatches} for each batch, see
+	 *            {@link LimitedSearchRequestor#newCancelMonitor(IProgressMonitor)}
+	 */
+	public StreamingSearchJob(SearchPattern pattern,
+			final SearchParticipant participant, IDLTKSearchScope scope,
+			final LimitedSearchRequestor searchRequestor,
+			IProgressMonitor matchMonitor) {
+		super(pattern, participant, scope, null);
+		this.searchRequestor = searchRequestor;
+		this.matchMonitor = matchMonitor;
+		this.requestor = new IndexQueryRequestor() {
+			public boolean acceptIndexMatch(String documentPath,
+					SearchPattern indexRecord, SearchParticipant p,
+					AccessRuleSet access) {
+				if (paths.add(documentPath)) {
+					pending.add(participant.getDocument(documentPath, null));
+				}
+				return !searchRequestor.isLimitReached();
+			}
+		};
+	}
+
+	/**
+	 * Adds the documents of the working copies, they take precedence over the
+	 * documents of the same paths found in the indexes and are located first.
+	 */
+	public void addWorkingCopies(ISourceModule[] workingCopies) {
+		final SearchDocument[] documents = ModuleFactory.addWorkingCopies(
+				pattern, new SearchDocument[0], workingCopies, participant);
+		for (SearchDocument document : documents) {
+			if (paths.add(document.getPath())) {
+				pending.add(document);
+			}
+		}
+	}
+
+	@Override
+	public boolean search(Index index, IProgressMonitor progressMonitor) {
+		final boolean result = super.search(index, progressMonitor);
+		if (pending.size() >= BATCH_SIZE) {
+			try {
+				locatePending();
+			} catch (CoreException e) {
+				throw new MatchLocator.WrappedCoreException(e);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Locates the matches of the documents collected so far.
+	 */
+	public void locatePending() throws CoreException {
+		if (pending.isEmpty() || searchRequestor.isLimitReached()) {
+			return;
+		}
+		final SearchDocument[] documents = pending
+				.toArray(new SearchDocument[pending.size()]);
+		pending.clear();
+		participant.locateMatches(documents, pattern, scope, searchRequestor,
+				matchMonitor);
+	}
+
+	/**
+	 * Returns the number of the distinct documents collected.
+	 */
+	public int getDocumentCount() {
+		return paths.size();
+	}
+
+	@Override
+	public String toString() {
+		return "streaming " + super.toString(); //$NON-NLS-1$
+	}
+}
@@ -85,6 +85,31 @@ public class FieldPattern extends VariablePattern implements IIndexConstants {
 		return true; // index key is not encoded so query results all match
 	}
 
+	/**
+	 * Returns whether the specified pattern differs from this one only by the
+	 * field name, so the matches of both could be told apart by the name.
+	 * 
+	 * @since 5.0
+	 */
+	public boolean equalsExceptName(SearchPattern other) {
+		if (other == null || other.getClass() != getClass()) {
+			return false;
+		}
+		final FieldPattern pattern = (FieldPattern) other;
+		return getMatchRule() == pattern.getMatchRule()
+				&& getToolkit() == pattern.getToolkit()
+				&& findDeclarations == pattern.findDeclarations
+				&& readAccess == pattern.readAccess
+				&& writeAccess == pattern.writeAccess
+				&& CharOperation.equals(declaringQualification,
+						pattern.declaringQualification)
+				&& CharOperation.equals(declaringSimpleName,
+						pattern.declaringSimpleName)
+				&& CharOperation.equals(typeQualification,
+						pattern.typeQualification)
+				&& CharOperation.equals(typeSimpleName, pattern.typeSimpleName);
+	}
+
 	protected boolean mustResolve() {
 		if (this.declaringSimpleName != null
 				|| this.declaringQualification != null)
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.search.matching;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.search.matching.MatchLocator;
+
+/**
+ * The worker threads parsing the possible matches of the
+ * {@link MatchLocator} in parallel, shared by all the searches.
+ * <p>
+ * The number of the workers is defined by the {@link DLTKCore#SEARCH_THREADS}
+ * option, with a single worker the possible matches are parsed sequentially
+ * by the searching thread.
+ * </p>
+ */
+public class MatchLocatorWorkers {
+
+	/**
+	 * The number of the parsed modules per worker waiting to be reported, so
+	 * the workers are not idle while the matches are reported.
+	 */
+	private static final int IN_FLIGHT_PER_WORKER = 4;
+
+	private final int threads;
+	private ExecutorService workers;
+
+	public MatchLocatorWorkers(int threads) {
+		this.threads = threads > 0 ? threads : Runtime.getRuntime()
+				.availableProcessors();
+	}
+
+	/**
+	 * Returns the number of the worker threads.
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Returns the maximum number of the parsed modules of a single search
+	 * kept in memory at once.
+	 */
+	public int getMaxInFlight() {
+		return Math.min(MatchLocator.MAX_AT_ONCE, threads
+				* IN_FLIGHT_PER_WORKER);
+	}
+
+	/**
+	 * Submits the task to the workers.
+	 */
+	public <T> Future<T> submit(Callable<T> task) {
+		return getWorkers().submit(task);
+	}
+
+	private synchronized ExecutorService getWorkers() {
+		if (workers == null) {
+			workers = new ThreadPoolExecutor(threads, threads, 0L,
+					TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+					new ThreadFactory() {
+						private int threadNumber = 0;
+
+						public Thread newThread(Runnable r) {
+							final Thread thread = new Thread(r,
+									"DLTK Match Locator #" //$NON-NLS-1$
+											+ (++threadNumber));
+							thread.setDaemon(true);
+							thread.setPriority(Thread.NORM_PRIORITY - 1);
+							return thread;
+						}
+					});
+		}
+		return workers;
+	}
+
+	/**
+	 * Stops the worker threads.
+	 */
+	public synchronized void shutdown() {
+		if (workers != null) {
+			workers.shutdownNow();
+			workers = null;
+		}
+	}
+
+}
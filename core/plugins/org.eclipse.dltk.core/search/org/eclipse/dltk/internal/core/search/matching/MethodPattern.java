@@ -176,6 +176,37 @@ public class MethodPattern extends DLTKSearchPattern implements IIndexConstants
 				&& matchesName(this.selector, pattern.selector);
 	}
 
+	/**
+	 * Returns whether the specified pattern differs from this one only by the
+	 * selector, so the matches of both could be told apart by the name.
+	 * 
+	 * @since 5.0
+	 */
+	public boolean equalsExceptName(SearchPattern other) {
+		if (other == null || other.getClass() != getClass()) {
+			return false;
+		}
+		final MethodPattern pattern = (MethodPattern) other;
+		return getMatchRule() == pattern.getMatchRule()
+				&& getToolkit() == pattern.getToolkit()
+				&& findDeclarations == pattern.findDeclarations
+				&& findReferences == pattern.findReferences
+				&& parameterCount == pattern.parameterCount
+				&& methodParameters == pattern.methodParameters
+				&& CharOperation.equals(declaringQualificationName,
+						pattern.declaringQualificationName)
+				&& CharOperation.equals(declaringSimpleName,
+						pattern.declaringSimpleName)
+				&& CharOperation.equals(parameterQualifications,
+						pattern.parameterQualifications)
+				&& CharOperation.equals(parameterSimpleNames,
+						pattern.parameterSimpleNames)
+				&& CharOperation.equals(methodArguments,
+						pattern.methodArguments)
+				&& (declaringType == null ? pattern.declaringType == null
+						: declaringType.equals(pattern.declaringType));
+	}
+
 	public EntryResult[] queryIn(Index index) throws IOException {
 		char[] key = this.selector; // can be null
 		int matchRule = getMatchRule();
@@ -17,6 +17,11 @@ public interface IJob {
 	int ForceImmediate = 1;
 	int CancelIfNotReady = 2;
 	int WaitUntilReady = 3;
+	/**
+	 * Execute immediately against the last published index contents, without
+	 * pausing the indexing, see {@link ISnapshotJob}.
+	 */
+	int ReadSnapshot = 4;
 
 	/* Job's result */
 	boolean FAILED = false;
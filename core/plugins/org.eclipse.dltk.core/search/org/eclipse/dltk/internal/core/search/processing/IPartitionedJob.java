@@ -0,0 +1,29 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.search.processing;
+
+/**
+ * The job which could be executed by the {@link JobManager} in parallel with
+ * the jobs of the other partitions. Jobs of the same partition are executed
+ * one at a time in the order they were requested. Jobs which don't implement
+ * this interface are executed exclusively, when no other jobs are running.
+ */
+public interface IPartitionedJob extends IJob {
+
+	/**
+	 * Returns the partition of this job (e.g. the path of the container which
+	 * index is updated by this job) or <code>null</code> if this job should be
+	 * executed exclusively.
+	 */
+	Object getPartition();
+
+}
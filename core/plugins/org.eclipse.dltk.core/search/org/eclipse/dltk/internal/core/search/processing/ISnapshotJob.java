@@ -0,0 +1,30 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.search.processing;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * The search job which could read the published snapshots of the indexes
+ * instead of entering their monitors, so it is not blocked by the indexer. The
+ * {@link JobManager} executes it this way for the {@link IJob#ReadSnapshot}
+ * waiting policy while the indexer is running. Other jobs are executed as
+ * usual.
+ */
+public interface ISnapshotJob extends IJob {
+
+	/**
+	 * Executes the job against the snapshots of the indexes.
+	 */
+	boolean executeSnapshot(IProgressMonitor progress);
+
+}
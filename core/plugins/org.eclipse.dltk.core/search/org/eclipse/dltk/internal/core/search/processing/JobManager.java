@@ -9,6 +9,16 @@
  *******************************************************************************/
 package org.eclipse.dltk.internal.core.search.processing;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.OperationCanceledException;
@@ -32,6 +42,16 @@ public abstract class JobManager implements Runnable {
 	protected Thread processingThread;
 	protected Job progressJob;
 
+	/*
+	 * parallel processing of the partitioned jobs, the processing thread
+	 * dispatches them to the workers, the state is guarded by this
+	 */
+	private int workerCount = 1;
+	private ThreadPoolExecutor workers;
+	private final Map<IJob, Object> runningJobs = new HashMap<IJob, Object>();
+	private final Set<Object> busyPartitions = new HashSet<Object>();
+	private static final ThreadLocal<Boolean> isWorkerThread = new ThreadLocal<Boolean>();
+
 	/*
 	 * counter indicating whether job execution is enabled or not, disabled if
 	 * <= 0 it cannot go beyond 1
@@ -57,7 +77,8 @@ public abstract class JobManager implements Runnable {
 	public synchronized int awaitingJobsCount() {
 		// pretend busy in case concurrent job attempts performing before
 		// activated
-		return this.activated ? this.jobEnd - this.jobStart + 1 : 1;
+		return this.activated ? this.jobEnd - this.jobStart + 1
+				+ this.runningJobs.size() : 1;
 	}
 
 	/**
@@ -92,18 +113,43 @@ public abstract class JobManager implements Runnable {
 			synchronized (this) {
 				currentJob = this.currentJob();
 				disable();
+				for (IJob job : this.runningJobs.keySet()) {
+					if (jobFamily == null || job.belongsTo(jobFamily)) {
+						job.cancel();
+					}
+				}
 			}
+			// the job could discard the jobs of its own family, don't wait for
+			// it to finish in that case
+			final boolean canWait = Thread.currentThread() != this.processingThread
+					&& isWorkerThread.get() == null;
 			if (currentJob != null
 					&& (jobFamily == null || currentJob.belongsTo(jobFamily))) {
 				currentJob.cancel();
 
 				// wait until current active job has finished
-				while (this.processingThread != null && this.executing) {
+				synchronized (this) {
+					while (canWait && this.processingThread != null
+							&& this.executing) {
+						try {
+							if (VERBOSE)
+								Util
+										.verbose("-> waiting end of current background job - " + currentJob); //$NON-NLS-1$
+							this.wait();
+						} catch (InterruptedException e) {
+							// ignore
+						}
+					}
+				}
+			}
+			// wait until the cancelled parallel jobs have finished
+			synchronized (this) {
+				while (canWait && hasRunningJobs(jobFamily)) {
 					try {
 						if (VERBOSE)
 							Util
-									.verbose("-> waiting end of current background job - " + currentJob); //$NON-NLS-1$
-						Thread.sleep(50);
+									.verbose("-> waiting end of running background jobs - " + jobFamily); //$NON-NLS-1$
+						this.wait();
 					} catch (InterruptedException e) {
 						// ignore
 					}
@@ -148,6 +194,15 @@ public abstract class JobManager implements Runnable {
 		// (context must be synchronized)
 	}
 
+	private boolean hasRunningJobs(String jobFamily) {
+		for (IJob job : this.runningJobs.keySet()) {
+			if (jobFamily == null || job.belongsTo(jobFamily)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	public synchronized boolean isJobWaiting(IJob request) {
 		for (int i = this.jobEnd; i > this.jobStart; i--)
 			// don't check job at jobStart, as it may have already started
@@ -171,6 +226,7 @@ public abstract class JobManager implements Runnable {
 				this.jobEnd = -1;
 			}
 		}
+		notifyAll(); // wake up the clients waiting for the jobs to complete
 	}
 
 	/**
@@ -192,7 +248,7 @@ public abstract class JobManager implements Runnable {
 	 * 
 	 * Waiting policy can be: IJobConstants.ForceImmediateSearch
 	 * IJobConstants.CancelIfNotReadyToSearch
-	 * IJobConstants.WaitUntilReadyToSearch
+	 * IJobConstants.WaitUntilReadyToSearch IJobConstants.ReadSnapshot
 	 * 
 	 */
 	public boolean performConcurrentJob(IJob searchJob, int waitingPolicy,
@@ -225,6 +281,26 @@ public abstract class JobManager implements Runnable {
 					Util.verbose("FINISHED  concurrent job - " + searchJob); //$NON-NLS-1$
 				return status;
 
+			case IJob.ReadSnapshot:
+				// the indexers publish the changes after each batch, which are
+				// read without entering the monitors, so the indexing is not
+				// paused
+				if (VERBOSE)
+					Util.verbose("-> NOT READY - reading snapshot - " + searchJob);//$NON-NLS-1$
+				final IProgressMonitor snapshotProgress = progress == null ? null
+						: new SubProgressMonitor(progress, concurrentJobWork);
+				if (searchJob instanceof ISnapshotJob) {
+					status = ((ISnapshotJob) searchJob)
+							.executeSnapshot(snapshotProgress);
+				} else {
+					status = searchJob.execute(snapshotProgress);
+				}
+				if (progress != null)
+					progress.done();
+				if (VERBOSE)
+					Util.verbose("FINISHED  concurrent job - " + searchJob); //$NON-NLS-1$
+				return status;
+
 			case IJob.CancelIfNotReady:
 				if (VERBOSE)
 					Util.verbose("-> NOT READY - cancelling - " + searchJob); //$NON-NLS-1$
@@ -282,7 +358,12 @@ public abstract class JobManager implements Runnable {
 							if (VERBOSE)
 								Util
 										.verbose("-> GOING TO SLEEP - " + searchJob);//$NON-NLS-1$
-							Thread.sleep(50);
+							synchronized (this) {
+								// notified when the job is completed, wake up
+								// periodically to check the cancellation
+								if (awaitingJobsCount() == awaitingWork)
+									this.wait(500);
+							}
 						} catch (InterruptedException e) {
 							// ignore
 						}
@@ -334,6 +415,19 @@ public abstract class JobManager implements Runnable {
 		performConcurrentJob(new WaitJob(), IJob.WaitUntilReady, null);
 	}
 
+	/**
+	 * Waits until all the awaiting jobs are completed.
+	 * 
+	 * @param monitor
+	 *            the progress monitor reporting the number of the awaiting
+	 *            jobs, could be <code>null</code>
+	 * @throws OperationCanceledException
+	 *             if the monitor is canceled while waiting
+	 */
+	public void waitUntilReady(IProgressMonitor monitor) {
+		performConcurrentJob(new WaitJob(), IJob.WaitUntilReady, monitor);
+	}
+
 	/**
 	 * @since 2.0
 	 */
@@ -364,6 +458,134 @@ public abstract class JobManager implements Runnable {
 		notifyAll(); // wake up the background thread if it is waiting
 	}
 
+	/**
+	 * Returns the number of the threads executing the partitioned jobs in
+	 * parallel.
+	 */
+	public synchronized int getWorkerCount() {
+		return this.workerCount;
+	}
+
+	/**
+	 * Sets the number of the threads executing the partitioned jobs in
+	 * parallel. If the specified value is not positive, then the number of
+	 * available processors is used. The value of <code>1</code> means all the
+	 * jobs are executed sequentially by the processing thread.
+	 * 
+	 * @see IPartitionedJob
+	 */
+	public synchronized void setWorkerCount(int count) {
+		if (count <= 0) {
+			count = Runtime.getRuntime().availableProcessors();
+		}
+		if (this.workers != null && count > 1) {
+			if (count > this.workerCount) {
+				this.workers.setMaximumPoolSize(count);
+				this.workers.setCorePoolSize(count);
+			} else {
+				this.workers.setCorePoolSize(count);
+				this.workers.setMaximumPoolSize(count);
+			}
+		}
+		this.workerCount = count;
+		this.notifyAll();
+	}
+
+	private Object getParallelPartition(IJob job) {
+		if (this.workerCount > 1 && job instanceof IPartitionedJob) {
+			return ((IPartitionedJob) job).getPartition();
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the position in the queue of the first job which could be
+	 * started now or <code>-1</code> if there is none. Partitioned jobs wait
+	 * for the previous jobs of the same partition and for the free worker, the
+	 * jobs of the other partitions behind them could be started meanwhile.
+	 * Other jobs are executed when they are the first in the queue and all
+	 * the partitioned jobs are completed, the jobs behind them are not started
+	 * before them.
+	 */
+	private int findJobToStart() {
+		Set<Object> waitingPartitions = null;
+		for (int i = this.jobStart; i <= this.jobEnd; i++) {
+			final Object partition = getParallelPartition(this.awaitingJobs[i]);
+			if (partition == null) {
+				return i == this.jobStart && this.runningJobs.isEmpty() ? i
+						: -1;
+			}
+			if (this.runningJobs.size() >= this.workerCount) {
+				return -1;
+			}
+			if (!this.busyPartitions.contains(partition)
+					&& (waitingPartitions == null || !waitingPartitions
+							.contains(partition))) {
+				return i;
+			}
+			if (waitingPartitions == null) {
+				waitingPartitions = new HashSet<Object>();
+			}
+			waitingPartitions.add(partition);
+		}
+		return -1;
+	}
+
+	private ExecutorService getWorkers() {
+		if (this.workers == null) {
+			final String name = this.processName();
+			this.workers = new ThreadPoolExecutor(this.workerCount,
+					this.workerCount, 0L, TimeUnit.MILLISECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+						private int threadNumber = 0;
+
+						public Thread newThread(Runnable r) {
+							final Thread thread = new Thread(r, name
+									+ " #" + (++threadNumber)); //$NON-NLS-1$
+							thread.setDaemon(true);
+							thread.setPriority(Thread.NORM_PRIORITY - 1);
+							return thread;
+						}
+					});
+		}
+		return this.workers;
+	}
+
+	/**
+	 * Removes the job at the specified position from the queue and executes it
+	 * with one of the workers. Must be called when holding the lock of this
+	 * job manager.
+	 */
+	private void dispatch(int index, final IJob job, final Object partition) {
+		this.runningJobs.put(job, partition);
+		this.busyPartitions.add(partition);
+		// the jobs before it stay in the queue in the same order
+		System.arraycopy(this.awaitingJobs, this.jobStart, this.awaitingJobs,
+				this.jobStart + 1, index - this.jobStart);
+		moveToNextJob();
+		if (VERBOSE)
+			Util.verbose("DISPATCH  background job - " + job); //$NON-NLS-1$
+		getWorkers().execute(new Runnable() {
+			public void run() {
+				isWorkerThread.set(Boolean.TRUE);
+				try {
+					job.execute(null);
+				} catch (RuntimeException e) {
+					Util.log(e, "Background Indexer Job Failure - " + job); //$NON-NLS-1$
+				} finally {
+					isWorkerThread.set(null);
+					synchronized (JobManager.this) {
+						runningJobs.remove(job);
+						busyPartitions.remove(partition);
+						JobManager.this.notifyAll();
+					}
+					if (VERBOSE)
+						Util.verbose("FINISHED background job - " + job); //$NON-NLS-1$
+				}
+			}
+		});
+	}
+
 	/**
 	 * Flush current state
 	 */
@@ -436,6 +658,11 @@ public abstract class JobManager implements Runnable {
 						// must check for new job inside this sync block to
 						// avoid timing hole
 						if ((job = currentJob()) == null) {
+							if (!this.runningJobs.isEmpty()) {
+								// wait until the running jobs are completed
+								this.wait();
+								continue;
+							}
 							hideProgress();
 							if (idlingStart < 0)
 								idlingStart = System.currentTimeMillis();
@@ -446,6 +673,19 @@ public abstract class JobManager implements Runnable {
 							// reenabled:38901)
 						} else {
 							idlingStart = -1;
+							final int index = findJobToStart();
+							if (index < 0) {
+								// wait until a running job is completed
+								this.wait();
+								continue;
+							}
+							job = this.awaitingJobs[index];
+							final Object partition = getParallelPartition(job);
+							if (partition != null) {
+								showProgress();
+								dispatch(index, job, partition);
+								continue;
+							}
 						}
 					}
 					if (job == null) {
@@ -534,6 +774,14 @@ public abstract class JobManager implements Runnable {
 		disable();
 		discardJobs(null); // will wait until current executing job has
 		// completed
+		final ExecutorService executor;
+		synchronized (this) {
+			executor = this.workers;
+			this.workers = null;
+		}
+		if (executor != null) {
+			executor.shutdown();
+		}
 		Thread thread = this.processingThread;
 		try {
 			if (thread != null) { // see
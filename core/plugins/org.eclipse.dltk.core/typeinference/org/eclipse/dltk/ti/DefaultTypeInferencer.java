@@ -18,6 +18,7 @@ import java.util.Set;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.internal.core.ModelManager;
 import org.eclipse.dltk.ti.goals.AbstractTypeGoal;
 import org.eclipse.dltk.ti.goals.FieldReferencesGoal;
 import org.eclipse.dltk.ti.goals.FieldReferencesGoalEvaluator;
@@ -45,6 +46,10 @@ import org.eclipse.dltk.ti.types.IEvaluatedType;
  * able to provide custom evaluators factory, it will have higher priority, than
  * evaluators, registered via registerEvaluator() method.
  *
+ * <p>
+ * The results of the goals are cached across the invocations, see
+ * {@link GoalCache}.
+ *
  */
 public class DefaultTypeInferencer implements ITypeInferencer {
 
@@ -192,7 +197,12 @@ public class DefaultTypeInferencer implements ITypeInferencer {
 	}
 
 	public DefaultTypeInferencer(IGoalEvaluatorFactory userFactory) {
-		engine = new GoalEngine(new MapBasedEvaluatorFactory());
+		// the results are shared by the inferencers of the same kind
+		final ModelManager manager = ModelManager.getModelManager();
+		engine = new GoalEngine(new MapBasedEvaluatorFactory(),
+				manager.getGoalCache(),
+				userFactory != null ? userFactory.getClass() : getClass(),
+				manager.getGoalEvaluationWorkers());
 		this.userFactory = userFactory;
 		initStdGoals();
 	}
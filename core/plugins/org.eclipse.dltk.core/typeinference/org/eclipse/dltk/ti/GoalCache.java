@@ -0,0 +1,408 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.ti;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.dltk.core.ElementChangedEvent;
+import org.eclipse.dltk.core.IElementChangedListener;
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.IModelElementDelta;
+import org.eclipse.dltk.core.IScriptProject;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.ti.goals.AbstractReferencesGoal;
+import org.eclipse.dltk.ti.goals.GoalEvaluator;
+import org.eclipse.dltk.ti.goals.IGoal;
+import org.eclipse.dltk.ti.goals.SearchBasedGoalEvaluator;
+
+/**
+ * The results of the evaluated goals shared by the {@link GoalEngine}s, so the
+ * same goals are not evaluated again by the next type inference.
+ * <p>
+ * Only the goals evaluated completely, without a pruned or a recursive
+ * subgoal, are cached. The results are kept for each project of the source
+ * module of the goal context, at most the specified number per project, and
+ * the least recently used are evicted. Each result remembers the source
+ * modules of the contexts of all the goals it was evaluated from, and whether
+ * a search was involved:
+ * <ul>
+ * <li>a change inside of the method bodies of a module, i.e. a fine grained
+ * delta without structural changes, removes the results depending on the
+ * module and all the results which were searched for,</li>
+ * <li>any other change of a module removes all the results of the projects
+ * the module is visible from, as the declarations looked up by name could be
+ * affected,</li>
+ * <li>the buildpath changes remove everything.</li>
+ * </ul>
+ * </p>
+ * <p>
+ * The cached results are shared between the inferencers, so they should not
+ * be modified by the clients.
+ * </p>
+ *
+ * @since 5.0
+ */
+public class GoalCache implements IElementChangedListener {
+
+	/**
+	 * The default number of the results cached per project.
+	 */
+	public static final int DEFAULT_SIZE = 1000;
+
+	/**
+	 * What the result of a goal was evaluated from.
+	 */
+	static final class Dependencies {
+		final Set<ISourceModule> modules = new HashSet<ISourceModule>();
+		boolean searched;
+		boolean incomplete;
+
+		void add(Dependencies other) {
+			if (other == null) {
+				incomplete = true;
+			} else {
+				modules.addAll(other.modules);
+				searched |= other.searched;
+				incomplete |= other.incomplete;
+			}
+		}
+
+		boolean dependsOn(ISourceModule module) {
+			return searched || modules.contains(module);
+		}
+	}
+
+	private static class Key {
+		final Object owner;
+		final IGoal goal;
+		final int hashCode;
+
+		Key(Object owner, IGoal goal) {
+			this.owner = owner;
+			this.goal = goal;
+			this.hashCode = owner.hashCode() * 31 + goal.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key) obj;
+			return owner.equals(other.owner) && goal.equals(other.goal);
+		}
+	}
+
+	/**
+	 * The cached result of a goal.
+	 */
+	static final class Entry {
+		final Object result;
+		final Dependencies dependencies;
+
+		Entry(Object result, Dependencies dependencies) {
+			this.result = result;
+			this.dependencies = dependencies;
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private class ProjectCache extends LinkedHashMap<Key, Entry> {
+		ProjectCache() {
+			super(16, 0.75f, true);
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+			if (size() > limit) {
+				++evictions;
+				return true;
+			}
+			return false;
+		}
+	}
+
+	private final int limit;
+	private final Map<IScriptProject, ProjectCache> projects = new HashMap<IScriptProject, ProjectCache>();
+
+	/*
+	 * Incremented by the invalidations, so the results evaluated before are
+	 * not cached afterwards.
+	 */
+	private int generation;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long invalidations;
+
+	/**
+	 * @param limit
+	 *            the maximum number of the results cached per project
+	 */
+	public GoalCache(int limit) {
+		this.limit = limit;
+	}
+
+	/**
+	 * Returns the project the result of the goal is cached for or
+	 * <code>null</code> if the goal could not be cached.
+	 */
+	private static IScriptProject getProject(IGoal goal) {
+		final ISourceModule module = getSourceModule(goal);
+		return module != null ? module.getScriptProject() : null;
+	}
+
+	private static ISourceModule getSourceModule(IGoal goal) {
+		final IContext context = goal.getContext();
+		if (context instanceof ISourceModuleContext) {
+			return ((ISourceModuleContext) context).getSourceModule();
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the dependencies of the goal evaluated by the specified
+	 * evaluator, or <code>null</code> if it could not be tracked.
+	 */
+	Dependencies newDependencies(IGoal goal, GoalEvaluator evaluator) {
+		final ISourceModule module = getSourceModule(goal);
+		if (module == null) {
+			return null;
+		}
+		final Dependencies dependencies = new Dependencies();
+		dependencies.modules.add(module);
+		dependencies.searched = goal instanceof AbstractReferencesGoal
+				|| evaluator instanceof SearchBasedGoalEvaluator;
+		return dependencies;
+	}
+
+	/**
+	 * Returns the cached result of the goal evaluated by the inferencers of
+	 * the specified owner, or <code>null</code> if it is not cached.
+	 */
+	synchronized Entry get(Object owner, IGoal goal) {
+		final IScriptProject project = getProject(goal);
+		if (project == null) {
+			return null;
+		}
+		final ProjectCache cache = projects.get(project);
+		final Entry entry = cache != null ? cache.get(new Key(owner, goal))
+				: null;
+		if (entry != null) {
+			++hits;
+		} else {
+			++misses;
+		}
+		return entry;
+	}
+
+	/**
+	 * Returns the current generation, to be passed to
+	 * {@link #put(Object, IGoal, Object, Dependencies, int)} when the
+	 * evaluation is finished.
+	 */
+	synchronized int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Caches the result of the goal, unless it was not evaluated completely or
+	 * the cache was invalidated since the evaluation started.
+	 */
+	synchronized void put(Object owner, IGoal goal, Object result,
+			Dependencies dependencies, int generation) {
+		if (dependencies == null || dependencies.incomplete
+				|| generation != this.generation) {
+			return;
+		}
+		final IScriptProject project = getProject(goal);
+		if (project == null) {
+			return;
+		}
+		ProjectCache cache = projects.get(project);
+		if (cache == null) {
+			cache = new ProjectCache();
+			projects.put(project, cache);
+		}
+		cache.put(new Key(owner, goal), new Entry(result, dependencies));
+	}
+
+	/**
+	 * Removes the results which could be affected by the change of the
+	 * specified module.
+	 *
+	 * @param structural
+	 *            whether the declarations of the module could have changed,
+	 *            or only the method bodies
+	 */
+	public void invalidate(ISourceModule module, boolean structural) {
+		// the buildpath is checked without holding the lock of the cache
+		final IScriptProject moduleProject = module.getScriptProject();
+		final List<IScriptProject> affected = new ArrayList<IScriptProject>();
+		for (IScriptProject project : getProjects()) {
+			if (project.equals(moduleProject) || project.isOnBuildpath(module)) {
+				affected.add(project);
+			}
+		}
+		synchronized (this) {
+			++generation;
+			for (IScriptProject project : affected) {
+				final ProjectCache cache = projects.get(project);
+				if (cache == null) {
+					continue;
+				}
+				if (structural) {
+					invalidations += cache.size();
+					projects.remove(project);
+					continue;
+				}
+				for (Iterator<Entry> i = cache.values().iterator(); i.hasNext();) {
+					if (i.next().dependencies.dependsOn(module)) {
+						i.remove();
+						++invalidations;
+					}
+				}
+			}
+		}
+	}
+
+	private synchronized IScriptProject[] getProjects() {
+		return projects.keySet().toArray(new IScriptProject[projects.size()]);
+	}
+
+	/**
+	 * Removes all the cached results.
+	 */
+	public synchronized void clear() {
+		++generation;
+		for (ProjectCache cache : projects.values()) {
+			invalidations += cache.size();
+		}
+		projects.clear();
+	}
+
+	public void elementChanged(ElementChangedEvent event) {
+		processDelta(event.getDelta());
+	}
+
+	private void processDelta(IModelElementDelta delta) {
+		final int kind = delta.getKind();
+		final int flags = delta.getFlags();
+		switch (delta.getElement().getElementType()) {
+		case IModelElement.SCRIPT_MODEL:
+			break;
+		case IModelElement.SCRIPT_PROJECT:
+			if (kind != IModelElementDelta.CHANGED
+					|| (flags & (IModelElementDelta.F_OPENED
+							| IModelElementDelta.F_CLOSED
+							| IModelElementDelta.F_BUILDPATH_CHANGED | IModelElementDelta.F_RESOLVED_BUILDPATH_CHANGED)) != 0) {
+				clear();
+				return;
+			}
+			break;
+		case IModelElement.PROJECT_FRAGMENT:
+		case IModelElement.SCRIPT_FOLDER:
+			if (kind != IModelElementDelta.CHANGED) {
+				clear();
+				return;
+			}
+			break;
+		case IModelElement.SOURCE_MODULE:
+			if (kind != IModelElementDelta.CHANGED) {
+				invalidate((ISourceModule) delta.getElement(), true);
+			} else if ((flags & (IModelElementDelta.F_CONTENT | IModelElementDelta.F_CHILDREN)) != 0) {
+				invalidate(
+						(ISourceModule) delta.getElement(),
+						(flags & IModelElementDelta.F_FINE_GRAINED) == 0
+								|| (flags & IModelElementDelta.F_CHILDREN) != 0);
+			}
+			return;
+		default:
+			return;
+		}
+		for (IModelElementDelta child : delta.getAffectedChildren()) {
+			processDelta(child);
+		}
+	}
+
+	/**
+	 * Returns the number of the cached results.
+	 */
+	public synchronized int size() {
+		int size = 0;
+		for (ProjectCache cache : projects.values()) {
+			size += cache.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the number of the goals answered from the cache.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of the cacheable goals which had to be evaluated.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the part of the lookups answered from the cache, or 0 if there
+	 * was no lookup yet.
+	 */
+	public synchronized double getHitRatio() {
+		final long total = hits + misses;
+		return total != 0 ? (double) hits / total : 0;
+	}
+
+	/**
+	 * Returns the number of the results evicted to make space in the cache.
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Returns the number of the results removed because of the changes.
+	 */
+	public synchronized long getInvalidations() {
+		return invalidations;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "GoalCache[" + size() + "]: hits=" + hits //$NON-NLS-1$ //$NON-NLS-2$
+				+ " misses=" + misses + " evictions=" + evictions //$NON-NLS-1$ //$NON-NLS-2$
+				+ " invalidations=" + invalidations; //$NON-NLS-1$
+	}
+
+}
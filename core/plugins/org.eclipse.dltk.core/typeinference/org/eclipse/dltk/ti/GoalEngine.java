@@ -12,12 +12,21 @@ package org.eclipse.dltk.ti;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.eclipse.core.runtime.Assert;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.dltk.core.IScriptProject;
 import org.eclipse.dltk.ti.goals.GoalEvaluator;
 import org.eclipse.dltk.ti.goals.IGoal;
+import org.eclipse.dltk.ti.goals.SearchBasedGoalEvaluator;
 import org.eclipse.dltk.ti.statistics.IEvaluationStatisticsRequestor;
 
 /**
@@ -26,11 +35,53 @@ import org.eclipse.dltk.ti.statistics.IEvaluationStatisticsRequestor;
  * allows pruning: before evaluating every goal(except root goal) could be
  * pruned by provided prunner.
  * 
+ * The results of the goals evaluated completely could be reused by the next
+ * evaluations, see {@link GoalCache}.
+ * 
+ * With an executor the independent subgoals are initialized in parallel, i.e.
+ * the {@link GoalEvaluator#init()} of the different evaluators, which is where
+ * the searches happen, is called by the worker threads, while the queue, the
+ * pruning, the recursion detection and all the other evaluator calls remain in
+ * the evaluating thread. A goal requested again while it is initialized is
+ * postponed until its initialization is finished, so it is reported as
+ * recursive only if it is still waiting for its subgoals, as in the
+ * sequential evaluation. The evaluations started by the worker threads are
+ * sequential.
+ * 
+ * The {@link SearchBasedGoalEvaluator}s are not initialized one by one: they
+ * are collected until there is nothing else to evaluate, then their searches
+ * are combined by {@link SearchBasedGoalEvaluator#searchAll(java.util.Collection)},
+ * so the indexes are queried once for all of them. With an executor the
+ * collected goals are searched by the workers, one batch per project, as soon
+ * as the queue is empty, while the other goals are still initialized.
+ * 
  * This class isn't thread safe.
  */
 public class GoalEngine {
 
 	private final IGoalEvaluatorFactory evaluatorFactory;
+	private final GoalCache cache;
+	private final Object cacheOwner;
+	private int cacheGeneration;
+	private final Executor executor;
+
+	/**
+	 * Whether the current thread initializes a goal for another engine.
+	 */
+	private static final ThreadLocal<Boolean> WORKER = new ThreadLocal<Boolean>();
+
+	/*
+	 * The goals initialized by the workers, with the goals requested again
+	 * meanwhile.
+	 */
+	private final HashMap<IGoal, List<WorkingPair>> initializing = new HashMap<IGoal, List<WorkingPair>>();
+	private BlockingQueue<Initialized> initialized;
+
+	/*
+	 * The search based goals waiting for the combined search, they are in the
+	 * initializing map meanwhile.
+	 */
+	private final List<Initialized> pendingSearches = new ArrayList<Initialized>();
 
 	private final LinkedList<WorkingPair> workingQueue = new LinkedList<WorkingPair>();
 	private final HashMap<IGoal, GoalEvaluationState> goalStates = new HashMap<IGoal, GoalEvaluationState>();
@@ -64,18 +115,67 @@ public class GoalEngine {
 
 	}
 
+	private static class Initialized {
+		final WorkingPair pair;
+		final GoalEvaluator evaluator;
+		IGoal[] subgoals;
+		long time;
+		Throwable exception;
+
+		Initialized(WorkingPair pair, GoalEvaluator evaluator) {
+			this.pair = pair;
+			this.evaluator = evaluator;
+		}
+	}
+
 	private static class GoalEvaluationState {
 		public GoalEvaluator creator;
 		public GoalState state;
 		public Object result;
+		public GoalCache.Dependencies dependencies;
 	}
 
 	public GoalEngine(IGoalEvaluatorFactory evaluatorFactory) {
+		this(evaluatorFactory, null, null);
+	}
+
+	/**
+	 * Creates the engine reusing the results of the goals evaluated before.
+	 * 
+	 * @param cache
+	 *            the cache of the results or <code>null</code>
+	 * @param cacheOwner
+	 *            identifies the evaluators, only the results cached with the
+	 *            same owner are reused
+	 * @since 5.0
+	 */
+	public GoalEngine(IGoalEvaluatorFactory evaluatorFactory, GoalCache cache,
+			Object cacheOwner) {
+		this(evaluatorFactory, cache, cacheOwner, null);
+	}
+
+	/**
+	 * Creates the engine initializing the independent subgoals in parallel.
+	 * The evaluators created by the factory should allow the
+	 * {@link GoalEvaluator#init()} of the different evaluators to be called
+	 * concurrently.
+	 * 
+	 * @param executor
+	 *            the executor running the initializations of the subgoals or
+	 *            <code>null</code> to evaluate them sequentially
+	 * @see #GoalEngine(IGoalEvaluatorFactory, GoalCache, Object)
+	 * @since 5.0
+	 */
+	public GoalEngine(IGoalEvaluatorFactory evaluatorFactory, GoalCache cache,
+			Object cacheOwner, Executor executor) {
 		this.evaluatorFactory = evaluatorFactory;
+		this.cache = cacheOwner != null ? cache : null;
+		this.cacheOwner = cacheOwner;
+		this.executor = executor;
 	}
 
-	private void storeGoal(IGoal goal, GoalState state, Object result,
-			GoalEvaluator creator) {
+	private GoalEvaluationState storeGoal(IGoal goal, GoalState state,
+			Object result, GoalEvaluator creator) {
 		GoalEvaluationState es = new GoalEvaluationState();
 		es.result = result;
 		es.state = state;
@@ -83,6 +183,14 @@ public class GoalEngine {
 		goalStates.put(goal, es);
 		this.statisticsRequestor.goalStateChanged(goal, state, null);
 		// TODO: add old state
+		return es;
+	}
+
+	private void cacheGoal(IGoal goal, GoalEvaluationState state) {
+		if (cache != null) {
+			cache.put(cacheOwner, goal, state.result, state.dependencies,
+					cacheGeneration);
+		}
 	}
 
 	private EvaluatorState getEvaluatorState(GoalEvaluator evaluator) {
@@ -103,6 +211,15 @@ public class GoalEngine {
 		if (state == GoalState.WAITING) {
 			state = GoalState.RECURSIVE;
 		}
+		if (cache != null) {
+			final GoalCache.Dependencies dependencies = goalStates
+					.get(evaluator.getGoal()).dependencies;
+			if (dependencies != null) {
+				// pruned and recursive results are not final
+				dependencies.add(state == GoalState.DONE ? subGoalState.dependencies
+						: null);
+			}
+		}
 
 		t = System.currentTimeMillis();
 		IGoal[] newGoals = evaluator.subGoalDone(subGoal, result, state);
@@ -131,6 +248,7 @@ public class GoalEngine {
 			Assert.isNotNull(st);
 			st.state = GoalState.DONE;
 			st.result = newRes;
+			cacheGoal(evaluator.getGoal(), st);
 			if (st.creator != null) {
 				notifyEvaluator(st.creator, evaluator.getGoal());
 			}
@@ -184,12 +302,34 @@ public class GoalEngine {
 		}
 		this.statisticsRequestor = statisticsRequestor;
 		reset();
+		if (cache != null) {
+			cacheGeneration = cache.getGeneration();
+			final GoalCache.Entry entry = cache.get(cacheOwner, rootGoal);
+			if (entry != null) {
+				statisticsRequestor.evaluationStarted(rootGoal);
+				return entry.result;
+			}
+		}
 		if (pruner != null) {
 			pruner.init();
 		}
 		workingQueue.add(new WorkingPair(rootGoal, null));
 		statisticsRequestor.evaluationStarted(rootGoal);
-		while (!workingQueue.isEmpty()) {
+		final boolean parallel = executor != null && WORKER.get() == null;
+		while (!workingQueue.isEmpty() || !initializing.isEmpty()) {
+			if (workingQueue.isEmpty()
+					&& !pendingSearches.isEmpty()
+					&& (parallel || initializing.size() == pendingSearches
+							.size())) {
+				searchPending(parallel);
+				continue;
+			}
+			if (parallel) {
+				processInitialized(workingQueue.isEmpty());
+				if (workingQueue.isEmpty()) {
+					continue;
+				}
+			}
 			WorkingPair pair = workingQueue.getFirst();
 			workingQueue.removeFirst();
 			if (DEBUG) {
@@ -198,7 +338,20 @@ public class GoalEngine {
 			GoalEvaluationState state = goalStates.get(pair.goal);
 			if (state != null && pair.creator != null) {
 				notifyEvaluator(pair.creator, pair.goal);
+			} else if (pair.creator != null
+					&& initializing.containsKey(pair.goal)) {
+				initializing.get(pair.goal).add(pair);
 			} else {
+				if (cache != null && pair.creator != null) {
+					final GoalCache.Entry entry = cache.get(cacheOwner,
+							pair.goal);
+					if (entry != null) {
+						storeGoal(pair.goal, GoalState.DONE, entry.result,
+								pair.creator).dependencies = entry.dependencies;
+						notifyEvaluator(pair.creator, pair.goal);
+						continue;
+					}
+				}
 				boolean prune = false;
 				if (pruner != null && pair.creator != null) {
 					prune = pruner.prune(pair.goal,
@@ -216,39 +369,19 @@ public class GoalEngine {
 					}
 					statisticsRequestor.goalEvaluatorAssigned(pair.goal,
 							evaluator);
-					time = System.currentTimeMillis();
-					IGoal[] newGoals = evaluator.init();
-					if (newGoals == null) {
-						newGoals = IGoal.NO_GOALS;
-					}
-					if (DEBUG) {
-						for (IGoal n : newGoals) {
-							System.out.println("- " + n); //$NON-NLS-1$
-						}
-					}
-					statisticsRequestor.evaluatorInitialized(evaluator,
-							newGoals, System.currentTimeMillis() - time);
-					if (newGoals.length > 0) {
-						for (int i = 0; i < newGoals.length; i++) {
-							workingQueue.add(new WorkingPair(newGoals[i],
-									evaluator));
-						}
-						EvaluatorState evaluatorState = new EvaluatorState(
-								newGoals.length);
-						evaluatorState.subgoals.addAll(Arrays.asList(newGoals));
-						putEvaluatorState(evaluator, evaluatorState);
-						storeGoal(pair.goal, GoalState.WAITING, null,
-								pair.creator);
-					} else {
+					if (evaluator instanceof SearchBasedGoalEvaluator
+							&& ((SearchBasedGoalEvaluator) evaluator)
+									.isBatchable()) {
+						pendingSearches.add(new Initialized(pair, evaluator));
+						initializing.put(pair.goal, new ArrayList<WorkingPair>());
+					} else if (!parallel
+							// there is nothing to do meanwhile for a single goal
+							|| workingQueue.isEmpty() && initializing.isEmpty()
+							|| !submit(pair, evaluator)) {
 						time = System.currentTimeMillis();
-						Object result = evaluator.produceResult();
-						statisticsRequestor.evaluatorProducedResult(evaluator,
-								result, System.currentTimeMillis() - time);
-						storeGoal(pair.goal, GoalState.DONE, result,
-								pair.creator);
-						if (pair.creator != null) {
-							notifyEvaluator(pair.creator, pair.goal);
-						}
+						IGoal[] newGoals = evaluator.init();
+						initialized(pair, evaluator, newGoals,
+								System.currentTimeMillis() - time);
 					}
 				}
 			}
@@ -259,10 +392,210 @@ public class GoalEngine {
 		return s.result;
 	}
 
+	private void initialized(WorkingPair pair, GoalEvaluator evaluator,
+			IGoal[] newGoals, long initTime) {
+		if (newGoals == null) {
+			newGoals = IGoal.NO_GOALS;
+		}
+		if (DEBUG) {
+			for (IGoal n : newGoals) {
+				System.out.println("- " + n); //$NON-NLS-1$
+			}
+		}
+		statisticsRequestor.evaluatorInitialized(evaluator, newGoals, initTime);
+		final GoalCache.Dependencies dependencies = cache != null ? cache
+				.newDependencies(pair.goal, evaluator) : null;
+		if (newGoals.length > 0) {
+			for (int i = 0; i < newGoals.length; i++) {
+				workingQueue.add(new WorkingPair(newGoals[i], evaluator));
+			}
+			EvaluatorState evaluatorState = new EvaluatorState(newGoals.length);
+			evaluatorState.subgoals.addAll(Arrays.asList(newGoals));
+			putEvaluatorState(evaluator, evaluatorState);
+			storeGoal(pair.goal, GoalState.WAITING, null, pair.creator).dependencies = dependencies;
+		} else {
+			long time = System.currentTimeMillis();
+			Object result = evaluator.produceResult();
+			statisticsRequestor.evaluatorProducedResult(evaluator, result,
+					System.currentTimeMillis() - time);
+			final GoalEvaluationState done = storeGoal(pair.goal,
+					GoalState.DONE, result, pair.creator);
+			done.dependencies = dependencies;
+			cacheGoal(pair.goal, done);
+			if (pair.creator != null) {
+				notifyEvaluator(pair.creator, pair.goal);
+			}
+		}
+	}
+
+	/**
+	 * Initializes the goal by the executor, returns <code>false</code> if it
+	 * was rejected.
+	 */
+	private boolean submit(WorkingPair pair, final GoalEvaluator evaluator) {
+		final Initialized task = new Initialized(pair, evaluator);
+		final BlockingQueue<Initialized> queue = initialized;
+		try {
+			executor.execute(new Runnable() {
+				public void run() {
+					WORKER.set(Boolean.TRUE);
+					final long start = System.currentTimeMillis();
+					try {
+						task.subgoals = evaluator.init();
+					} catch (Throwable e) {
+						task.exception = e;
+					} finally {
+						WORKER.remove();
+					}
+					task.time = System.currentTimeMillis() - start;
+					queue.add(task);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			return false;
+		}
+		initializing.put(pair.goal, new ArrayList<WorkingPair>());
+		return true;
+	}
+
+	/**
+	 * Completes the goals initialized by the workers.
+	 * 
+	 * @param wait
+	 *            whether to wait for an initialization if none is finished
+	 */
+	private void processInitialized(boolean wait) {
+		Initialized task;
+		if (wait) {
+			try {
+				task = initialized.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new OperationCanceledException();
+			}
+		} else {
+			task = initialized.poll();
+		}
+		for (; task != null; task = initialized.poll()) {
+			final List<WorkingPair> postponed = initializing
+					.remove(task.pair.goal);
+			if (task.exception instanceof RuntimeException) {
+				throw (RuntimeException) task.exception;
+			} else if (task.exception instanceof Error) {
+				throw (Error) task.exception;
+			} else if (task.exception != null) {
+				throw new RuntimeException(task.exception);
+			}
+			initialized(task.pair, task.evaluator, task.subgoals, task.time);
+			workingQueue.addAll(postponed);
+		}
+	}
+
+	/**
+	 * Initializes the pending search based goals by a combined search, by the
+	 * executor if parallel.
+	 */
+	private void searchPending(boolean parallel) {
+		final Initialized[] tasks = pendingSearches
+				.toArray(new Initialized[pendingSearches.size()]);
+		pendingSearches.clear();
+		if (!parallel) {
+			searchAll(tasks);
+			for (Initialized task : tasks) {
+				searched(task);
+			}
+			return;
+		}
+		final Map<IScriptProject, List<Initialized>> batches = new LinkedHashMap<IScriptProject, List<Initialized>>();
+		for (Initialized task : tasks) {
+			final IScriptProject project = ((SearchBasedGoalEvaluator) task.evaluator)
+					.getSearchProject();
+			List<Initialized> batch = batches.get(project);
+			if (batch == null) {
+				batch = new ArrayList<Initialized>();
+				batches.put(project, batch);
+			}
+			batch.add(task);
+		}
+		// there is nothing to do meanwhile for a single batch
+		final boolean submit = batches.size() > 1
+				|| initializing.size() > tasks.length;
+		for (List<Initialized> batch : batches.values()) {
+			final Initialized[] batchTasks = batch
+					.toArray(new Initialized[batch.size()]);
+			if (!submit || !submitSearch(batchTasks)) {
+				searchAll(batchTasks);
+				for (Initialized task : batchTasks) {
+					searched(task);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Searches for the matches of the specified goals, sets their subgoals and
+	 * the initialization time.
+	 */
+	private static void searchAll(Initialized[] tasks) {
+		final List<SearchBasedGoalEvaluator> evaluators = new ArrayList<SearchBasedGoalEvaluator>(
+				tasks.length);
+		for (Initialized task : tasks) {
+			evaluators.add((SearchBasedGoalEvaluator) task.evaluator);
+		}
+		final long start = System.currentTimeMillis();
+		SearchBasedGoalEvaluator.searchAll(evaluators);
+		final long time = (System.currentTimeMillis() - start) / tasks.length;
+		for (Initialized task : tasks) {
+			task.subgoals = ((SearchBasedGoalEvaluator) task.evaluator)
+					.getPossiblePositionsGoals();
+			task.time = time;
+		}
+	}
+
+	private void searched(Initialized task) {
+		final List<WorkingPair> postponed = initializing
+				.remove(task.pair.goal);
+		initialized(task.pair, task.evaluator, task.subgoals, task.time);
+		workingQueue.addAll(postponed);
+	}
+
+	/**
+	 * Searches for the batch by the executor, returns <code>false</code> if it
+	 * was rejected. The goals of the batch are already in the initializing
+	 * map and are completed by {@link #processInitialized(boolean)}.
+	 */
+	private boolean submitSearch(final Initialized[] tasks) {
+		final BlockingQueue<Initialized> queue = initialized;
+		try {
+			executor.execute(new Runnable() {
+				public void run() {
+					WORKER.set(Boolean.TRUE);
+					try {
+						searchAll(tasks);
+					} catch (Throwable e) {
+						for (Initialized task : tasks) {
+							task.exception = e;
+						}
+					} finally {
+						WORKER.remove();
+					}
+					queue.addAll(Arrays.asList(tasks));
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			return false;
+		}
+		return true;
+	}
+
 	private void reset() {
 		workingQueue.clear();
 		goalStates.clear();
 		evaluatorStates.clear();
+		initializing.clear();
+		pendingSearches.clear();
+		// the workers of the abandoned evaluation report to the old queue
+		initialized = new LinkedBlockingQueue<Initialized>();
 	}
 
 	private static final boolean DEBUG = false;
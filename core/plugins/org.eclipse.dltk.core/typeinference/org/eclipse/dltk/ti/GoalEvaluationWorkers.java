@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.ti;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.dltk.core.DLTKCore;
+
+/**
+ * The worker threads initializing the independent goals of the
+ * {@link GoalEngine}s in parallel, shared by all the type inferencers. The
+ * number of the workers is defined by the
+ * {@link DLTKCore#TYPE_INFERENCE_THREADS} option.
+ *
+ * @since 5.0
+ */
+public class GoalEvaluationWorkers implements Executor {
+
+	private final int threads;
+	private ExecutorService workers;
+	private boolean shutdown;
+
+	public GoalEvaluationWorkers(int threads) {
+		this.threads = threads > 0 ? threads : Runtime.getRuntime()
+				.availableProcessors();
+	}
+
+	/**
+	 * Returns the number of the worker threads.
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	public void execute(Runnable command) {
+		getWorkers().execute(command);
+	}
+
+	private synchronized ExecutorService getWorkers() {
+		if (shutdown) {
+			throw new RejectedExecutionException();
+		}
+		if (workers == null) {
+			workers = new ThreadPoolExecutor(threads, threads, 0L,
+					TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+					new ThreadFactory() {
+						private int threadNumber = 0;
+
+						public Thread newThread(Runnable r) {
+							final Thread thread = new Thread(r,
+									"DLTK Goal Evaluator #" //$NON-NLS-1$
+											+ (++threadNumber));
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+		return workers;
+	}
+
+	/**
+	 * Stops the worker threads, the next evaluations are sequential.
+	 */
+	public synchronized void shutdown() {
+		shutdown = true;
+		if (workers != null) {
+			workers.shutdownNow();
+			workers = null;
+		}
+	}
+
+}
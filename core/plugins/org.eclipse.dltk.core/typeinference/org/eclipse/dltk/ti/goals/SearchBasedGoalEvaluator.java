@@ -10,10 +10,19 @@
 package org.eclipse.dltk.ti.goals;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.dltk.ast.ASTNode;
+import org.eclipse.dltk.ast.declarations.Declaration;
+import org.eclipse.dltk.ast.expressions.CallExpression;
+import org.eclipse.dltk.ast.references.SimpleReference;
+import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.core.IDLTKLanguageToolkit;
 import org.eclipse.dltk.core.IScriptProject;
 import org.eclipse.dltk.core.search.FieldReferenceMatch;
@@ -24,6 +33,8 @@ import org.eclipse.dltk.core.search.SearchMatch;
 import org.eclipse.dltk.core.search.SearchParticipant;
 import org.eclipse.dltk.core.search.SearchPattern;
 import org.eclipse.dltk.core.search.SearchRequestor;
+import org.eclipse.dltk.internal.core.search.matching.FieldPattern;
+import org.eclipse.dltk.internal.core.search.matching.MethodPattern;
 import org.eclipse.dltk.ti.GoalState;
 import org.eclipse.dltk.ti.IContext;
 import org.eclipse.dltk.ti.ISourceModuleContext;
@@ -32,22 +43,13 @@ public abstract class SearchBasedGoalEvaluator extends GoalEvaluator {
 
 	private List<IGoal> possiblePositionsGoals = new ArrayList<IGoal>();
 	private List<ItemReference> references = new ArrayList<ItemReference>();
+	private SearchPattern pattern;
 
 	private SearchRequestor requestor = new SearchRequestor() {
 
 		@Override
 		public void acceptSearchMatch(SearchMatch match) throws CoreException {
-			ASTNode node = null;
-			if (match instanceof FieldReferenceMatch) {
-				FieldReferenceMatch match2 = (FieldReferenceMatch) match;
-				node = match2.getNode();
-			} else if (match instanceof MethodReferenceMatch) {
-				MethodReferenceMatch match2 = (MethodReferenceMatch) match;
-				node = match2.getNode();
-			}
-			PossiblePosition pos = new PossiblePosition(match.getResource(),
-					match.getOffset(), match.getLength(), node);
-			possiblePositionsGoals.add(createVerificationGoal(pos));
+			addPossiblePosition(match);
 		}
 
 	};
@@ -58,19 +60,12 @@ public abstract class SearchBasedGoalEvaluator extends GoalEvaluator {
 
 	@Override
 	public IGoal[] init() {
-		IGoal goal = getGoal();
-		IScriptProject project = null;
-		IContext context = goal.getContext();
-		if (context instanceof ISourceModuleContext) {
-			ISourceModuleContext basicContext = (ISourceModuleContext) goal
-					.getContext();
-			project = basicContext.getSourceModule().getScriptProject();
-		}
+		IScriptProject project = getSearchProject();
 		if (project == null) {
 			return null;
 		}
 		IDLTKSearchScope scope = SearchEngine.createSearchScope(project);
-		SearchPattern pattern = createSearchPattern(scope.getLanguageToolkit());
+		SearchPattern pattern = getSearchPattern(scope.getLanguageToolkit());
 		SearchEngine engine = new SearchEngine();
 
 		try {
@@ -81,10 +76,267 @@ public abstract class SearchBasedGoalEvaluator extends GoalEvaluator {
 			return IGoal.NO_GOALS;
 		}
 
+		return getPossiblePositionsGoals();
+	}
+
+	/**
+	 * Returns the project to search in, or <code>null</code> if the goal has
+	 * no source module context.
+	 * 
+	 * @since 5.0
+	 */
+	public IScriptProject getSearchProject() {
+		IContext context = getGoal().getContext();
+		if (context instanceof ISourceModuleContext) {
+			return ((ISourceModuleContext) context).getSourceModule()
+					.getScriptProject();
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the pattern of the search, it is created once.
+	 * 
+	 * @since 5.0
+	 */
+	public SearchPattern getSearchPattern(IDLTKLanguageToolkit toolkit) {
+		if (pattern == null) {
+			pattern = createSearchPattern(toolkit);
+		}
+		return pattern;
+	}
+
+	/**
+	 * Returns the verification goals of the matches found so far.
+	 * 
+	 * @since 5.0
+	 */
+	public IGoal[] getPossiblePositionsGoals() {
 		return possiblePositionsGoals.toArray(new IGoal[possiblePositionsGoals
 				.size()]);
 	}
 
+	/**
+	 * Returns whether this evaluator could be initialized by
+	 * {@link #searchAll(Collection)} instead of its {@link #init()}, i.e.
+	 * whether {@link #init()} is not overridden.
+	 * 
+	 * @since 5.0
+	 */
+	public boolean isBatchable() {
+		try {
+			return getClass().getMethod("init").getDeclaringClass() == SearchBasedGoalEvaluator.class; //$NON-NLS-1$
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns whether the pattern of this evaluator could be combined with the
+	 * patterns of the other evaluators, i.e. whether the matches of the
+	 * combined search could be dispatched back to this evaluator by
+	 * {@link #isMatch(SearchMatch)}: the pattern searches for the references
+	 * to the fields or the methods and the goal specifies their name. Only the
+	 * patterns differing just by the name are combined.
+	 * 
+	 * @since 5.0
+	 */
+	protected boolean isCombinable(SearchPattern pattern) {
+		if (!(getGoal() instanceof AbstractReferencesGoal)) {
+			return false;
+		}
+		if (pattern instanceof FieldPattern) {
+			return !((FieldPattern) pattern).findDeclarations;
+		} else if (pattern instanceof MethodPattern) {
+			return !((MethodPattern) pattern).findDeclarations;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns whether the match of the combined search belongs to this
+	 * evaluator: the match is of the kind searched for by the pattern (a
+	 * field reference for a field pattern, a method reference for a method
+	 * pattern) and the name of the matched node matches the name of the goal.
+	 * As the combined patterns differ only by the name, a match of the right
+	 * kind and name is a match of the pattern of this evaluator too. The
+	 * matches of the nodes without a known name are not dispatched, the
+	 * evaluators which could accept them search on their own instead.
+	 * 
+	 * @since 5.0
+	 */
+	protected boolean isMatch(SearchMatch match) {
+		if (!isMatchKind(match)) {
+			return false;
+		}
+		final String name = getMatchName(match);
+		return name != null
+				&& pattern.matchesName(((AbstractReferencesGoal) getGoal())
+						.getName().toCharArray(), name.toCharArray());
+	}
+
+	/**
+	 * Returns whether the patterns differ only by the name.
+	 */
+	private static boolean equalsExceptName(SearchPattern pattern,
+			SearchPattern other) {
+		if (pattern instanceof FieldPattern) {
+			return ((FieldPattern) pattern).equalsExceptName(other);
+		} else if (pattern instanceof MethodPattern) {
+			return ((MethodPattern) pattern).equalsExceptName(other);
+		}
+		return false;
+	}
+
+	private boolean isMatchKind(SearchMatch match) {
+		if (match instanceof FieldReferenceMatch) {
+			return pattern instanceof FieldPattern;
+		} else if (match instanceof MethodReferenceMatch) {
+			return pattern instanceof MethodPattern;
+		}
+		return false;
+	}
+
+	private static String getMatchName(SearchMatch match) {
+		final ASTNode node = getNode(match);
+		if (node instanceof SimpleReference) {
+			return ((SimpleReference) node).getName();
+		} else if (node instanceof CallExpression) {
+			return ((CallExpression) node).getName();
+		} else if (node instanceof Declaration) {
+			return ((Declaration) node).getName();
+		}
+		return null;
+	}
+
+	private static ASTNode getNode(SearchMatch match) {
+		if (match instanceof FieldReferenceMatch) {
+			return ((FieldReferenceMatch) match).getNode();
+		} else if (match instanceof MethodReferenceMatch) {
+			return ((MethodReferenceMatch) match).getNode();
+		}
+		return null;
+	}
+
+	private void addPossiblePosition(SearchMatch match) {
+		PossiblePosition pos = new PossiblePosition(match.getResource(), match
+				.getOffset(), match.getLength(), getNode(match));
+		possiblePositionsGoals.add(createVerificationGoal(pos));
+	}
+
+	/**
+	 * Searches for the matches of all the specified evaluators instead of
+	 * their {@link #init()}, the verification goals are returned by
+	 * {@link #getPossiblePositionsGoals()} afterwards. The search scope is
+	 * created once for each project and the patterns of the evaluators of the
+	 * same project differing only by the name are combined into a single "or"
+	 * pattern (if {@link #isCombinable(SearchPattern)}), so the indexes are
+	 * queried and the documents are parsed once, the matches are dispatched to
+	 * the evaluators by {@link #isMatch(SearchMatch)}.
+	 * 
+	 * @since 5.0
+	 */
+	public static void searchAll(
+			Collection<? extends SearchBasedGoalEvaluator> evaluators) {
+		final Map<IScriptProject, List<SearchBasedGoalEvaluator>> projects = new LinkedHashMap<IScriptProject, List<SearchBasedGoalEvaluator>>();
+		for (SearchBasedGoalEvaluator evaluator : evaluators) {
+			final IScriptProject project = evaluator.getSearchProject();
+			if (project != null) {
+				List<SearchBasedGoalEvaluator> list = projects.get(project);
+				if (list == null) {
+					list = new ArrayList<SearchBasedGoalEvaluator>();
+					projects.put(project, list);
+				}
+				list.add(evaluator);
+			}
+		}
+		final SearchEngine engine = new SearchEngine();
+		for (Map.Entry<IScriptProject, List<SearchBasedGoalEvaluator>> entry : projects
+				.entrySet()) {
+			final IDLTKSearchScope scope = SearchEngine.createSearchScope(entry
+					.getKey());
+			final IDLTKLanguageToolkit toolkit = scope.getLanguageToolkit();
+			final List<List<SearchBasedGoalEvaluator>> groups = new ArrayList<List<SearchBasedGoalEvaluator>>();
+			for (SearchBasedGoalEvaluator evaluator : entry.getValue()) {
+				final SearchPattern pattern = evaluator.getSearchPattern(toolkit);
+				if (evaluator.isCombinable(pattern)) {
+					List<SearchBasedGoalEvaluator> group = null;
+					for (List<SearchBasedGoalEvaluator> g : groups) {
+						if (equalsExceptName(g.get(0).pattern, pattern)) {
+							group = g;
+							break;
+						}
+					}
+					if (group == null) {
+						group = new ArrayList<SearchBasedGoalEvaluator>();
+						groups.add(group);
+					}
+					group.add(evaluator);
+				} else {
+					evaluator.search(engine, scope, pattern,
+							evaluator.requestor);
+				}
+			}
+			for (List<SearchBasedGoalEvaluator> group : groups) {
+				searchCombined(engine, scope, group);
+			}
+		}
+	}
+
+	/**
+	 * Searches for the combined pattern of the evaluators, which patterns
+	 * differ only by the name.
+	 */
+	private static void searchCombined(SearchEngine engine,
+			IDLTKSearchScope scope, final List<SearchBasedGoalEvaluator> group) {
+		if (group.size() == 1) {
+			final SearchBasedGoalEvaluator evaluator = group.get(0);
+			evaluator.search(engine, scope, evaluator.pattern,
+					evaluator.requestor);
+			return;
+		}
+		SearchPattern combined = null;
+		for (SearchBasedGoalEvaluator evaluator : group) {
+			combined = combined == null ? evaluator.pattern : SearchPattern
+					.createOrPattern(combined, evaluator.pattern);
+		}
+		final Set<SearchBasedGoalEvaluator> unresolved = new HashSet<SearchBasedGoalEvaluator>();
+		group.get(0).search(engine, scope, combined, new SearchRequestor() {
+			@Override
+			public void acceptSearchMatch(SearchMatch match) {
+				final boolean named = getMatchName(match) != null;
+				for (SearchBasedGoalEvaluator evaluator : group) {
+					if (!named) {
+						if (evaluator.isMatchKind(match)) {
+							unresolved.add(evaluator);
+						}
+					} else if (evaluator.isMatch(match)) {
+						evaluator.addPossiblePosition(match);
+					}
+				}
+			}
+		});
+		// the evaluators which could own the matches of the unknown nodes
+		// search on their own
+		for (SearchBasedGoalEvaluator evaluator : group) {
+			if (unresolved.contains(evaluator)) {
+				evaluator.possiblePositionsGoals.clear();
+				evaluator.search(engine, scope, evaluator.pattern,
+						evaluator.requestor);
+			}
+		}
+	}
+
+	private void search(SearchEngine engine, IDLTKSearchScope scope,
+			SearchPattern pattern, SearchRequestor requestor) {
+		try {
+			engine.search(pattern, new SearchParticipant[] { SearchEngine
+					.getDefaultSearchParticipant() }, scope, requestor, null);
+		} catch (CoreException e) {
+			DLTKCore.error(e);
+		}
+	}
+
 	@Override
 	public IGoal[] subGoalDone(IGoal subgoal, Object result, GoalState state) {
 		if (result != null && result instanceof ItemReference) {
@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.benchmarks;
+
+import java.io.File;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks of the search and indexing hot paths inside the
+ * headless test runtime and writes the results as JSON, so they could be
+ * compared between the releases.
+ * <p>
+ * The benchmarks are executed in the test runtime instead of the forked JVMs,
+ * as the DLTK model and the SQL index require the running platform. Run with
+ * <code>mvn verify -Pbenchmarks</code> from <code>core/</code>, the
+ * <code>jmh.include</code> property selects the benchmarks and
+ * <code>jmh.result</code> sets the result file. With <code>jmh.gc</code> set to
+ * <code>true</code> the GC profiler adds the allocated bytes per operation to
+ * the results.
+ * </p>
+ */
+public class BenchmarkSuite {
+
+	private static final String DEFAULT_RESULT = "jmh-result.json"; //$NON-NLS-1$
+
+	@Test
+	public void run() throws Exception {
+		final String result = System.getProperty("jmh.result", DEFAULT_RESULT); //$NON-NLS-1$
+		final File parent = new File(result).getAbsoluteFile().getParentFile();
+		if (parent != null) {
+			parent.mkdirs();
+		}
+		final ChainedOptionsBuilder builder = new OptionsBuilder()
+				.include(System.getProperty("jmh.include", ".*")) //$NON-NLS-1$ //$NON-NLS-2$
+				.forks(0).resultFormat(ResultFormatType.JSON).result(result)
+				.shouldFailOnError(true);
+		if (Boolean.getBoolean("jmh.gc")) { //$NON-NLS-1$
+			builder.addProfiler(GCProfiler.class);
+		}
+		Assert.assertFalse(new Runner(builder.build()).run().isEmpty());
+	}
+}
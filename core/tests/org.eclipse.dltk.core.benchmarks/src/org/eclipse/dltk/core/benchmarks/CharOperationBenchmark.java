@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.dltk.compiler.CharOperation;
+import org.eclipse.dltk.core.search.SearchPattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link CharOperation#camelCaseMatch(char[], char[])} and its
+ * {@link String} variant in {@link SearchPattern} over the synthetic element
+ * names.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CharOperationBenchmark {
+
+	private static final int NAMES = 10000;
+
+	@Param({ "I", "IJ", "AbsCaIn", "NoSuchName" })
+	public String pattern;
+
+	private char[] patternChars;
+	private char[][] names;
+	private String[] strings;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		patternChars = pattern.toCharArray();
+		strings = Synthetic.names(NAMES, 4);
+		names = new char[NAMES][];
+		for (int i = 0; i < NAMES; ++i) {
+			names[i] = strings[i].toCharArray();
+		}
+	}
+
+	@Benchmark
+	public int camelCaseMatch() {
+		int count = 0;
+		for (char[] name : names) {
+			if (CharOperation.camelCaseMatch(patternChars, name)) {
+				++count;
+			}
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int camelCaseMatchString() {
+		int count = 0;
+		for (String name : strings) {
+			if (SearchPattern.camelCaseMatch(pattern, name)) {
+				++count;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.dltk.core.search.SearchPattern;
+import org.eclipse.dltk.core.search.index.EntryResult;
+import org.eclipse.dltk.core.search.index.Index;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Queries of the on-disk index and the merge of the memory index into it
+ * ({@link Index#save()}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DiskIndexBenchmark {
+
+	private static final char[] CATEGORY = "typeDecl".toCharArray(); //$NON-NLS-1$
+	private static final char[][] CATEGORIES = { CATEGORY };
+	private static final int NAMES_PER_DOCUMENT = 10;
+
+	@Param({ "1000", "10000" })
+	public int documents;
+
+	/** The number of documents added to the memory index before the merge */
+	@Param({ "100" })
+	public int changes;
+
+	private File directory;
+	private Index index;
+	private char[][] names;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		directory = File.createTempFile("diskIndex", ""); //$NON-NLS-1$ //$NON-NLS-2$
+		directory.delete();
+		directory.mkdirs();
+		final String[] strings = Synthetic.names(documents
+				* NAMES_PER_DOCUMENT, 1);
+		names = new char[strings.length][];
+		for (int i = 0; i < strings.length; ++i) {
+			names[i] = strings[i].toCharArray();
+		}
+		index = new Index(new File(directory, "bench.index").getPath(), //$NON-NLS-1$
+				"/container", false); //$NON-NLS-1$
+		index.monitor.enterWrite();
+		try {
+			for (int i = 0; i < names.length; ++i) {
+				index.addIndexEntry(CATEGORY, names[i],
+						Synthetic.document(i / NAMES_PER_DOCUMENT));
+			}
+			index.save();
+		} finally {
+			index.monitor.exitWrite();
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		index = null;
+		Synthetic.deleteTree(directory);
+	}
+
+	private int query(char[] key, int matchRule) throws IOException {
+		index.monitor.enterRead();
+		try {
+			index.startQuery();
+			try {
+				final EntryResult[] results = index.query(CATEGORIES, key,
+						matchRule);
+				int count = 0;
+				if (results != null) {
+					for (EntryResult result : results) {
+						count += result.getDocumentNames(index).length;
+					}
+				}
+				return count;
+			} finally {
+				index.stopQuery();
+			}
+		} finally {
+			index.monitor.exitRead();
+		}
+	}
+
+	private char[] nextName() {
+		next = (next + 7919) % names.length;
+		return names[next];
+	}
+
+	@Benchmark
+	public int queryExact() throws IOException {
+		return query(nextName(), SearchPattern.R_EXACT_MATCH
+				| SearchPattern.R_CASE_SENSITIVE);
+	}
+
+	@Benchmark
+	public int queryPrefix() throws IOException {
+		final char[] name = nextName();
+		final char[] prefix = new char[Math.min(6, name.length)];
+		System.arraycopy(name, 0, prefix, 0, prefix.length);
+		return query(prefix, SearchPattern.R_PREFIX_MATCH
+				| SearchPattern.R_CASE_SENSITIVE);
+	}
+
+	@Benchmark
+	public int queryPattern() throws IOException {
+		return query("*Index*Job*".toCharArray(), //$NON-NLS-1$
+				SearchPattern.R_PATTERN_MATCH);
+	}
+
+	@Benchmark
+	public void merge() throws IOException {
+		index.monitor.enterWrite();
+		try {
+			for (int i = 0; i < changes; ++i) {
+				// replaces the existing documents, so the size stays the same
+				final int document = (next + i) % documents;
+				final String name = Synthetic.document(document);
+				index.remove(name);
+				for (int j = 0; j < NAMES_PER_DOCUMENT; ++j) {
+					index.addIndexEntry(CATEGORY, names[document
+							* NAMES_PER_DOCUMENT + j], name);
+				}
+			}
+			next = (next + changes) % documents;
+			index.save();
+		} finally {
+			index.monitor.exitWrite();
+		}
+	}
+}
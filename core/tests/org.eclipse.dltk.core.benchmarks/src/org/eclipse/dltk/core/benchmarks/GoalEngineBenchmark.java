@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.dltk.ast.references.SimpleReference;
+import org.eclipse.dltk.ti.GoalEngine;
+import org.eclipse.dltk.ti.GoalEvaluationWorkers;
+import org.eclipse.dltk.ti.GoalState;
+import org.eclipse.dltk.ti.IGoalEvaluatorFactory;
+import org.eclipse.dltk.ti.goals.ExpressionTypeGoal;
+import org.eclipse.dltk.ti.goals.GoalEvaluator;
+import org.eclipse.dltk.ti.goals.IGoal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The evaluation of a synthetic inference chain by the {@link GoalEngine}
+ * with the specified number of the goal evaluation threads, 1 meaning the
+ * sequential evaluation. Each goal of the chain has a number of the
+ * candidate subgoals, like the receivers of a method call, and the leaf goals
+ * simulate a search by waiting, so the speedup is the ratio of the scores of
+ * 1 and more threads for the same depth. Sequentially a chain takes about
+ * <code>depth * (candidates - 1)</code> simulated searches, in parallel about
+ * <code>depth</code>. The result of the chain is checked before the trial, so
+ * a parallel engine losing the subgoals fails instead of scoring well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GoalEngineBenchmark {
+
+	/** The nanoseconds a leaf goal waits for its simulated search */
+	private static final long SEARCH_NANOS = 200000;
+
+	/** The depth of the chain */
+	@Param({ "8", "32" })
+	public int depth;
+
+	/** The number of the candidate subgoals of each goal of the chain */
+	@Param({ "4" })
+	public int candidates;
+
+	@Param({ "1", "4" })
+	public int threads;
+
+	private GoalEvaluationWorkers workers;
+	private IGoalEvaluatorFactory factory;
+
+	private static final class ChainGoal extends ExpressionTypeGoal {
+		final int level;
+		final int index;
+
+		ChainGoal(int level, int index) {
+			super(null, new SimpleReference(0, 0, level + "_" + index)); //$NON-NLS-1$
+			this.level = level;
+			this.index = index;
+		}
+
+		@Override
+		public int hashCode() {
+			return level * 31 + index;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ChainGoal)) {
+				return false;
+			}
+			final ChainGoal other = (ChainGoal) obj;
+			return level == other.level && index == other.index;
+		}
+	}
+
+	private class ChainEvaluator extends GoalEvaluator {
+		private int done;
+
+		ChainEvaluator(IGoal goal) {
+			super(goal);
+		}
+
+		@Override
+		public IGoal[] init() {
+			final ChainGoal chainGoal = (ChainGoal) goal;
+			if (chainGoal.index != 0) {
+				LockSupport.parkNanos(SEARCH_NANOS);
+				return IGoal.NO_GOALS;
+			}
+			if (chainGoal.level == depth) {
+				return IGoal.NO_GOALS;
+			}
+			final IGoal[] subgoals = new IGoal[candidates];
+			for (int i = 0; i < candidates; ++i) {
+				subgoals[i] = new ChainGoal(chainGoal.level + 1, i);
+			}
+			return subgoals;
+		}
+
+		@Override
+		public IGoal[] subGoalDone(IGoal subgoal, Object result,
+				GoalState state) {
+			++done;
+			return IGoal.NO_GOALS;
+		}
+
+		@Override
+		public Object produceResult() {
+			return Integer.valueOf(done);
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		workers = threads != 1 ? new GoalEvaluationWorkers(threads) : null;
+		factory = new IGoalEvaluatorFactory() {
+			public GoalEvaluator createEvaluator(IGoal goal) {
+				return new ChainEvaluator(goal);
+			}
+		};
+		final Object result = evaluateChain();
+		if (!Integer.valueOf(candidates).equals(result)) {
+			throw new IllegalStateException("Unexpected result " + result); //$NON-NLS-1$
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (workers != null) {
+			workers.shutdown();
+		}
+	}
+
+	@Benchmark
+	public Object evaluateChain() {
+		return new GoalEngine(factory, null, null, workers).evaluateGoal(
+				new ChainGoal(0, 0), null);
+	}
+
+}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.benchmarks;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.index.sql.Container;
+import org.eclipse.dltk.core.index.sql.DbFactory;
+import org.eclipse.dltk.core.index.sql.File;
+import org.eclipse.dltk.core.index.sql.IElementDao;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading of a new container into the H2 index the way the SQL indexer does
+ * it: <code>DOCUMENT</code> opens a connection, looks up the existing file and
+ * commits for each document, <code>BULK</code> inserts all the documents
+ * through one connection, each file after its own savepoint, and writes the
+ * elements in one batch and commits every 100 documents.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+public class H2BulkLoadBenchmark {
+
+	private static final String NATURE = "org.eclipse.dltk.core.benchmarks.nature"; //$NON-NLS-1$
+	private static final String CONTAINER = "/org.eclipse.dltk.core.benchmarks/bulk"; //$NON-NLS-1$
+	private static final int NAMES_PER_FILE = 100;
+	private static final int CHUNK_SIZE = 100;
+
+	@Param({ "10000" })
+	public int files;
+
+	@Param({ "DOCUMENT", "BULK" })
+	public String mode;
+
+	private DbFactory dbFactory;
+	private IElementDao elementDao;
+	private String[] names;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		dbFactory = DbFactory.getInstance();
+		elementDao = dbFactory.getElementDao();
+		names = Synthetic.names(files * NAMES_PER_FILE, 5);
+	}
+
+	@Setup(Level.Invocation)
+	public void deleteContainer() throws SQLException {
+		final Connection connection = dbFactory.createConnection();
+		try {
+			dbFactory.getContainerDao().deleteByPath(connection, CONTAINER);
+		} finally {
+			connection.close();
+		}
+	}
+
+	private void insertElements(Connection connection, int fileId, int index)
+			throws SQLException {
+		int offset = 0;
+		for (int j = 0; j < NAMES_PER_FILE; ++j) {
+			final String name = names[index * NAMES_PER_FILE + j];
+			elementDao.insert(connection, IModelElement.METHOD, 0, offset, 100,
+					offset + 6, name.length(), name, null, null, null, null,
+					fileId, NATURE, j % 2 == 1);
+			offset += 100;
+		}
+	}
+
+	@Benchmark
+	public void load() throws SQLException {
+		if ("BULK".equals(mode)) { //$NON-NLS-1$
+			loadBulk();
+		} else {
+			loadByDocument();
+		}
+	}
+
+	private void loadByDocument() throws SQLException {
+		for (int i = 0; i < files; ++i) {
+			final Connection connection = dbFactory.createConnection();
+			try {
+				connection.setAutoCommit(false);
+				final Container container = dbFactory.getContainerDao()
+						.insert(connection, CONTAINER);
+				final String path = Synthetic.document(i);
+				if (dbFactory.getFileDao().select(connection, path,
+						container.getId()) == null) {
+					final File file = dbFactory.getFileDao().insert(
+							connection, path, 0, container.getId());
+					insertElements(connection, file.getId(), i);
+				}
+			} finally {
+				elementDao.commitInsertions();
+				connection.commit();
+				connection.close();
+			}
+		}
+	}
+
+	private void loadBulk() throws SQLException {
+		final Connection connection = dbFactory.createConnection();
+		try {
+			connection.setAutoCommit(false);
+			final Container container = dbFactory.getContainerDao().insert(
+					connection, CONTAINER);
+			connection.commit();
+			for (int i = 0; i < files; ++i) {
+				final Savepoint savepoint = connection.setSavepoint();
+				final File file = dbFactory.getFileDao().insert(connection,
+						Synthetic.document(i), 0, container.getId());
+				insertElements(connection, file.getId(), i);
+				connection.releaseSavepoint(savepoint);
+				if (i % CHUNK_SIZE == CHUNK_SIZE - 1) {
+					elementDao.commitInsertions();
+					connection.commit();
+				}
+			}
+			elementDao.commitInsertions();
+			connection.commit();
+		} finally {
+			connection.close();
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.benchmarks;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.index.sql.Container;
+import org.eclipse.dltk.core.index.sql.DbFactory;
+import org.eclipse.dltk.core.index.sql.Element;
+import org.eclipse.dltk.core.index.sql.File;
+import org.eclipse.dltk.core.index.sql.IElementDao;
+import org.eclipse.dltk.core.index.sql.IElementHandler;
+import org.eclipse.dltk.core.index2.search.ISearchEngine.MatchRule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Declaration searches of the H2 element DAO over a synthetic container. The
+ * rows are stored under a separate nature, so they do not interfere with the
+ * elements of the test workspace.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class H2ElementDaoBenchmark {
+
+	private static final String NATURE = "org.eclipse.dltk.core.benchmarks.nature"; //$NON-NLS-1$
+	private static final String CONTAINER = "/org.eclipse.dltk.core.benchmarks/h2"; //$NON-NLS-1$
+	private static final int NAMES_PER_FILE = 20;
+
+	@Param({ "10000" })
+	public int files;
+
+	@Param({ "Index", "Index*Job", "IJ" })
+	public String pattern;
+
+	@Param({ "EXACT", "PREFIX", "PATTERN", "CAMEL_CASE" })
+	public MatchRule matchRule;
+
+	private DbFactory dbFactory;
+	private IElementDao elementDao;
+	private int containerId;
+
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException {
+		dbFactory = DbFactory.getInstance();
+		elementDao = dbFactory.getElementDao();
+		final String[] names = Synthetic.names(files * NAMES_PER_FILE, 5);
+		final Connection connection = dbFactory.createConnection();
+		try {
+			connection.setAutoCommit(false);
+			dbFactory.getContainerDao().deleteByPath(connection, CONTAINER);
+			final Container container = dbFactory.getContainerDao().insert(
+					connection, CONTAINER);
+			containerId = container.getId();
+			for (int i = 0; i < files; ++i) {
+				final File file = dbFactory.getFileDao().insert(connection,
+						Synthetic.document(i), 0, containerId);
+				int offset = 0;
+				for (int j = 0; j < NAMES_PER_FILE; ++j) {
+					final String name = names[i * NAMES_PER_FILE + j];
+					elementDao.insert(connection, IModelElement.TYPE, 0,
+							offset, 100, offset + 6, name.length(), name,
+							null, null, null, null, file.getId(), NATURE,
+							false);
+					offset += 100;
+				}
+				if (i % 100 == 99) {
+					elementDao.commitInsertions();
+					connection.commit();
+				}
+			}
+			elementDao.commitInsertions();
+			connection.commit();
+		} finally {
+			connection.close();
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException {
+		final Connection connection = dbFactory.createConnection();
+		try {
+			dbFactory.getContainerDao().deleteByPath(connection, CONTAINER);
+		} finally {
+			connection.close();
+		}
+	}
+
+	@Benchmark
+	public int search() throws SQLException {
+		final int[] count = new int[1];
+		final Connection connection = dbFactory.createConnection();
+		try {
+			elementDao.search(connection, pattern, matchRule,
+					IModelElement.TYPE, 0, 0, null, null, null,
+					new int[] { containerId }, NATURE, 0, false,
+					new IElementHandler() {
+						public void handle(Element element) {
+							++count[0];
+						}
+					}, null);
+		} finally {
+			connection.close();
+		}
+		return count[0];
+	}
+}
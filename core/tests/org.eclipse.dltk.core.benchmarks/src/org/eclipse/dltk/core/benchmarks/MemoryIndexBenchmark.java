@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.dltk.core.search.index.Index;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Adding the entries of the synthetic documents to the memory index of a new
+ * {@link Index} (<code>MemoryIndex.addIndexEntry</code>).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MemoryIndexBenchmark {
+
+	private static final char[][] CATEGORIES = { "typeDecl".toCharArray(), //$NON-NLS-1$
+			"methodDecl".toCharArray(), "ref".toCharArray() }; //$NON-NLS-1$ //$NON-NLS-2$
+
+	/** The number of entries added per invocation */
+	@Param({ "1000", "10000" })
+	public int entries;
+
+	private File directory;
+	private char[][] names;
+	private String[] documents;
+	private Index index;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		directory = File.createTempFile("memoryIndex", ""); //$NON-NLS-1$ //$NON-NLS-2$
+		directory.delete();
+		directory.mkdirs();
+		final String[] strings = Synthetic.names(entries, 2);
+		names = new char[entries][];
+		documents = new String[entries];
+		for (int i = 0; i < entries; ++i) {
+			names[i] = strings[i].toCharArray();
+			documents[i] = Synthetic.document(i / 20);
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void newIndex() throws IOException {
+		index = new Index(new File(directory, "bench.index").getPath(), //$NON-NLS-1$
+				"/container", false); //$NON-NLS-1$
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		index = null;
+		Synthetic.deleteTree(directory);
+	}
+
+	@Benchmark
+	public Index addIndexEntry() {
+		for (int i = 0; i < entries; ++i) {
+			index.addIndexEntry(CATEGORIES[i % CATEGORIES.length], names[i],
+					documents[i]);
+		}
+		return index;
+	}
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.dltk.core.search.SearchPattern;
+import org.eclipse.dltk.core.search.index.EntryResult;
+import org.eclipse.dltk.core.search.index.MixinIndex;
+import org.eclipse.dltk.core.search.indexing.IIndexConstants;
+import org.eclipse.dltk.internal.core.mixin.MixinKeyTrie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The prefix, pattern and exact queries of the synthetic mixin keys in
+ * {@link MixinIndex}. The estimated memory of the keys per million keys is
+ * printed after the setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MixinIndexBenchmark {
+
+	private static final char[][] CATEGORIES = { IIndexConstants.MIXIN };
+
+	/** The number of the types, each declaring 4 methods */
+	@Param({ "10000", "100000" })
+	public int types;
+
+	private File file;
+	private MixinIndex index;
+	private char[] exactKey;
+	private char[] prefixPattern;
+	private char[] methodPattern;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		file = File.createTempFile("mixin", ".index"); //$NON-NLS-1$ //$NON-NLS-2$
+		index = new MixinIndex(file.getPath(), file.getPath(), false);
+		final MixinKeyTrie trie = new MixinKeyTrie();
+		final String[] names = Synthetic.names(types, 5);
+		for (int i = 0; i < types; ++i) {
+			final String document = Synthetic.document(i / 10);
+			final String type = "{" + names[i]; //$NON-NLS-1$
+			addKey(trie, type, document);
+			for (int m = 0; m < 4; ++m) {
+				addKey(trie, type + "{run" + m, document); //$NON-NLS-1$
+			}
+		}
+		exactKey = ("{" + names[types / 2]).toCharArray(); //$NON-NLS-1$
+		prefixPattern = ("{" + names[types / 2].substring(0, 6) + "*") //$NON-NLS-1$ //$NON-NLS-2$
+				.toCharArray();
+		methodPattern = ("{" + names[types / 2] + "{*").toCharArray(); //$NON-NLS-1$ //$NON-NLS-2$
+		System.out.println("Mixin keys: " + trie.size() + ", bytes per million keys: " //$NON-NLS-1$ //$NON-NLS-2$
+				+ trie.estimateSize() * 1000000 / trie.size());
+	}
+
+	private void addKey(MixinKeyTrie trie, String key, String document) {
+		final char[] chars = key.toCharArray();
+		index.addIndexEntry(IIndexConstants.MIXIN, chars, document);
+		trie.add(chars, document);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		index = null;
+		file.delete();
+	}
+
+	@Benchmark
+	public EntryResult[] exactQuery() throws IOException {
+		return index.query(CATEGORIES, exactKey, SearchPattern.R_EXACT_MATCH
+				| SearchPattern.R_CASE_SENSITIVE);
+	}
+
+	@Benchmark
+	public EntryResult[] prefixQuery() throws IOException {
+		return index.query(CATEGORIES, prefixPattern,
+				SearchPattern.R_PATTERN_MATCH | SearchPattern.R_CASE_SENSITIVE);
+	}
+
+	@Benchmark
+	public EntryResult[] methodQuery() throws IOException {
+		return index.query(CATEGORIES, methodPattern,
+				SearchPattern.R_PATTERN_MATCH | SearchPattern.R_CASE_SENSITIVE);
+	}
+}
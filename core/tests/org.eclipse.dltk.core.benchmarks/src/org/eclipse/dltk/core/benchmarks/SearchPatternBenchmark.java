@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.dltk.core.search.IDLTKSearchConstants;
+import org.eclipse.dltk.core.search.SearchPattern;
+import org.eclipse.dltk.core.tests.model.TestLanguageToolkit;
+import org.eclipse.dltk.internal.core.search.matching.TypeDeclarationPattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Matching of the decoded index keys of the type declarations against the
+ * search patterns, as done for every key read from the index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SearchPatternBenchmark {
+
+	private static final int KEYS = 10000;
+
+	@Param({ "Index", "Index*Job", "IJ" })
+	public String pattern;
+
+	@Param({ "PREFIX", "PATTERN", "CAMELCASE" })
+	public String rule;
+
+	private SearchPattern searchPattern;
+	private char[][] keys;
+	private char[][] names;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		final int matchRule;
+		if ("PATTERN".equals(rule)) { //$NON-NLS-1$
+			matchRule = SearchPattern.R_PATTERN_MATCH;
+		} else if ("CAMELCASE".equals(rule)) { //$NON-NLS-1$
+			matchRule = SearchPattern.R_CAMELCASE_MATCH;
+		} else {
+			matchRule = SearchPattern.R_PREFIX_MATCH;
+		}
+		searchPattern = SearchPattern.createPattern(pattern,
+				IDLTKSearchConstants.TYPE, IDLTKSearchConstants.DECLARATIONS,
+				matchRule, TestLanguageToolkit.getDefault());
+		final String[] strings = Synthetic.names(KEYS, 3);
+		keys = new char[KEYS][];
+		names = new char[KEYS][];
+		for (int i = 0; i < KEYS; ++i) {
+			keys[i] = TypeDeclarationPattern.createIndexKey(0, strings[i],
+					new String[] { "pkg" + (i % 10) }, null, null); //$NON-NLS-1$
+			names[i] = strings[i].toCharArray();
+		}
+	}
+
+	@Benchmark
+	public int matchesDecodedKey() {
+		final SearchPattern decoded = searchPattern.getBlankPattern();
+		int count = 0;
+		for (char[] key : keys) {
+			decoded.decodeIndexKey(key);
+			if (searchPattern.matchesDecodedKey(decoded)) {
+				++count;
+			}
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int matchesName() {
+		final char[] patternName = pattern.toCharArray();
+		int count = 0;
+		for (char[] name : names) {
+			if (searchPattern.matchesName(patternName, name)) {
+				++count;
+			}
+		}
+		return count;
+	}
+}
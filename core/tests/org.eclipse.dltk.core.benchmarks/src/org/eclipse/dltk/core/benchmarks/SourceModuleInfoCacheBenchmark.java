@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.IScriptFolder;
+import org.eclipse.dltk.core.IScriptProject;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.ISourceModuleInfoCache.ISourceModuleInfo;
+import org.eclipse.dltk.internal.core.SourceModuleInfoCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Contention on the {@link SourceModuleInfoCache} shared by the reconciler,
+ * the builder participants and the search threads. The modules are handles of
+ * a project which does not exist, so no resource is touched except for the
+ * modification stamp check.
+ * <ul>
+ * <li><code>hits</code> - every thread looks up the cached modules;</li>
+ * <li><code>mixed</code> - the readers look up the modules while the writers
+ * remove them, as the resource deltas do;</li>
+ * <li><code>overflow</code> - every thread looks up more modules than the
+ * cache could hold, so each lookup evicts an entry.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SourceModuleInfoCacheBenchmark {
+
+	private static final String PROJECT = "SourceModuleInfoCacheBenchmark"; //$NON-NLS-1$
+	private static final String KEY = "benchmark"; //$NON-NLS-1$
+
+	/**
+	 * The number of the modules, as the part of the cache capacity. Above 100
+	 * the lookups of <code>hits</code> and <code>mixed</code> evict too.
+	 */
+	@Param({ "50", "200" })
+	public int percentOfCapacity;
+
+	private SourceModuleInfoCache cache;
+	private ISourceModule[] modules;
+	/**
+	 * Twice as many modules as the cache could hold.
+	 */
+	private ISourceModule[] overflowModules;
+
+	@State(Scope.Thread)
+	public static class Cursor {
+		private int next;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			// threads start from different modules
+			next = System.identityHashCode(this) & 0xFFFF;
+		}
+
+		int next(int length) {
+			next = (next + 7) % length;
+			return next;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		cache = new SourceModuleInfoCache();
+		final int count = Math.max(1, cache.capacity() * percentOfCapacity
+				/ 100);
+		final IScriptProject project = DLTKCore.create(ResourcesPlugin
+				.getWorkspace().getRoot().getProject(PROJECT));
+		final IScriptFolder folder = project.getProjectFragment(
+				project.getProject().getFolder("src")).getScriptFolder(""); //$NON-NLS-1$ //$NON-NLS-2$
+		modules = new ISourceModule[count];
+		for (int i = 0; i < count; ++i) {
+			modules[i] = folder.getSourceModule("module" + i + ".txt"); //$NON-NLS-1$ //$NON-NLS-2$
+			cache.get(modules[i]).put(KEY, modules[i]);
+		}
+		overflowModules = new ISourceModule[cache.capacity() * 2];
+		for (int i = 0; i < overflowModules.length; ++i) {
+			overflowModules[i] = folder.getSourceModule("overflow" + i //$NON-NLS-1$
+					+ ".txt"); //$NON-NLS-1$
+		}
+	}
+
+	private Object lookup(Cursor cursor) {
+		final ISourceModule module = modules[cursor.next(modules.length)];
+		final ISourceModuleInfo info = cache.get(module);
+		Object value = info.get(KEY);
+		if (value == null) {
+			info.put(KEY, module);
+			value = module;
+		}
+		return value;
+	}
+
+	@Benchmark
+	@Threads(8)
+	public Object hits(Cursor cursor) {
+		return lookup(cursor);
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(6)
+	public Object mixedRead(Cursor cursor) {
+		return lookup(cursor);
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(2)
+	public void mixedRemove(Cursor cursor) {
+		cache.remove(modules[cursor.next(modules.length)]);
+	}
+
+	@Benchmark
+	@Threads(8)
+	public ISourceModuleInfo overflow(Cursor cursor) {
+		return cache.get(overflowModules[cursor.next(overflowModules.length)]);
+	}
+
+}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.IBuildpathEntry;
+import org.eclipse.dltk.core.IScriptProject;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.SourceParserUtil;
+import org.eclipse.dltk.core.tests.model.ModelTestsPlugin;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link SourceParserUtil#parse(ISourceModule, org.eclipse.dltk.compiler.problem.IProblemReporter)}
+ * of the modules which AST is already cached. The modules are created in a
+ * synthetic project of the test nature, the number of modules is limited to
+ * the cache capacity so every lookup is a hit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SourceParserCacheBenchmark {
+
+	private static final String PROJECT = "SourceParserCacheBenchmark"; //$NON-NLS-1$
+
+	@Param({ "1000" })
+	public int files;
+
+	private IProject project;
+	private ISourceModule[] modules;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() throws CoreException {
+		final int count = Math.min(files, SourceParserUtil.getCache()
+				.capacity());
+		final String[] names = Synthetic.names(count * 5, 6);
+		project = ResourcesPlugin.getWorkspace().getRoot().getProject(PROJECT);
+		ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable() {
+			public void run(IProgressMonitor monitor) throws CoreException {
+				if (project.exists()) {
+					project.delete(true, true, null);
+				}
+				project.create(null);
+				project.open(null);
+				final IProjectDescription description = project
+						.getDescription();
+				description
+						.setNatureIds(new String[] { ModelTestsPlugin.TEST_NATURE });
+				project.setDescription(description, null);
+				final IFolder src = project.getFolder("src"); //$NON-NLS-1$
+				src.create(true, true, null);
+				for (int i = 0; i < count; ++i) {
+					final IFile file = src.getFile("module" + i + ".txt"); //$NON-NLS-1$ //$NON-NLS-2$
+					file.create(new ByteArrayInputStream(Synthetic.contents(
+							names, i * 5, 5).getBytes()), true, null);
+				}
+				final IScriptProject scriptProject = DLTKCore.create(project);
+				scriptProject.setRawBuildpath(
+						new IBuildpathEntry[] { DLTKCore.newSourceEntry(src
+								.getFullPath()) }, null);
+			}
+		}, null);
+		modules = new ISourceModule[count];
+		for (int i = 0; i < count; ++i) {
+			modules[i] = DLTKCore.createSourceModuleFrom(project
+					.getFile("src/module" + i + ".txt")); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		// fill the cache
+		for (ISourceModule module : modules) {
+			SourceParserUtil.parse(module, null);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws CoreException {
+		modules = null;
+		project.delete(true, true, null);
+	}
+
+	@Benchmark
+	public ModuleDeclaration parseCached() {
+		next = (next + 1) % modules.length;
+		return (ModuleDeclaration) SourceParserUtil.parse(modules[next], null);
+	}
+}
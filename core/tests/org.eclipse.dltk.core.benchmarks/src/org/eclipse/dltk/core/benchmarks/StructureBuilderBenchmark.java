@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.benchmarks;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.IBuildpathEntry;
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.IProjectFragment;
+import org.eclipse.dltk.core.IScriptFolder;
+import org.eclipse.dltk.core.IScriptProject;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.ModelException;
+import org.eclipse.dltk.core.environment.EnvironmentPathUtils;
+import org.eclipse.dltk.core.internal.environment.LocalEnvironment;
+import org.eclipse.dltk.core.tests.model.ModelTestsPlugin;
+import org.eclipse.dltk.internal.core.AbstractExternalSourceModule;
+import org.eclipse.dltk.internal.core.ModelCache;
+import org.eclipse.dltk.internal.core.ModelManager;
+import org.eclipse.dltk.internal.core.ParallelStructureBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cold opening of all the modules of an external library by the
+ * {@link ParallelStructureBuilder}, sequentially and with the worker per
+ * processor. The modules are closed before each invocation, the budget of the
+ * model cache is raised so all of them fit.
+ * <p>
+ * After each iteration the heap retained by the opened modules is measured as
+ * the difference of the used heap after the garbage collection with the
+ * modules open and closed. The average retained bytes per module and the
+ * number of the canonical handles are printed after the trial. The allocated
+ * bytes per invocation are reported by the GC profiler, see
+ * {@link BenchmarkSuite}, divided by <code>files</code> they give the
+ * allocation per module.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class StructureBuilderBenchmark {
+
+	private static final String PROJECT = "StructureBuilderBenchmark"; //$NON-NLS-1$
+
+	@Param({ "10000" })
+	public int files;
+
+	/**
+	 * The number of the workers, <code>0</code> means one per processor.
+	 */
+	@Param({ "1", "0" })
+	public int threads;
+
+	private File library;
+	private IProject project;
+	private List<AbstractExternalSourceModule> modules;
+	private ParallelStructureBuilder builder;
+	private double budgetRatio;
+	private long retainedBytes;
+	private int measurements;
+
+	@Setup(Level.Trial)
+	public void setUp() throws CoreException, IOException {
+		library = File.createTempFile("library", ""); //$NON-NLS-1$ //$NON-NLS-2$
+		library.delete();
+		final String[] names = Synthetic.names(files * 5, 7);
+		for (int i = 0; i < files; ++i) {
+			final File file = new File(library, Synthetic.document(i));
+			file.getParentFile().mkdirs();
+			final FileWriter writer = new FileWriter(file);
+			try {
+				writer.write(Synthetic.contents(names, i * 5, 5));
+			} finally {
+				writer.close();
+			}
+		}
+		project = ResourcesPlugin.getWorkspace().getRoot().getProject(PROJECT);
+		if (project.exists()) {
+			project.delete(true, true, null);
+		}
+		project.create(null);
+		project.open(null);
+		final IProjectDescription description = project.getDescription();
+		description.setNatureIds(new String[] { ModelTestsPlugin.TEST_NATURE });
+		project.setDescription(description, null);
+		final IScriptProject scriptProject = DLTKCore.create(project);
+		scriptProject.setRawBuildpath(
+				new IBuildpathEntry[] { DLTKCore
+						.newExtLibraryEntry(EnvironmentPathUtils.getFullPath(
+								LocalEnvironment.getInstance(), new Path(
+										library.getAbsolutePath()))) }, null);
+		// let the indexing finish first, so it does not overlap the trials
+		ModelManager.getModelManager().getIndexManager().waitUntilReady();
+		modules = new ArrayList<AbstractExternalSourceModule>(files);
+		for (IProjectFragment fragment : scriptProject.getProjectFragments()) {
+			for (IModelElement folder : fragment.getChildren()) {
+				for (ISourceModule module : ((IScriptFolder) folder)
+						.getSourceModules()) {
+					modules.add((AbstractExternalSourceModule) module);
+				}
+			}
+		}
+		final ModelCache cache = ModelManager.getModelManager().cache;
+		budgetRatio = cache.getBudgetRatio();
+		final int room = Math.max(1, cache.getOpenableRoom());
+		cache.setBudgetRatio(Math.max(budgetRatio, budgetRatio * 2 * files
+				/ room));
+		builder = new ParallelStructureBuilder(threads);
+	}
+
+	@Setup(Level.Invocation)
+	public void closeModules() throws ModelException {
+		for (AbstractExternalSourceModule module : modules) {
+			module.close();
+		}
+	}
+
+	private static long usedHeap() {
+		final Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; ++i) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	@TearDown(Level.Iteration)
+	public void measureHeap() throws ModelException {
+		final long open = usedHeap();
+		closeModules();
+		retainedBytes += open - usedHeap();
+		++measurements;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws CoreException {
+		builder.shutdown();
+		System.out.println("Threads: " + threads //$NON-NLS-1$
+				+ ", retained heap bytes per module: " //$NON-NLS-1$
+				+ retainedBytes / Math.max(1, measurements) / files
+				+ ", canonical handles: " //$NON-NLS-1$
+				+ ModelManager.getModelManager().getHandleCount());
+		modules = null;
+		ModelManager.getModelManager().cache.setBudgetRatio(budgetRatio);
+		project.delete(true, true, null);
+		Synthetic.deleteTree(library);
+	}
+
+	@Benchmark
+	public int openLibrary() {
+		return builder.build(modules, null);
+	}
+
+}
@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.benchmarks;
+
+import java.io.File;
+import java.util.Random;
+
+/**
+ * Deterministic generator of the synthetic source trees: camel-case element
+ * names, folder/file names and module contents.
+ */
+final class Synthetic {
+
+	private static final String[] WORDS = { "Abstract", "Base", "Cache",
+			"Document", "Element", "Factory", "Generic", "Handler", "Index",
+			"Job", "Key", "List", "Model", "Node", "Object", "Parser",
+			"Query", "Request", "Source", "Type", "Util", "Visitor", "Writer" };
+
+	private Synthetic() {
+	}
+
+	/**
+	 * Returns <code>count</code> distinct camel-case names, the same for the
+	 * same seed.
+	 */
+	static String[] names(int count, long seed) {
+		final Random random = new Random(seed);
+		final String[] names = new String[count];
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < count; ++i) {
+			sb.setLength(0);
+			final int words = 2 + random.nextInt(3);
+			for (int w = 0; w < words; ++w) {
+				sb.append(WORDS[random.nextInt(WORDS.length)]);
+			}
+			sb.append(i);
+			names[i] = sb.toString();
+		}
+		return names;
+	}
+
+	/**
+	 * Returns the container relative path of the document, documents are
+	 * spread over 100 folders.
+	 */
+	static String document(int i) {
+		return "folder" + (i % 100) + "/module" + i + ".txt"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+	/**
+	 * Returns the contents of the synthetic module declaring the specified
+	 * names.
+	 */
+	static String contents(String[] names, int from, int count) {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = from; i < from + count && i < names.length; ++i) {
+			sb.append("class ").append(names[i]).append(" {\n"); //$NON-NLS-1$ //$NON-NLS-2$
+			sb.append("  def run").append(names[i]).append("() {}\n"); //$NON-NLS-1$ //$NON-NLS-2$
+			sb.append("}\n"); //$NON-NLS-1$
+		}
+		return sb.toString();
+	}
+
+	static void deleteTree(File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				deleteTree(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.index.sql.h2.tests;
+
+import junit.framework.JUnit4TestAdapter;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.dltk.internal.core.index.sql.h2.ElementIndexTest;
+import org.eclipse.dltk.internal.core.index.sql.h2.ElementQueryTest;
+import org.eclipse.dltk.internal.core.index.sql.h2.H2CacheTest;
+import org.eclipse.dltk.internal.core.index.sql.h2.H2ElementDaoTest;
+import org.eclipse.dltk.internal.core.index.sql.h2.IntMapTest;
+import org.eclipse.dltk.internal.core.index.sql.h2.NameGramsTest;
+
+public class AllTests {
+
+	public static Test suite() {
+		TestSuite suite = new TestSuite(
+				"org.eclipse.dltk.core.index.sql.h2.tests"); //$NON-NLS-1$
+		// $JUnit-BEGIN$
+		suite.addTest(new JUnit4TestAdapter(IntMapTest.class));
+		suite.addTest(new JUnit4TestAdapter(ElementIndexTest.class));
+		suite.addTest(new JUnit4TestAdapter(NameGramsTest.class));
+		suite.addTest(new JUnit4TestAdapter(ElementQueryTest.class));
+		suite.addTest(new JUnit4TestAdapter(H2CacheTest.class));
+		suite.addTest(new JUnit4TestAdapter(H2ElementDaoTest.class));
+		// $JUnit-END$
+		return suite;
+	}
+
+}
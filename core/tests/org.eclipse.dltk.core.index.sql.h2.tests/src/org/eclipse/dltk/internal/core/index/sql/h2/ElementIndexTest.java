@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.index.sql.h2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.index.sql.Element;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ElementIndexTest extends Assert {
+
+	private ElementIndex index;
+
+	static Element element(String name, int fileId) {
+		return new Element(IModelElement.TYPE, 0, 0, 0, 0, name.length(),
+				name, camelCaseName(name), null, null, null, null, fileId,
+				false);
+	}
+
+	/**
+	 * The camel-case name as it is stored by {@link H2ElementDao}
+	 */
+	private static String camelCaseName(String name) {
+		return Character.isUpperCase(name.charAt(0)) ? NameGrams
+				.getUpperCaseLetters(name) : null;
+	}
+
+	private static class Collector implements ElementIndex.Visitor {
+		final List<String> names = new ArrayList<String>();
+		final int limit;
+
+		Collector() {
+			this(Integer.MAX_VALUE);
+		}
+
+		Collector(int limit) {
+			this.limit = limit;
+		}
+
+		public boolean visit(Element element) {
+			names.add(element.getName());
+			return names.size() < limit;
+		}
+
+		List<String> sorted() {
+			Collections.sort(names);
+			return names;
+		}
+	}
+
+	@Before
+	public void setUp() {
+		index = new ElementIndex();
+		index.add(element("Foo", 1));
+		index.add(element("foo", 2));
+		index.add(element("FooBar", 1));
+		index.add(element("NullPointerException", 2));
+		index.add(element("NoPermissionException", 3));
+		index.add(element("getFooBar", 3));
+	}
+
+	@Test
+	public void visitNameIgnoresCase() {
+		final Collector collector = new Collector();
+		assertTrue(index.visitName("FOO", collector));
+		assertEquals(list("Foo", "foo"), collector.sorted());
+	}
+
+	@Test
+	public void visitNamePrefix() {
+		Collector collector = new Collector();
+		assertTrue(index.visitNamePrefix("fo", collector));
+		assertEquals(list("Foo", "FooBar", "foo"), collector.sorted());
+		collector = new Collector();
+		index.visitNamePrefix("FOOB", collector);
+		assertEquals(list("FooBar"), collector.names);
+		collector = new Collector();
+		index.visitNamePrefix("x", collector);
+		assertTrue(collector.names.isEmpty());
+	}
+
+	@Test
+	public void visitCamelCasePrefix() {
+		Collector collector = new Collector();
+		index.visitCamelCasePrefix("NP", collector);
+		assertEquals(list("NoPermissionException", "NullPointerException"),
+				collector.sorted());
+		collector = new Collector();
+		index.visitCamelCasePrefix("NPE", collector);
+		assertEquals(2, collector.names.size());
+		// the upper case letters of the lower camel-case names are indexed
+		collector = new Collector();
+		index.visitCamelCasePrefix("FB", collector);
+		assertEquals(list("FooBar", "getFooBar"), collector.sorted());
+	}
+
+	@Test
+	public void visitorStopsSearch() {
+		final Collector collector = new Collector(2);
+		assertFalse(index.visitAll(collector));
+		assertEquals(2, collector.names.size());
+	}
+
+	@Test
+	public void removeFile() {
+		assertEquals(2, index.getElements(1).size());
+		index.removeFile(1);
+		assertNull(index.getElements(1));
+		Collector collector = new Collector();
+		index.visitNamePrefix("foo", collector);
+		assertEquals(list("foo"), collector.names);
+		collector = new Collector();
+		index.visitCamelCasePrefix("FB", collector);
+		assertEquals(list("getFooBar"), collector.names);
+		assertFalse(index.isEmpty());
+		index.removeFile(2);
+		index.removeFile(3);
+		assertTrue(index.isEmpty());
+		collector = new Collector();
+		index.visitAll(collector);
+		index.visitNamePrefix("", collector);
+		index.visitCamelCasePrefix("", collector);
+		assertTrue(collector.names.isEmpty());
+	}
+
+	private static List<String> list(String... names) {
+		final List<String> result = new ArrayList<String>();
+		Collections.addAll(result, names);
+		return result;
+	}
+
+}
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.index.sql.h2;
+
+import org.eclipse.dltk.core.index2.search.ISearchEngine.MatchRule;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The SQL text depends only on the table, the match rule and the enabled
+ * filters, the values are passed as the parameters.
+ */
+public class ElementQueryTest extends Assert {
+
+	private static final String TABLE = "D_TEST_7"; //$NON-NLS-1$
+
+	private static ElementQuery query(String pattern, MatchRule matchRule,
+			String qualifier, int[] filesId) {
+		final ElementQuery query = new ElementQuery(TABLE, false);
+		query.addName(pattern, matchRule);
+		query.addTrueFlags(1);
+		query.addQualifier(qualifier);
+		query.addFiles(filesId);
+		return query;
+	}
+
+	private static int countParameters(String sql) {
+		int count = 0;
+		for (int i = 0; i < sql.length(); ++i) {
+			if (sql.charAt(i) == '?') {
+				++count;
+			}
+		}
+		return count;
+	}
+
+	@Test
+	public void sameQueryForDifferentValues() {
+		for (MatchRule matchRule : new MatchRule[] { MatchRule.EXACT,
+				MatchRule.PREFIX, MatchRule.CAMEL_CASE, MatchRule.PATTERN }) {
+			final String first = query("FooBar", matchRule, "a",
+					new int[] { 1 }).getQuery();
+			final String second = query("BarBaz", matchRule, "b",
+					new int[] { 1, 2, 3 }).getQuery();
+			assertEquals(matchRule.toString(), first, second);
+		}
+		assertEquals(query("a,b", MatchRule.SET, "a", new int[] { 1 })
+				.getQuery(), query("c,d", MatchRule.SET, "b", new int[] { 2 })
+				.getQuery());
+	}
+
+	@Test
+	public void containersUseSingleParameter() {
+		final ElementQuery one = new ElementQuery(TABLE, false);
+		one.addContainers(new int[] { 1 });
+		final ElementQuery three = new ElementQuery(TABLE, false);
+		three.addContainers(new int[] { 1, 2, 3 });
+		assertEquals(one.getQuery(), three.getQuery());
+		// the container filter and the limit
+		assertEquals(2, countParameters(one.getQuery()));
+	}
+
+	@Test
+	public void nameSetIsPaddedToPowerOfTwo() {
+		final ElementQuery query = new ElementQuery(TABLE, false);
+		query.addName("a,b,c", MatchRule.SET);
+		assertTrue(query.getQuery().contains("NAME IN(?,?,?,?)"));
+		// the last name is repeated
+		assertTrue(query.toString().endsWith("[a, b, c, c]"));
+		final ElementQuery four = new ElementQuery(TABLE, false);
+		four.addName("a,b,c,d", MatchRule.SET);
+		assertEquals(query.getQuery(), four.getQuery());
+		final ElementQuery single = new ElementQuery(TABLE, false);
+		single.addName("a", MatchRule.SET);
+		assertTrue(single.getQuery().contains("NAME IN(?)"));
+	}
+
+	@Test
+	public void gramsAreUsedForDeclarations() {
+		final ElementQuery pattern = new ElementQuery(TABLE, false);
+		pattern.addName("*Index*Job", MatchRule.PATTERN);
+		assertTrue(pattern.getQuery().contains(TABLE + "_NGRAMS"));
+		final ElementQuery shortPattern = new ElementQuery(TABLE, false);
+		shortPattern.addName("*In*", MatchRule.PATTERN);
+		assertFalse(shortPattern.getQuery().contains("_NGRAMS"));
+		final ElementQuery reference = new ElementQuery("R_TEST_7", true);
+		reference.addName("*Index*Job", MatchRule.PATTERN);
+		assertFalse(reference.getQuery().contains("_NGRAMS"));
+	}
+
+	@Test
+	public void camelCaseNamesAreAccepted() {
+		final ElementQuery query = new ElementQuery(TABLE, false);
+		query.addName("NuPoEx", MatchRule.CAMEL_CASE);
+		assertTrue(query.getQuery().contains(TABLE + "_NGRAMS"));
+		assertTrue(query.accept("NullPointerException"));
+		assertFalse(query.accept("NoPermissionException"));
+		assertFalse(query.accept("nullPointerException"));
+
+		final ElementQuery prefix = new ElementQuery(TABLE, false);
+		prefix.addName("Null", MatchRule.PREFIX);
+		assertTrue(prefix.accept("NoPermissionException"));
+	}
+
+}
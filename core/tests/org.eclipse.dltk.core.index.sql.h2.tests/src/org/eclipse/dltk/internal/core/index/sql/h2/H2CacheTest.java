@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.index.sql.h2;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.dltk.core.index.sql.Container;
+import org.eclipse.dltk.core.index.sql.Element;
+import org.eclipse.dltk.core.index.sql.File;
+import org.eclipse.dltk.core.index2.search.ISearchEngine.MatchRule;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Searches of the cached elements. The cache is global, so the elements are
+ * added with their own type and identifiers and are removed after each test.
+ */
+public class H2CacheTest extends Assert {
+
+	private static final int TYPE = 1001;
+	private static final int SMALL = 1000001;
+	private static final int LARGE = 1000002;
+	private static final int FIRST_FILE = 1000000;
+	/** Above the number of the files visited one by one */
+	private static final int LARGE_FILES = 40;
+
+	private int nextFileId = FIRST_FILE;
+
+	private int addFile(int containerId) {
+		final int fileId = nextFileId++;
+		H2Cache.addFile(new File(fileId, "file" + fileId, 0, containerId));
+		return fileId;
+	}
+
+	private static void addElement(int fileId, String name, int flags,
+			String qualifier, String parent) {
+		H2Cache.addElement(new Element(TYPE, flags, 0, 0, 0, name.length(),
+				name, Character.isUpperCase(name.charAt(0)) ? NameGrams
+						.getUpperCaseLetters(name) : null, null, null,
+				qualifier, parent, fileId, false));
+	}
+
+	private static void addElement(int fileId, String name) {
+		addElement(fileId, name, 0, null, null);
+	}
+
+	@Before
+	public void setUp() {
+		H2Cache.addContainer(new Container(SMALL, "/small"));
+		H2Cache.addContainer(new Container(LARGE, "/large"));
+		int fileId = addFile(SMALL);
+		addElement(fileId, "Foo");
+		addElement(fileId, "FooBar", 1, "q", "p");
+		addElement(fileId, "NullPointerException");
+		fileId = addFile(SMALL);
+		addElement(fileId, "foo");
+		addElement(fileId, "NoPermissionException");
+		addElement(fileId, "getFooBar", 2, "q", null);
+		for (int i = 0; i < LARGE_FILES; ++i) {
+			addElement(addFile(LARGE), "Large");
+		}
+	}
+
+	@After
+	public void tearDown() {
+		H2Cache.deleteContainerById(SMALL);
+		H2Cache.deleteContainerById(LARGE);
+	}
+
+	private static List<String> search(String pattern, MatchRule matchRule,
+			int[] containersId) {
+		return search(pattern, matchRule, 0, 0, null, null, containersId, 0);
+	}
+
+	private static List<String> search(String pattern, MatchRule matchRule,
+			int trueFlags, int falseFlags, String qualifier, String parent,
+			int[] containersId, int limit) {
+		final Collection<Element> elements = H2Cache.searchElements(pattern,
+				matchRule, TYPE, trueFlags, falseFlags, qualifier, parent,
+				null, containersId, null, limit);
+		final List<String> names = new ArrayList<String>();
+		for (Element element : elements) {
+			names.add(element.getName());
+		}
+		Collections.sort(names);
+		return names;
+	}
+
+	private static List<String> list(String... names) {
+		final List<String> result = new ArrayList<String>();
+		Collections.addAll(result, names);
+		return result;
+	}
+
+	private static final int[] ALL = { SMALL, LARGE };
+
+	@Test
+	public void exact() {
+		final List<String> expected = list("Foo", "foo");
+		assertEquals(expected, search("FOO", MatchRule.EXACT, ALL));
+		assertEquals(expected, search("foo", MatchRule.EXACT, null));
+	}
+
+	@Test
+	public void prefix() {
+		final List<String> expected = list("Foo", "FooBar", "foo");
+		assertEquals(expected, search("fo", MatchRule.PREFIX, ALL));
+		assertEquals(expected, search("fo", MatchRule.PREFIX, null));
+	}
+
+	@Test
+	public void camelCase() {
+		assertEquals(list("NoPermissionException", "NullPointerException"),
+				search("NPE", MatchRule.CAMEL_CASE, ALL));
+		assertEquals(list("NullPointerException"),
+				search("NuPoEx", MatchRule.CAMEL_CASE, ALL));
+		assertEquals(list("NullPointerException"),
+				search("NuPoEx", MatchRule.CAMEL_CASE, null));
+		assertEquals(list("getFooBar"),
+				search("gFB", MatchRule.CAMEL_CASE, null));
+		assertEquals(list("FooBar"), search("FB", MatchRule.CAMEL_CASE, ALL));
+		assertEquals(list("Foo", "FooBar"),
+				search("Foo", MatchRule.CAMEL_CASE, ALL));
+	}
+
+	@Test
+	public void set() {
+		assertEquals(LARGE_FILES + 2, search("foo,large", MatchRule.SET, ALL)
+				.size());
+		assertEquals(list("Foo", "foo"),
+				search("FOO,Large", MatchRule.SET, new int[] { SMALL }));
+	}
+
+	@Test
+	public void pattern() {
+		assertEquals(list("NoPermissionException", "NullPointerException"),
+				search("N*Exception", MatchRule.PATTERN, ALL));
+		assertEquals(list("FooBar", "getFooBar"),
+				search("*Bar", MatchRule.PATTERN, null));
+		assertEquals(list("NullPointerException"),
+				search("*Point?r*", MatchRule.PATTERN, ALL));
+	}
+
+	@Test
+	public void noPattern() {
+		assertEquals(6, search(null, MatchRule.PREFIX, new int[] { SMALL })
+				.size());
+		assertEquals(6 + LARGE_FILES, search("", MatchRule.EXACT, null)
+				.size());
+	}
+
+	@Test
+	public void flagsQualifierAndParent() {
+		assertEquals(list("FooBar", "getFooBar"),
+				search(null, null, 3, 0, null, null, ALL, 0));
+		assertEquals(list("getFooBar"),
+				search(null, null, 0, 1, "q", null, ALL, 0));
+		assertEquals(list("FooBar"),
+				search(null, null, 0, 0, "q", "p", ALL, 0));
+	}
+
+	/**
+	 * The limit applies to the whole search, whether the files are visited
+	 * one by one or the name index is searched.
+	 */
+	@Test
+	public void limit() {
+		assertEquals(5, search("Large", MatchRule.EXACT, 0, 0, null, null,
+				ALL, 5).size());
+		assertEquals(5, search("Large", MatchRule.EXACT, 0, 0, null, null,
+				null, 5).size());
+		assertEquals(5, search(null, null, 0, 0, null, null, null, 5).size());
+		assertEquals(2, search("fo", MatchRule.PREFIX, 0, 0, null, null,
+				new int[] { SMALL }, 2).size());
+		assertEquals(LARGE_FILES, search("Large", MatchRule.EXACT, 0, 0,
+				null, null, ALL, 0).size());
+	}
+
+	@Test
+	public void containerFilter() {
+		assertEquals(list("Foo", "foo"),
+				search("foo", MatchRule.EXACT, new int[] { SMALL }));
+		assertTrue(search("foo", MatchRule.EXACT, new int[] { LARGE })
+				.isEmpty());
+		// the empty filter matches no container
+		assertTrue(search("foo", MatchRule.EXACT, new int[0]).isEmpty());
+		assertTrue(search(null, null, new int[0]).isEmpty());
+		assertTrue(search("foo", MatchRule.EXACT, new int[] { 1000003 })
+				.isEmpty());
+	}
+
+	@Test
+	public void deletedFilesAreNotFound() {
+		final int fileId = addFile(SMALL);
+		addElement(fileId, "Deleted");
+		assertEquals(list("Deleted"),
+				search("Deleted", MatchRule.EXACT, ALL));
+		H2Cache.deleteFileById(fileId);
+		assertTrue(search("Deleted", MatchRule.EXACT, ALL).isEmpty());
+		assertTrue(H2Cache.selectElementsByFileId(fileId).isEmpty());
+		assertNull(H2Cache.selectFileById(fileId));
+	}
+
+}
@@ -0,0 +1,307 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.index.sql.h2;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.index.sql.Container;
+import org.eclipse.dltk.core.index.sql.DbFactory;
+import org.eclipse.dltk.core.index.sql.Element;
+import org.eclipse.dltk.core.index.sql.IElementDao;
+import org.eclipse.dltk.core.index2.search.ISearchEngine.MatchRule;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Element insertions, updates and queries against the database.
+ */
+public class H2ElementDaoTest extends Assert {
+
+	private static final String NATURE = "org.eclipse.dltk.core.index.sql.h2.tests.nature"; //$NON-NLS-1$
+	private static final String CONTAINER = "/org.eclipse.dltk.core.index.sql.h2.tests"; //$NON-NLS-1$
+	private static final int TYPE = IModelElement.TYPE;
+
+	private DbFactory dbFactory;
+	private IElementDao elementDao;
+	private Connection connection;
+	private Container container;
+	private String tableName;
+
+	@Before
+	public void setUp() throws SQLException {
+		dbFactory = DbFactory.getInstance();
+		elementDao = dbFactory.getElementDao();
+		connection = dbFactory.createConnection();
+		connection.setAutoCommit(false);
+		container = dbFactory.getContainerDao().insert(connection, CONTAINER);
+		connection.commit();
+		tableName = new Schema().getTableName(TYPE, NATURE, false);
+	}
+
+	@After
+	public void tearDown() throws SQLException {
+		try {
+			dbFactory.getContainerDao().deleteByPath(connection, CONTAINER);
+			connection.commit();
+		} finally {
+			connection.close();
+		}
+	}
+
+	private int insertFile(String path) throws SQLException {
+		return dbFactory.getFileDao().insert(connection, path, 0,
+				container.getId()).getId();
+	}
+
+	private void insert(int fileId, String... names) throws SQLException {
+		int offset = 0;
+		for (String name : names) {
+			elementDao.insert(connection, TYPE, 0, offset, 10, offset,
+					name.length(), name, null, null, null, null, fileId,
+					NATURE, false);
+			offset += 10;
+		}
+	}
+
+	private void commit() throws SQLException {
+		elementDao.commitInsertions();
+		connection.commit();
+	}
+
+	/**
+	 * Returns the row identifiers of the file declarations by name
+	 */
+	private Map<String, Integer> selectIds(int fileId) throws SQLException {
+		final Map<String, Integer> ids = new HashMap<String, Integer>();
+		final PreparedStatement statement = connection
+				.prepareStatement("SELECT NAME,ID FROM " + tableName
+						+ " WHERE FILE_ID=?");
+		try {
+			statement.setInt(1, fileId);
+			final ResultSet result = statement.executeQuery();
+			try {
+				while (result.next()) {
+					assertNull(ids.put(result.getString(1),
+							Integer.valueOf(result.getInt(2))));
+				}
+			} finally {
+				result.close();
+			}
+		} finally {
+			statement.close();
+		}
+		return ids;
+	}
+
+	/**
+	 * Returns the n-gram postings of the file, each gram must be posted once
+	 */
+	private Set<Long> selectGrams(int fileId) throws SQLException {
+		final Set<Long> grams = new HashSet<Long>();
+		final PreparedStatement statement = connection
+				.prepareStatement("SELECT GRAM FROM " + tableName
+						+ "_NGRAMS WHERE FILE_ID=?");
+		try {
+			statement.setInt(1, fileId);
+			final ResultSet result = statement.executeQuery();
+			try {
+				while (result.next()) {
+					assertTrue(grams.add(Long.valueOf(result.getLong(1))));
+				}
+			} finally {
+				result.close();
+			}
+		} finally {
+			statement.close();
+		}
+		return grams;
+	}
+
+	private static Set<Long> grams(String... names) {
+		final Set<Long> grams = new HashSet<Long>();
+		for (String name : names) {
+			NameGrams.addGrams(grams, name);
+		}
+		return grams;
+	}
+
+	private static List<String> cachedNames(int fileId) {
+		final List<String> names = new ArrayList<String>();
+		for (Element element : H2Cache.selectElementsByFileId(fileId)) {
+			names.add(element.getName());
+		}
+		Collections.sort(names);
+		return names;
+	}
+
+	private static List<String> list(String... names) {
+		final List<String> result = new ArrayList<String>();
+		Collections.addAll(result, names);
+		return result;
+	}
+
+	@Test
+	public void insertions() throws SQLException {
+		final int fileId = insertFile("insert");
+		insert(fileId, "Foo", "NullPointerException");
+		assertTrue(cachedNames(fileId).isEmpty());
+		commit();
+		assertEquals(2, selectIds(fileId).size());
+		assertEquals(grams("Foo", "NullPointerException"), selectGrams(fileId));
+		assertEquals(list("Foo", "NullPointerException"), cachedNames(fileId));
+	}
+
+	@Test
+	public void discardedInsertionsAreNotWritten() throws SQLException {
+		final int kept = insertFile("kept");
+		final int discarded = insertFile("discarded");
+		insert(kept, "Foo");
+		insert(discarded, "Bar");
+		elementDao.discardInsertions(discarded);
+		commit();
+		assertEquals(1, selectIds(kept).size());
+		assertTrue(selectIds(discarded).isEmpty());
+		assertTrue(selectGrams(discarded).isEmpty());
+		assertTrue(cachedNames(discarded).isEmpty());
+		assertEquals(list("Foo"), cachedNames(kept));
+	}
+
+	/**
+	 * Only the changed rows and the changed grams are deleted and inserted
+	 */
+	@Test
+	public void updateReplacesChangedRows() throws SQLException {
+		final int fileId = insertFile("update");
+		insert(fileId, "Foo", "Bar", "NullPointerException");
+		commit();
+		final Map<String, Integer> ids = selectIds(fileId);
+
+		elementDao.beginUpdate(connection, fileId, NATURE);
+		insert(fileId, "Foo", "Baz", "NullPointerException");
+		commit();
+
+		final Map<String, Integer> updated = selectIds(fileId);
+		assertEquals(3, updated.size());
+		assertFalse(updated.containsKey("Bar"));
+		assertEquals(ids.get("Foo"), updated.get("Foo"));
+		assertFalse(ids.containsValue(updated.get("Baz")));
+		assertEquals(ids.get("NullPointerException"),
+				updated.get("NullPointerException"));
+		assertEquals(grams("Foo", "Baz", "NullPointerException"),
+				selectGrams(fileId));
+		assertEquals(list("Baz", "Foo", "NullPointerException"),
+				cachedNames(fileId));
+	}
+
+	@Test
+	public void updateWithoutChanges() throws SQLException {
+		final int fileId = insertFile("same");
+		insert(fileId, "Foo", "Bar");
+		commit();
+		final Map<String, Integer> ids = selectIds(fileId);
+		final Set<Long> grams = selectGrams(fileId);
+
+		elementDao.beginUpdate(connection, fileId, NATURE);
+		insert(fileId, "Foo", "Bar");
+		commit();
+
+		assertEquals(ids, selectIds(fileId));
+		assertEquals(grams, selectGrams(fileId));
+		assertEquals(list("Bar", "Foo"), cachedNames(fileId));
+	}
+
+	@Test
+	public void updateRemovesAllRows() throws SQLException {
+		final int fileId = insertFile("removed");
+		insert(fileId, "Foo", "Bar");
+		commit();
+
+		elementDao.beginUpdate(connection, fileId, NATURE);
+		commit();
+
+		assertTrue(selectIds(fileId).isEmpty());
+		assertTrue(selectGrams(fileId).isEmpty());
+		assertTrue(cachedNames(fileId).isEmpty());
+	}
+
+	private List<String> query(String pattern, MatchRule matchRule,
+			int fileId, int limit) throws SQLException {
+		final ElementQuery query = new ElementQuery(tableName, false);
+		query.addName(pattern, matchRule);
+		query.addFiles(new int[] { fileId });
+		final List<String> names = new ArrayList<String>();
+		final PreparedStatement statement = query.prepare(connection, limit);
+		try {
+			final ResultSet result = statement.executeQuery();
+			try {
+				while (result.next()) {
+					final String name = result.getString("NAME"); //$NON-NLS-1$
+					if (query.accept(name)) {
+						names.add(name);
+					}
+				}
+			} finally {
+				result.close();
+			}
+		} finally {
+			statement.close();
+		}
+		Collections.sort(names);
+		return names;
+	}
+
+	@Test
+	public void camelCaseQuery() throws SQLException {
+		final int fileId = insertFile("camelCase");
+		insert(fileId, "NullPointerError", "NullPointerException",
+				"NoPermissionException", "getFooBar", "FooBar");
+		commit();
+		// both NullPointer* names are selected, so the limit is not applied
+		// by the database
+		assertEquals(list("NullPointerException"),
+				query("NuPoEx", MatchRule.CAMEL_CASE, fileId, 1));
+		assertEquals(list("NoPermissionException", "NullPointerException"),
+				query("NPE", MatchRule.CAMEL_CASE, fileId, 0));
+		assertEquals(list("getFooBar"),
+				query("gFB", MatchRule.CAMEL_CASE, fileId, 0));
+		assertEquals(list("FooBar"),
+				query("FB", MatchRule.CAMEL_CASE, fileId, 0));
+		assertEquals(list("NoPermissionException", "NullPointerException"),
+				query("NPExcep", MatchRule.CAMEL_CASE, fileId, 0));
+	}
+
+	@Test
+	public void patternAndSetQueries() throws SQLException {
+		final int fileId = insertFile("pattern");
+		insert(fileId, "IndexJob", "MyIndexingJob", "IndexTask", "Foo");
+		commit();
+		assertEquals(list("IndexJob", "MyIndexingJob"),
+				query("*Index*Job", MatchRule.PATTERN, fileId, 0));
+		assertEquals(list("Foo", "IndexTask"),
+				query("foo,indextask,bar", MatchRule.SET, fileId, 0));
+		assertEquals(1, query("Index", MatchRule.PREFIX, fileId, 1).size());
+	}
+
+}
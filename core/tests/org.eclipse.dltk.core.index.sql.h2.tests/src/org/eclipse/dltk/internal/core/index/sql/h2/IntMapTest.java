@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.index.sql.h2;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IntMapTest extends Assert {
+
+	@Test
+	public void putGetRemove() {
+		final IntMap<String> map = new IntMap<String>();
+		assertNull(map.put(1, "a"));
+		assertNull(map.put(-1, "b"));
+		assertNull(map.put(0, "c"));
+		assertEquals("a", map.put(1, "d"));
+		assertEquals(3, map.size());
+		assertEquals("d", map.get(1));
+		assertEquals("b", map.get(-1));
+		assertEquals("c", map.get(0));
+		assertNull(map.get(2));
+		assertTrue(map.containsKey(0));
+		assertFalse(map.containsKey(2));
+		assertEquals("b", map.remove(-1));
+		assertNull(map.remove(-1));
+		assertEquals(2, map.size());
+		assertFalse(map.containsKey(-1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void nullValueIsRejected() {
+		new IntMap<String>().put(1, null);
+	}
+
+	@Test
+	public void keysAndValues() {
+		final IntMap<Integer> map = new IntMap<Integer>(2);
+		for (int i = 0; i < 100; ++i) {
+			map.put(i * 16, Integer.valueOf(i));
+		}
+		final int[] keys = map.keys();
+		Arrays.sort(keys);
+		assertEquals(100, keys.length);
+		for (int i = 0; i < 100; ++i) {
+			assertEquals(i * 16, keys[i]);
+		}
+		assertEquals(100, new HashSet<Integer>(map.values()).size());
+	}
+
+	/**
+	 * The removal shifts back the colliding entries, which must stay
+	 * reachable after any sequence of the operations.
+	 */
+	@Test
+	public void sameAsHashMap() {
+		final Random random = new Random(1);
+		final IntMap<Integer> map = new IntMap<Integer>();
+		final Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+		for (int i = 0; i < 20000; ++i) {
+			final int key = random.nextInt(512);
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.remove(key), map.remove(key));
+			} else {
+				final Integer value = Integer.valueOf(i);
+				assertEquals(expected.put(key, value), map.put(key, value));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+		for (int key = 0; key < 512; ++key) {
+			assertEquals(expected.get(key), map.get(key));
+		}
+	}
+
+}
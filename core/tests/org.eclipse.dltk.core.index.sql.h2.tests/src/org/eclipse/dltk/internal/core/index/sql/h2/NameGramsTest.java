@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.index.sql.h2;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.dltk.compiler.CharOperation;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The grams of the pattern must be a subset of the grams of every name
+ * matching it, otherwise the posting table would filter out the matches.
+ */
+public class NameGramsTest extends Assert {
+
+	private static Set<Long> grams(String name) {
+		final Set<Long> grams = new HashSet<Long>();
+		NameGrams.addGrams(grams, name);
+		return grams;
+	}
+
+	private static boolean hasGrams(String name, Object[] grams) {
+		return grams(name).containsAll(Arrays.asList(grams));
+	}
+
+	@Test
+	public void patternGrams() {
+		final Object[] grams = NameGrams.getPatternGrams("*Index*Job");
+		assertNotNull(grams);
+		assertTrue(hasGrams("IndexJob", grams));
+		assertTrue(hasGrams("MyINDEXingJob", grams));
+		assertFalse(hasGrams("IndexTask", grams));
+		assertFalse(hasGrams("JobIndes", grams));
+	}
+
+	@Test
+	public void patternWithoutGrams() {
+		assertNull(NameGrams.getPatternGrams("*"));
+		assertNull(NameGrams.getPatternGrams("ab*cd?ef"));
+		assertNull(NameGrams.getPatternGrams("*Index\\*"));
+		// the wildcards of LIKE are not the literal characters
+		assertNull(NameGrams.getPatternGrams("a%b_c"));
+	}
+
+	private static void assertCamelCaseMatch(String pattern, String name,
+			boolean expected) {
+		assertEquals(expected, CharOperation.camelCaseMatch(
+				pattern.toCharArray(), name.toCharArray()));
+		if (expected) {
+			assertTrue(pattern + " " + name,
+					hasGrams(name, NameGrams.getCamelCaseGrams(pattern)));
+			assertTrue(name.startsWith(NameGrams.getFirstHump(pattern)));
+		}
+	}
+
+	@Test
+	public void camelCaseGramsOfMatchingNames() {
+		assertCamelCaseMatch("NPE", "NullPointerException", true);
+		assertCamelCaseMatch("NuPoEx", "NullPointerException", true);
+		assertCamelCaseMatch("NPExcep", "NullPointerException", true);
+		assertCamelCaseMatch("NullPointer", "NullPointerException", true);
+		assertCamelCaseMatch("N", "NullPointerException", true);
+		assertCamelCaseMatch("gFB", "getFooBar", true);
+		assertCamelCaseMatch("getFoo", "getFooBar", true);
+		assertCamelCaseMatch("get", "getFooBar", true);
+		assertCamelCaseMatch("NuPoEx", "NoPermissionException", false);
+	}
+
+	@Test
+	public void camelCaseGramsExcludeOtherNames() {
+		// the upper case letters differ
+		assertFalse(hasGrams("NewPerfData", NameGrams.getCamelCaseGrams("NPE")));
+		// the hump is not in the name
+		assertFalse(hasGrams("NullPointerError",
+				NameGrams.getCamelCaseGrams("NPExcep")));
+	}
+
+	@Test
+	public void firstHump() {
+		assertEquals("Nu", NameGrams.getFirstHump("NuPoEx"));
+		assertEquals("N", NameGrams.getFirstHump("NPE"));
+		assertEquals("g", NameGrams.getFirstHump("gFB"));
+		assertEquals("foo", NameGrams.getFirstHump("foo"));
+	}
+
+	@Test
+	public void upperCaseLetters() {
+		assertEquals("NPE", NameGrams.getUpperCaseLetters("NullPointerException"));
+		assertEquals("FB", NameGrams.getUpperCaseLetters("getFooBar"));
+		assertNull(NameGrams.getUpperCaseLetters("foo"));
+	}
+
+}
@@ -16,20 +16,36 @@ import junit.framework.TestSuite;
 import org.eclipse.dltk.core.tests.builder.BuildParticipantManagerTests;
 import org.eclipse.dltk.core.tests.buildpath.BuildpathTests;
 import org.eclipse.dltk.core.tests.cache.CacheTests;
+import org.eclipse.dltk.core.tests.cache.MetadataStoreTests;
+import org.eclipse.dltk.core.tests.cache.PersistentASTCacheTests;
 import org.eclipse.dltk.core.tests.cache.SourceModuleInfoCacheTest;
 import org.eclipse.dltk.core.tests.compiler.CompilerCharOperationTests;
 import org.eclipse.dltk.core.tests.compiler.CompilerUtilTests;
+import org.eclipse.dltk.core.tests.ddp.BatchedSearchGoalTests;
 import org.eclipse.dltk.core.tests.ddp.CoreDDPTests;
+import org.eclipse.dltk.core.tests.ddp.GoalCacheTests;
+import org.eclipse.dltk.core.tests.ddp.ParallelGoalEngineTests;
 import org.eclipse.dltk.core.tests.launching.EnvironmentResolverTests;
 import org.eclipse.dltk.core.tests.launching.InterpreterConfigTests;
 import org.eclipse.dltk.core.tests.mixin.MixinIndexTests;
 import org.eclipse.dltk.core.tests.mixin.MixinModelTests;
 import org.eclipse.dltk.core.tests.model.BufferTests;
+import org.eclipse.dltk.core.tests.model.DeltaCoalescingTests;
+import org.eclipse.dltk.core.tests.model.HandleInterningTests;
+import org.eclipse.dltk.core.tests.model.ModelCacheTests;
 import org.eclipse.dltk.core.tests.model.ModelMembersTests;
 import org.eclipse.dltk.core.tests.model.NamespaceTests;
+import org.eclipse.dltk.core.tests.model.ParallelStructureBuilderTests;
+import org.eclipse.dltk.core.tests.model.TypeHierarchyTests;
 import org.eclipse.dltk.core.tests.model.WorkingCopyTests;
 import org.eclipse.dltk.core.tests.parser.SourceParserTests;
 import org.eclipse.dltk.core.tests.search.Bug387751Test;
+import org.eclipse.dltk.core.tests.search.IndexConcurrentQueryTest;
+import org.eclipse.dltk.core.tests.search.JobManagerTest;
+import org.eclipse.dltk.core.tests.search.LimitedSearchTest;
+import org.eclipse.dltk.core.tests.search.MappedDiskIndexTest;
+import org.eclipse.dltk.core.tests.search.ParallelSearchTest;
+import org.eclipse.dltk.core.tests.search.SnapshotSearchTest;
 import org.eclipse.dltk.core.tests.util.CharacterStackTests;
 import org.eclipse.dltk.core.tests.utils.CharOperationTests;
 import org.eclipse.dltk.core.tests.utils.IntListTests;
@@ -71,7 +87,23 @@ public class AllTests {
 		suite.addTest(new TestSuite(InternalCoreUtilTest.class));
 		suite.addTest(TextUtilsTest.suite());
 		suite.addTest(new JUnit4TestAdapter(Bug387751Test.class));
+		suite.addTest(new JUnit4TestAdapter(IndexConcurrentQueryTest.class));
+		suite.addTest(new JUnit4TestAdapter(SnapshotSearchTest.class));
+		suite.addTest(new JUnit4TestAdapter(ParallelSearchTest.class));
+		suite.addTest(new JUnit4TestAdapter(LimitedSearchTest.class));
+		suite.addTest(new JUnit4TestAdapter(JobManagerTest.class));
+		suite.addTest(new JUnit4TestAdapter(MappedDiskIndexTest.class));
 		suite.addTest(new JUnit4TestAdapter(SourceModuleInfoCacheTest.class));
+		suite.addTest(new JUnit4TestAdapter(ModelCacheTests.class));
+		suite.addTest(new JUnit4TestAdapter(PersistentASTCacheTests.class));
+		suite.addTest(new JUnit4TestAdapter(ParallelStructureBuilderTests.class));
+		suite.addTest(new JUnit4TestAdapter(MetadataStoreTests.class));
+		suite.addTest(new JUnit4TestAdapter(TypeHierarchyTests.class));
+		suite.addTest(new JUnit4TestAdapter(DeltaCoalescingTests.class));
+		suite.addTest(new JUnit4TestAdapter(HandleInterningTests.class));
+		suite.addTest(new JUnit4TestAdapter(GoalCacheTests.class));
+		suite.addTest(new JUnit4TestAdapter(ParallelGoalEngineTests.class));
+		suite.addTest(new JUnit4TestAdapter(BatchedSearchGoalTests.class));
 		// $JUnit-END$
 		return suite;
 	}
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.cache;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.dltk.internal.core.caching.MetadataStore;
+import org.eclipse.dltk.internal.core.caching.MetadataStore.Entry;
+import org.eclipse.dltk.internal.core.caching.MetadataStore.Key;
+import org.eclipse.dltk.internal.core.caching.MetadataStore.Value;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MetadataStoreTests extends Assert {
+
+	private static final String ENVIRONMENT = "local";
+
+	@Rule
+	public final TemporaryFolder temp = new TemporaryFolder();
+
+	private static Key key(int i) {
+		return new Key(ENVIRONMENT, "/folder/module" + i + ".txt");
+	}
+
+	private static byte[] data(int i, int length) {
+		final byte[] data = new byte[length];
+		Arrays.fill(data, (byte) i);
+		return data;
+	}
+
+	private static byte[] read(MetadataStore store, Key key, String attribute) {
+		final Entry entry = store.get(key);
+		if (entry == null) {
+			return null;
+		}
+		final Value value = entry.get(attribute);
+		return value != null ? store.read(value) : null;
+	}
+
+	private static int countFiles(File directory, String suffix) {
+		int count = 0;
+		for (String name : directory.list()) {
+			if (name.endsWith(suffix)) {
+				++count;
+			}
+		}
+		return count;
+	}
+
+	@Test
+	public void entriesAreKeptBetweenSessions() throws Exception {
+		final File directory = temp.newFolder("metadata");
+		MetadataStore store = new MetadataStore(directory);
+		for (int i = 0; i < 100; ++i) {
+			assertTrue(store.put(key(i), 1000 + i, "a", data(i, 10)).isEmpty());
+		}
+		store.putFile(key(0), 1000, "file", "1/2/3.idx");
+		// the unsaved tail of the log is replayed
+		store.close();
+		store = new MetadataStore(directory);
+		assertArrayEquals(data(5, 10), read(store, key(5), "a"));
+		assertEquals(1005, store.get(key(5)).getTimestamp());
+		assertEquals("1/2/3.idx", store.get(key(0)).get("file").getLocation());
+		// the entries are read from the index
+		store.save(true);
+		assertEquals(1, countFiles(directory, ".idx"));
+		store.close();
+		store = new MetadataStore(directory);
+		for (int i = 0; i < 100; ++i) {
+			assertArrayEquals(data(i, 10), read(store, key(i), "a"));
+		}
+		assertEquals("1/2/3.idx", store.get(key(0)).get("file").getLocation());
+		assertNull(store.get(key(100)));
+		store.close();
+	}
+
+	@Test
+	public void removedEntriesStayRemoved() throws Exception {
+		final File directory = temp.newFolder("metadata");
+		MetadataStore store = new MetadataStore(directory);
+		store.put(key(1), 1, "a", data(1, 10));
+		store.put(key(1), 1, "b", data(2, 10));
+		store.put(key(2), 1, "a", data(3, 10));
+		store.save(true);
+		assertEquals(1, store.remove(key(1), "a").size());
+		assertEquals(1, store.clear(key(2)).size());
+		// the new timestamp replaces all the attributes
+		store.put(key(3), 1, "a", data(4, 10));
+		final List<Value> replaced = store.put(key(3), 2, "b", data(5, 10));
+		assertEquals(1, replaced.size());
+		store.close();
+		store = new MetadataStore(directory);
+		assertNull(read(store, key(1), "a"));
+		assertArrayEquals(data(2, 10), read(store, key(1), "b"));
+		assertNull(store.get(key(2)));
+		assertNull(store.get(key(3)).get("a"));
+		assertEquals(2, store.get(key(3)).getTimestamp());
+		store.save(true);
+		store.close();
+		store = new MetadataStore(directory);
+		assertNull(store.get(key(2)));
+		assertArrayEquals(data(5, 10), read(store, key(3), "b"));
+		assertEquals(2, store.clear().size());
+		assertNull(store.get(key(1)));
+		store.close();
+	}
+
+	@Test
+	public void garbageIsCompacted() throws Exception {
+		final File directory = temp.newFolder("metadata");
+		MetadataStore store = new MetadataStore(directory);
+		final int length = 600 * 1024;
+		store.put(key(0), 1, "small", data(7, 10));
+		for (int i = 0; i < 3; ++i) {
+			store.put(key(1), 1, "large", data(i, length));
+		}
+		store.save(true);
+		assertEquals(1, countFiles(directory, ".log"));
+		long total = 0;
+		for (File file : directory.listFiles()) {
+			total += file.length();
+		}
+		assertTrue(total < 2 * length);
+		assertArrayEquals(data(2, length), read(store, key(1), "large"));
+		store.close();
+		store = new MetadataStore(directory);
+		assertArrayEquals(data(7, 10), read(store, key(0), "small"));
+		assertArrayEquals(data(2, length), read(store, key(1), "large"));
+		store.close();
+	}
+
+	@Test
+	public void readersRunConcurrently() throws Exception {
+		final File directory = temp.newFolder("metadata");
+		final MetadataStore store = new MetadataStore(directory);
+		final int count = 1000;
+		for (int i = 0; i < count; ++i) {
+			store.put(key(i), 1, "a", data(i, 100));
+		}
+		store.save(true);
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for (int t = 0; t < 4; ++t) {
+				final int writer = t;
+				results.add(executor.submit(new Callable<Boolean>() {
+					public Boolean call() {
+						for (int i = 0; i < count; ++i) {
+							if (!Arrays.equals(data(i, 100),
+									read(store, key(i), "a"))) {
+								return false;
+							}
+							if (writer == 0 && i % 10 == 0) {
+								store.put(key(count + i), 1, "a", data(i, 100));
+							}
+						}
+						return true;
+					}
+				}));
+			}
+			for (Future<Boolean> result : results) {
+				assertTrue(result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertArrayEquals(data(990, 100), read(store, key(count + 990), "a"));
+		store.close();
+	}
+
+}
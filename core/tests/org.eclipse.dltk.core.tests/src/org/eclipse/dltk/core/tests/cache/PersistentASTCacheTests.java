@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.cache;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
+import org.eclipse.dltk.ast.declarations.TypeDeclaration;
+import org.eclipse.dltk.ast.parser.IASTCache.ASTCacheEntry;
+import org.eclipse.dltk.ast.parser.IASTSerializer;
+import org.eclipse.dltk.ast.parser.IModuleDeclaration;
+import org.eclipse.dltk.compiler.problem.DefaultProblem;
+import org.eclipse.dltk.compiler.problem.ProblemCollector;
+import org.eclipse.dltk.compiler.problem.ProblemSeverity;
+import org.eclipse.dltk.internal.core.caching.ASTCacheStore;
+import org.eclipse.dltk.internal.core.caching.PersistentASTCache;
+import org.eclipse.dltk.internal.core.caching.PersistentASTCache.UnsupportedProblemException;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PersistentASTCacheTests extends Assert {
+
+	@Rule
+	public final TemporaryFolder temp = new TemporaryFolder();
+
+	private static byte[] key(int value) {
+		final byte[] key = new byte[ASTCacheStore.KEY_LENGTH];
+		key[0] = (byte) value;
+		key[1] = (byte) (value >> 8);
+		return key;
+	}
+
+	private static byte[] bytes(ByteBuffer buffer) {
+		final byte[] result = new byte[buffer.remaining()];
+		buffer.duplicate().get(result);
+		return result;
+	}
+
+	/**
+	 * Writes the module length and the names and the positions of its types.
+	 */
+	static class TypesSerializer implements IASTSerializer {
+		public int getSerializationVersion() {
+			return 1;
+		}
+
+		public void writeModule(IModuleDeclaration module, DataOutput out)
+				throws IOException {
+			final ModuleDeclaration declaration = (ModuleDeclaration) module;
+			out.writeInt(declaration.sourceEnd());
+			final TypeDeclaration[] types = declaration.getTypes();
+			out.writeInt(types.length);
+			for (TypeDeclaration type : types) {
+				out.writeUTF(type.getName());
+				out.writeInt(type.getNameStart());
+				out.writeInt(type.getNameEnd());
+				out.writeInt(type.sourceStart());
+				out.writeInt(type.sourceEnd());
+			}
+		}
+
+		public IModuleDeclaration readModule(DataInput in) throws IOException {
+			final ModuleDeclaration module = new ModuleDeclaration(in.readInt());
+			final int count = in.readInt();
+			for (int i = 0; i < count; ++i) {
+				module.addStatement(new TypeDeclaration(in.readUTF(), in
+						.readInt(), in.readInt(), in.readInt(), in.readInt()));
+			}
+			return module;
+		}
+	}
+
+	@Test
+	public void entryRoundTrip() throws Exception {
+		final ModuleDeclaration module = new ModuleDeclaration(100);
+		module.addStatement(new TypeDeclaration("A", 6, 7, 0, 50));
+		module.addStatement(new TypeDeclaration("B", 56, 57, 50, 100));
+		final ProblemCollector problems = new ProblemCollector();
+		problems.reportProblem(new DefaultProblem("file", "message", null,
+				new String[] { "x", null }, ProblemSeverity.ERROR, 1, 2, 3, 4));
+		problems.reportProblem(new DefaultProblem("warning", null, null,
+				ProblemSeverity.WARNING, 5, 6, 7));
+
+		final TypesSerializer serializer = new TypesSerializer();
+		final ASTCacheEntry entry = PersistentASTCache.decode(serializer,
+				ByteBuffer.wrap(PersistentASTCache.encode(serializer, module,
+						problems)));
+		final ModuleDeclaration restored = (ModuleDeclaration) entry.module;
+		assertNotSame(module, restored);
+		assertEquals(2, restored.getTypes().length);
+		final TypeDeclaration restoredType = restored.getTypes()[0];
+		assertEquals("A", restoredType.getName());
+		assertEquals(6, restoredType.getNameStart());
+		assertEquals(0, restoredType.sourceStart());
+		assertEquals(50, restoredType.sourceEnd());
+		assertEquals("B", restored.getTypes()[1].getName());
+		assertEquals(problems.getProblems(), entry.problems.getProblems());
+		final DefaultProblem problem = (DefaultProblem) entry.problems
+				.getProblems().get(0);
+		assertEquals("file", problem.getOriginatingFileName());
+		assertTrue(Arrays.equals(new String[] { "x", null },
+				problem.getArguments()));
+		assertEquals(4, problem.getColumn());
+		assertTrue(entry.problems.hasErrors());
+	}
+
+	@Test
+	public void entryWithoutProblems() throws Exception {
+		final TypesSerializer serializer = new TypesSerializer();
+		final ASTCacheEntry entry = PersistentASTCache.decode(serializer,
+				ByteBuffer.wrap(PersistentASTCache.encode(serializer,
+						new ModuleDeclaration(0), null)));
+		assertEquals(0, ((ModuleDeclaration) entry.module).getTypes().length);
+		assertNull(entry.problems);
+	}
+
+	@Test(expected = UnsupportedProblemException.class)
+	public void entryRejectsOtherProblems() throws Exception {
+		final ProblemCollector problems = new ProblemCollector();
+		problems.reportProblem(new DefaultProblem("message", null, null,
+				ProblemSeverity.ERROR, 1, 2, 3) {
+			// the state of the subclasses is not known
+		});
+		PersistentASTCache.encode(new TypesSerializer(), new ModuleDeclaration(
+				0), problems);
+	}
+
+	@Test(expected = IOException.class)
+	public void entryRejectsTruncatedData() throws Exception {
+		final TypesSerializer serializer = new TypesSerializer();
+		final ModuleDeclaration module = new ModuleDeclaration(10);
+		module.addStatement(new TypeDeclaration("A", 0, 1, 0, 10));
+		final byte[] data = PersistentASTCache.encode(serializer, module,
+				new ProblemCollector());
+		PersistentASTCache.decode(serializer,
+				ByteBuffer.wrap(data, 0, data.length - 3));
+	}
+
+	@Test
+	public void storeKeepsRecordsBetweenSessions() throws Exception {
+		final File directory = temp.newFolder("store");
+		ASTCacheStore store = new ASTCacheStore(directory, 1 << 20);
+		store.put(key(1), new byte[] { 1, 2, 3 });
+		store.put(key(2), new byte[] { 4, 5 });
+		store.put(key(1), new byte[] { 6 });
+		store.close();
+
+		store = new ASTCacheStore(directory, 1 << 20);
+		assertTrue(Arrays.equals(new byte[] { 6 }, bytes(store.get(key(1)))));
+		assertTrue(Arrays.equals(new byte[] { 4, 5 }, bytes(store.get(key(2)))));
+		assertNull(store.get(key(3)));
+		store.remove(key(2));
+		assertNull(store.get(key(2)));
+		store.close();
+	}
+
+	@Test
+	public void storeEvictsOldestSegments() throws Exception {
+		final long maxSize = 4 << 20;
+		final ASTCacheStore store = new ASTCacheStore(temp.newFolder("evict"),
+				maxSize);
+		final byte[] data = new byte[64 * 1024];
+		for (int i = 0; i < 256; ++i) {
+			store.put(key(i), data);
+		}
+		assertTrue(store.size() <= maxSize);
+		assertNull(store.get(key(0)));
+		assertNotNull(store.get(key(255)));
+		store.close();
+	}
+
+	@Test
+	public void storeReadsActiveSegmentAfterPut() throws Exception {
+		final ASTCacheStore store = new ASTCacheStore(temp.newFolder("active"),
+				1 << 20);
+		for (int i = 0; i < 100; ++i) {
+			store.put(key(i), new byte[] { (byte) i, 1 });
+			assertTrue(Arrays.equals(new byte[] { (byte) i, 1 },
+					bytes(store.get(key(i)))));
+			assertTrue(Arrays.equals(new byte[] { 0, 1 },
+					bytes(store.get(key(0)))));
+		}
+		store.close();
+	}
+
+}
@@ -17,6 +17,11 @@ import static org.hamcrest.CoreMatchers.not;
 import java.io.ByteArrayInputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IResource;
@@ -26,6 +31,7 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.dltk.core.IModelElement;
 import org.eclipse.dltk.core.IScriptFolder;
 import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.ISourceModuleInfoCache.ISourceModuleInfo;
 import org.eclipse.dltk.core.ModelException;
 import org.eclipse.dltk.core.SourceParserUtil;
 import org.eclipse.dltk.core.tests.ProjectSetup;
@@ -201,4 +207,32 @@ public class SourceModuleInfoCacheTest extends Assert {
 		assertThat(modules.get(0), not(IS_CACHED));
 	}
 
+	@Test
+	public void concurrentGet() throws Exception {
+		final ISourceModule module = project.getSourceModule("src",
+				"folder1/a.txt");
+		assertNotNull(module);
+		final int threads = 8;
+		final CyclicBarrier barrier = new CyclicBarrier(threads);
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			final List<Future<ISourceModuleInfo>> futures = new ArrayList<Future<ISourceModuleInfo>>();
+			for (int i = 0; i < threads; ++i) {
+				futures.add(executor.submit(new Callable<ISourceModuleInfo>() {
+					public ISourceModuleInfo call() throws Exception {
+						barrier.await();
+						return getCache().get(module);
+					}
+				}));
+			}
+			final ISourceModuleInfo info = futures.get(0).get();
+			for (Future<ISourceModuleInfo> future : futures) {
+				assertSame(info, future.get());
+			}
+			assertEquals(1, getCache().size());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 }
@@ -0,0 +1,326 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.ddp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.dltk.ast.expressions.CallExpression;
+import org.eclipse.dltk.ast.references.SimpleReference;
+import org.eclipse.dltk.core.DLTKLanguageManager;
+import org.eclipse.dltk.core.IDLTKLanguageToolkit;
+import org.eclipse.dltk.core.IType;
+import org.eclipse.dltk.core.search.FieldReferenceMatch;
+import org.eclipse.dltk.core.search.MethodReferenceMatch;
+import org.eclipse.dltk.core.search.SearchMatch;
+import org.eclipse.dltk.core.search.SearchPattern;
+import org.eclipse.dltk.core.tests.model.ModelTestsPlugin;
+import org.eclipse.dltk.internal.core.search.matching.FieldPattern;
+import org.eclipse.dltk.internal.core.search.matching.MethodPattern;
+import org.eclipse.dltk.ti.GoalEngine;
+import org.eclipse.dltk.ti.GoalState;
+import org.eclipse.dltk.ti.IGoalEvaluatorFactory;
+import org.eclipse.dltk.ti.goals.ExpressionTypeGoal;
+import org.eclipse.dltk.ti.goals.FieldReferencesGoal;
+import org.eclipse.dltk.ti.goals.FieldReferencesGoalEvaluator;
+import org.eclipse.dltk.ti.goals.GoalEvaluator;
+import org.eclipse.dltk.ti.goals.IGoal;
+import org.eclipse.dltk.ti.goals.ItemReference;
+import org.eclipse.dltk.ti.goals.MethodCallsGoal;
+import org.eclipse.dltk.ti.goals.MethodCallsGoalEvaluator;
+import org.eclipse.dltk.ti.goals.PossiblePosition;
+import org.eclipse.dltk.ti.goals.SearchBasedGoalEvaluator;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The searches of the search based goals combined by the {@link GoalEngine}.
+ */
+public class BatchedSearchGoalTests extends Assert {
+
+	private final List<String> events = Collections
+			.synchronizedList(new ArrayList<String>());
+
+	private final List<Thread> searchThreads = Collections
+			.synchronizedList(new ArrayList<Thread>());
+	private volatile CountDownLatch latch;
+	private volatile boolean overlapping;
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	private class ReferencesEvaluator extends SearchBasedGoalEvaluator {
+		ReferencesEvaluator(IGoal goal) {
+			super(goal);
+		}
+
+		@Override
+		public IGoal[] getPossiblePositionsGoals() {
+			// called when the search is finished
+			searchThreads.add(Thread.currentThread());
+			if (latch != null) {
+				latch.countDown();
+			}
+			return super.getPossiblePositionsGoals();
+		}
+
+		@Override
+		protected SearchPattern createSearchPattern(
+				IDLTKLanguageToolkit toolkit) {
+			return null;
+		}
+
+		@Override
+		protected IGoal createVerificationGoal(PossiblePosition pos) {
+			return null;
+		}
+
+		@Override
+		public Object produceResult() {
+			events.add("result " + ((FieldReferencesGoal) goal).getName());
+			return super.produceResult();
+		}
+	}
+
+	private class InitializingEvaluator extends ReferencesEvaluator {
+		InitializingEvaluator(IGoal goal) {
+			super(goal);
+		}
+
+		@Override
+		public IGoal[] init() {
+			events.add("init " + ((FieldReferencesGoal) goal).getName());
+			return IGoal.NO_GOALS;
+		}
+	}
+
+	private class RootEvaluator extends GoalEvaluator {
+		final List<Object> results = new ArrayList<Object>();
+
+		RootEvaluator(IGoal goal) {
+			super(goal);
+		}
+
+		@Override
+		public IGoal[] init() {
+			return new IGoal[] { new FieldReferencesGoal(null, "a", null),
+					new FieldReferencesGoal(null, "b", null),
+					new FieldReferencesGoal(null, "own", null),
+					new ExpressionTypeGoal(null, new SimpleReference(0, 0,
+							"plain")) };
+		}
+
+		@Override
+		public IGoal[] subGoalDone(IGoal subgoal, Object result,
+				GoalState state) {
+			if (subgoal instanceof ExpressionTypeGoal) {
+				events.add("done plain");
+			}
+			results.add(result);
+			return IGoal.NO_GOALS;
+		}
+
+		@Override
+		public Object produceResult() {
+			return results;
+		}
+	}
+
+	private class PlainEvaluator extends GoalEvaluator {
+		PlainEvaluator(IGoal goal) {
+			super(goal);
+		}
+
+		@Override
+		public IGoal[] init() {
+			if (latch != null) {
+				try {
+					overlapping = latch.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return IGoal.NO_GOALS;
+		}
+
+		@Override
+		public IGoal[] subGoalDone(IGoal subgoal, Object result,
+				GoalState state) {
+			return IGoal.NO_GOALS;
+		}
+
+		@Override
+		public Object produceResult() {
+			return "plain";
+		}
+	}
+
+	private final IGoalEvaluatorFactory factory = new IGoalEvaluatorFactory() {
+		public GoalEvaluator createEvaluator(IGoal goal) {
+			if (goal instanceof FieldReferencesGoal) {
+				if ("own".equals(((FieldReferencesGoal) goal).getName())) {
+					return new InitializingEvaluator(goal);
+				}
+				return new ReferencesEvaluator(goal);
+			}
+			final String name = ((SimpleReference) ((ExpressionTypeGoal) goal)
+					.getExpression()).getName();
+			if ("plain".equals(name)) {
+				return new PlainEvaluator(goal);
+			}
+			return new RootEvaluator(goal);
+		}
+	};
+
+	@Test
+	public void overriddenInitIsNotBatched() {
+		assertTrue(new ReferencesEvaluator(null).isBatchable());
+		assertFalse(new InitializingEvaluator(null).isBatchable());
+	}
+
+	@Test
+	public void searchesAreDeferredUntilQueueIsDrained() {
+		final Object result = new GoalEngine(factory).evaluateGoal(
+				new ExpressionTypeGoal(null, new SimpleReference(0, 0, "root")),
+				null);
+		assertEquals(
+				Arrays.asList("init own", "result own", "done plain",
+						"result a", "result b"), events);
+		final List<?> results = (List<?>) result;
+		assertEquals(4, results.size());
+		for (Object item : results) {
+			if (!"plain".equals(item)) {
+				assertEquals(0, ((ItemReference[]) item).length);
+			}
+		}
+	}
+
+	@Test
+	public void searchesAreSubmittedWithExecutor() {
+		latch = new CountDownLatch(2);
+		final Object result = new GoalEngine(factory, null, null, executor)
+				.evaluateGoal(new ExpressionTypeGoal(null, new SimpleReference(
+						0, 0, "root")), null);
+		assertEquals(4, ((List<?>) result).size());
+		// the batch is searched by a worker while the plain goal is
+		// initialized by another one
+		assertTrue(overlapping);
+		assertEquals(2, searchThreads.size());
+		assertNotSame(Thread.currentThread(), searchThreads.get(0));
+		assertTrue(events.containsAll(Arrays.asList("result a", "result b")));
+	}
+
+	private static class FieldEvaluator extends FieldReferencesGoalEvaluator {
+		FieldEvaluator(String name) {
+			super(new FieldReferencesGoal(null, name, null));
+		}
+
+		boolean accepts(SearchMatch match) {
+			return isMatch(match);
+		}
+	}
+
+	private static class MethodEvaluator extends MethodCallsGoalEvaluator {
+		MethodEvaluator(String name) {
+			super(new MethodCallsGoal(null, name, null));
+		}
+
+		boolean accepts(SearchMatch match) {
+			return isMatch(match);
+		}
+	}
+
+	private static FieldReferenceMatch fieldMatch(String name) {
+		return new FieldReferenceMatch(null, name != null ? new SimpleReference(
+				0, 1, name) : null, SearchMatch.A_ACCURATE, 0, 1, true, false,
+				false, null, null);
+	}
+
+	private static MethodReferenceMatch methodMatch(String name) {
+		return new MethodReferenceMatch(null, SearchMatch.A_ACCURATE, 0, 1,
+				false, false, false, null, null, name != null ? new CallExpression(
+						null, name, null) : null);
+	}
+
+	@Test
+	public void matchesAreDispatchedByKindAndName() {
+		final IDLTKLanguageToolkit toolkit = DLTKLanguageManager
+				.getLanguageToolkit(ModelTestsPlugin.TEST_NATURE);
+		final FieldEvaluator field = new FieldEvaluator("a");
+		final MethodEvaluator method = new MethodEvaluator("a");
+		assertTrue(field.isBatchable());
+		assertTrue(method.isBatchable());
+		field.getSearchPattern(toolkit);
+		method.getSearchPattern(toolkit);
+
+		assertTrue(field.accepts(fieldMatch("a")));
+		assertFalse(method.accepts(fieldMatch("a")));
+		assertTrue(method.accepts(methodMatch("a")));
+		assertFalse(field.accepts(methodMatch("a")));
+
+		assertFalse(field.accepts(fieldMatch("b")));
+		assertFalse(method.accepts(methodMatch("b")));
+
+		// the matches of the unknown nodes are not dispatched
+		assertFalse(field.accepts(fieldMatch(null)));
+		assertFalse(method.accepts(methodMatch(null)));
+	}
+
+	private static FieldPattern fieldPattern(String name, String declaringType,
+			boolean findDeclarations, IDLTKLanguageToolkit toolkit) {
+		return new FieldPattern(findDeclarations, true, false,
+				name.toCharArray(), null, declaringType != null ? declaringType
+						.toCharArray() : null, null, null,
+				SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE,
+				toolkit);
+	}
+
+	private static MethodPattern methodPattern(String name,
+			String declaringType, IDLTKLanguageToolkit toolkit) {
+		return new MethodPattern(false, true, name.toCharArray(), null,
+				declaringType != null ? declaringType.toCharArray() : null,
+				(IType) null, SearchPattern.R_EXACT_MATCH
+						| SearchPattern.R_CASE_SENSITIVE, toolkit);
+	}
+
+	@Test
+	public void onlyPatternsDifferingByNameAreCombined() {
+		final IDLTKLanguageToolkit toolkit = DLTKLanguageManager
+				.getLanguageToolkit(ModelTestsPlugin.TEST_NATURE);
+		final FieldPattern field = fieldPattern("a", null, false, toolkit);
+		assertTrue(field.equalsExceptName(fieldPattern("b", null, false,
+				toolkit)));
+		// the qualified pattern would receive the matches of the other types
+		assertFalse(field.equalsExceptName(fieldPattern("b", "T", false,
+				toolkit)));
+		assertFalse(field.equalsExceptName(fieldPattern("b", null, true,
+				toolkit)));
+		assertFalse(field.equalsExceptName(methodPattern("a", null, toolkit)));
+
+		final MethodPattern method = methodPattern("a", null, toolkit);
+		assertTrue(method.equalsExceptName(methodPattern("b", null, toolkit)));
+		assertFalse(method.equalsExceptName(methodPattern("b", "T", toolkit)));
+		assertFalse(method.equalsExceptName(field));
+	}
+
+}
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.ddp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.dltk.ast.expressions.Expression;
+import org.eclipse.dltk.ast.references.SimpleReference;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.IScriptFolder;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.ti.BasicContext;
+import org.eclipse.dltk.ti.EvaluatorStatistics;
+import org.eclipse.dltk.ti.GoalCache;
+import org.eclipse.dltk.ti.GoalEngine;
+import org.eclipse.dltk.ti.GoalState;
+import org.eclipse.dltk.ti.IGoalEvaluatorFactory;
+import org.eclipse.dltk.ti.IPruner;
+import org.eclipse.dltk.ti.goals.ExpressionTypeGoal;
+import org.eclipse.dltk.ti.goals.GoalEvaluator;
+import org.eclipse.dltk.ti.goals.IGoal;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The results of the goals reused by the next evaluations.
+ */
+public class GoalCacheTests extends Assert {
+
+	/**
+	 * Answers the name of the expression, after evaluating the specified
+	 * subgoals.
+	 */
+	private class NameEvaluator extends GoalEvaluator {
+		private final IGoal[] subgoals;
+
+		NameEvaluator(IGoal goal, IGoal[] subgoals) {
+			super(goal);
+			this.subgoals = subgoals;
+		}
+
+		@Override
+		public IGoal[] init() {
+			return subgoals;
+		}
+
+		@Override
+		public IGoal[] subGoalDone(IGoal subgoal, Object result,
+				GoalState state) {
+			return IGoal.NO_GOALS;
+		}
+
+		@Override
+		public Object produceResult() {
+			return ((SimpleReference) ((ExpressionTypeGoal) goal)
+					.getExpression()).getName();
+		}
+	}
+
+	private final List<IGoal> evaluated = new ArrayList<IGoal>();
+
+	private final IGoalEvaluatorFactory factory = new IGoalEvaluatorFactory() {
+		public GoalEvaluator createEvaluator(IGoal goal) {
+			evaluated.add(goal);
+			final Expression expression = ((ExpressionTypeGoal) goal)
+					.getExpression();
+			if (expression == x) {
+				return new NameEvaluator(goal, new IGoal[] { yGoal });
+			}
+			return new NameEvaluator(goal, IGoal.NO_GOALS);
+		}
+	};
+
+	private final Expression x = new SimpleReference(0, 0, "x");
+	private final Expression y = new SimpleReference(0, 0, "y");
+	private final Expression z = new SimpleReference(0, 0, "z");
+
+	private ISourceModule a;
+	private ISourceModule b;
+	private ISourceModule c;
+
+	private IGoal xGoal;
+	private IGoal yGoal;
+	private IGoal zGoal;
+
+	private GoalCache cache;
+
+	@Before
+	public void setUp() {
+		final IProject project = ResourcesPlugin.getWorkspace().getRoot()
+				.getProject("GoalCache");
+		final IScriptFolder folder = DLTKCore.create(project)
+				.getProjectFragment(project).getScriptFolder(Path.EMPTY);
+		a = folder.getSourceModule("a.txt");
+		b = folder.getSourceModule("b.txt");
+		c = folder.getSourceModule("c.txt");
+		xGoal = new ExpressionTypeGoal(new BasicContext(a, null), x);
+		yGoal = new ExpressionTypeGoal(new BasicContext(b, null), y);
+		zGoal = new ExpressionTypeGoal(new BasicContext(c, null), z);
+		cache = new GoalCache(GoalCache.DEFAULT_SIZE);
+	}
+
+	private Object evaluate(IGoal goal) {
+		return evaluate(goal, null);
+	}
+
+	private Object evaluate(IGoal goal, IPruner pruner) {
+		return new GoalEngine(factory, cache, GoalCacheTests.class)
+				.evaluateGoal(goal, pruner);
+	}
+
+	@Test
+	public void resultsAreReused() {
+		assertEquals("x", evaluate(xGoal));
+		assertEquals(2, evaluated.size());
+		assertEquals("x", evaluate(xGoal));
+		assertEquals(2, evaluated.size());
+		assertEquals(1, cache.getHits());
+	}
+
+	@Test
+	public void subgoalResultsAreReused() {
+		assertEquals("y", evaluate(yGoal));
+		evaluated.clear();
+		assertEquals("x", evaluate(xGoal));
+		assertEquals(1, evaluated.size());
+		assertSame(xGoal, evaluated.get(0));
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void incompleteResultsAreNotCached() {
+		final IPruner pruner = new IPruner() {
+			public void init() {
+			}
+
+			public boolean prune(IGoal goal, EvaluatorStatistics stat) {
+				return true;
+			}
+		};
+		assertEquals("x", evaluate(xGoal, pruner));
+		assertEquals(0, cache.size());
+		evaluated.clear();
+		assertEquals("x", evaluate(xGoal));
+		assertEquals(2, evaluated.size());
+	}
+
+	@Test
+	public void ownersAreSeparate() {
+		evaluate(zGoal);
+		new GoalEngine(factory, cache, Object.class).evaluateGoal(zGoal, null);
+		assertEquals(2, evaluated.size());
+	}
+
+	@Test
+	public void bodyChangeRemovesDependentResults() {
+		evaluate(xGoal);
+		evaluate(zGoal);
+		assertEquals(3, cache.size());
+		cache.invalidate(b, false);
+		assertEquals(1, cache.size());
+		evaluated.clear();
+		evaluate(zGoal);
+		assertTrue(evaluated.isEmpty());
+		evaluate(xGoal);
+		assertEquals(2, evaluated.size());
+		assertEquals(2, cache.getInvalidations());
+	}
+
+	@Test
+	public void structuralChangeRemovesProjectResults() {
+		evaluate(xGoal);
+		evaluate(zGoal);
+		cache.invalidate(c, true);
+		assertEquals(0, cache.size());
+		assertEquals(3, cache.getInvalidations());
+	}
+
+	@Test
+	public void leastRecentlyUsedAreEvicted() {
+		cache = new GoalCache(2);
+		evaluate(yGoal);
+		evaluate(zGoal);
+		evaluate(yGoal);
+		evaluate(xGoal);
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+		evaluated.clear();
+		evaluate(yGoal);
+		evaluate(zGoal);
+		assertEquals(1, evaluated.size());
+		assertSame(zGoal, evaluated.get(0));
+	}
+
+}
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.ddp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.dltk.ast.references.SimpleReference;
+import org.eclipse.dltk.ti.EvaluatorStatistics;
+import org.eclipse.dltk.ti.GoalEngine;
+import org.eclipse.dltk.ti.GoalState;
+import org.eclipse.dltk.ti.IGoalEvaluatorFactory;
+import org.eclipse.dltk.ti.IPruner;
+import org.eclipse.dltk.ti.goals.ExpressionTypeGoal;
+import org.eclipse.dltk.ti.goals.GoalEvaluator;
+import org.eclipse.dltk.ti.goals.IGoal;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The goals initialized in parallel by the {@link GoalEngine}.
+ */
+public class ParallelGoalEngineTests extends Assert {
+
+	/**
+	 * Requests the subgoals of the graph and answers the name of the
+	 * expression, remembers the states of the finished subgoals.
+	 */
+	private class GraphEvaluator extends GoalEvaluator {
+		final String name;
+		final List<GoalState> states = new ArrayList<GoalState>();
+
+		GraphEvaluator(IGoal goal) {
+			super(goal);
+			this.name = ((SimpleReference) ((ExpressionTypeGoal) goal)
+					.getExpression()).getName();
+		}
+
+		@Override
+		public IGoal[] init() {
+			if (name.equals(failing)) {
+				throw new IllegalStateException(name);
+			}
+			if (latch != null && name.length() == 1) {
+				latch.countDown();
+				try {
+					if (latch.await(10, TimeUnit.SECONDS)) {
+						overlapping.add(name);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			final String[] names = graph.get(name);
+			if (names == null) {
+				return IGoal.NO_GOALS;
+			}
+			final IGoal[] subgoals = new IGoal[names.length];
+			for (int i = 0; i < names.length; ++i) {
+				subgoals[i] = goal(names[i]);
+			}
+			return subgoals;
+		}
+
+		@Override
+		public IGoal[] subGoalDone(IGoal subgoal, Object result,
+				GoalState state) {
+			states.add(state);
+			return IGoal.NO_GOALS;
+		}
+
+		@Override
+		public Object produceResult() {
+			return name;
+		}
+	}
+
+	private final Map<String, String[]> graph = new HashMap<String, String[]>();
+	private final Map<String, IGoal> goals = new HashMap<String, IGoal>();
+	private final Map<String, GraphEvaluator> evaluators = new HashMap<String, GraphEvaluator>();
+
+	private volatile String failing;
+	private volatile CountDownLatch latch;
+	private final List<String> overlapping = Collections
+			.synchronizedList(new ArrayList<String>());
+
+	private final IGoalEvaluatorFactory factory = new IGoalEvaluatorFactory() {
+		public GoalEvaluator createEvaluator(IGoal goal) {
+			final GraphEvaluator evaluator = new GraphEvaluator(goal);
+			evaluators.put(evaluator.name, evaluator);
+			return evaluator;
+		}
+	};
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	private synchronized IGoal goal(String name) {
+		IGoal goal = goals.get(name);
+		if (goal == null) {
+			goal = new ExpressionTypeGoal(null,
+					new SimpleReference(0, 0, name));
+			goals.put(name, goal);
+		}
+		return goal;
+	}
+
+	private Object evaluate(IPruner pruner) {
+		return new GoalEngine(factory, null, null, executor).evaluateGoal(
+				goal("root"), pruner);
+	}
+
+	private List<GoalState> states(String name) {
+		return evaluators.get(name).states;
+	}
+
+	@Test
+	public void independentGoalsAreInitializedConcurrently() {
+		graph.put("root", new String[] { "a", "b", "c", "d" });
+		latch = new CountDownLatch(4);
+		assertEquals("root", evaluate(null));
+		assertEquals(4, overlapping.size());
+		assertEquals(4, states("root").size());
+	}
+
+	@Test
+	public void recursionIsDetected() {
+		graph.put("root", new String[] { "x" });
+		graph.put("x", new String[] { "y", "z" });
+		graph.put("y", new String[] { "x" });
+		assertEquals("root", evaluate(null));
+		assertEquals(Collections.singletonList(GoalState.RECURSIVE),
+				states("y"));
+		assertEquals(Collections.singletonList(GoalState.DONE),
+				states("root"));
+	}
+
+	@Test
+	public void goalRequestedDuringInitializationIsNotRecursive() {
+		graph.put("root", new String[] { "a", "b" });
+		graph.put("a", new String[] { "c" });
+		graph.put("b", new String[] { "c" });
+		assertEquals("root", evaluate(null));
+		assertEquals(Collections.singletonList(GoalState.DONE), states("a"));
+		assertEquals(Collections.singletonList(GoalState.DONE), states("b"));
+	}
+
+	@Test
+	public void subgoalsArePruned() {
+		graph.put("root", new String[] { "a", "b" });
+		graph.put("a", new String[] { "c" });
+		final IPruner pruner = new IPruner() {
+			public void init() {
+			}
+
+			public boolean prune(IGoal goal, EvaluatorStatistics stat) {
+				return goal == goal("c");
+			}
+		};
+		assertEquals("root", evaluate(pruner));
+		assertEquals(Collections.singletonList(GoalState.PRUNED), states("a"));
+		assertFalse(evaluators.containsKey("c"));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void exceptionsArePropagated() {
+		graph.put("root", new String[] { "a", "b" });
+		failing = "b";
+		evaluate(null);
+	}
+
+}
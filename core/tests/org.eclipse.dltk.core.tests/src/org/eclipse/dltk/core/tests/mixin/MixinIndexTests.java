@@ -91,6 +91,68 @@ public class MixinIndexTests extends TestCase {
 		assertEquals("B", docNames[0]);
 	}
 
+	private String[] queryKeys(String pattern, int matchRule)
+			throws IOException {
+		final EntryResult[] result = index.query(
+				new char[][] { IIndexConstants.MIXIN }, pattern.toCharArray(),
+				matchRule);
+		final String[] keys = new String[result.length];
+		for (int i = 0; i < result.length; ++i) {
+			keys[i] = new String(result[i].getWord());
+		}
+		Arrays.sort(keys);
+		return keys;
+	}
+
+	private void addKeys() {
+		index.addIndexEntry(IIndexConstants.MIXIN, "{foo".toCharArray(), "A");
+		index.addIndexEntry(IIndexConstants.MIXIN, "{foo{$a".toCharArray(), "A");
+		index.addIndexEntry(IIndexConstants.MIXIN, "{foo{$b".toCharArray(), "B");
+		index.addIndexEntry(IIndexConstants.MIXIN, "{fo".toCharArray(), "B");
+		index.addIndexEntry(IIndexConstants.MIXIN, "{bar".toCharArray(), "B");
+	}
+
+	public void testQueryPatterns() throws IOException {
+		addKeys();
+		final int pattern = SearchPattern.R_PATTERN_MATCH
+				| SearchPattern.R_CASE_SENSITIVE;
+		assertEquals(Arrays.asList("{foo", "{foo{$a", "{foo{$b"), Arrays
+				.asList(queryKeys("{foo*", pattern)));
+		assertEquals(Arrays.asList("{foo{$a", "{foo{$b"), Arrays
+				.asList(queryKeys("{foo{*", pattern)));
+		assertEquals(Arrays.asList("{foo{$b"), Arrays.asList(queryKeys(
+				"*$b", pattern)));
+		assertEquals(Arrays.asList("{foo"), Arrays.asList(queryKeys("{fo?",
+				SearchPattern.R_PATTERN_MATCH)));
+		assertEquals(Arrays.asList("{fo", "{foo", "{foo{$a", "{foo{$b"),
+				Arrays.asList(queryKeys("{fo",
+						SearchPattern.R_PREFIX_MATCH
+								| SearchPattern.R_CASE_SENSITIVE)));
+		assertEquals(Arrays.asList("{fo"), Arrays.asList(queryKeys("{fo",
+				SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE)));
+		assertEquals(Arrays.asList("{foo"), Arrays.asList(queryKeys("{FOO",
+				SearchPattern.R_EXACT_MATCH)));
+		assertEquals(0, queryKeys("{baz*", pattern).length);
+	}
+
+	public void testRemoveKeys() throws IOException {
+		addKeys();
+		final int pattern = SearchPattern.R_PATTERN_MATCH
+				| SearchPattern.R_CASE_SENSITIVE;
+		index.remove("A");
+		assertEquals(Arrays.asList("{fo", "{foo{$b"), Arrays.asList(queryKeys(
+				"{fo*", pattern)));
+		index.save();
+		index = createIndex(false);
+		assertEquals(Arrays.asList("{bar", "{fo", "{foo{$b"), Arrays
+				.asList(queryKeys("*", pattern)));
+		index.remove("B");
+		assertEquals(0, queryKeys("*", pattern).length);
+		index.addIndexEntry(IIndexConstants.MIXIN, "{foo".toCharArray(), "A");
+		assertEquals(Arrays.asList("{foo"), Arrays.asList(queryKeys("{f*",
+				pattern)));
+	}
+
 	public void testDocumentsWithoutKeys() throws IOException {
 		index.addDocumentName("A");
 		assertTrue(index.hasChanged());
@@ -11,6 +11,13 @@
  *******************************************************************************/
 package org.eclipse.dltk.core.tests.mixin;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import junit.framework.TestCase;
 
 import org.eclipse.core.resources.IProject;
@@ -74,4 +81,35 @@ public class MixinModelTests extends AbstractModelTests {
 			model.stop();
 		}
 	}
+
+	public void testConcurrentLookups() throws Throwable {
+		final MixinModel model = new MixinModel(TestLanguageToolkit
+				.getDefault());
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+			for (int i = 0; i < 16; ++i) {
+				final boolean lookup = i % 2 == 0;
+				results.add(executor.submit(new Callable<Integer>() {
+					public Integer call() {
+						if (lookup) {
+							final IMixinElement element = model.get("{foo");
+							return element != null ? element.getChildren().length
+									: -1;
+						}
+						return model.find("{foo*").length;
+					}
+				}));
+			}
+			for (int i = 0; i < results.size(); ++i) {
+				TestCase.assertEquals(i % 2 == 0 ? 2 : 3, results.get(i).get()
+						.intValue());
+			}
+			TestCase.assertTrue(model.keyExists("{foo{$b"));
+			TestCase.assertFalse(model.keyExists("{bar"));
+		} finally {
+			executor.shutdown();
+			model.stop();
+		}
+	}
 }
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.model;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.ElementChangedEvent;
+import org.eclipse.dltk.core.IBuildpathEntry;
+import org.eclipse.dltk.core.IElementChangedListener;
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.IModelElementDelta;
+import org.eclipse.dltk.internal.core.DeltaCoalescer;
+import org.eclipse.dltk.internal.core.ModelManager;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The resource changes coalesced into a single delta when
+ * {@link DLTKCore#DELTA_COALESCING_DELAY} is set.
+ */
+public class DeltaCoalescingTests extends Assert {
+
+	private static final String PROJECT = "DeltaCoalescing";
+
+	private final List<IModelElementDelta> deltas = new ArrayList<IModelElementDelta>();
+
+	private final IElementChangedListener listener = new IElementChangedListener() {
+		public void elementChanged(ElementChangedEvent event) {
+			synchronized (deltas) {
+				deltas.add(event.getDelta());
+			}
+		}
+	};
+
+	private final DeltaCoalescer coalescer = ModelManager.getModelManager().deltaState.coalescer;
+
+	private Hashtable<?, ?> oldOptions;
+	private IProject project;
+
+	@Before
+	public void setUp() throws CoreException {
+		oldOptions = DLTKCore.getOptions();
+		project = ResourcesPlugin.getWorkspace().getRoot().getProject(PROJECT);
+		project.create(null);
+		project.open(null);
+		final IProjectDescription description = project.getDescription();
+		description.setNatureIds(new String[] { ModelTestsPlugin.TEST_NATURE });
+		project.setDescription(description, null);
+		DLTKCore.create(project).setRawBuildpath(
+				new IBuildpathEntry[] { DLTKCore.newSourceEntry(project
+						.getFullPath()) }, null);
+		DLTKCore.addElementChangedListener(listener,
+				ElementChangedEvent.POST_CHANGE);
+	}
+
+	@After
+	public void tearDown() throws CoreException {
+		DLTKCore.removeElementChangedListener(listener);
+		DLTKCore.setOptions(oldOptions);
+		coalescer.flush();
+		project.delete(true, true, null);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void setDelay(String delay) {
+		final Hashtable<Object, Object> options = DLTKCore.getOptions();
+		options.put(DLTKCore.DELTA_COALESCING_DELAY, delay);
+		DLTKCore.setOptions(options);
+	}
+
+	private void createFile(String name) throws CoreException {
+		project.getFile(name).create(
+				new ByteArrayInputStream("# contents".getBytes()), true, null);
+	}
+
+	private int getDeltaCount() {
+		synchronized (deltas) {
+			return deltas.size();
+		}
+	}
+
+	private static int countAddedModules(IModelElementDelta delta) {
+		if (delta.getElement().getElementType() == IModelElement.SOURCE_MODULE) {
+			return delta.getKind() == IModelElementDelta.ADDED ? 1 : 0;
+		}
+		int count = 0;
+		for (IModelElementDelta child : delta.getAffectedChildren()) {
+			count += countAddedModules(child);
+		}
+		return count;
+	}
+
+	@Test
+	public void changesAreFiredImmediatelyByDefault() throws CoreException {
+		setDelay("0");
+		createFile("a.txt");
+		assertEquals(1, getDeltaCount());
+		createFile("b.txt");
+		assertEquals(2, getDeltaCount());
+	}
+
+	@Test
+	public void changesAreCoalesced() throws CoreException {
+		setDelay("600000");
+		coalescer.flush();
+		synchronized (deltas) {
+			deltas.clear();
+		}
+		final int events = coalescer.getEventCount();
+		final int mergedEvents = coalescer.getMergedEventCount();
+		final int notifications = coalescer.getNotificationCount();
+		final int indexRequests = coalescer.getIndexRequestCount();
+		final int count = 10;
+		for (int i = 0; i < count; ++i) {
+			createFile("module" + i + ".txt");
+		}
+		assertEquals(0, getDeltaCount());
+		// the model is updated immediately
+		assertEquals(count, DLTKCore.create(project).getProjectFragment(
+				project).getScriptFolder("").getSourceModules().length);
+		coalescer.flush();
+		assertEquals(1, getDeltaCount());
+		assertEquals(count, countAddedModules(deltas.get(0)));
+		assertEquals(count, coalescer.getEventCount() - events);
+		assertEquals(count - 1, coalescer.getMergedEventCount()
+				- mergedEvents);
+		assertEquals(1, coalescer.getNotificationCount() - notifications);
+		assertEquals(1, coalescer.getIndexRequestCount() - indexRequests);
+	}
+
+}
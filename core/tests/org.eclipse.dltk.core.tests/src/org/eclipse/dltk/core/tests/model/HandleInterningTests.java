@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.model;
+
+import java.io.ByteArrayInputStream;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.IBuildpathEntry;
+import org.eclipse.dltk.core.IMethod;
+import org.eclipse.dltk.core.IProjectFragment;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.IType;
+import org.eclipse.dltk.internal.core.ModelManager;
+import org.eclipse.dltk.internal.core.SourceRefElement;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The canonical instances of the handles and the shared names of the members.
+ */
+public class HandleInterningTests extends Assert {
+
+	private static final String PROJECT = "HandleInterning";
+
+	private final ModelManager manager = ModelManager.getModelManager();
+
+	private IProject project;
+	private IProjectFragment fragment;
+
+	@Before
+	public void setUp() throws CoreException {
+		project = ResourcesPlugin.getWorkspace().getRoot().getProject(PROJECT);
+		project.create(null);
+		project.open(null);
+		final IProjectDescription description = project.getDescription();
+		description.setNatureIds(new String[] { ModelTestsPlugin.TEST_NATURE });
+		project.setDescription(description, null);
+		DLTKCore.create(project).setRawBuildpath(
+				new IBuildpathEntry[] { DLTKCore.newSourceEntry(project
+						.getFullPath()) }, null);
+		fragment = DLTKCore.create(project).getProjectFragment(project);
+		for (String name : new String[] { "a.txt", "b.txt" }) {
+			project.getFile(name).create(
+					new ByteArrayInputStream("# contents".getBytes()), true,
+					null);
+		}
+	}
+
+	@After
+	public void tearDown() throws CoreException {
+		project.delete(true, true, null);
+	}
+
+	private ISourceModule getSourceModule(String name) {
+		return fragment.getScriptFolder(Path.EMPTY).getSourceModule(name);
+	}
+
+	@Test
+	public void namesAreShared() throws CoreException {
+		final IType type1 = getSourceModule("a.txt").getTypes()[0];
+		final IType type2 = getSourceModule("b.txt").getTypes()[0];
+		assertEquals("Class1", type1.getElementName());
+		assertSame(type1.getElementName(), type2.getElementName());
+		assertSame(type1.getElementName(), getSourceModule("b.txt").getType(
+				new String("Class1")).getElementName());
+	}
+
+	@Test
+	public void structureHandlesAreCanonical() throws CoreException {
+		final ISourceModule module = getSourceModule("a.txt");
+		final IType type = module.getTypes()[0];
+		final IMethod method = type.getMethods()[0];
+		module.close();
+		final ISourceModule reopened = getSourceModule("a.txt");
+		assertSame(type, reopened.getTypes()[0]);
+		assertSame(method, reopened.getTypes()[0].getMethods()[0]);
+		assertSame(type, manager.intern(reopened.getType("Class1")));
+	}
+
+	@Test
+	public void scriptFoldersAreCanonical() {
+		assertSame(fragment.getScriptFolder(new Path("folder")),
+				fragment.getScriptFolder(new Path("folder")));
+	}
+
+	@Test
+	public void occurrenceCountIsRespected() {
+		final IType first = getSourceModule("a.txt").getType("Duplicate");
+		final IType second = getSourceModule("a.txt").getType("Duplicate");
+		((SourceRefElement) second).occurrenceCount = 2;
+		final IType canonical = manager.intern(first);
+		assertSame(canonical, manager.intern(getSourceModule("a.txt")
+				.getType("Duplicate")));
+		assertNotSame(canonical, manager.intern(second));
+	}
+
+	@Test
+	public void nullIsNotInterned() {
+		assertNull(manager.intern((IType) null));
+	}
+
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.model;
+
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.IScriptProject;
+import org.eclipse.dltk.internal.core.ElementCache;
+import org.eclipse.dltk.internal.core.ModelCache;
+import org.eclipse.dltk.internal.core.ModelCacheStatistics;
+import org.eclipse.dltk.internal.core.ModelElementInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the weight based sizing of the model caches and their counters.
+ */
+public class ModelCacheTests extends Assert {
+
+	private static IScriptProject project(String name) {
+		return DLTKCore.create(ResourcesPlugin.getWorkspace().getRoot()
+				.getProject(name));
+	}
+
+	private static ModelElementInfo info(int childCount) {
+		final ModelElementInfo info = new ModelElementInfo() {
+		};
+		for (int i = 0; i < childCount; ++i) {
+			info.addChild(project("P" + i));
+		}
+		return info;
+	}
+
+	@Test
+	public void entriesAreChargedByWeight() {
+		final ElementCache cache = new ElementCache(10000, 0, 100, 10);
+		cache.put("A", info(0));
+		assertEquals(100, cache.getCurrentSpace());
+		cache.put("B", info(5));
+		assertEquals(100 + 150, cache.getCurrentSpace());
+		cache.put("A", info(2));
+		assertEquals(120 + 150, cache.getCurrentSpace());
+	}
+
+	@Test
+	public void countBasedCacheIsUnchanged() {
+		final ElementCache cache = new ElementCache(10);
+		cache.put("A", info(5));
+		cache.put("B", info(0));
+		assertEquals(2, cache.getCurrentSpace());
+	}
+
+	@Test
+	public void spaceLimitReturnsToBudget() {
+		final ElementCache cache = new ElementCache(1000, 0, 100, 10);
+		final IModelElement parent = project("Parent");
+		cache.ensureSpaceLimit(50, parent);
+		assertTrue(cache.getSpaceLimit() > 50 * 100);
+		// the space needed by the parent is kept while it is open
+		cache.setBudget(500);
+		assertEquals(500, cache.getBudget());
+		assertTrue(cache.getSpaceLimit() > 50 * 100);
+		cache.resetSpaceLimit(parent);
+		assertEquals(500, cache.getSpaceLimit());
+		cache.setBudget(2000);
+		assertEquals(2000, cache.getSpaceLimit());
+	}
+
+	@Test
+	public void lookupsAreCounted() {
+		final ModelCache cache = new ModelCache();
+		final IScriptProject project = project("Counters");
+		final IModelElement fragment = project.getProjectFragment("lib");
+		assertNull(cache.getInfo(fragment));
+		assertNull(cache.getInfo(fragment.getParent()));
+		final ModelCacheStatistics stats = cache.getStatistics();
+		assertEquals(1, stats.getMisses(ModelCacheStatistics.PROJECT_FRAGMENTS));
+		assertEquals(0, stats.getHits(ModelCacheStatistics.PROJECT_FRAGMENTS));
+		assertEquals(0, stats.getMisses(ModelCacheStatistics.OPENABLES));
+		assertEquals(0.0,
+				stats.getHitRatio(ModelCacheStatistics.PROJECT_FRAGMENTS), 0);
+		assertEquals(1.0, stats.getBudgetRatio(), 0);
+	}
+
+	@Test
+	public void budgetRatioScalesLimits() {
+		final ModelCache cache = new ModelCache();
+		final ModelCacheStatistics before = cache.getStatistics();
+		cache.setBudgetRatio(0.5);
+		final ModelCacheStatistics after = cache.getStatistics();
+		assertEquals(0.5, after.getBudgetRatio(), 0);
+		for (int kind = ModelCacheStatistics.PROJECT_FRAGMENTS; kind <= ModelCacheStatistics.CHILDREN; ++kind) {
+			assertEquals(Math.max(1, before.getSpaceLimit(kind) / 2),
+					after.getSpaceLimit(kind), 1);
+		}
+	}
+
+}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.model;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.IBuildpathEntry;
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.IProjectFragment;
+import org.eclipse.dltk.core.IScriptFolder;
+import org.eclipse.dltk.core.IScriptProject;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.ModelException;
+import org.eclipse.dltk.core.environment.EnvironmentPathUtils;
+import org.eclipse.dltk.core.internal.environment.LocalEnvironment;
+import org.eclipse.dltk.internal.core.ModelManager;
+import org.eclipse.dltk.internal.core.ProjectFragment;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Opening the modules of the external library at once.
+ */
+public class ParallelStructureBuilderTests extends Assert {
+
+	private static final String PROJECT = "ParallelStructureBuilder";
+	private static final int FOLDERS = 3;
+	private static final int MODULES = 10;
+
+	@Rule
+	public final TemporaryFolder temp = new TemporaryFolder();
+
+	private IProject project;
+
+	@Before
+	public void setUp() throws CoreException, IOException {
+		for (int f = 0; f < FOLDERS; ++f) {
+			final File folder = temp.newFolder("folder" + f);
+			for (int m = 0; m < MODULES; ++m) {
+				final FileWriter writer = new FileWriter(new File(folder,
+						"module" + m + ".txt"));
+				try {
+					writer.write("module" + m);
+				} finally {
+					writer.close();
+				}
+			}
+		}
+		project = ResourcesPlugin.getWorkspace().getRoot().getProject(PROJECT);
+		project.create(null);
+		project.open(null);
+		final IProjectDescription description = project.getDescription();
+		description.setNatureIds(new String[] { ModelTestsPlugin.TEST_NATURE });
+		project.setDescription(description, null);
+		DLTKCore.create(project).setRawBuildpath(
+				new IBuildpathEntry[] { DLTKCore
+						.newExtLibraryEntry(EnvironmentPathUtils.getFullPath(
+								LocalEnvironment.getInstance(), new Path(temp
+										.getRoot().getAbsolutePath()))) },
+				null);
+		ModelManager.getModelManager().getIndexManager().waitUntilReady();
+	}
+
+	@After
+	public void tearDown() throws CoreException {
+		project.delete(true, true, null);
+	}
+
+	private ProjectFragment getLibrary() throws ModelException {
+		final IScriptProject scriptProject = DLTKCore.create(project);
+		for (IProjectFragment fragment : scriptProject.getProjectFragments()) {
+			if (fragment.isExternal()) {
+				return (ProjectFragment) fragment;
+			}
+		}
+		fail("library not found");
+		return null;
+	}
+
+	private static List<ISourceModule> getModules(IProjectFragment fragment)
+			throws ModelException {
+		final List<ISourceModule> modules = new ArrayList<ISourceModule>();
+		for (IModelElement folder : fragment.getChildren()) {
+			for (ISourceModule module : ((IScriptFolder) folder)
+					.getSourceModules()) {
+				modules.add(module);
+			}
+		}
+		return modules;
+	}
+
+	@Test
+	public void modulesAreOpenedAtOnce() throws ModelException {
+		final ProjectFragment library = getLibrary();
+		final List<ISourceModule> modules = getModules(library);
+		assertEquals(FOLDERS * MODULES, modules.size());
+		for (ISourceModule module : modules) {
+			assertFalse(module.isOpen());
+		}
+		assertEquals(FOLDERS * MODULES, library.openSourceModules(null));
+		for (ISourceModule module : modules) {
+			assertTrue(module.isOpen());
+			assertEquals(1, module.getTypes().length);
+			assertEquals("Class1", module.getTypes()[0].getElementName());
+		}
+	}
+
+	@Test
+	public void openModulesAreKept() throws ModelException {
+		final ProjectFragment library = getLibrary();
+		final ISourceModule first = getModules(library).get(0);
+		final IModelElement[] children = first.getChildren();
+		assertEquals(FOLDERS * MODULES - 1, library.openSourceModules(null));
+		assertSame(children[0], first.getChildren()[0]);
+		assertEquals(0, library.openSourceModules(null));
+	}
+
+	@Test
+	public void modulesAreNotOpenedWhenIndexed() throws ModelException {
+		final List<ISourceModule> modules = getModules(getLibrary());
+		assertEquals(FOLDERS * MODULES, modules.size());
+		for (ISourceModule module : modules) {
+			assertFalse(module.isOpen());
+		}
+	}
+
+}
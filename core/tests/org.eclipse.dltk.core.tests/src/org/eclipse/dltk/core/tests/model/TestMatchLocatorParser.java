@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.model;
+
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
+import org.eclipse.dltk.ast.declarations.TypeDeclaration;
+import org.eclipse.dltk.ast.statements.Block;
+import org.eclipse.dltk.core.search.matching.MatchLocator;
+import org.eclipse.dltk.core.search.matching.MatchLocatorParser;
+import org.eclipse.dltk.core.search.matching.PossibleMatch;
+
+/**
+ * Builds the type declarations of the pseudo-model-code files (see
+ * {@link TestSourceElementParser}), so the declarations of the types could be
+ * searched, and records the types visited by the parsers.
+ */
+public class TestMatchLocatorParser extends MatchLocatorParser {
+
+	private static final String PARSEME_HEADER = "# parseme!\n";
+
+	/**
+	 * The names of the visited types mapped to the names of the threads which
+	 * parsed them.
+	 */
+	public static final Map<String, String> VISITED_TYPES = new ConcurrentHashMap<String, String>();
+
+	/**
+	 * The time to parse each module, in milliseconds.
+	 */
+	public static volatile int parseDelay = 0;
+
+	public TestMatchLocatorParser(MatchLocator locator) {
+		super(locator);
+	}
+
+	@Override
+	public ModuleDeclaration parse(PossibleMatch possibleMatch) {
+		if (parseDelay > 0) {
+			try {
+				Thread.sleep(parseDelay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		final String source = possibleMatch.getSourceContents();
+		final ModuleDeclaration module = new ModuleDeclaration(source.length());
+		if (!source.startsWith(PARSEME_HEADER)) {
+			return module;
+		}
+		final LinkedList<TypeDeclaration> types = new LinkedList<TypeDeclaration>();
+		int offset = 0;
+		for (String line : source.split("\n")) {
+			final String[] split = line.split("\\s+");
+			final int end = offset + line.length();
+			if (split.length > 1 && "enterType".equals(split[0])) {
+				final TypeDeclaration type = new TypeDeclaration(split[1],
+						offset, end, offset, end);
+				type.setBody(new Block(end, end));
+				if (types.isEmpty()) {
+					module.addStatement(type);
+				} else {
+					types.getLast().getBody().addStatement(type);
+				}
+				types.add(type);
+			} else if ("exitType".equals(split[0]) && !types.isEmpty()) {
+				final TypeDeclaration type = types.removeLast();
+				type.setEnd(end);
+				type.getBody().setEnd(end);
+			}
+			offset = end + 1;
+		}
+		return module;
+	}
+
+	@Override
+	protected void visitTypeDeclaration(TypeDeclaration t) {
+		VISITED_TYPES.put(t.getName(), Thread.currentThread().getName());
+		super.visitTypeDeclaration(t);
+	}
+
+}
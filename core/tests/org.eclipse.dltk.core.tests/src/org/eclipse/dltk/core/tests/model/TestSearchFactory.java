@@ -0,0 +1,25 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.model;
+
+import org.eclipse.dltk.core.search.AbstractSearchFactory;
+import org.eclipse.dltk.core.search.IMatchLocatorParser;
+import org.eclipse.dltk.core.search.matching.MatchLocator;
+
+public class TestSearchFactory extends AbstractSearchFactory {
+
+	@Override
+	public IMatchLocatorParser createMatchParser(MatchLocator locator) {
+		return new TestMatchLocatorParser(locator);
+	}
+
+}
@@ -42,7 +42,9 @@ public class TestSourceElementParser implements ISourceElementParser {
 	}
 
 	/**
-	 * Parses pseudo-model-code File should have \n as the line endings
+	 * Parses pseudo-model-code File should have \n as the line endings. The
+	 * superclasses of the type could be specified as the comma separated list
+	 * after its name.
 	 * 
 	 * @param file
 	 */
@@ -61,6 +63,9 @@ public class TestSourceElementParser implements ISourceElementParser {
 				if (cmd.equals("enterType")) {
 					ISourceElementRequestor.TypeInfo ti = new ISourceElementRequestor.TypeInfo();
 					ti.name = arg;
+					if (split.length > 2) {
+						ti.superclasses = split[2].split(",");
+					}
 					ti.declarationStart = currentLineOffset;
 					ti.nameSourceStart = currentLineOffset;
 					ti.nameSourceEnd = currentLineOffset + line.length();
@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.model;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.IBuildpathEntry;
+import org.eclipse.dltk.core.IType;
+import org.eclipse.dltk.core.ITypeHierarchy;
+import org.eclipse.dltk.core.ITypeHierarchyChangedListener;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Subtypes found with the supertype references of the index and the hierarchy
+ * updated after the changes of the modules.
+ */
+public class TypeHierarchyTests extends Assert {
+
+	private static final String PROJECT = "TypeHierarchy";
+
+	private IProject project;
+
+	private static String type(String name, String superclass) {
+		return "# parseme!\nenterType " + name
+				+ (superclass != null ? " " + superclass : "") + "\nexitType\n";
+	}
+
+	private void setContents(String file, String contents)
+			throws CoreException {
+		final ByteArrayInputStream input = new ByteArrayInputStream(contents
+				.getBytes());
+		if (project.getFile(file).exists()) {
+			project.getFile(file).setContents(input, true, false, null);
+		} else {
+			project.getFile(file).create(input, true, null);
+		}
+	}
+
+	@Before
+	public void setUp() throws CoreException {
+		project = ResourcesPlugin.getWorkspace().getRoot().getProject(PROJECT);
+		project.create(null);
+		project.open(null);
+		final IProjectDescription description = project.getDescription();
+		description.setNatureIds(new String[] { ModelTestsPlugin.TEST_NATURE });
+		project.setDescription(description, null);
+		DLTKCore.create(project).setRawBuildpath(
+				new IBuildpathEntry[] { DLTKCore.newSourceEntry(project
+						.getFullPath()) }, null);
+		setContents("base.txt", type("Base", null));
+		setContents("sub.txt", type("Sub", "Base"));
+		setContents("subsub.txt", type("SubSub", "Sub"));
+		setContents("other.txt", type("Other", null));
+	}
+
+	@After
+	public void tearDown() throws CoreException {
+		project.delete(true, true, null);
+	}
+
+	private IType getType(String file, String name) {
+		return DLTKCore.createSourceModuleFrom(project.getFile(file)).getType(
+				name);
+	}
+
+	private static Set<String> names(IType[] types) {
+		final Set<String> names = new TreeSet<String>();
+		for (IType type : types) {
+			names.add(type.getElementName());
+		}
+		return names;
+	}
+
+	private static Set<String> names(String... names) {
+		return new TreeSet<String>(Arrays.asList(names));
+	}
+
+	@Test
+	public void subtypesAreFound() throws CoreException {
+		final IType base = getType("base.txt", "Base");
+		final ITypeHierarchy hierarchy = base.newTypeHierarchy(null);
+		assertEquals(names("Sub", "SubSub"), names(hierarchy
+				.getAllSubtypes(base)));
+		assertEquals(names("Sub"), names(hierarchy.getSubtypes(base)));
+	}
+
+	@Test
+	public void hierarchyIsUpdated() throws CoreException {
+		final IType base = getType("base.txt", "Base");
+		final ITypeHierarchy hierarchy = base.newTypeHierarchy(null);
+		final int[] changes = new int[1];
+		hierarchy
+				.addTypeHierarchyChangedListener(new ITypeHierarchyChangedListener() {
+					public void typeHierarchyChanged(ITypeHierarchy typeHierarchy) {
+						++changes[0];
+					}
+				});
+		// new subtype
+		setContents("other.txt", type("Other", "SubSub"));
+		assertEquals(1, changes[0]);
+		hierarchy.refresh(null);
+		assertEquals(names("Sub", "SubSub", "Other"), names(hierarchy
+				.getAllSubtypes(base)));
+		// detached subtree
+		setContents("sub.txt", type("Sub", null));
+		assertEquals(2, changes[0]);
+		hierarchy.refresh(null);
+		assertEquals(0, hierarchy.getAllSubtypes(base).length);
+		// attached again
+		setContents("sub.txt", type("Sub", "Base"));
+		hierarchy.refresh(null);
+		assertEquals(names("Sub", "SubSub", "Other"), names(hierarchy
+				.getAllSubtypes(base)));
+		// removed module
+		project.getFile("subsub.txt").delete(true, null);
+		hierarchy.refresh(null);
+		assertEquals(names("Sub"), names(hierarchy.getAllSubtypes(base)));
+	}
+
+}
@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.dltk.core.search.SearchPattern;
+import org.eclipse.dltk.core.search.index.EntryResult;
+import org.eclipse.dltk.core.search.index.Index;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that any number of readers could query the same index at the same
+ * time and reports the query throughput for the different number of readers.
+ */
+public class IndexConcurrentQueryTest extends Assert {
+
+	private static final char[] CATEGORY = "ref".toCharArray();
+	private static final char[][] CATEGORIES = { CATEGORY };
+
+	private static final int DOCUMENTS = 2000;
+	private static final int WORDS = 500;
+	private static final int QUERIES = 8000;
+
+	@Rule
+	public final TemporaryFolder temp = new TemporaryFolder();
+
+	private Index index;
+
+	@Before
+	public void setUp() throws IOException {
+		final File file = new File(temp.getRoot(), "test.index");
+		index = new Index(file.getPath(), "/container", false);
+		index.monitor.enterWrite();
+		try {
+			for (int i = 0; i < DOCUMENTS; ++i) {
+				final String document = "folder" + (i % 10) + "/doc" + i;
+				for (int j = 0; j < 5; ++j) {
+					index.addIndexEntry(CATEGORY, word((i + j) % WORDS),
+							document);
+				}
+			}
+			index.save();
+		} finally {
+			index.monitor.exitWrite();
+		}
+	}
+
+	@After
+	public void tearDown() {
+		index = null;
+	}
+
+	private static char[] word(int i) {
+		return ("word" + i).toCharArray();
+	}
+
+	private int query(int i) throws IOException {
+		index.monitor.enterRead();
+		try {
+			index.startQuery();
+			try {
+				final EntryResult[] results = index.query(CATEGORIES,
+						word(i % WORDS), SearchPattern.R_EXACT_MATCH
+								| SearchPattern.R_CASE_SENSITIVE);
+				int count = 0;
+				if (results != null) {
+					for (EntryResult result : results) {
+						count += result.getDocumentNames(index).length;
+					}
+				}
+				return count;
+			} finally {
+				index.stopQuery();
+			}
+		} finally {
+			index.monitor.exitRead();
+		}
+	}
+
+	private long runQueries(int threads) throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			final List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+			final int queriesPerThread = QUERIES / threads;
+			for (int t = 0; t < threads; ++t) {
+				final int first = t * queriesPerThread;
+				tasks.add(new Callable<Integer>() {
+					public Integer call() throws Exception {
+						for (int i = first; i < first + queriesPerThread; ++i) {
+							// each word is referenced by 5 * DOCUMENTS / WORDS
+							// documents
+							assertEquals(5 * DOCUMENTS / WORDS, query(i));
+						}
+						return queriesPerThread;
+					}
+				});
+			}
+			final long start = System.nanoTime();
+			int total = 0;
+			for (Future<Integer> future : executor.invokeAll(tasks)) {
+				total += future.get().intValue();
+			}
+			final long time = System.nanoTime() - start;
+			assertEquals(queriesPerThread * threads, total);
+			return time;
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void concurrentReaders() throws Exception {
+		// warm up
+		runQueries(1);
+		final int processors = Runtime.getRuntime().availableProcessors();
+		for (int threads = 1; threads <= Math.max(4, processors); threads *= 2) {
+			final long time = runQueries(threads);
+			System.out.println(getClass().getSimpleName() + ": " + threads
+					+ " reader(s) - " + (QUERIES * 1000000000L / time)
+					+ " queries/sec");
+		}
+	}
+
+	@Test
+	public void queryAfterSave() throws Exception {
+		assertEquals(5 * DOCUMENTS / WORDS, query(1));
+		// publish the new generation
+		index.monitor.enterWrite();
+		try {
+			index.remove("folder0/doc0");
+			index.addIndexEntry(CATEGORY, word(0), "folder0/new");
+			index.save();
+		} finally {
+			index.monitor.exitWrite();
+		}
+		assertEquals(5 * DOCUMENTS / WORDS - 1, query(1));
+		assertEquals(5 * DOCUMENTS / WORDS, query(0));
+	}
+}
@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.dltk.internal.core.search.processing.IPartitionedJob;
+import org.eclipse.dltk.internal.core.search.processing.JobManager;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The partitioned jobs executed in parallel by the {@link JobManager}.
+ */
+public class JobManagerTest extends Assert {
+
+	private static final long TIMEOUT = 10000;
+
+	private final List<String> events = Collections
+			.synchronizedList(new ArrayList<String>());
+
+	private JobManager manager;
+
+	private class TestJob implements IPartitionedJob {
+		final String name;
+		final Object partition;
+		final Runnable body;
+
+		TestJob(String name, Object partition, Runnable body) {
+			this.name = name;
+			this.partition = partition;
+			this.body = body;
+		}
+
+		public Object getPartition() {
+			return partition;
+		}
+
+		public boolean belongsTo(String jobFamily) {
+			return false;
+		}
+
+		public void cancel() {
+		}
+
+		public void ensureReadyToRun() {
+		}
+
+		public boolean execute(IProgressMonitor progress) {
+			events.add("start " + name);
+			if (body != null) {
+				body.run();
+			}
+			events.add("end " + name);
+			return COMPLETE;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	/**
+	 * Waits for the latch, records the failure if it is not released.
+	 */
+	private Runnable await(final CountDownLatch latch, final String name) {
+		return new Runnable() {
+			public void run() {
+				try {
+					if (!latch.await(TIMEOUT, TimeUnit.MILLISECONDS)) {
+						events.add("timeout " + name);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+	}
+
+	private Runnable countDown(final CountDownLatch latch) {
+		return new Runnable() {
+			public void run() {
+				latch.countDown();
+			}
+		};
+	}
+
+	private static Runnable sleep(final long millis) {
+		return new Runnable() {
+			public void run() {
+				try {
+					Thread.sleep(millis);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+	}
+
+	@Before
+	public void setUp() {
+		manager = new JobManager() {
+			@Override
+			public String processName() {
+				return "Test Job Manager";
+			}
+		};
+		manager.setWorkerCount(2);
+		manager.reset();
+	}
+
+	@After
+	public void tearDown() {
+		manager.shutdown();
+	}
+
+	private void waitUntilIdle() throws InterruptedException {
+		final long end = System.currentTimeMillis() + 2 * TIMEOUT;
+		while (manager.awaitingJobsCount() > 0) {
+			assertTrue("jobs not completed: " + events,
+					System.currentTimeMillis() < end);
+			Thread.sleep(10);
+		}
+	}
+
+	private void assertBefore(String first, String second) {
+		final int firstIndex = events.indexOf(first);
+		final int secondIndex = events.indexOf(second);
+		assertTrue(first + " missing in " + events, firstIndex >= 0);
+		assertTrue(second + " missing in " + events, secondIndex >= 0);
+		assertTrue(events.toString(), firstIndex < secondIndex);
+	}
+
+	@Test
+	public void partitionsAreExecutedConcurrently() throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(2);
+		final Runnable body = new Runnable() {
+			public void run() {
+				latch.countDown();
+				await(latch, "both").run();
+			}
+		};
+		manager.request(new TestJob("a", "A", body));
+		manager.request(new TestJob("b", "B", body));
+		waitUntilIdle();
+		assertFalse(events.toString(), events.contains("timeout both"));
+		assertEquals(4, events.size());
+	}
+
+	@Test
+	public void jobsOfPartitionAreSequential() throws InterruptedException {
+		manager.request(new TestJob("a1", "A", sleep(100)));
+		manager.request(new TestJob("a2", "A", null));
+		manager.request(new TestJob("a3", "A", null));
+		waitUntilIdle();
+		assertBefore("end a1", "start a2");
+		assertBefore("end a2", "start a3");
+	}
+
+	@Test
+	public void busyPartitionDoesNotBlockOthers() throws InterruptedException {
+		final CountDownLatch release = new CountDownLatch(1);
+		// a2 waits for a1, b is started meanwhile and releases a1
+		manager.request(new TestJob("a1", "A", await(release, "a1")));
+		manager.request(new TestJob("a2", "A", null));
+		manager.request(new TestJob("b", "B", countDown(release)));
+		waitUntilIdle();
+		assertFalse(events.toString(), events.contains("timeout a1"));
+		assertBefore("start b", "end a1");
+		assertBefore("end a1", "start a2");
+	}
+
+	@Test
+	public void exclusiveJobWaitsForRunningJobs() throws InterruptedException {
+		manager.request(new TestJob("a", "A", sleep(100)));
+		manager.request(new TestJob("x", null, null));
+		manager.request(new TestJob("b", "B", null));
+		waitUntilIdle();
+		assertBefore("end a", "start x");
+		// the jobs behind the exclusive one are not started before it
+		assertBefore("end x", "start b");
+	}
+
+}
@@ -0,0 +1,284 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.search;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.DLTKLanguageManager;
+import org.eclipse.dltk.core.IBuildpathEntry;
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.IScriptProject;
+import org.eclipse.dltk.core.WorkingCopyOwner;
+import org.eclipse.dltk.core.search.IDLTKSearchConstants;
+import org.eclipse.dltk.core.search.SearchEngine;
+import org.eclipse.dltk.core.search.SearchMatch;
+import org.eclipse.dltk.core.search.SearchParticipant;
+import org.eclipse.dltk.core.search.SearchPattern;
+import org.eclipse.dltk.core.search.SearchRequestor;
+import org.eclipse.dltk.core.search.TypeNameMatch;
+import org.eclipse.dltk.core.search.TypeNameMatchRequestor;
+import org.eclipse.dltk.core.tests.model.ModelTestsPlugin;
+import org.eclipse.dltk.core.tests.model.TestMatchLocatorParser;
+import org.eclipse.dltk.internal.core.ModelManager;
+import org.eclipse.dltk.internal.core.search.LimitedSearchRequestor;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The searches with a limit report exactly the requested number of matches,
+ * stop as soon as the limit is reached and do not report the cancellation
+ * caused by the limit to the caller.
+ */
+public class LimitedSearchTest extends Assert {
+
+	private static final String PROJECT = "LimitedSearch";
+	private static final int MODULES = 40;
+	private static final int LIMIT = 5;
+
+	private IProject project;
+
+	@Before
+	public void setUp() throws CoreException {
+		project = ResourcesPlugin.getWorkspace().getRoot().getProject(PROJECT);
+		project.create(null);
+		project.open(null);
+		final IProjectDescription description = project.getDescription();
+		description.setNatureIds(new String[] { ModelTestsPlugin.TEST_NATURE });
+		project.setDescription(description, null);
+		DLTKCore.create(project).setRawBuildpath(
+				new IBuildpathEntry[] { DLTKCore.newSourceEntry(project
+						.getFullPath()) }, null);
+		for (int i = 0; i < MODULES; ++i) {
+			final String source = "# parseme!\nenterType Type" + i
+					+ "\nexitType\n";
+			project.getFile("module" + i + ".txt").create(
+					new ByteArrayInputStream(source.getBytes()), true, null);
+		}
+		ModelManager.getModelManager().getIndexManager().waitUntilReady();
+		TestMatchLocatorParser.VISITED_TYPES.clear();
+	}
+
+	@After
+	public void tearDown() throws CoreException {
+		project.delete(true, true, null);
+	}
+
+	private static class CollectingRequestor extends SearchRequestor {
+		final List<String> names = new ArrayList<String>();
+		boolean reporting;
+		int participants;
+
+		@Override
+		public void beginReporting() {
+			reporting = true;
+		}
+
+		@Override
+		public void endReporting() {
+			reporting = false;
+		}
+
+		@Override
+		public void enterParticipant(SearchParticipant participant) {
+			++participants;
+		}
+
+		@Override
+		public void acceptSearchMatch(SearchMatch match) {
+			names.add(((IModelElement) match.getElement()).getElementName());
+		}
+	}
+
+	private void search(SearchRequestor requestor, int limit,
+			IProgressMonitor monitor) throws CoreException {
+		final IScriptProject scriptProject = DLTKCore.create(project);
+		new SearchEngine().search(SearchPattern.createPattern("Type*",
+				IDLTKSearchConstants.TYPE, IDLTKSearchConstants.DECLARATIONS,
+				SearchPattern.R_PATTERN_MATCH,
+				DLTKLanguageManager.getLanguageToolkit(scriptProject)),
+				new SearchParticipant[] { SearchEngine
+						.getDefaultSearchParticipant() }, SearchEngine
+						.createSearchScope(scriptProject), requestor,
+				IDLTKSearchConstants.WAIT_UNTIL_READY_TO_SEARCH, limit, monitor);
+	}
+
+	private List<String> searchAllTypeNames(int limit,
+			IProgressMonitor monitor) throws CoreException {
+		final IScriptProject scriptProject = DLTKCore.create(project);
+		final List<String> names = new ArrayList<String>();
+		new SearchEngine((WorkingCopyOwner) null).searchAllTypeNames(null, 0,
+				"Type".toCharArray(), SearchPattern.R_PREFIX_MATCH,
+				IDLTKSearchConstants.TYPE,
+				SearchEngine.createSearchScope(scriptProject),
+				new TypeNameMatchRequestor() {
+					@Override
+					public void acceptTypeNameMatch(TypeNameMatch match) {
+						names.add(match.getSimpleTypeName());
+					}
+				}, IDLTKSearchConstants.WAIT_UNTIL_READY_TO_SEARCH, limit,
+				monitor);
+		return names;
+	}
+
+	@Test
+	public void unlimitedSearchReportsAllMatches() throws CoreException {
+		final CollectingRequestor requestor = new CollectingRequestor();
+		search(requestor, 0, null);
+		assertEquals(MODULES, requestor.names.size());
+		assertEquals(MODULES, TestMatchLocatorParser.VISITED_TYPES.size());
+	}
+
+	@Test
+	public void searchStopsAtLimit() throws CoreException {
+		final CollectingRequestor requestor = new CollectingRequestor();
+		final IProgressMonitor monitor = new NullProgressMonitor();
+		// the cancellation caused by the limit is not thrown
+		search(requestor, LIMIT, monitor);
+		assertEquals(LIMIT, requestor.names.size());
+		assertFalse(monitor.isCanceled());
+		assertFalse(requestor.reporting);
+		assertEquals(1, requestor.participants);
+		// the possible matches are parsed one by one, so the modules after
+		// the one reporting the last match are not parsed
+		assertEquals(LIMIT, TestMatchLocatorParser.VISITED_TYPES.size());
+	}
+
+	@Test
+	public void limitAboveMatchCount() throws CoreException {
+		final CollectingRequestor requestor = new CollectingRequestor();
+		search(requestor, MODULES * 2, null);
+		assertEquals(MODULES, requestor.names.size());
+	}
+
+	@Test
+	public void limitedSearchIsCanceled() throws CoreException {
+		final IProgressMonitor monitor = new NullProgressMonitor();
+		final CollectingRequestor requestor = new CollectingRequestor() {
+			@Override
+			public void acceptSearchMatch(SearchMatch match) {
+				super.acceptSearchMatch(match);
+				if (names.size() == 2) {
+					monitor.setCanceled(true);
+				}
+			}
+		};
+		try {
+			search(requestor, LIMIT, monitor);
+			fail("search was not canceled");
+		} catch (OperationCanceledException e) {
+			// expected, the limit was not reached
+		}
+		assertEquals(2, requestor.names.size());
+		assertFalse(requestor.reporting);
+	}
+
+	@Test
+	public void searchAllTypeNamesStopsAtLimit() throws CoreException {
+		assertEquals(MODULES, searchAllTypeNames(0, null).size());
+		final IProgressMonitor monitor = new NullProgressMonitor();
+		final List<String> names = searchAllTypeNames(LIMIT, monitor);
+		assertEquals(LIMIT, names.size());
+		assertFalse(monitor.isCanceled());
+		// the type names come from the index, no module is parsed
+		assertTrue(TestMatchLocatorParser.VISITED_TYPES.isEmpty());
+	}
+
+	@Test
+	public void searchAllTypeNamesIsCanceled() throws CoreException {
+		final IProgressMonitor monitor = new NullProgressMonitor();
+		monitor.setCanceled(true);
+		try {
+			searchAllTypeNames(LIMIT, monitor);
+			fail("search was not canceled");
+		} catch (OperationCanceledException e) {
+			// expected
+		}
+	}
+
+	private static class CountingRequestor extends SearchRequestor {
+		int accepted;
+		int reportingEnded;
+
+		@Override
+		public void acceptSearchMatch(SearchMatch match) {
+			++accepted;
+		}
+
+		@Override
+		public void endReporting() {
+			++reportingEnded;
+		}
+	}
+
+	@Test
+	public void requestorForwardsUpToLimit() throws CoreException {
+		final CountingRequestor target = new CountingRequestor();
+		final LimitedSearchRequestor requestor = new LimitedSearchRequestor(
+				target, 3);
+		assertEquals(3, requestor.getLimit());
+		for (int i = 0; i < 3; ++i) {
+			assertFalse(requestor.isLimitReached());
+			requestor.acceptSearchMatch(null);
+		}
+		assertTrue(requestor.isLimitReached());
+		requestor.acceptSearchMatch(null);
+		assertEquals(3, target.accepted);
+		assertEquals(3, requestor.getCount());
+		requestor.endReporting();
+		assertEquals(1, target.reportingEnded);
+	}
+
+	@Test
+	public void requestorMonitorsAreCanceledAtLimit() throws CoreException {
+		final LimitedSearchRequestor requestor = new LimitedSearchRequestor(
+				new CountingRequestor(), 1);
+		final IProgressMonitor monitor = new NullProgressMonitor();
+		final IProgressMonitor progress = requestor.newMonitor(monitor);
+		final IProgressMonitor cancel = requestor.newCancelMonitor(monitor);
+		final IProgressMonitor nullCancel = requestor.newCancelMonitor(null);
+		assertFalse(progress.isCanceled());
+		assertFalse(cancel.isCanceled());
+		assertFalse(nullCancel.isCanceled());
+		requestor.acceptSearchMatch(null);
+		assertTrue(progress.isCanceled());
+		assertTrue(cancel.isCanceled());
+		assertTrue(nullCancel.isCanceled());
+		// the limit does not cancel the monitor of the caller
+		assertFalse(monitor.isCanceled());
+	}
+
+	@Test
+	public void requestorMonitorsFollowCallerCancel() {
+		final LimitedSearchRequestor requestor = new LimitedSearchRequestor(
+				new CountingRequestor(), 1);
+		final IProgressMonitor monitor = new NullProgressMonitor();
+		final IProgressMonitor progress = requestor.newMonitor(monitor);
+		final IProgressMonitor cancel = requestor.newCancelMonitor(monitor);
+		monitor.setCanceled(true);
+		assertTrue(progress.isCanceled());
+		assertTrue(cancel.isCanceled());
+		assertFalse(requestor.isLimitReached());
+	}
+
+}
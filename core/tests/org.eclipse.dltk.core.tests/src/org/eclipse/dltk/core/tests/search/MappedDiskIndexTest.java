@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.search.SearchPattern;
+import org.eclipse.dltk.core.search.index.EntryResult;
+import org.eclipse.dltk.core.search.index.Index;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The indexes read through the memory-mapped buffers (see
+ * {@link DLTKCore#INDEXER_MAPPED_FILES}) answer the same as the indexes read
+ * through the streams.
+ */
+public class MappedDiskIndexTest extends Assert {
+
+	private static final char[] TYPE = "typeDecl".toCharArray();
+	private static final char[] METHOD = "methodDecl".toCharArray();
+	private static final char[][] CATEGORIES = { TYPE, METHOD };
+	private static final int DOCUMENTS = 300;
+
+	@Rule
+	public final TemporaryFolder temp = new TemporaryFolder();
+
+	private static Index newIndex(File file, boolean mapped, boolean reuse)
+			throws IOException {
+		final Hashtable<String, String> options = DLTKCore.getOptions();
+		final String previous = options.get(DLTKCore.INDEXER_MAPPED_FILES);
+		options.put(DLTKCore.INDEXER_MAPPED_FILES, mapped ? DLTKCore.ENABLED
+				: DLTKCore.DISABLED);
+		DLTKCore.setOptions(options);
+		try {
+			return new Index(file.getPath(), "/container", reuse);
+		} finally {
+			options.put(DLTKCore.INDEXER_MAPPED_FILES, previous);
+			DLTKCore.setOptions(options);
+		}
+	}
+
+	private static String document(int i) {
+		return "folder" + (i % 10) + "/module" + i + ".txt";
+	}
+
+	private static void addDocument(Index index, int i, String suffix) {
+		final String document = document(i);
+		index.addIndexEntry(TYPE, ("Type" + i + suffix).toCharArray(),
+				document);
+		index.addIndexEntry(TYPE, ("Shared" + (i % 7)).toCharArray(), document);
+		index.addIndexEntry(METHOD, ("method" + (i % 13)).toCharArray(),
+				document);
+	}
+
+	private static void fill(Index index) throws IOException {
+		index.monitor.enterWrite();
+		try {
+			for (int i = 0; i < DOCUMENTS; ++i) {
+				addDocument(index, i, "");
+			}
+			index.save();
+		} finally {
+			index.monitor.exitWrite();
+		}
+	}
+
+	private static void update(Index index) throws IOException {
+		index.monitor.enterWrite();
+		try {
+			for (int i = 0; i < DOCUMENTS; i += 3) {
+				index.remove(document(i));
+				if (i % 2 == 0) {
+					addDocument(index, i, "Changed");
+				}
+			}
+			index.save();
+		} finally {
+			index.monitor.exitWrite();
+		}
+	}
+
+	/**
+	 * Returns the sorted "word: documents" lines of the query results.
+	 */
+	private static List<String> query(Index index, char[] key, int matchRule)
+			throws IOException {
+		final List<String> lines = new ArrayList<String>();
+		index.monitor.enterRead();
+		try {
+			index.startQuery();
+			try {
+				final EntryResult[] results = index.query(CATEGORIES, key,
+						matchRule);
+				if (results != null) {
+					for (EntryResult result : results) {
+						final String[] names = result.getDocumentNames(index);
+						Arrays.sort(names);
+						lines.add(new String(result.getWord()) + ": "
+								+ Arrays.asList(names));
+					}
+				}
+			} finally {
+				index.stopQuery();
+			}
+		} finally {
+			index.monitor.exitRead();
+		}
+		Collections.sort(lines);
+		return lines;
+	}
+
+	private static void assertSameResults(Index expected, Index actual)
+			throws IOException {
+		final Object[][] queries = {
+				{ "Type42", SearchPattern.R_EXACT_MATCH },
+				{ "Shared3", SearchPattern.R_EXACT_MATCH
+						| SearchPattern.R_CASE_SENSITIVE },
+				{ "shared3", SearchPattern.R_EXACT_MATCH },
+				{ "Missing", SearchPattern.R_EXACT_MATCH },
+				{ "Type1", SearchPattern.R_PREFIX_MATCH },
+				{ "method", SearchPattern.R_PREFIX_MATCH
+						| SearchPattern.R_CASE_SENSITIVE },
+				{ "*Changed", SearchPattern.R_PATTERN_MATCH },
+				{ null, SearchPattern.R_EXACT_MATCH } };
+		for (Object[] query : queries) {
+			final char[] key = query[0] != null ? ((String) query[0])
+					.toCharArray() : null;
+			final int matchRule = (Integer) query[1];
+			assertEquals(String.valueOf(query[0]),
+					query(expected, key, matchRule),
+					query(actual, key, matchRule));
+		}
+	}
+
+	@Test
+	public void mappedIndexAnswersSameAsStreams() throws IOException {
+		final Index plain = newIndex(temp.newFile("plain.index"), false, false);
+		final Index mapped = newIndex(temp.newFile("mapped.index"), true,
+				false);
+		fill(plain);
+		fill(mapped);
+		assertEquals(1, query(mapped, "Type42".toCharArray(),
+				SearchPattern.R_EXACT_MATCH).size());
+		assertEquals(DOCUMENTS / 13 + 1,
+				query(mapped, "method0".toCharArray(),
+						SearchPattern.R_EXACT_MATCH).get(0).split(",").length);
+		assertSameResults(plain, mapped);
+	}
+
+	@Test
+	public void mappedIndexIsMerged() throws IOException {
+		final Index plain = newIndex(temp.newFile("plain.index"), false, false);
+		final Index mapped = newIndex(temp.newFile("mapped.index"), true,
+				false);
+		fill(plain);
+		fill(mapped);
+		// queried first, so the file is mapped before it is replaced
+		assertSameResults(plain, mapped);
+		update(plain);
+		update(mapped);
+		assertTrue(query(mapped, "Type0".toCharArray(),
+				SearchPattern.R_EXACT_MATCH).isEmpty());
+		assertEquals(1, query(mapped, "Type0Changed".toCharArray(),
+				SearchPattern.R_EXACT_MATCH).size());
+		assertSameResults(plain, mapped);
+	}
+
+	@Test
+	public void existingFileIsMapped() throws IOException {
+		final File file = temp.newFile("existing.index");
+		final Index plain = newIndex(file, false, false);
+		fill(plain);
+		final Index mapped = newIndex(file, true, true);
+		assertSameResults(plain, mapped);
+	}
+
+}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.search;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.DLTKLanguageManager;
+import org.eclipse.dltk.core.IBuildpathEntry;
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.IScriptProject;
+import org.eclipse.dltk.core.search.IDLTKSearchConstants;
+import org.eclipse.dltk.core.search.SearchEngine;
+import org.eclipse.dltk.core.search.SearchMatch;
+import org.eclipse.dltk.core.search.SearchParticipant;
+import org.eclipse.dltk.core.search.SearchPattern;
+import org.eclipse.dltk.core.search.SearchRequestor;
+import org.eclipse.dltk.core.tests.model.ModelTestsPlugin;
+import org.eclipse.dltk.core.tests.model.TestMatchLocatorParser;
+import org.eclipse.dltk.internal.core.ModelManager;
+import org.eclipse.dltk.internal.core.search.matching.MatchLocatorWorkers;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The possible matches parsed by the several threads are reported in the same
+ * order as when parsed sequentially.
+ */
+public class ParallelSearchTest extends Assert {
+
+	private static final String PROJECT = "ParallelSearch";
+	private static final int MODULES = 40;
+
+	private IProject project;
+
+	@Before
+	public void setUp() throws CoreException {
+		project = ResourcesPlugin.getWorkspace().getRoot().getProject(PROJECT);
+		project.create(null);
+		project.open(null);
+		final IProjectDescription description = project.getDescription();
+		description.setNatureIds(new String[] { ModelTestsPlugin.TEST_NATURE });
+		project.setDescription(description, null);
+		DLTKCore.create(project).setRawBuildpath(
+				new IBuildpathEntry[] { DLTKCore.newSourceEntry(project
+						.getFullPath()) }, null);
+		for (int i = 0; i < MODULES; ++i) {
+			final String source = "# parseme!\nenterType Type" + i
+					+ "\nexitType\n";
+			project.getFile("module" + i + ".txt").create(
+					new ByteArrayInputStream(source.getBytes()), true, null);
+		}
+		ModelManager.getModelManager().getIndexManager().waitUntilReady();
+		TestMatchLocatorParser.VISITED_TYPES.clear();
+		TestMatchLocatorParser.parseDelay = 5;
+	}
+
+	@After
+	public void tearDown() throws CoreException {
+		TestMatchLocatorParser.parseDelay = 0;
+		ModelManager.getModelManager().setMatchLocatorWorkers(null);
+		project.delete(true, true, null);
+	}
+
+	private static void useThreads(int threads) {
+		ModelManager.getModelManager().setMatchLocatorWorkers(
+				new MatchLocatorWorkers(threads));
+	}
+
+	/**
+	 * Searches for the type declarations, canceling the monitor when the
+	 * specified number of the matches is reported.
+	 */
+	private void search(final List<String> names, final int cancelAfter,
+			final IProgressMonitor monitor) throws CoreException {
+		final IScriptProject scriptProject = DLTKCore.create(project);
+		new SearchEngine().search(SearchPattern.createPattern("Type*",
+				IDLTKSearchConstants.TYPE, IDLTKSearchConstants.DECLARATIONS,
+				SearchPattern.R_PATTERN_MATCH,
+				DLTKLanguageManager.getLanguageToolkit(scriptProject)),
+				new SearchParticipant[] { SearchEngine
+						.getDefaultSearchParticipant() }, SearchEngine
+						.createSearchScope(scriptProject),
+				new SearchRequestor() {
+					@Override
+					public void acceptSearchMatch(SearchMatch match) {
+						names.add(((IModelElement) match.getElement())
+								.getElementName());
+						if (names.size() == cancelAfter) {
+							monitor.setCanceled(true);
+						}
+					}
+				}, IDLTKSearchConstants.WAIT_UNTIL_READY_TO_SEARCH, monitor);
+	}
+
+	@Test
+	public void matchesAreReportedInOrder() throws CoreException {
+		useThreads(1);
+		final List<String> expected = new ArrayList<String>();
+		search(expected, -1, null);
+		assertEquals(MODULES, expected.size());
+		for (String thread : TestMatchLocatorParser.VISITED_TYPES.values()) {
+			assertEquals(Thread.currentThread().getName(), thread);
+		}
+
+		TestMatchLocatorParser.VISITED_TYPES.clear();
+		useThreads(4);
+		final List<String> names = new ArrayList<String>();
+		search(names, -1, null);
+		assertEquals(expected, names);
+		assertEquals(MODULES, TestMatchLocatorParser.VISITED_TYPES.size());
+		for (String thread : TestMatchLocatorParser.VISITED_TYPES.values()) {
+			assertTrue(thread, thread.startsWith("DLTK Match Locator"));
+		}
+	}
+
+	@Test
+	public void searchIsCanceled() throws CoreException {
+		useThreads(4);
+		final IProgressMonitor monitor = new NullProgressMonitor();
+		final List<String> names = new ArrayList<String>();
+		// the cancellation of the unlimited search is not thrown
+		search(names, 3, monitor);
+		assertTrue(monitor.isCanceled());
+		// nothing is reported after the cancellation and the modules not
+		// parsed yet are skipped
+		assertEquals(3, names.size());
+		assertTrue(TestMatchLocatorParser.VISITED_TYPES.size() < MODULES);
+	}
+
+}
@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * Copyright (c) 2013 NumberFour AG
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     NumberFour AG - initial API and Implementation
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.dltk.core.search.SearchPattern;
+import org.eclipse.dltk.core.search.index.EntryResult;
+import org.eclipse.dltk.core.search.index.Index;
+import org.eclipse.dltk.core.search.indexing.core.IndexRequest;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The searches reading the snapshot of the index while the container is
+ * indexed are not blocked by the indexer, and see the published batches.
+ */
+public class SnapshotSearchTest extends Assert {
+
+	private static final char[] CATEGORY = "ref".toCharArray();
+	private static final char[][] CATEGORIES = { CATEGORY };
+	private static final char[] WORD = "word".toCharArray();
+
+	@Rule
+	public final TemporaryFolder temp = new TemporaryFolder();
+
+	private Index index;
+
+	@Before
+	public void setUp() throws IOException {
+		final File file = new File(temp.getRoot(), "test.index");
+		index = new Index(file.getPath(), "/container", false);
+		index.monitor.enterWrite();
+		try {
+			index.addIndexEntry(CATEGORY, WORD, "saved");
+			index.save();
+		} finally {
+			index.monitor.exitWrite();
+		}
+	}
+
+	/**
+	 * Indexes the specified number of the documents, each taking some time as
+	 * parsing a module would.
+	 */
+	private static class BatchRequest extends IndexRequest {
+		final int documents;
+		final CountDownLatch started = new CountDownLatch(1);
+		final AtomicBoolean finished = new AtomicBoolean();
+		final AtomicBoolean rewritten = new AtomicBoolean();
+		final Index index;
+		final long savedLength;
+
+		BatchRequest(Index index, int batches) {
+			super(null);
+			this.index = index;
+			this.documents = batches * WRITE_BATCH_SIZE;
+			this.savedLength = index.getIndexFile().length();
+		}
+
+		@Override
+		protected String getName() {
+			return "batches";
+		}
+
+		@Override
+		protected void run() {
+			final List<String> changes = new ArrayList<String>();
+			for (int i = 0; i < documents; ++i) {
+				changes.add("doc" + i);
+			}
+			try {
+				applyChanges(index, changes, new IChangeHandler() {
+					public void apply(Index index, Object change) {
+						started.countDown();
+						try {
+							Thread.sleep(2);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						if (index.getIndexFile().length() != savedLength) {
+							rewritten.set(true);
+						}
+						index.addIndexEntry(CATEGORY, WORD, (String) change);
+					}
+				});
+			} finally {
+				finished.set(true);
+			}
+		}
+	}
+
+	private static int query(Index index, char[] word) throws IOException {
+		index.startQuery();
+		try {
+			final EntryResult[] results = index.query(CATEGORIES, word,
+					SearchPattern.R_EXACT_MATCH
+							| SearchPattern.R_CASE_SENSITIVE);
+			int count = 0;
+			if (results != null) {
+				for (EntryResult result : results) {
+					count += result.getDocumentNames(index).length;
+				}
+			}
+			return count;
+		} finally {
+			index.stopQuery();
+		}
+	}
+
+	/**
+	 * Reads the index the same way as the search jobs do.
+	 */
+	private int search() throws IOException {
+		index.monitor.enterRead();
+		try {
+			return query(index, WORD);
+		} finally {
+			index.monitor.exitRead();
+		}
+	}
+
+	/**
+	 * Reads the snapshot the same way as the search jobs reading the snapshot
+	 * do, without the monitor.
+	 */
+	private int searchSnapshot(char[] word) throws IOException {
+		return query(index.getSnapshot(), word);
+	}
+
+	@Test
+	public void searchWhileIndexing() throws Exception {
+		final BatchRequest request = new BatchRequest(index, 10);
+		final Thread indexer = new Thread(new Runnable() {
+			public void run() {
+				request.execute(null);
+			}
+		});
+		indexer.start();
+		try {
+			assertTrue(request.started.await(10, TimeUnit.SECONDS));
+			// the write lock of the first batch is held now
+			int count = searchSnapshot(WORD);
+			assertFalse("search waited for the indexer",
+					request.finished.get());
+			assertTrue(count >= 1);
+			while (!request.finished.get()) {
+				final int next = searchSnapshot(WORD);
+				assertTrue(next >= count);
+				count = next;
+			}
+		} finally {
+			indexer.join();
+		}
+		// the batches are published, the index is saved after the last one
+		assertFalse(request.rewritten.get());
+		assertTrue(index.getIndexFile().length() > request.savedLength);
+		assertEquals(request.documents + 1, search());
+		assertEquals(request.documents + 1, searchSnapshot(WORD));
+	}
+
+	@Test
+	public void publishedChangesShadowOlderOnes() throws IOException {
+		final char[] other = "other".toCharArray();
+		index.monitor.enterWrite();
+		try {
+			for (int i = 0; i < 20; ++i) {
+				index.addIndexEntry(CATEGORY, WORD, "doc" + i);
+				index.publish();
+			}
+			// not published yet
+			index.addIndexEntry(CATEGORY, WORD, "hidden");
+			assertEquals(21, searchSnapshot(WORD));
+			index.publish();
+			assertEquals(22, searchSnapshot(WORD));
+
+			// the newer changes of the documents take precedence
+			index.remove("saved");
+			index.remove("doc3");
+			index.addIndexEntry(CATEGORY, other, "doc3");
+			index.publish();
+			assertEquals(20, searchSnapshot(WORD));
+			assertEquals(1, searchSnapshot(other));
+			assertEquals(20, query(index, WORD));
+			final String[] names = index.getSnapshot().queryDocumentNames(
+					"doc");
+			assertEquals(20, names.length);
+
+			index.save();
+		} finally {
+			index.monitor.exitWrite();
+		}
+		assertEquals(20, search());
+		assertEquals(20, searchSnapshot(WORD));
+		assertEquals(1, searchSnapshot(other));
+	}
+
+}